@@ -0,0 +1,116 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A burst of concurrent requests (8 fetches, 1 add and 1 demerit in every 10)
+ * served two ways: by the blocking Person API on a fixed pool of handler threads,
+ * as a thread-per-request server does, and by PersonAsync, which only holds a
+ * thread while an operation is actually running.
+ * Time per burst; requests / time is the sustained rate.
+ * With durability fsync, blocking handlers wait out every fsync while PersonAsync
+ * lets the whole burst's writes share them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncBenchmark {
+    @Param({"100000"})
+    int records;
+
+    @Param({"10000"})
+    int requests;
+
+    @Param({"200"})
+    int handlerThreads;
+
+    @Param({"flush", "fsync"})
+    String durability;
+
+    private Path file;
+    private final AtomicLong nextId = new AtomicLong();
+    private ExecutorService handlers;
+    private PersonAsync async;
+    private String offenceDate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.write(records, 0);
+        Person.setFileName(file.toString());
+        Person.setDurability(durability.equals("fsync") ? DurabilityPolicy.FSYNC_PER_BATCH : DurabilityPolicy.FLUSH_PER_BATCH);
+        nextId.set(records);
+        handlers = Executors.newFixedThreadPool(handlerThreads);
+        async = new PersonAsync();
+        offenceDate = DateCodec.format(DateCodec.today() - 10);
+        Person.fetchPersonById(BenchmarkData.id(0)); // Builds the index outside the measurement
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        handlers.shutdownNow();
+        Person.setDurability(DurabilityPolicy.FLUSH_PER_BATCH);
+        BenchmarkData.delete(file);
+    }
+
+    @Benchmark
+    public int blocking() throws InterruptedException, ExecutionException {
+        List<Future<Object>> responses = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            int kind = i % 10;
+            String id = BenchmarkData.id(ThreadLocalRandom.current().nextInt(records));
+            Callable<Object> request;
+            if (kind == 8) {
+                String newId = BenchmarkData.id(nextId.getAndIncrement());
+                request = () -> new Person(newId, "New", "Person", BenchmarkData.ADDRESS, "15-05-1990").addPerson();
+            } else if (kind == 9) {
+                request = () -> {
+                    Person person = Person.fetchPersonById(id);
+                    return person == null ? "Failed" : person.addDemeritPoints(offenceDate, 1);
+                };
+            } else {
+                request = () -> Person.fetchPersonById(id);
+            }
+            responses.add(handlers.submit(request));
+        }
+        int answered = 0;
+        for (Future<Object> response : responses) {
+            answered += response.get() != null ? 1 : 0;
+        }
+        return answered;
+    }
+
+    @Benchmark
+    public int async() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[requests];
+        for (int i = 0; i < requests; i++) {
+            int kind = i % 10;
+            String id = BenchmarkData.id(ThreadLocalRandom.current().nextInt(records));
+            if (kind == 8) {
+                responses[i] = async.addPerson(BenchmarkData.id(nextId.getAndIncrement()), "New", "Person",
+                                               BenchmarkData.ADDRESS, "15-05-1990");
+            } else if (kind == 9) {
+                responses[i] = async.addDemeritPoints(id, offenceDate, 1);
+            } else {
+                responses[i] = async.fetchPersonById(id);
+            }
+        }
+        CompletableFuture.allOf(responses).join();
+        return responses.length;
+    }
+}
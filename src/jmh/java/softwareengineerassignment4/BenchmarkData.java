@@ -0,0 +1,64 @@
+package softwareengineerassignment4;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates data files for the benchmarks.
+ * Every person gets a distinct valid ID from id(n). The first HOT persons also get
+ * the requested number of offences, one every 30 days back from today, so the
+ * history length can be varied without multiplying the size of a 10M-record file.
+ */
+final class BenchmarkData {
+    static final String ADDRESS = LoadGenerator.ADDRESS;
+    static final int HOT = 1024;
+
+    private BenchmarkData() {
+    }
+
+    // Distinct valid person ID for each n below 64 * 26^6, as LoadGenerator makes them
+    static String id(long n) {
+        return LoadGenerator.id(n);
+    }
+
+    /**
+     * Writes a new data file in a temp directory.
+     * @param records Number of persons, with IDs id(0) to id(records - 1)
+     * @param offences Offences given to each of the first HOT persons
+     * @return path of the file
+     */
+    static Path write(int records, int offences) throws IOException {
+        Path file = Files.createTempDirectory("person-bench").resolve("persons.txt");
+        int today = DateCodec.today();
+        int birthBase = DateCodec.epochDay(1950, 1, 1);
+        StringBuilder line = new StringBuilder(96);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int n = 0; n < records; n++) {
+                line.setLength(0);
+                line.append(id(n)).append(",First").append(n).append(",Last,").append(ADDRESS).append(',');
+                DateCodec.format(birthBase + n % 20_000, line);
+                writer.append(line).append('\n');
+            }
+            for (int n = 0; n < Math.min(records, HOT); n++) {
+                for (int k = 0; k < offences; k++) {
+                    writer.write(CsvFormat.demeritLine(id(n), 1 + k % 3, today - 30 * k));
+                    writer.write('\n');
+                }
+            }
+        }
+        return file;
+    }
+
+    // Removes a file written by write(), along with its lock file and directory
+    static void delete(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".lock"));
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".compact"));
+        Files.deleteIfExists(IndexSnapshot.pathFor(file));
+        Files.deleteIfExists(file.resolveSibling("temp_" + file.getFileName()));
+        Files.deleteIfExists(file.getParent());
+    }
+}
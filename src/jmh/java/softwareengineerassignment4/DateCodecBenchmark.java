@@ -0,0 +1,60 @@
+package softwareengineerassignment4;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of reading one dd-MM-yyyy date: the old SimpleDateFormat path, which
+ * validated and then parsed again through a Calendar, against DateCodec.
+ * Dates cycle through a fixed set spread over 1950-2025.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateCodecBenchmark {
+    private static final int DATES = 4096;
+
+    private final String[] dates = new String[DATES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        int day = DateCodec.epochDay(1950, 1, 1);
+        for (int i = 0; i < DATES; i++) {
+            dates[i] = DateCodec.format(day + i * 7 % 27_000);
+        }
+    }
+
+    private String nextDate() {
+        next = (next + 1) & (DATES - 1);
+        return dates[next];
+    }
+
+    @Benchmark
+    public long simpleDateFormat() throws ParseException {
+        // What validateDate followed by addDemeritPoints used to do for each date
+        String date = nextDate();
+        SimpleDateFormat validator = new SimpleDateFormat("dd-MM-yyyy");
+        validator.setLenient(false);
+        validator.parse(date);
+
+        SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
+        sdf.setLenient(false);
+        Date parsed = sdf.parse(date);
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(parsed);
+        return cal.get(Calendar.YEAR) * 10000L + cal.get(Calendar.MONTH) * 100 + cal.get(Calendar.DAY_OF_MONTH);
+    }
+
+    @Benchmark
+    public int dateCodec() {
+        return DateCodec.parse(nextDate());
+    }
+}
@@ -0,0 +1,52 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Time to evaluate every person in a file for suspension, by fork-join parallelism.
+ * Compare parallelism 1 against the machine's core count to see how the evaluation scales.
+ * The store's index is built in setup, as it would be in a running service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FleetSuspensionBenchmark {
+    @Param({"100000", "1000000", "5000000"})
+    int records;
+
+    @Param({"4"})
+    int offences;
+
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    private Path file;
+    private PersonStore store;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.write(records, offences);
+        store = PersonStore.forFile(file.toString());
+        store.personCount(); // Builds the index outside the measurement
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        BenchmarkData.delete(file);
+    }
+
+    @Benchmark
+    public SuspensionReport evaluateFleet() throws IOException {
+        return SuspensionEngine.evaluate(store, DateCodec.today(), pool);
+    }
+}
@@ -0,0 +1,94 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of loading the same people from a CSV file and from its binary conversion.
+ * parse only decodes entries; index also builds the maps PersonStore keeps,
+ * which is what opening a store costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatBenchmark {
+    @Param({"1000000"})
+    int records;
+
+    @Param({"4"})
+    int offences;
+
+    @Param({"CSV", "BINARY"})
+    StorageFormat format;
+
+    private Path csvFile;
+    private Path binaryFile;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        csvFile = BenchmarkData.write(records, offences);
+        binaryFile = csvFile.resolveSibling("persons.bin");
+        StorageConverter.convert(csvFile.toString(), StorageFormat.CSV, binaryFile.toString(), StorageFormat.BINARY);
+        file = format == StorageFormat.CSV ? csvFile : binaryFile;
+        System.out.println("\nCSV " + Files.size(csvFile) + " bytes, binary " + Files.size(binaryFile) + " bytes");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(binaryFile);
+        BenchmarkData.delete(csvFile);
+    }
+
+    @Benchmark
+    public long parse(Blackhole blackhole) throws IOException {
+        return format.scan(file, 0, Long.MAX_VALUE, new LogVisitor() {
+            @Override
+            public void person(PersonRecord record) {
+                blackhole.consume(record);
+            }
+
+            @Override
+            public void demerit(String personID, int offenseDay, int points) {
+                blackhole.consume(offenseDay);
+            }
+
+            @Override
+            public void moved(String fromPersonID, String toPersonID) {
+                blackhole.consume(toPersonID);
+            }
+        });
+    }
+
+    @Benchmark
+    public int index() throws IOException {
+        Map<String, PersonRecord> records = new HashMap<>();
+        Map<String, DemeritWindow> histories = new HashMap<>();
+        format.scan(file, 0, Long.MAX_VALUE, new LogVisitor() {
+            @Override
+            public void person(PersonRecord record) {
+                records.put(record.getPersonID(), record);
+            }
+
+            @Override
+            public void demerit(String personID, int offenseDay, int points) {
+                histories.computeIfAbsent(personID, id -> new DemeritWindow()).add(offenseDay, points);
+            }
+
+            @Override
+            public void moved(String fromPersonID, String toPersonID) {
+                records.remove(fromPersonID);
+            }
+        });
+        return records.size() + histories.size();
+    }
+}
@@ -0,0 +1,62 @@
+package softwareengineerassignment4;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ID lookups: the off-heap PersonIdIndex against a HashMap<String, Long>.
+ * gc.alloc.rate.norm should read 0 for the index. Setup prints the memory
+ * each one holds per ID: off-heap table bytes, and heap growth for the HashMap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IdIndexBenchmark {
+    @Param({"1000000", "10000000"})
+    int records;
+
+    private PersonIdIndex index;
+    private Map<String, Long> hashMap;
+    private String[] probes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = new PersonIdIndex();
+        for (int n = 0; n < records; n++) {
+            index.put(BenchmarkData.id(n), n * 80L);
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        hashMap = new HashMap<>();
+        for (int n = 0; n < records; n++) {
+            hashMap.put(BenchmarkData.id(n), n * 80L);
+        }
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("%nPersonIdIndex %.1f bytes/ID off-heap, HashMap %.1f bytes/ID on heap%n",
+                          index.memoryBytes() / (double) records, (after - before) / (double) records);
+
+        probes = new String[4096];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = BenchmarkData.id((long) i * 7919 % records);
+        }
+    }
+
+    @Benchmark
+    public long offHeapIndex() {
+        return index.get(probes[next++ & (probes.length - 1)]);
+    }
+
+    @Benchmark
+    public Long hashMap() {
+        return hashMap.get(probes[next++ & (probes.length - 1)]);
+    }
+}
@@ -0,0 +1,68 @@
+package softwareengineerassignment4;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Loading a feed into an empty data file: Person.importFeed against one
+ * addPerson per row. Each iteration starts from an empty data file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ImportBenchmark {
+    @Param({"1000000"})
+    int rows;
+
+    private Path feed;
+    private Path dataFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path directory = Files.createTempDirectory("person-bench");
+        feed = directory.resolve("feed.csv");
+        dataFile = directory.resolve("persons.txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(feed, StandardCharsets.UTF_8)) {
+            for (int n = 0; n < rows; n++) {
+                writer.write(BenchmarkData.id(n) + ",First" + n + ",Last," + BenchmarkData.ADDRESS + ",15-05-1990\n");
+            }
+        }
+        Person.setFileName(dataFile.toString());
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyDataFile() throws IOException {
+        Files.deleteIfExists(dataFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(feed);
+        BenchmarkData.delete(dataFile);
+    }
+
+    @Benchmark
+    public long importFeed() {
+        return Person.importFeed(feed.toString()).getImported();
+    }
+
+    @Benchmark
+    public long addPersonPerRow() {
+        long added = 0;
+        for (int n = 0; n < rows; n++) {
+            Person person = new Person(BenchmarkData.id(n), "First" + n, "Last", BenchmarkData.ADDRESS, "15-05-1990");
+            if (person.addPerson()) {
+                added++;
+            }
+        }
+        return added;
+    }
+}
@@ -0,0 +1,114 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of fetchPersonById against an already indexed file, and of parsing the whole file.
+ * cacheSize is the PersonCache size per file; 0 reads every lookup from the file.
+ * The 10M-record file is about 700 MB and its index needs a large heap:
+ * pass -Djmh.args="-jvmArgsAppend -Xmx16g" or leave it out with -p records=1000,100000,1000000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonReadBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int records;
+
+    @Param({"0", "4", "32"})
+    int offences;
+
+    @Param({"0", "10000"})
+    int cacheSize;
+
+    private Path file;
+    private String[] ids;
+    private String[] hotIds;
+    private String[] skewedIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.write(records, offences);
+        Person.setFileName(file.toString());
+        Person.setCacheSize(cacheSize);
+        ids = new String[Math.min(records, 1 << 16)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = BenchmarkData.id(ThreadLocalRandom.current().nextInt(records));
+        }
+        hotIds = new String[Math.min(records, BenchmarkData.HOT)];
+        for (int i = 0; i < hotIds.length; i++) {
+            hotIds[i] = BenchmarkData.id(i);
+        }
+        // Four lookups in five go to the same thousand people, the rest anywhere
+        int hot = Math.min(records, 1000);
+        skewedIds = new String[1 << 16];
+        for (int i = 0; i < skewedIds.length; i++) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            skewedIds[i] = BenchmarkData.id(random.nextInt(5) < 4 ? random.nextInt(hot) : random.nextInt(records));
+        }
+        Person.fetchPersonById(ids[0]); // Builds the index outside the measurement
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Person.setCacheSize(10_000);
+        BenchmarkData.delete(file);
+    }
+
+    // Any person; most have no offences
+    @Benchmark
+    public Person fetchPersonById() {
+        return Person.fetchPersonById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    // A person carrying the full offence history, so the copy and suspension check are included
+    @Benchmark
+    public Person fetchPersonByIdWithHistory() {
+        return Person.fetchPersonById(hotIds[ThreadLocalRandom.current().nextInt(hotIds.length)]);
+    }
+
+    // Skewed traffic, as in production: a small set of people gets most lookups
+    @Benchmark
+    public Person fetchPersonByIdSkewed() {
+        return Person.fetchPersonById(skewedIds[ThreadLocalRandom.current().nextInt(skewedIds.length)]);
+    }
+
+    @Benchmark
+    public Person fetchPersonByIdMissing() {
+        return Person.fetchPersonById("99@#zzzzZZ");
+    }
+
+    // Reading and parsing every line of the file, as the first lookup after start-up does
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public long parseFile(Blackhole blackhole) throws IOException {
+        LogVisitor sink = new LogVisitor() {
+            @Override
+            public void person(PersonRecord record) {
+                blackhole.consume(record);
+            }
+
+            @Override
+            public void demerit(String personID, int offenseDay, int points) {
+                blackhole.consume(offenseDay);
+            }
+
+            @Override
+            public void moved(String fromPersonID, String toPersonID) {
+                blackhole.consume(toPersonID);
+            }
+        };
+        return MappedScanner.scan(file, 0, Long.MAX_VALUE, sink);
+    }
+}
@@ -0,0 +1,67 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Person.scan over an indexed file: every person, and the few suspended ones
+ * found with the filter pushed down against filtering the full stream afterwards.
+ * The parallel variant only pays off with more than one core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PersonScanBenchmark {
+    @Param({"1000000"})
+    int records;
+
+    @Param({"8"})
+    int offences;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.write(records, offences);
+        Person.setFileName(file.toString());
+        Person.fetchPersonById(BenchmarkData.id(0)); // Builds the index outside the measurement
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(file);
+    }
+
+    @Benchmark
+    public long scanAll() {
+        return Person.scan().count();
+    }
+
+    @Benchmark
+    public long scanAllParallel() {
+        return Person.scan().parallel().count();
+    }
+
+    // Only suspended people are decoded
+    @Benchmark
+    public long suspendedPushedDown() {
+        return Person.scan(ScanFilter.all().suspended(true)).count();
+    }
+
+    // Everyone is decoded and hydrated, then most are thrown away
+    @Benchmark
+    public long suspendedFilteredAfter() {
+        return Person.scan().filter(Person::isSuspended).count();
+    }
+
+    // A narrow birthdate range: one date compared per line
+    @Benchmark
+    public long bornInOneMonth() {
+        return Person.scan(ScanFilter.all().bornBetween("01-01-1960", "31-01-1960")).count();
+    }
+}
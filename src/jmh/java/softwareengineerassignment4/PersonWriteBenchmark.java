@@ -0,0 +1,99 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of addPerson, updatePersonalDetails and addDemeritPoints on top of a
+ * pre-built file. The file keeps growing while the benchmark runs, as it would in use.
+ * durability: flush, fsync or fsync10ms (see DurabilityPolicy).
+ * updateMode REWRITE copies the whole file per update; only try it with small record counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonWriteBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int records;
+
+    @Param({"0", "32"})
+    int offences;
+
+    @Param({"flush"})
+    String durability;
+
+    @Param({"APPEND"})
+    UpdateMode updateMode;
+
+    private Path file;
+    private final AtomicLong nextId = new AtomicLong();
+    private String hotId;
+    private String hotBirthdate;
+    private Person hotPerson;
+    private int today;
+    private boolean toggle;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.write(records, offences);
+        Person.setFileName(file.toString());
+        Person.setUpdateMode(updateMode);
+        Person.setDurability(policy(durability));
+        nextId.set(records);
+        hotId = BenchmarkData.id(0);
+        hotPerson = Person.fetchPersonById(hotId); // Also builds the index outside the measurement
+        hotBirthdate = PersonStore.forFile(file.toString()).get(hotId).getBirthdate();
+        today = DateCodec.today();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Person.setUpdateMode(UpdateMode.APPEND);
+        Person.setDurability(DurabilityPolicy.FLUSH_PER_BATCH);
+        BenchmarkData.delete(file);
+    }
+
+    private static DurabilityPolicy policy(String name) {
+        switch (name) {
+            case "fsync":
+                return DurabilityPolicy.FSYNC_PER_BATCH;
+            case "fsync10ms":
+                return DurabilityPolicy.fsyncEvery(10);
+            default:
+                return DurabilityPolicy.FLUSH_PER_BATCH;
+        }
+    }
+
+    @Benchmark
+    public boolean addPerson() {
+        String id = BenchmarkData.id(nextId.getAndIncrement());
+        return new Person(id, "New", "Person", BenchmarkData.ADDRESS, "15-05-1990").addPerson();
+    }
+
+    // Same as addPerson with callers competing, so the group-commit writer gets batches
+    @Benchmark
+    @Threads(8)
+    public boolean addPersonEightThreads() {
+        return addPerson();
+    }
+
+    @Benchmark
+    public boolean updatePersonalDetails() {
+        toggle = !toggle;
+        return Person.updatePersonalDetails(hotId, hotId, toggle ? "Even" : "Odd", "Last",
+                                            BenchmarkData.ADDRESS, hotBirthdate);
+    }
+
+    // Offences go on dates spread over five years so the history stays a realistic length
+    @Benchmark
+    public String addDemeritPoints() {
+        int offense = today - (int) (nextId.getAndIncrement() % 1826);
+        return hotPerson.addDemeritPoints(DateCodec.format(offense), 1);
+    }
+}
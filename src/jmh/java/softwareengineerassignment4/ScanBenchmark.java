@@ -0,0 +1,111 @@
+package softwareengineerassignment4;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Full-file scan cost: the old readLine + split path against MappedScanner.
+ * Read gc.alloc.rate.norm (bytes per scan) over the file size for garbage per GB scanned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ScanBenchmark {
+    @Param({"1000000"})
+    int records;
+
+    @Param({"4"})
+    int offences;
+
+    private Path file;
+    private byte[] target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.write(records, offences);
+        target = BenchmarkData.id(records / 2).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(file);
+    }
+
+    // What every read path used to do: one String, one array and a String per field for each line
+    @Benchmark
+    public int readLineSplit(Blackhole blackhole) throws IOException {
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] data = line.split(",", -1);
+                if (data.length >= 5) {
+                    blackhole.consume(new PersonRecord(data[0], data[1], data[2], data[3], data[4]));
+                } else {
+                    blackhole.consume(data);
+                }
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    // The old fetchPersonById loop: split every line to compare data[0]
+    @Benchmark
+    public int readLineSplitFindById() throws IOException {
+        String id = new String(target, StandardCharsets.UTF_8);
+        int matches = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.split(",", -1)[0].equals(id)) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Parsing every entry, as an index load or compaction does
+    @Benchmark
+    public long mappedScan(Blackhole blackhole) throws IOException {
+        return MappedScanner.scan(file, 0, Long.MAX_VALUE, new LogVisitor() {
+            @Override
+            public void person(PersonRecord record) {
+                blackhole.consume(record);
+            }
+
+            @Override
+            public void demerit(String personID, int offenseDay, int points) {
+                blackhole.consume(offenseDay);
+            }
+
+            @Override
+            public void moved(String fromPersonID, String toPersonID) {
+                blackhole.consume(toPersonID);
+            }
+        });
+    }
+
+    // Looking for one ID: compared in place, nothing is decoded for other lines
+    @Benchmark
+    public int mappedFindById() throws IOException {
+        int[] matches = new int[1];
+        MappedScanner.scanLines(file, 0, Long.MAX_VALUE, line -> {
+            int comma = line.indexOf((byte) ',', 0);
+            if (comma >= 0 && line.regionEquals(0, comma, target)) {
+                matches[0]++;
+            }
+        });
+        return matches[0];
+    }
+}
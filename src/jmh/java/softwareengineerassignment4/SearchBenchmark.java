@@ -0,0 +1,63 @@
+package softwareengineerassignment4;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Prefix searches against already built secondary indexes.
+ * Every last name is shared by 10 people, so a full-name prefix returns 10 of them
+ * whatever the file size; the time per search should stay flat as records grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark {
+    private static final int PER_NAME = 10;
+
+    @Param({"10000", "100000", "1000000"})
+    int records;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempDirectory("person-bench").resolve("persons.txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int n = 0; n < records; n++) {
+                writer.write(BenchmarkData.id(n) + ",First,Name" + n / PER_NAME + "x,"
+                             + BenchmarkData.ADDRESS + ",15-05-1990\n");
+            }
+        }
+        Person.setFileName(file.toString());
+        Person.search(SearchField.LAST_NAME, "Name0x").count(); // Builds the indexes outside the measurement
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(file);
+    }
+
+    // All PER_NAME people with one last name, read and hydrated
+    @Benchmark
+    public List<Person> searchLastName() {
+        int name = ThreadLocalRandom.current().nextInt(records / PER_NAME);
+        return Person.search(SearchField.LAST_NAME, "name" + name + "x").collect(Collectors.toList());
+    }
+
+    // First of a prefix that matches everyone: stops after one read
+    @Benchmark
+    public Person searchFirstOfSuburb() {
+        return Person.search(SearchField.SUBURB, "Melb").findFirst().orElse(null);
+    }
+}
@@ -0,0 +1,76 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput of eight callers against one data file and against the same data
+ * resharded across several (see Person.setShardCount): adds, lookups, and the
+ * fleet suspension sweep, which fans out across shards.
+ * Shards only pay off with cores to spread the work over; on one core they
+ * measure the cost of the extra routing and files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardBenchmark {
+    @Param({"1000000"})
+    int records;
+
+    @Param({"1", "4"})
+    int shards;
+
+    private Path file;
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.write(records, 8);
+        if (shards > 1) {
+            Resharder.reshard(file.toString(), StorageFormat.CSV, 1, shards);
+        }
+        Person.setFileName(file.toString());
+        Person.setShardCount(shards);
+        nextId.set(records);
+        Person.evaluateSuspensions(); // Builds every shard's index outside the measurement
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Person.setShardCount(1);
+        for (int i = 0; shards > 1 && i < shards; i++) {
+            Path shard = Paths.get(ShardedStore.shardFileName(file.toString(), i, shards));
+            Files.deleteIfExists(shard);
+            Files.deleteIfExists(shard.resolveSibling(shard.getFileName() + ".lock"));
+            Files.deleteIfExists(IndexSnapshot.pathFor(shard));
+        }
+        BenchmarkData.delete(file);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean addPerson() {
+        String id = BenchmarkData.id(nextId.getAndIncrement());
+        return new Person(id, "New", "Person", BenchmarkData.ADDRESS, "15-05-1990").addPerson();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Person fetchPersonById() {
+        return Person.fetchPersonById(BenchmarkData.id(ThreadLocalRandom.current().nextInt(records)));
+    }
+
+    @Benchmark
+    public int evaluateSuspensions() {
+        return Person.evaluateSuspensions().getSuspended().size();
+    }
+}
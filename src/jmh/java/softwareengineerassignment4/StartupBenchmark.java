@@ -0,0 +1,67 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * First lookup on a data file nobody in the process has opened yet, as after
+ * a restart: indexing the whole file against loading an IndexSnapshot.
+ * Each iteration opens a fresh copy of the file (and of its snapshot).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StartupBenchmark {
+    @Param({"1000000"})
+    int records;
+
+    @Param({"8"})
+    int offences;
+
+    private Path file;
+    private Path copy;
+    private int copies;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.write(records, offences);
+        if (!PersonStore.forFile(file.toString()).checkpoint()) {
+            throw new IllegalStateException("No snapshot written");
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void copyFile() throws IOException {
+        copy = file.resolveSibling("copy" + copies++ + ".txt");
+        Files.copy(file, copy);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteCopy() throws IOException {
+        Files.deleteIfExists(copy);
+        Files.deleteIfExists(IndexSnapshot.pathFor(copy));
+        Files.deleteIfExists(copy.resolveSibling(copy.getFileName() + ".lock"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(file);
+    }
+
+    @Benchmark
+    public PersonRecord fullIndex() throws IOException {
+        return PersonStore.forFile(copy.toString()).get(BenchmarkData.id(records / 2));
+    }
+
+    @Benchmark
+    public PersonRecord fromSnapshot() throws IOException {
+        Files.copy(IndexSnapshot.pathFor(file), IndexSnapshot.pathFor(copy));
+        return PersonStore.forFile(copy.toString()).get(BenchmarkData.id(records / 2));
+    }
+}
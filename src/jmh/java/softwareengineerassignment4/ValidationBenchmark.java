@@ -0,0 +1,46 @@
+package softwareengineerassignment4;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of the input validators, for valid and invalid input.
+ * These run on every add and update, so they set the floor for both.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+    @Param({"valid", "invalid"})
+    String input;
+
+    private String personID;
+    private String address;
+    private String date;
+
+    @Setup
+    public void setUp() {
+        boolean valid = input.equals("valid");
+        personID = valid ? "35@a!b#cXY" : "35abcdefXY";
+        address = valid ? BenchmarkData.ADDRESS : "12|Main St|Sydney|NSW|Australia";
+        date = valid ? "15-05-1990" : "29-02-2023";
+    }
+
+    @Benchmark
+    public boolean validatePersonID() {
+        return Person.validatePersonID(personID);
+    }
+
+    @Benchmark
+    public boolean validateAddress() {
+        return Person.validateAddress(address);
+    }
+
+    @Benchmark
+    public boolean validateDate() {
+        return Person.validateDate(date);
+    }
+}
@@ -0,0 +1,50 @@
+package softwareengineerassignment4;
+
+/**
+ * Outcome of a batch of personal detail updates: for each update, in the
+ * order given, whether it was applied and, if not, why.
+ */
+public final class BatchUpdateReport {
+    private final FailureReason[] results;
+    private final int applied;
+    private final long elapsedMillis;
+
+    BatchUpdateReport(FailureReason[] results, long elapsedMillis) {
+        this.results = results;
+        this.elapsedMillis = elapsedMillis;
+        int count = 0;
+        for (FailureReason result : results) {
+            if (result == null) {
+                count++;
+            }
+        }
+        this.applied = count;
+    }
+
+    // Number of updates in the batch
+    public int size() {
+        return results.length;
+    }
+
+    public boolean isApplied(int update) {
+        return results[update] == null;
+    }
+
+    // Why the update was refused, or null if it was applied
+    public FailureReason getReason(int update) {
+        return results[update];
+    }
+
+    public int getApplied() {
+        return applied;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Applied " + applied + " of " + results.length + " updates in " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,392 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Binary layout of the persons data file: a run of records, each
+ * [type: 1 byte][body length: varint][body], with no file header.
+ * Record types:
+ * - 'P' person: id, offence count varint, (day int, points int) per offence,
+ *   then the fields: birthdate, firstName, lastName, address
+ * - 'D' demerit: id, offence day int, points int
+ * - 'M' moved: old id, new id
+ * Field encodings (numbers are little-endian):
+ * - id: the long from PersonIdCodec.pack, or NOT_PACKED followed by the ID as a string
+ * - birthdate: epoch-day int, or DateCodec.INVALID followed by the text as a string
+ * - string: byte length as a varint, then UTF-8
+ * - varint: 7 bits per byte, low bits first, high bit set on all but the last byte
+ * A person record carries the offences known when it was written (by compaction
+ * or conversion), so loading it needs no demerit records; offences added later
+ * are appended as demerit records, the same as in the CSV format.
+ * The fields come last so a loaded record can keep them as one array and
+ * decode them on first use (see PersonRecord).
+ * Records of an unknown type, or too short for their fields, are skipped.
+ */
+final class BinaryFormat {
+    static final byte PERSON = 'P';
+    static final byte DEMERIT = 'D';
+    static final byte MOVED = 'M';
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * Parses every complete record in [from, to) and passes its entries to the visitor.
+     * A person record is passed as the person followed by one demerit per inline offence.
+     * @return offset just after the last complete record
+     */
+    static long scan(Path file, long from, long to, LogVisitor visitor) throws IOException {
+        Reader reader = new Reader();
+        return MappedScanner.scanRecords(file, from, to, record -> reader.parse(record, visitor));
+    }
+
+    // Parses the one record starting at a file offset
+    static boolean readEntry(FileChannel channel, long offset, LogVisitor visitor) throws IOException {
+        return MappedScanner.readRecord(channel, offset, record -> new Reader().parse(record, visitor));
+    }
+
+    static void writePerson(PersonRecord record, DemeritWindow offences, OutputStream out) throws IOException {
+        int count = offences == null ? 0 : offences.size();
+        Record person = new Record(PERSON).putId(record.getPersonID()).putVarint(count);
+        for (int i = 0; i < count; i++) {
+            person.putInt(offences.dayAt(i)).putInt(offences.pointsAt(i));
+        }
+        byte[] encoded = record.encoded();
+        if (encoded != null) {
+            person.putBytes(encoded); // Loaded from a binary file and never decoded: copy as is
+        } else {
+            person.putDate(record.getBirthdate())
+                  .putString(record.getFirstName())
+                  .putString(record.getLastName())
+                  .putString(record.getAddress());
+        }
+        person.writeTo(out);
+    }
+
+    static void writeDemerit(String personID, int offenseDay, int points, OutputStream out) throws IOException {
+        new Record(DEMERIT).putId(personID).putInt(offenseDay).putInt(points).writeTo(out);
+    }
+
+    static void writeMoved(String fromPersonID, String toPersonID, OutputStream out) throws IOException {
+        new Record(MOVED).putId(fromPersonID).putId(toPersonID).writeTo(out);
+    }
+
+    /**
+     * Copies the complete records in [0, to) to out, replacing the records of each
+     * person the plan rewrites in place, moving their demerit records to the updated ID
+     * and pointing Moved records that lead to them at it.
+     * Inline offences are kept. Records of other persons are copied as raw bytes.
+     * @return offset just after the last complete record
+     */
+    static long rewrite(Path file, long to, RewritePlan plan, OutputStream out) throws IOException {
+        Reader reader = new Reader();
+        try {
+            return MappedScanner.scanRecords(file, 0, to, record -> {
+                try {
+                    reader.rewrite(record, plan, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Decodes the fields a PersonRecord kept encoded; scan has already checked they are well formed
+    static PersonRecord decodeFields(String personID, byte[] encoded) {
+        ByteLine fields = new ByteLine();
+        fields.reset(ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN), 0, encoded.length);
+        Reader reader = new Reader();
+        reader.start(fields, 0);
+        try {
+            String birthdate = reader.readDate();
+            String firstName = reader.readString();
+            String lastName = reader.readString();
+            return new PersonRecord(personID, firstName, lastName, reader.readString(), birthdate);
+        } catch (Malformed e) {
+            throw new IllegalStateException("Corrupt encoded person fields for " + personID);
+        }
+    }
+
+    // Thrown when a record ends before its fields do; shared, since it carries nothing
+    private static final class Malformed extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        static final Malformed INSTANCE = new Malformed();
+
+        private Malformed() {
+            super(null, null, false, false);
+        }
+    }
+
+    // Decodes fields of one record at a time, moving a cursor through it
+    private static final class Reader {
+        private ByteLine record;
+        private int position;
+        private long lastPacked = PersonIdCodec.NOT_PACKED; // Consecutive records usually share an ID
+        private String lastId;
+
+        void parse(ByteLine record, LogVisitor visitor) {
+            visitor.entryAt(record.fileOffset());
+            try {
+                startBody(record);
+                switch (record.byteAt(0)) {
+                    case PERSON:
+                        parsePerson(visitor);
+                        break;
+                    case DEMERIT: {
+                        String id = readId();
+                        int offenseDay = readInt();
+                        int points = readInt();
+                        if (points > 0) {
+                            visitor.demerit(id, offenseDay, points);
+                        }
+                        break;
+                    }
+                    case MOVED: {
+                        String fromId = readId();
+                        visitor.moved(fromId, readId());
+                        break;
+                    }
+                    default:
+                        break; // Unknown record type
+                }
+            } catch (Malformed e) {
+                // Skip the record, as CsvFormat skips an unreadable line
+            }
+        }
+
+        private void parsePerson(LogVisitor visitor) throws Malformed {
+            String id = readId();
+            int count = readVarint();
+            require(count * 8L);
+            int offencesAt = position;
+            position += count * 8;
+
+            // Check the fields are well formed without decoding them
+            int fieldsAt = position;
+            int birthDay = readInt();
+            if (birthDay == DateCodec.INVALID) {
+                skipString();
+            }
+            skipString();
+            skipString();
+            skipString();
+
+            if (visitor.wantsPerson(id, birthDay)) {
+                visitor.person(new PersonRecord(id, record.bytes(fieldsAt, position)));
+            }
+            for (int i = 0; i < count; i++) {
+                int points = record.intAt(offencesAt + i * 8 + 4);
+                if (points > 0) {
+                    visitor.demerit(id, record.intAt(offencesAt + i * 8), points);
+                }
+            }
+        }
+
+        void rewrite(ByteLine record, RewritePlan plan, OutputStream out) throws IOException {
+            try {
+                startBody(record);
+                byte type = record.byteAt(0);
+                if (type == MOVED) {
+                    // History moved to an updated person follows them to the new ID
+                    String fromId = readId();
+                    PersonRecord target = plan.updateFor(readId(), record.fileOffset());
+                    if (target != null) {
+                        writeMoved(fromId, target.getPersonID(), out);
+                        return;
+                    }
+                }
+                PersonRecord updated = type == PERSON || type == DEMERIT
+                    ? plan.updateFor(readId(), record.fileOffset()) : null;
+                if (updated != null) {
+                    if (type == PERSON) {
+                        int count = readVarint();
+                        require(count * 8L);
+                        DemeritWindow offences = new DemeritWindow();
+                        for (int i = 0; i < count; i++) {
+                            offences.add(readInt(), readInt());
+                        }
+                        writePerson(updated, offences, out);
+                    } else {
+                        int offenseDay = readInt();
+                        writeDemerit(updated.getPersonID(), offenseDay, readInt(), out);
+                    }
+                    return;
+                }
+            } catch (Malformed e) {
+                // Unreadable: copy it unchanged below
+            }
+            // Records of other persons, of earlier lives of an updated ID, and their Moved records are left alone
+            record.writeTo(out, 0, record.length());
+        }
+
+        private void start(ByteLine record, int position) {
+            this.record = record;
+            this.position = position;
+        }
+
+        // Moves the cursor past the type byte and body length
+        private void startBody(ByteLine record) throws Malformed {
+            start(record, 1);
+            readVarint();
+        }
+
+        private void require(long bytes) throws Malformed {
+            if (record.length() - position < bytes) {
+                throw Malformed.INSTANCE;
+            }
+        }
+
+        private int readInt() throws Malformed {
+            require(4);
+            int value = record.intAt(position);
+            position += 4;
+            return value;
+        }
+
+        private int readVarint() throws Malformed {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                require(1);
+                byte b = record.byteAt(position++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw Malformed.INSTANCE;
+        }
+
+        private String readString() throws Malformed {
+            int length = readVarint();
+            require(length);
+            String value = record.string(position, position + length);
+            position += length;
+            return value;
+        }
+
+        private void skipString() throws Malformed {
+            int length = readVarint();
+            require(length);
+            position += length;
+        }
+
+        private String readId() throws Malformed {
+            require(8);
+            long packed = record.longAt(position);
+            position += 8;
+            if (packed == PersonIdCodec.NOT_PACKED) {
+                return readString();
+            }
+            if (packed < 0) {
+                throw Malformed.INSTANCE;
+            }
+            if (packed != lastPacked) {
+                lastPacked = packed;
+                lastId = PersonIdCodec.unpack(packed);
+            }
+            return lastId;
+        }
+
+        private String readDate() throws Malformed {
+            int day = readInt();
+            return day == DateCodec.INVALID ? readString() : DateCodec.format(day);
+        }
+    }
+
+    // One record being built: the body, with type and length put in front on write
+    private static final class Record {
+        private final byte type;
+        private byte[] bytes = new byte[64];
+        private int length;
+
+        Record(byte type) {
+            this.type = type;
+        }
+
+        Record putInt(int value) {
+            ensure(4);
+            for (int i = 0; i < 4; i++) {
+                bytes[length++] = (byte) (value >>> (8 * i));
+            }
+            return this;
+        }
+
+        Record putLong(long value) {
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                bytes[length++] = (byte) (value >>> (8 * i));
+            }
+            return this;
+        }
+
+        Record putVarint(int value) {
+            ensure(5);
+            length = varint(value, bytes, length);
+            return this;
+        }
+
+        Record putBytes(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, length, value.length);
+            length += value.length;
+            return this;
+        }
+
+        Record putString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            return putVarint(utf8.length).putBytes(utf8);
+        }
+
+        Record putId(String personID) {
+            long packed = PersonIdCodec.pack(personID);
+            putLong(packed);
+            return packed == PersonIdCodec.NOT_PACKED ? putString(personID) : this;
+        }
+
+        // Stored as an epoch-day only if it reads back as exactly the same text
+        Record putDate(String date) {
+            int day = DateCodec.parse(date);
+            if (day != DateCodec.INVALID && DateCodec.format(day).equals(date)) {
+                return putInt(day);
+            }
+            return putInt(DateCodec.INVALID).putString(date);
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            byte[] header = new byte[6];
+            header[0] = type;
+            out.write(header, 0, varint(length, header, 1));
+            out.write(bytes, 0, length);
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length + extra, bytes.length * 2));
+            }
+        }
+
+        // Writes a non-negative varint at the given index; returns the index after it
+        private static int varint(int value, byte[] into, int at) {
+            while (value >= 0x80) {
+                into[at++] = (byte) (value | 0x80);
+                value >>>= 7;
+            }
+            into[at++] = (byte) value;
+            return at;
+        }
+    }
+}
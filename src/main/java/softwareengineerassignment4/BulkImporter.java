@@ -0,0 +1,198 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Adds every valid row of a CSV feed to a store, in two passes over the feed:
+ * 1. Rows are read in batches and validated in parallel with fork-join, by the
+ *    same rules as addPerson; invalid rows are noted in a bitset
+ * 2. The rest are streamed into the data file under one hold of the store's lock.
+ *    The store's ID index is the duplicate check, both against existing people
+ *    and against earlier rows of the feed, since each row is indexed as it is written.
+ *    With several shards each one takes its own rows in a pass of its own, in parallel
+ * Feed rows are laid out as data file person lines: personID,firstName,lastName,address,birthdate.
+ * Blank lines are ignored; anything else that is not a valid person is rejected and reported.
+ */
+final class BulkImporter {
+    private static final int BATCH = 1 << 16; // Rows validated together
+    private static final int LEAF_SIZE = 1024; // Rows per fork-join task
+
+    private final Path feed;
+    private final BitSet invalid = new BitSet(); // Row numbers rejected in the first pass
+    private final List<ImportReport.Rejection> rejections = new ArrayList<>(); // Guarded by itself
+
+    private BulkImporter(Path feed) {
+        this.feed = feed;
+    }
+
+    /**
+     * Imports a feed into the store.
+     * @param pool Pool to validate rows and write shards on
+     * @return rows added, and a rejection for every other non-blank row
+     */
+    static ImportReport importFeed(ShardedStore store, Path feed, ForkJoinPool pool) throws IOException {
+        long started = System.nanoTime();
+        BulkImporter importer = new BulkImporter(feed);
+        importer.validate(pool);
+        long imported = 0;
+        for (long shardImported : store.fanOut(pool, (shard, index) -> importer.write(shard, index, store.count()))) {
+            imported += shardImported;
+        }
+        importer.rejections.sort(Comparator.comparingLong(ImportReport.Rejection::getRow));
+        return new ImportReport(imported, importer.rejections, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // First pass: validates rows a batch at a time
+    private void validate(ForkJoinPool pool) throws IOException {
+        List<String> batch = new ArrayList<>(BATCH);
+        long[] rows = new long[BATCH];
+        forEachRow((row, text) -> {
+            rows[batch.size()] = row;
+            batch.add(text);
+            if (batch.size() == BATCH) {
+                validateBatch(batch, rows, pool);
+                batch.clear();
+            }
+        });
+        validateBatch(batch, rows, pool);
+    }
+
+    private void validateBatch(List<String> batch, long[] rows, ForkJoinPool pool) {
+        String[] problems = new String[batch.size()];
+        pool.invoke(new Validate(batch, problems, 0, batch.size()));
+        for (int i = 0; i < problems.length; i++) {
+            if (problems[i] != null) {
+                invalid.set(Math.toIntExact(rows[i]));
+                reject(rows[i], batch.get(i), FailureReason.VALIDATION, problems[i]);
+            }
+        }
+    }
+
+    // Second pass: appends every row of the shard that passed validation, unless its ID is taken
+    private long write(PersonStore store, int shard, int shardCount) throws IOException {
+        PersonIdIndex importedRows = new PersonIdIndex(); // ID to the row that added it
+        return store.addAll(sink -> forEachRow((row, text) -> {
+            if (invalid.get(Math.toIntExact(row))) {
+                return;
+            }
+            if (shardCount > 1 && ShardedStore.shardOf(text.substring(0, text.indexOf(',')), shardCount) != shard) {
+                return;
+            }
+            String[] fields = text.split(",", -1);
+            PersonRecord record = new PersonRecord(fields[0], fields[1], fields[2], fields[3], fields[4]);
+            if (sink.add(record)) {
+                importedRows.put(record.getPersonID(), row);
+            } else {
+                long first = importedRows.get(record.getPersonID());
+                reject(row, text, FailureReason.DUPLICATE,
+                       first == PersonIdIndex.MISSING ? "ID already in the data file" : "duplicate of row " + first);
+            }
+        }));
+    }
+
+    private void reject(long row, String text, FailureReason reason, String detail) {
+        int comma = text.indexOf(',');
+        synchronized (rejections) {
+            rejections.add(new ImportReport.Rejection(row, comma < 0 ? text : text.substring(0, comma), reason, detail));
+        }
+    }
+
+    // Why a row cannot be added, or null if it can; the same checks as addPerson
+    static String problem(String text) {
+        String[] fields = text.split(",", -1);
+        if (fields.length != 5) {
+            return "expected 5 fields, found " + fields.length;
+        }
+        if (!Person.validateFields(fields[0], fields[1], fields[2], fields[3], fields[4])) {
+            return "missing name or forbidden character";
+        }
+        if (!Person.validatePersonID(fields[0])) {
+            return "invalid personID";
+        }
+        if (!Person.validateAddress(fields[3])) {
+            return "invalid address";
+        }
+        if (!Person.validateDate(fields[4])) {
+            return "invalid birthdate";
+        }
+        return null;
+    }
+
+    private interface RowConsumer {
+        void accept(long row, String text) throws IOException;
+    }
+
+    // Passes every non-blank line of the feed to the consumer with its line number, including a last unterminated one
+    private void forEachRow(RowConsumer consumer) throws IOException {
+        long[] row = {0};
+        IOException[] failure = new IOException[1];
+        long consumed = MappedScanner.scanLines(feed, 0, Long.MAX_VALUE, line -> {
+            row[0]++;
+            if (line.length() > 0 && failure[0] == null) {
+                try {
+                    consumer.accept(row[0], line.string(0, line.length()));
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        String tail = readTail(consumed).strip();
+        if (!tail.isEmpty()) {
+            consumer.accept(row[0] + 1, tail);
+        }
+    }
+
+    private String readTail(long from) throws IOException {
+        try (FileChannel channel = FileChannel.open(feed, StandardOpenOption.READ)) {
+            ByteBuffer tail = ByteBuffer.allocate(Math.toIntExact(channel.size() - from));
+            while (tail.hasRemaining() && channel.read(tail, from + tail.position()) >= 0) {
+                // Read to the end of the file
+            }
+            return new String(tail.array(), 0, tail.position(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // Validates rows [from, to), splitting in half until a range is small enough
+    private static final class Validate extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> rows;
+        private final String[] problems;
+        private final int from;
+        private final int to;
+
+        Validate(List<String> rows, String[] problems, int from, int to) {
+            this.rows = rows;
+            this.problems = problems;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Validate(rows, problems, from, mid), new Validate(rows, problems, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                problems[i] = problem(rows.get(i));
+            }
+        }
+    }
+}
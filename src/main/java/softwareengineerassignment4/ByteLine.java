@@ -0,0 +1,182 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A view of one line inside a (mapped) byte buffer, without its terminator,
+ * or of one whole record of the binary format.
+ * The scanner moves one instance from line to line, so reading a file this way
+ * allocates nothing per line; Strings are only made for the fields a caller asks for.
+ * Characters are read as single bytes, which is exact for the ASCII parts of the
+ * format (IDs, keywords, numbers, dates); string() decodes UTF-8 properly.
+ */
+final class ByteLine implements CharSequence {
+    private static final byte[] EMPTY = new byte[0]; // Buffers grow on first use, so one-off lines stay small
+
+    private ByteBuffer buffer;
+    private int start;
+    private int length;
+    private long fileOffset; // Where the line starts in the file
+    private byte[] scratch = EMPTY; // Copy of the current line, made on first use
+    private boolean copied;
+    private byte[] idBytes = EMPTY; // Bytes of the last ID handed out by id()
+    private int idLength = -1;
+    private String id;
+
+    // Points the view at bytes [start, end) of the buffer
+    void reset(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.length = end - start;
+        this.copied = false;
+    }
+
+    void fileOffset(long fileOffset) {
+        this.fileOffset = fileOffset;
+    }
+
+    long fileOffset() {
+        return fileOffset;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(start + index) & 0xFF);
+    }
+
+    byte byteAt(int index) {
+        return buffer.get(start + index);
+    }
+
+    // Little-endian numbers at the given index, for binary records (the buffer must be little-endian)
+    int intAt(int index) {
+        return buffer.getInt(start + index);
+    }
+
+    long longAt(int index) {
+        return buffer.getLong(start + index);
+    }
+
+    // Copies bytes [from, to) out of the buffer
+    byte[] bytes(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(start + from, bytes);
+        return bytes;
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return string(from, to);
+    }
+
+    @Override
+    public String toString() {
+        return string(0, length);
+    }
+
+    // Index of the first occurrence of the byte at or after from, or -1
+    int indexOf(byte b, int from) {
+        int found = indexOf(buffer, b, start + from, start + length);
+        return found < 0 ? -1 : found - start;
+    }
+
+    /**
+     * Finds a byte in buffer positions [from, to), eight bytes per step:
+     * XOR with the byte repeated makes matches zero, and the usual
+     * "has a zero byte" bit trick flags them. The buffer must be little-endian,
+     * so the lowest flagged byte is the first match.
+     * @return position of the first match, or -1
+     */
+    static int indexOf(ByteBuffer buffer, byte b, int from, int to) {
+        long pattern = (b & 0xFFL) * 0x0101010101010101L;
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long word = buffer.getLong(i) ^ pattern;
+            long zeros = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+            if (zeros != 0) {
+                return i + (Long.numberOfTrailingZeros(zeros) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // True if the ASCII text appears at the given index
+    boolean startsWith(String text, int at) {
+        if (at + text.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (buffer.get(start + at + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // True if bytes [from, to) are exactly the given bytes, compared in place
+    boolean regionEquals(int from, int to, byte[] bytes) {
+        return to - from == bytes.length && regionEquals(from, bytes, bytes.length);
+    }
+
+    private boolean regionEquals(int from, byte[] bytes, int count) {
+        for (int i = 0; i < count; i++) {
+            if (buffer.get(start + from + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Decodes bytes [from, to) as UTF-8
+    String string(int from, int to) {
+        return new String(copied(), from, to - from, StandardCharsets.UTF_8);
+    }
+
+    // The whole line copied out once, so several fields cost one bulk copy
+    private byte[] copied() {
+        if (!copied) {
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(start, scratch, 0, length);
+            copied = true;
+        }
+        return scratch;
+    }
+
+    /**
+     * Decodes bytes [0, to) as an ID. Consecutive lines usually share an ID
+     * (a person line then their demerits), so the same String is handed back
+     * while the bytes match the previous ID.
+     */
+    String id(int to) {
+        if (to == idLength && regionEquals(0, idBytes, to)) {
+            return id;
+        }
+        if (to > idBytes.length) {
+            idBytes = new byte[Math.max(to, idBytes.length * 2)];
+        }
+        buffer.get(start, idBytes, 0, to);
+        idLength = to;
+        id = new String(idBytes, 0, to, StandardCharsets.UTF_8);
+        return id;
+    }
+
+    // Writes bytes [from, to) to the stream
+    void writeTo(OutputStream out, int from, int to) throws IOException {
+        out.write(copied(), from, to - from);
+    }
+}
@@ -0,0 +1,47 @@
+package softwareengineerassignment4;
+
+/**
+ * Outcome of one data file compaction.
+ * Sizes cover the part of the file that was compacted; lines appended
+ * while compaction ran are carried over unchanged and not counted.
+ */
+public final class CompactionResult {
+    private final long bytesBefore;
+    private final long bytesAfter;
+    private final int expiredOffences;
+    private final long elapsedMillis;
+
+    CompactionResult(long bytesBefore, long bytesAfter, int expiredOffences, long elapsedMillis) {
+        this.bytesBefore = bytesBefore;
+        this.bytesAfter = bytesAfter;
+        this.expiredOffences = expiredOffences;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getBytesBefore() {
+        return bytesBefore;
+    }
+
+    public long getBytesAfter() {
+        return bytesAfter;
+    }
+
+    public long getBytesReclaimed() {
+        return bytesBefore - bytesAfter;
+    }
+
+    // Number of demerit lines dropped because their 2-year window had closed
+    public int getExpiredOffences() {
+        return expiredOffences;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Compacted " + bytesBefore + " -> " + bytesAfter + " bytes (" + getBytesReclaimed()
+            + " reclaimed, " + expiredOffences + " expired offences dropped) in " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,184 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Text layout of the persons data file. One entry per line:
+ * - personID,firstName,lastName,address,birthdate
+ * - personID,Demerit:points,Date:dd-MM-yyyy
+ * - oldID,Moved:newID
+ */
+final class CsvFormat {
+    private static final String DEMERIT = "Demerit:";
+    private static final String DATE = "Date:";
+    private static final String MOVED = "Moved:";
+
+    private CsvFormat() {
+    }
+
+    /**
+     * Parses one line and passes the entry to the visitor.
+     * Fields are found by scanning for commas in place; only the Strings the
+     * entry needs are made (none for the keywords, points or date of a demerit,
+     * and only the ID for a person the visitor does not want).
+     * Lines that match none of the layouts are skipped.
+     */
+    static void parse(ByteLine line, LogVisitor visitor) {
+        visitor.entryAt(line.fileOffset());
+        int c1 = line.indexOf((byte) ',', 0);
+        if (c1 < 0) {
+            return;
+        }
+        int c2 = line.indexOf((byte) ',', c1 + 1);
+        if (c2 < 0) {
+            if (line.startsWith(MOVED, c1 + 1)) {
+                visitor.moved(line.id(c1), line.string(c1 + 1 + MOVED.length(), line.length()));
+            }
+            return;
+        }
+        int c3 = line.indexOf((byte) ',', c2 + 1);
+        if (c3 < 0) {
+            if (isDemeritLine(line, c1) && line.startsWith(DATE, c2 + 1)
+                    && line.length() - (c2 + 1) == DATE.length() + 10) {
+                int offenseDay = DateCodec.parse(line, c2 + 1 + DATE.length());
+                int points = parsePoints(line, c1 + 1 + DEMERIT.length(), c2);
+                if (offenseDay != DateCodec.INVALID && points > 0) {
+                    visitor.demerit(line.id(c1), offenseDay, points);
+                }
+            }
+            return;
+        }
+        int c4 = line.indexOf((byte) ',', c3 + 1);
+        if (c4 < 0) {
+            return;
+        }
+        int c5 = line.indexOf((byte) ',', c4 + 1);
+        int end = c5 < 0 ? line.length() : c5;
+        String id = line.id(c1);
+        int birthDay = end - (c4 + 1) == 10 ? DateCodec.parse(line, c4 + 1) : DateCodec.INVALID;
+        if (visitor.wantsPerson(id, birthDay)) {
+            visitor.person(new PersonRecord(id, line.string(c1 + 1, c2), line.string(c2 + 1, c3),
+                                            line.string(c3 + 1, c4), line.string(c4 + 1, end)));
+        }
+    }
+
+    static String demeritLine(String personID, int points, int offenseDay) {
+        StringBuilder line = new StringBuilder(40);
+        line.append(personID).append(',').append(DEMERIT).append(points).append(',').append(DATE);
+        DateCodec.format(offenseDay, line);
+        return line.toString();
+    }
+
+    static String movedLine(String fromPersonID, String toPersonID) {
+        return fromPersonID + "," + MOVED + toPersonID;
+    }
+
+    // Writes the person line, then a demerit line per offence
+    static void writePerson(PersonRecord record, DemeritWindow offences, OutputStream out) throws IOException {
+        writeLine(record.toLine(), out);
+        if (offences != null) {
+            for (int i = 0; i < offences.size(); i++) {
+                writeDemerit(record.getPersonID(), offences.dayAt(i), offences.pointsAt(i), out);
+            }
+        }
+    }
+
+    static void writeDemerit(String personID, int offenseDay, int points, OutputStream out) throws IOException {
+        writeLine(demeritLine(personID, points, offenseDay), out);
+    }
+
+    static void writeMoved(String fromPersonID, String toPersonID, OutputStream out) throws IOException {
+        writeLine(movedLine(fromPersonID, toPersonID), out);
+    }
+
+    private static void writeLine(String line, OutputStream out) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+
+    /**
+     * Copies the complete lines in [0, to) to out, replacing the lines of each person the plan
+     * rewrites in place and pointing Moved lines that lead to them at their new IDs.
+     * Lines of other persons are copied as raw bytes; only their IDs are decoded.
+     * @return offset just after the last complete line
+     */
+    static long rewrite(Path file, long to, RewritePlan plan, OutputStream out) throws IOException {
+        try {
+            return MappedScanner.scanLines(file, 0, to, line -> {
+                try {
+                    rewriteLine(line, plan, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void rewriteLine(ByteLine line, RewritePlan plan, OutputStream out) throws IOException {
+        int length = line.length();
+        int c1 = line.indexOf((byte) ',', 0);
+        String id = line.id(c1 < 0 ? length : c1);
+        int c2 = c1 < 0 ? -1 : line.indexOf((byte) ',', c1 + 1);
+        if (c1 >= 0 && c2 < 0 && line.startsWith(MOVED, c1 + 1)) {
+            // History moved to an updated person follows them to the new ID
+            PersonRecord target = plan.updateFor(line.string(c1 + 1 + MOVED.length(), length), line.fileOffset());
+            if (target != null) {
+                writeMoved(id, target.getPersonID(), out);
+                return;
+            }
+        }
+        PersonRecord updated = plan.updateFor(id, line.fileOffset());
+        if (updated == null) {
+            // Write unchanged line for other persons, and for earlier lives of this ID
+            line.writeTo(out, 0, length);
+            out.write('\n');
+            return;
+        }
+
+        int c3 = c2 < 0 ? -1 : line.indexOf((byte) ',', c2 + 1);
+        int c4 = c3 < 0 ? -1 : line.indexOf((byte) ',', c3 + 1);
+        if (c4 >= 0) {
+            // Person line: preserve all fields after index 4 intact
+            int c5 = line.indexOf((byte) ',', c4 + 1);
+            out.write(updated.toLine().getBytes(StandardCharsets.UTF_8));
+            if (c5 >= 0) {
+                line.writeTo(out, c5, length);
+            }
+        } else if (c2 >= 0 && c3 < 0 && isDemeritLine(line, c1)) {
+            // Demerit line: keep it, under the new ID
+            out.write(updated.getPersonID().getBytes(StandardCharsets.UTF_8));
+            line.writeTo(out, c1, length);
+        } else {
+            // Not a layout we know: leave it alone
+            line.writeTo(out, 0, length);
+        }
+        out.write('\n');
+    }
+
+    // True if the field after the ID (which ends at firstComma) is "Demerit:..."
+    private static boolean isDemeritLine(ByteLine line, int firstComma) {
+        return line.startsWith(DEMERIT, firstComma + 1);
+    }
+
+    // Points in [from, to), or -1 if not a plain number of 1 to 6 digits
+    private static int parsePoints(ByteLine line, int from, int to) {
+        if (to == from || to - from > 6) {
+            return -1;
+        }
+        int points = 0;
+        for (int i = from; i < to; i++) {
+            byte c = line.byteAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            points = points * 10 + (c - '0');
+        }
+        return points;
+    }
+}
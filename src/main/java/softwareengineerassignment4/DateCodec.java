@@ -0,0 +1,154 @@
+package softwareengineerassignment4;
+
+import java.time.LocalDate;
+
+/**
+ * Allocation-free codec for dd-MM-yyyy dates.
+ * Dates are handled as epoch-days (days since 01-01-1970) in a plain int,
+ * parsed straight from the characters with no SimpleDateFormat, Date or
+ * Calendar in between, so it is safe to share across threads.
+ */
+final class DateCodec {
+    // Returned by parse for anything that is not a real dd-MM-yyyy date
+    static final int INVALID = Integer.MIN_VALUE;
+
+    private DateCodec() {
+    }
+
+    /**
+     * Parses a dd-MM-yyyy date.
+     * Rules:
+     * - Exactly 10 chars, '-' at positions 3 and 6, digits elsewhere
+     * - Month 1-12, day within the month (leap years respected), year 1 or later
+     * @param text Date string to parse
+     * @return epoch-day of the date, or INVALID
+     */
+    static int parse(CharSequence text) {
+        if (text == null || text.length() != 10) {
+            return INVALID;
+        }
+        return parse(text, 0);
+    }
+
+    /**
+     * Parses a dd-MM-yyyy date starting at the given index, e.g. after "Date:".
+     * @return epoch-day of the date, or INVALID
+     */
+    static int parse(CharSequence text, int start) {
+        if (start < 0 || text.length() < start + 10
+                || text.charAt(start + 2) != '-' || text.charAt(start + 5) != '-') {
+            return INVALID;
+        }
+        int day = digits(text, start, 2);
+        int month = digits(text, start + 3, 2);
+        int year = digits(text, start + 6, 4);
+        if (day < 1 || month < 1 || month > 12 || year < 1 || day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+        return epochDay(year, month, day);
+    }
+
+    /**
+     * Checks a date string is a real dd-MM-yyyy date.
+     * @param text Date string to validate
+     * @return true if valid, false otherwise
+     */
+    static boolean isValid(CharSequence text) {
+        return parse(text) != INVALID;
+    }
+
+    // Writes the date as dd-MM-yyyy
+    static void format(int epochDay, StringBuilder out) {
+        int ymd = toYmd(epochDay);
+        int year = ymd / 10000;
+        int month = ymd / 100 % 100;
+        int day = ymd % 100;
+        out.append((char) ('0' + day / 10)).append((char) ('0' + day % 10)).append('-')
+           .append((char) ('0' + month / 10)).append((char) ('0' + month % 10)).append('-')
+           .append((char) ('0' + year / 1000)).append((char) ('0' + year / 100 % 10))
+           .append((char) ('0' + year / 10 % 10)).append((char) ('0' + year % 10));
+    }
+
+    static String format(int epochDay) {
+        StringBuilder out = new StringBuilder(10);
+        format(epochDay, out);
+        return out.toString();
+    }
+
+    /**
+     * Moves a date by whole years, keeping day and month.
+     * 29 Feb becomes 28 Feb in a non-leap year, as Calendar.add does.
+     */
+    static int plusYears(int epochDay, int years) {
+        int ymd = toYmd(epochDay);
+        int year = ymd / 10000 + years;
+        int month = ymd / 100 % 100;
+        int day = Math.min(ymd % 100, daysInMonth(year, month));
+        return epochDay(year, month, day);
+    }
+
+    /**
+     * Calculates completed years between two dates, e.g. an age.
+     * @param from Earlier date (birthdate) as an epoch-day
+     * @param to Later date as an epoch-day
+     * @return whole years from from to to
+     */
+    static int yearsBetween(int from, int to) {
+        int fromYmd = toYmd(from);
+        int toYmd = toYmd(to);
+        int years = toYmd / 10000 - fromYmd / 10000;
+        // Not yet reached the anniversary this year
+        if (toYmd % 10000 < fromYmd % 10000) years--;
+        return years;
+    }
+
+    // Current date in the default time zone as an epoch-day
+    static int today() {
+        return (int) LocalDate.now().toEpochDay();
+    }
+
+    // Epoch-day of a calendar date (proleptic Gregorian, days-from-civil)
+    static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    // Calendar date of an epoch-day packed as yyyyMMdd
+    static int toYmd(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+
+    // Reads a run of ASCII digits, or -1 if any char is not a digit
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
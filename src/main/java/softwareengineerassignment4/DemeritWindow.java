@@ -0,0 +1,189 @@
+package softwareengineerassignment4;
+
+import java.util.Arrays;
+
+/**
+ * Offence history of one person, kept as sorted primitive arrays of
+ * epoch-days with a running prefix sum of points.
+ * Answers "most points in any open 2-year window" with a two-pointer
+ * sweep, or a single binary search when all live offences fit in one window.
+ * An offence at day d covers the window [d, d + 2 years]; it expires
+ * (stops counting) once that window has closed before today.
+ * The prefix sums also answer "points on day X" for any past day in
+ * O(log n), for as-of queries and date-range sweeps.
+ */
+final class DemeritWindow {
+    private int[] days = new int[4];       // Distinct offence days, ascending
+    private int[] points = new int[4];     // Points per offence day
+    private int[] prefix = new int[5];     // prefix[i] = sum of points[0..i)
+    private int size;
+
+    /**
+     * Records an offence, merging it with any offence on the same day.
+     * Appending in date order costs O(log n); an earlier date shifts the arrays.
+     * @param day Offence date as an epoch-day
+     * @param pts Points for the offence
+     */
+    void add(int day, int pts) {
+        int i = Arrays.binarySearch(days, 0, size, day);
+        if (i >= 0) {
+            points[i] += pts;
+            for (int j = i + 1; j <= size; j++) {
+                prefix[j] += pts;
+            }
+            return;
+        }
+
+        int insertAt = -i - 1;
+        if (size == days.length) {
+            days = Arrays.copyOf(days, size * 2);
+            points = Arrays.copyOf(points, size * 2);
+            prefix = Arrays.copyOf(prefix, size * 2 + 1);
+        }
+        System.arraycopy(days, insertAt, days, insertAt + 1, size - insertAt);
+        System.arraycopy(points, insertAt, points, insertAt + 1, size - insertAt);
+        days[insertAt] = day;
+        points[insertAt] = pts;
+        size++;
+        for (int j = insertAt; j < size; j++) {
+            prefix[j + 1] = prefix[j] + points[j];
+        }
+    }
+
+    /**
+     * Finds the highest points total of any 2-year window that starts
+     * at an offence which has not expired by the given day.
+     * @param today The day to evaluate at, as an epoch-day
+     * @return the highest window total, 0 if no offence is live
+     */
+    int maxWindowPoints(int today) {
+        int lo = lowerBound(firstOpenStart(today));
+        if (lo == size) {
+            return 0;
+        }
+
+        // Usual case: every live offence fits in the window of the first one
+        if (days[size - 1] <= plusTwoYears(days[lo])) {
+            return prefix[size] - prefix[lo];
+        }
+
+        // Otherwise slide the window start forward, advancing its end to match
+        int best = 0;
+        int hi = lo;
+        for (int start = lo; start < size; start++) {
+            int end = plusTwoYears(days[start]);
+            while (hi < size && days[hi] <= end) {
+                hi++;
+            }
+            best = Math.max(best, prefix[hi] - prefix[start]);
+        }
+        return best;
+    }
+
+    /**
+     * Points counted on a given day from the offences dated up to that day.
+     * Every such offence whose window is still open fits in the window of the
+     * oldest one, so this is the prefix-sum difference between two binary searches.
+     * Offences dated after the day are left out, unlike maxWindowPoints.
+     * @param day The day to evaluate at, as an epoch-day
+     * @return points that counted on that day
+     */
+    int pointsOn(int day) {
+        return prefix[lowerBound(day + 1)] - prefix[lowerBound(firstOpenStart(day))];
+    }
+
+    /**
+     * Next day after the given one on which pointsOn can differ:
+     * an offence is dated, or the oldest offence counted expires.
+     * @return that day, or Integer.MAX_VALUE if pointsOn stays the same from here on
+     */
+    int nextChange(int day) {
+        int next = lowerBound(day + 1);
+        int lo = lowerBound(firstOpenStart(day));
+        int change = next == size ? Integer.MAX_VALUE : days[next];
+        if (lo < next) {
+            change = Math.min(change, plusTwoYears(days[lo]) + 1);
+        }
+        return change;
+    }
+
+    // First day the oldest live offence no longer counts, or Integer.MAX_VALUE if none is live
+    int nextExpiry(int today) {
+        int lo = lowerBound(firstOpenStart(today));
+        return lo == size ? Integer.MAX_VALUE : plusTwoYears(days[lo]) + 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Offence day and points by position, in date order
+    int dayAt(int i) {
+        return days[i];
+    }
+
+    int pointsAt(int i) {
+        return points[i];
+    }
+
+    // Adds every offence of another history, e.g. when a person's ID changes
+    void addAll(DemeritWindow other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.days[i], other.points[i]);
+        }
+    }
+
+    DemeritWindow copy() {
+        DemeritWindow copy = new DemeritWindow();
+        copy.days = Arrays.copyOf(days, Math.max(size, 4));
+        copy.points = Arrays.copyOf(points, Math.max(size, 4));
+        copy.prefix = Arrays.copyOf(prefix, Math.max(size, 4) + 1);
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Drops offences that have expired by the given day.
+     * They are always the oldest ones, so this trims the front of the arrays.
+     * @return number of offences left
+     */
+    int removeExpired(int today) {
+        int expired = lowerBound(firstOpenStart(today));
+        if (expired > 0) {
+            size -= expired;
+            System.arraycopy(days, expired, days, 0, size);
+            System.arraycopy(points, expired, points, 0, size);
+            for (int j = 0; j < size; j++) {
+                prefix[j + 1] = prefix[j] + points[j];
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Checks whether an offence has expired on the given day.
+     * @param offenceDay Offence date as an epoch-day
+     * @param today The day to check against, as an epoch-day
+     * @return true if the offence's 2-year window closed before today
+     */
+    static boolean isExpired(int offenceDay, int today) {
+        return plusTwoYears(offenceDay) < today;
+    }
+
+    // Same calendar date two years later; 29 Feb becomes 28 Feb
+    static int plusTwoYears(int day) {
+        return DateCodec.plusYears(day, 2);
+    }
+
+    // Earliest day whose 2-year window still reaches today
+    private static int firstOpenStart(int today) {
+        int start = DateCodec.plusYears(today, -2);
+        return plusTwoYears(start) < today ? start + 1 : start;
+    }
+
+    // Index of the first offence on or after the given day
+    private int lowerBound(int day) {
+        int i = Arrays.binarySearch(days, 0, size, day);
+        return i >= 0 ? i : -i - 1;
+    }
+}
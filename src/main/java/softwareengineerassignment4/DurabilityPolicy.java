@@ -0,0 +1,64 @@
+package softwareengineerassignment4;
+
+/**
+ * How far an added person or demerit line must get before the caller is told it is done.
+ * Lines are written in batches by the store's group-commit writer, so the cost of
+ * a flush or fsync is shared by everyone whose line went out in the same batch.
+ */
+public final class DurabilityPolicy {
+    /**
+     * Done once the batch has been written to the file.
+     * Survives the process dying, but not the machine losing power.
+     */
+    public static final DurabilityPolicy FLUSH_PER_BATCH = new DurabilityPolicy("flush per batch", false, 0);
+
+    /**
+     * Done once the batch has been written and fsynced.
+     * Survives a power loss; costs one fsync per batch.
+     */
+    public static final DurabilityPolicy FSYNC_PER_BATCH = new DurabilityPolicy("fsync per batch", true, 0);
+
+    private final String name;
+    private final boolean fsync;
+    private final long intervalNanos;
+
+    private DurabilityPolicy(String name, boolean fsync, long intervalNanos) {
+        this.name = name;
+        this.fsync = fsync;
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * Done once the line has been fsynced, with at most one fsync per interval.
+     * Writes made within the interval wait for the same fsync, so a caller
+     * may wait up to the interval longer than with FSYNC_PER_BATCH.
+     * @param millis Longest time a written line waits for its fsync
+     * @return the policy
+     */
+    public static DurabilityPolicy fsyncEvery(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("fsync interval must be positive: " + millis);
+        }
+        return new DurabilityPolicy("fsync every " + millis + " ms", true, millis * 1_000_000);
+    }
+
+    // True if the line must reach the disk, not just the file
+    boolean fsyncs() {
+        return fsync;
+    }
+
+    // True if the line must be fsynced by the batch that writes it
+    boolean fsyncsEveryBatch() {
+        return fsync && intervalNanos == 0;
+    }
+
+    // How long a written line may wait for its fsync
+    long intervalNanos() {
+        return intervalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,38 @@
+package softwareengineerassignment4;
+
+import java.util.Locale;
+
+/**
+ * Why a Person storage operation returned false, "Failed" or null.
+ */
+public enum FailureReason {
+    /**
+     * An input failed validation (ID, address, date or points).
+     */
+    VALIDATION,
+
+    /**
+     * The ID is already taken by another person.
+     */
+    DUPLICATE,
+
+    /**
+     * No person has the ID.
+     */
+    NOT_FOUND,
+
+    /**
+     * An update broke a business rule (e.g. under 18 changing address).
+     */
+    RULE,
+
+    /**
+     * Reading or writing the data file failed.
+     */
+    IO;
+
+    // Name used in metric labels
+    public String metricName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
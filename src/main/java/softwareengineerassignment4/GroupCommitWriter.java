@@ -0,0 +1,221 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background writer that appends person and demerit lines to one store in batches.
+ * Callers queue a line and get a future. The writer takes everything queued since
+ * its last write and commits it through the store as one append, so N concurrent
+ * callers cost one write (and at most one fsync) instead of N open/write/close cycles.
+ * Rules:
+ * - Lines reach the file in the order they were queued
+ * - A future completes once its line is as durable as its DurabilityPolicy asks
+ * - An fsync covers every line written before it, whatever its policy
+ * - A line's written future completes once it is in the file and indexed,
+ *   even while its done future still waits for an fsync
+ * - If a batch fails, every future in it fails with the same exception
+ * - If the thread is interrupted, every line it has not finished fails, and
+ *   the next queued line starts a new thread
+ * The thread is a daemon and starts on the first queued line. close() writes
+ * out what is queued and stops it.
+ */
+final class GroupCommitWriter {
+    private static final int MAX_BATCH = 4096;
+    private static final Append CLOSE = Append.demerit("", 0, 0, DurabilityPolicy.FLUSH_PER_BATCH); // Queued by close()
+
+    private final PersonStore store;
+    private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    private final List<Append> awaitingSync = new ArrayList<>(); // Written, waiting for an interval fsync
+    private long syncDeadline; // System.nanoTime() by which awaitingSync must be fsynced
+    private volatile Thread thread;
+
+    GroupCommitWriter(PersonStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Queues a line for the next batch.
+     * @return future completed with the store's result for the line, once durable
+     */
+    CompletableFuture<Boolean> submit(Append append) {
+        queue.add(append);
+        start(); // After queuing, so a writer that stopped in between is replaced
+        return append.done;
+    }
+
+    /**
+     * Writes and syncs everything queued so far, then stops the thread.
+     * Lines queued meanwhile are not lost: they start a new thread.
+     */
+    void close() {
+        Thread writer = thread;
+        if (writer == null) {
+            return;
+        }
+        queue.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void start() {
+        if (thread != null) {
+            return;
+        }
+        synchronized (this) {
+            if (thread == null) {
+                Thread writer = new Thread(this::run, "person-group-commit-" + store.file().getFileName());
+                writer.setDaemon(true);
+                writer.start();
+                thread = writer;
+            }
+        }
+    }
+
+    private void run() {
+        List<Append> batch = new ArrayList<>();
+        boolean closed = false;
+        try {
+            while (!closed) {
+                // Only wake up on a timer while some written line still waits for its fsync
+                Append first = awaitingSync.isEmpty()
+                    ? queue.take()
+                    : queue.poll(syncDeadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    closed = batch.remove(CLOSE);
+                    commit(batch);
+                    batch.clear();
+                }
+                if (!awaitingSync.isEmpty() && (closed || System.nanoTime() - syncDeadline >= 0)) {
+                    sync();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stop; exit fails whatever is left
+        } finally {
+            exit(batch, closed);
+        }
+    }
+
+    /**
+     * Clears thread so the next submit starts a new writer. Unless the writer was
+     * closed, every line not yet durable fails; after a close nothing is pending
+     * but lines queued during it, which go to a new writer.
+     */
+    private void exit(List<Append> unfinished, boolean closed) {
+        List<Append> failed = new ArrayList<>(unfinished);
+        synchronized (this) {
+            failed.addAll(awaitingSync);
+            awaitingSync.clear();
+            thread = null;
+            if (!closed) {
+                queue.drainTo(failed);
+            }
+        }
+        if (closed && !queue.isEmpty()) {
+            start();
+        }
+        IOException failure = new InterruptedIOException("Group-commit writer for " + store.file().getFileName() + " stopped");
+        for (Append append : failed) {
+            append.written.completeExceptionally(failure); // No-op for lines already written
+            append.done.completeExceptionally(failure);
+        }
+    }
+
+    // Writes one batch, then completes or parks each future according to its policy
+    private void commit(List<Append> batch) {
+        boolean fsyncNow = false;
+        for (Append append : batch) {
+            fsyncNow |= append.durability.fsyncsEveryBatch();
+        }
+
+        try {
+            store.commit(batch, fsyncNow);
+        } catch (IOException | RuntimeException e) {
+            for (Append append : batch) {
+                append.written.completeExceptionally(e);
+                append.done.completeExceptionally(e);
+            }
+            return;
+        }
+
+        long now = System.nanoTime();
+        for (Append append : batch) {
+            append.written.complete(null);
+            if (fsyncNow || !append.durability.fsyncs()) {
+                append.done.complete(append.applied);
+            } else {
+                long deadline = now + append.durability.intervalNanos();
+                if (awaitingSync.isEmpty() || deadline - syncDeadline < 0) {
+                    syncDeadline = deadline;
+                }
+                awaitingSync.add(append);
+            }
+        }
+        if (fsyncNow) {
+            completeAwaitingSync(null);
+        }
+    }
+
+    // Fsyncs the file once for every line waiting on an interval
+    private void sync() {
+        try {
+            store.sync();
+            completeAwaitingSync(null);
+        } catch (IOException | RuntimeException e) {
+            completeAwaitingSync(e);
+        }
+    }
+
+    private void completeAwaitingSync(Exception failure) {
+        for (Append append : awaitingSync) {
+            if (failure == null) {
+                append.done.complete(append.applied);
+            } else {
+                append.done.completeExceptionally(failure);
+            }
+        }
+        awaitingSync.clear();
+    }
+
+    /**
+     * One queued line: either a person to add or a demerit to record.
+     */
+    static final class Append {
+        final PersonRecord record; // Person to add, or null for a demerit
+        final String personID;
+        final int offenseDay;
+        final int points;
+        final DurabilityPolicy durability;
+        final CompletableFuture<Boolean> done = new CompletableFuture<>();
+        final CompletableFuture<Void> written = new CompletableFuture<>(); // Completed once in the file, before any fsync
+        boolean applied; // Set by the store: false if the person's ID was already taken
+
+        private Append(PersonRecord record, String personID, int offenseDay, int points, DurabilityPolicy durability) {
+            this.record = record;
+            this.personID = personID;
+            this.offenseDay = offenseDay;
+            this.points = points;
+            this.durability = durability;
+        }
+
+        static Append person(PersonRecord record, DurabilityPolicy durability) {
+            return new Append(record, record.getPersonID(), 0, 0, durability);
+        }
+
+        static Append demerit(String personID, int offenseDay, int points, DurabilityPolicy durability) {
+            return new Append(null, personID, offenseDay, points, durability);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package softwareengineerassignment4;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: how many rows were added, and why each other row was not.
+ */
+public final class ImportReport {
+    private final long imported;
+    private final List<Rejection> rejections;
+    private final long elapsedMillis;
+
+    ImportReport(long imported, List<Rejection> rejections, long elapsedMillis) {
+        this.imported = imported;
+        this.rejections = Collections.unmodifiableList(rejections);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    // Rejected rows, in feed order
+    public List<Rejection> getRejections() {
+        return rejections;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Imported " + imported + " persons, rejected " + rejections.size() + " rows, in " + elapsedMillis + " ms";
+    }
+
+    /**
+     * One row that was not imported.
+     */
+    public static final class Rejection {
+        private final long row;
+        private final String personID;
+        private final FailureReason reason;
+        private final String detail;
+
+        Rejection(long row, String personID, FailureReason reason, String detail) {
+            this.row = row;
+            this.personID = personID;
+            this.reason = reason;
+            this.detail = detail;
+        }
+
+        // Line number in the feed, from 1
+        public long getRow() {
+            return row;
+        }
+
+        // First field of the row, whether or not it is a valid ID
+        public String getPersonID() {
+            return personID;
+        }
+
+        // VALIDATION or DUPLICATE
+        public FailureReason getReason() {
+            return reason;
+        }
+
+        // What was wrong, e.g. "invalid address" or "duplicate of row 12"
+        public String getDetail() {
+            return detail;
+        }
+
+        @Override
+        public String toString() {
+            return "row " + row + " (" + personID + "): " + detail;
+        }
+    }
+}
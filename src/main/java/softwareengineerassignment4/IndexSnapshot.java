@@ -0,0 +1,185 @@
+package softwareengineerassignment4;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Checkpoint of a PersonStore's index, kept in "<data file>.snapshot" so a
+ * new process can pick up where the last one stopped instead of reading the
+ * whole data file: it loads the snapshot, then replays only the entries
+ * written after the offset the snapshot covers.
+ * Holds the ID index (the off-heap table as it is in memory), every offence
+ * history, and the entry counts. Suspension is worked out from the
+ * histories, so it needs nothing of its own.
+ * Layout, big-endian:
+ * - magic "PIDX", version, StorageFormat ordinal
+ * - covered length, then the first and the last bytes of the file up to that
+ *   length, used to tell whether the snapshot still belongs to the file
+ * - person, demerit and moved entry counts
+ * - PersonIdIndex.writeTo
+ * - offence count, then per person: ID, offences, (day, points) per offence
+ * - strings as a byte length then UTF-8
+ * - CRC32C of everything above
+ * A snapshot is written to a temp file and renamed into place, so a crash
+ * leaves the previous one; a corrupt or stale one is ignored.
+ */
+final class IndexSnapshot {
+    private static final int MAGIC = 0x50494458; // "PIDX"
+    private static final int VERSION = 1;
+
+    final long length;  // Bytes of the data file the snapshot covers
+    final byte[] head;  // First bytes of the data file
+    final byte[] tail;  // Last bytes before length
+    final long personEntries;
+    final long demeritEntries;
+    final long movedEntries;
+
+    IndexSnapshot(long length, byte[] head, byte[] tail, long personEntries, long demeritEntries, long movedEntries) {
+        this.length = length;
+        this.head = head;
+        this.tail = tail;
+        this.personEntries = personEntries;
+        this.demeritEntries = demeritEntries;
+        this.movedEntries = movedEntries;
+    }
+
+    static Path pathFor(Path dataFile) {
+        return dataFile.resolveSibling(dataFile.getFileName() + ".snapshot");
+    }
+
+    /**
+     * Writes this snapshot, with the given index and histories, over any earlier one.
+     */
+    void write(Path path, StorageFormat format, PersonIdIndex ids, Map<String, DemeritWindow> offences) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(format.ordinal());
+            out.writeLong(length);
+            writeBytes(head, out);
+            writeBytes(tail, out);
+            out.writeLong(personEntries);
+            out.writeLong(demeritEntries);
+            out.writeLong(movedEntries);
+            ids.writeTo(out);
+            out.writeInt(offences.size());
+            for (Map.Entry<String, DemeritWindow> entry : offences.entrySet()) {
+                DemeritWindow history = entry.getValue();
+                writeString(entry.getKey(), out);
+                out.writeInt(history.size());
+                for (int i = 0; i < history.size(); i++) {
+                    out.writeInt(history.dayAt(i));
+                    out.writeInt(history.pointsAt(i));
+                }
+            }
+            out.flush();
+            new DataOutputStream(file).writeInt((int) crc.getValue()); // Not itself checksummed
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a snapshot into the given (empty) index and histories.
+     * The file is mapped and its checksum verified before any of the body is used.
+     * @param matches Checked on the header, before the body is read
+     * @return the snapshot header, or null if there is no snapshot, it is for another
+     *         format or does not match; ids and offences are then left untouched
+     * @throws IOException if the snapshot is corrupt; ids and offences may then be half filled
+     */
+    static IndexSnapshot read(Path path, StorageFormat format, Predicate<IndexSnapshot> matches,
+                              PersonIdIndex ids, Map<String, DemeritWindow> offences) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < 4 || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Index snapshot of " + channel.size() + " bytes");
+            }
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        StorageMetrics.global().bytesRead(in.capacity());
+
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION || in.get() != format.ordinal()) {
+                return null;
+            }
+            IndexSnapshot snapshot = new IndexSnapshot(in.getLong(), readBytes(in), readBytes(in),
+                                                       in.getLong(), in.getLong(), in.getLong());
+            if (!matches.test(snapshot)) {
+                return null;
+            }
+
+            int bodyEnd = in.capacity() - 4;
+            CRC32C crc = new CRC32C();
+            crc.update(in.duplicate().position(0).limit(bodyEnd));
+            if ((int) crc.getValue() != in.getInt(bodyEnd)) {
+                throw new IOException("Index snapshot checksum mismatch");
+            }
+
+            ids.readFrom(in);
+            int people = in.getInt();
+            for (int p = 0; p < people; p++) {
+                String personID = readString(in);
+                int count = in.getInt();
+                DemeritWindow history = new DemeritWindow();
+                for (int i = 0; i < count; i++) {
+                    history.add(in.getInt(), in.getInt());
+                }
+                offences.put(personID, history);
+            }
+            if (in.position() != bodyEnd) {
+                throw new IOException("Index snapshot has " + (bodyEnd - in.position()) + " bytes after its body");
+            }
+            return snapshot;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Index snapshot is truncated", e);
+        }
+    }
+
+    // Length-prefixed UTF-8, as IDs are written in the snapshot
+    static void writeString(String value, DataOutputStream out) throws IOException {
+        writeBytes(value.getBytes(StandardCharsets.UTF_8), out);
+    }
+
+    static String readString(ByteBuffer in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(byte[] bytes, DataOutputStream out) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Invalid length " + length + " in index snapshot");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,89 @@
+package softwareengineerassignment4;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds, for StorageMetrics.
+ * Buckets are log-linear: each power of two is cut into 4, so a bucket's
+ * bounds are within 25% of any value in it, and 160 buckets reach about 36 minutes.
+ * Recording is one atomic increment plus two adder updates, with no locks and
+ * no allocation, so it can sit on every hot path; counts, sum and max are read
+ * separately and may be a few records apart while writes go on.
+ */
+final class LatencyHistogram {
+    static final int BUCKETS = 160;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.getAndIncrement(bucket(value));
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * Bucket of a latency: values below 4 get their own; above that, 4 buckets
+     * per power of two, picked by the two bits below the highest set bit.
+     */
+    static int bucket(long nanos) {
+        if (nanos < 4) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - 2)) & 3;
+        return Math.min(4 * (exponent - 1) + sub, BUCKETS - 1);
+    }
+
+    // Exclusive upper bound of a bucket; every power of two is a bucket boundary
+    static long upperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket + 1;
+        }
+        int exponent = bucket / 4 + 1;
+        return (long) (5 + bucket % 4) << (exponent - 2);
+    }
+
+    // Copy of the bucket counts
+    long[] snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Latency at or below which the given fraction of a snapshot's records fall,
+     * to within a bucket (the bucket's upper bound is returned).
+     * @param quantile Between 0 and 1, e.g. 0.99
+     * @return nanoseconds, or 0 if nothing was recorded
+     */
+    static long quantile(long[] snapshot, double quantile) {
+        long count = 0;
+        for (long c : snapshot) {
+            count += c;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,238 @@
+package softwareengineerassignment4;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Offline load test of PersonServer on one machine, for capacity planning.
+ * Seeds a fresh data file with generated people, starts the server on it, and
+ * drives it over loopback from closed-loop workers: each sends a request,
+ * waits for the answer and sends the next, so concurrency is the number of
+ * requests in flight.
+ * Rules:
+ * - Reads are 3 fetches to 1 suspension check; writes are 2 adds, 2 demerits
+ *   and 1 update in every 5. Existing people are picked uniformly
+ * - Nothing is recorded during the warm-up, a fifth of the run up to 5 s
+ * - A 5xx or a failed connection counts as an error
+ * Usage: LoadGenerator [records] [seconds] [concurrency] [readPercent] [dataFile]
+ * Defaults: 100000 records, 30 s, 64 workers, 80% reads, loadtest_persons.txt.
+ */
+public final class LoadGenerator {
+    static final String ADDRESS = "12|Main St|Melbourne|Victoria|Australia";
+    static final String BIRTHDATE = "15-05-1990";
+
+    enum Kind { FETCH, SUSPENSION, ADD, DEMERIT, UPDATE }
+
+    private LoadGenerator() {
+    }
+
+    /**
+     * Distinct valid person ID for each n below 64 * 26^6; the benchmarks and tests use it too.
+     * Layout: two digits 2-9, "@#", four lowercase letters, two uppercase letters.
+     */
+    static String id(long n) {
+        char[] id = new char[10];
+        id[0] = (char) ('2' + n % 8);
+        id[1] = (char) ('2' + n / 8 % 8);
+        id[2] = '@';
+        id[3] = '#';
+        long rest = n / 64;
+        for (int i = 4; i < 8; i++) {
+            id[i] = (char) ('a' + rest % 26);
+            rest /= 26;
+        }
+        id[8] = (char) ('A' + rest % 26);
+        id[9] = (char) ('A' + rest / 26 % 26);
+        return new String(id);
+    }
+
+    /**
+     * Replaces the data file with people id(0) to id(records - 1), through one bulk import.
+     * Sets it as Person's data file.
+     */
+    static void seed(String dataFile, int records) throws IOException {
+        Path data = Paths.get(dataFile);
+        Files.deleteIfExists(data);
+        Files.deleteIfExists(IndexSnapshot.pathFor(data));
+        Person.setFileName(dataFile);
+        Path feed = Files.createTempFile("loadtest-feed", ".csv");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(feed, StandardCharsets.UTF_8)) {
+                for (int n = 0; n < records; n++) {
+                    writer.write(id(n) + ",First" + n + ",Last" + n % 100 + "," + ADDRESS + "," + BIRTHDATE + "\n");
+                }
+            }
+            ImportReport report = Person.importFeed(feed.toString());
+            if (report == null || report.getImported() != records) {
+                throw new IOException("Seeding " + dataFile + " failed: " + report);
+            }
+        } finally {
+            Files.deleteIfExists(feed);
+        }
+    }
+
+    /**
+     * Drives a running server until the warm-up and the measured period are over.
+     * @param base Server root, e.g. http://localhost:8080
+     * @param records People id(0) to id(records - 1) exist; adds use IDs after them
+     * @param concurrency Number of workers, each with one request in flight
+     * @param readPercent Share of requests that only read, 0 to 100
+     */
+    static LoadReport drive(URI base, int records, int concurrency, int readPercent, Duration warmup,
+                            Duration measured) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        // New IDs start past the seeded ones at a random point, so a second run on the same file adds fresh people
+        AtomicLong nextId = new AtomicLong(records + (long) ThreadLocalRandom.current().nextInt(1 << 20) * 64);
+        LatencyHistogram overall = new LatencyHistogram();
+        Map<Kind, LatencyHistogram> byKind = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            byKind.put(kind, new LatencyHistogram());
+        }
+        LongAdder requests = new LongAdder();
+        LongAdder errors = new LongAdder();
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureTo = measureFrom + measured.toNanos();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int w = 0; w < concurrency; w++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long now;
+                while ((now = System.nanoTime()) < measureTo) {
+                    Kind kind = pick(random, readPercent);
+                    HttpRequest request = request(base, kind, records, nextId, random);
+                    boolean failed;
+                    try {
+                        failed = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() >= 500;
+                    } catch (IOException e) {
+                        failed = true;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long nanos = System.nanoTime() - now;
+                    if (now >= measureFrom) {
+                        overall.record(nanos);
+                        byKind.get(kind).record(nanos);
+                        requests.increment();
+                        if (failed) {
+                            errors.increment();
+                        }
+                    }
+                }
+            }, "load-worker-" + w);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Map<String, long[]> kinds = new LinkedHashMap<>();
+        for (Map.Entry<Kind, LatencyHistogram> kind : byKind.entrySet()) {
+            kinds.put(kind.getKey().name().toLowerCase(Locale.ROOT), kind.getValue().snapshot());
+        }
+        return new LoadReport(requests.sum(), errors.sum(), measured.toNanos() / 1e9, overall, kinds);
+    }
+
+    private static Kind pick(ThreadLocalRandom random, int readPercent) {
+        if (random.nextInt(100) < readPercent) {
+            return random.nextInt(4) == 0 ? Kind.SUSPENSION : Kind.FETCH;
+        }
+        int write = random.nextInt(5);
+        return write < 2 ? Kind.ADD : write < 4 ? Kind.DEMERIT : Kind.UPDATE;
+    }
+
+    private static HttpRequest request(URI base, Kind kind, int records, AtomicLong nextId, ThreadLocalRandom random) {
+        String existing = base + "/persons/" + encode(id(random.nextInt(records)));
+        switch (kind) {
+            case FETCH:
+                return HttpRequest.newBuilder(URI.create(existing)).GET().build();
+            case SUSPENSION:
+                return HttpRequest.newBuilder(URI.create(existing + "/suspension")).GET().build();
+            case ADD:
+                return form(HttpRequest.newBuilder(URI.create(base + "/persons")), "POST",
+                            "personID=" + encode(id(nextId.getAndIncrement())) + "&firstName=New&lastName=Person"
+                            + "&address=" + encode(ADDRESS) + "&birthdate=" + BIRTHDATE);
+            case DEMERIT:
+                return form(HttpRequest.newBuilder(URI.create(existing + "/demerits")), "POST",
+                            "offenseDate=" + DateCodec.format(DateCodec.today() - random.nextInt(700))
+                            + "&points=" + (1 + random.nextInt(3)));
+            default:
+                return form(HttpRequest.newBuilder(URI.create(existing)), "PUT",
+                            "firstName=Load" + random.nextInt(1000) + "&lastName=Last"
+                            + "&address=" + encode(ADDRESS) + "&birthdate=" + BIRTHDATE);
+        }
+    }
+
+    private static HttpRequest form(HttpRequest.Builder builder, String method, String body) {
+        return builder.header("Content-Type", "application/x-www-form-urlencoded")
+            .method(method, HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private static String encode(String text) {
+        return URLEncoder.encode(text, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) {
+        int records;
+        int seconds;
+        int concurrency;
+        int readPercent;
+        try {
+            records = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+            seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+            concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+            readPercent = args.length > 3 ? Integer.parseInt(args[3]) : 80;
+        } catch (NumberFormatException e) {
+            System.out.println("Usage: LoadGenerator [records] [seconds] [concurrency] [readPercent] [dataFile]");
+            return;
+        }
+        if (records < 1 || seconds < 1 || concurrency < 1 || readPercent < 0 || readPercent > 100) {
+            System.out.println("Expected records, seconds and concurrency of at least 1, and readPercent of 0 to 100");
+            return;
+        }
+        String dataFile = args.length > 4 ? args[4] : "loadtest_persons.txt";
+
+        PersonServer server = null;
+        try {
+            System.out.println("Seeding " + records + " persons into " + dataFile);
+            seed(dataFile, records);
+            PersonServer.preferNoDelay();
+            server = PersonServer.start(0);
+            Duration warmup = Duration.ofSeconds(Math.min(5, Math.max(1, seconds / 5)));
+            System.out.println("Warming up for " + warmup.getSeconds() + " s, then measuring for " + seconds
+                + " s with " + concurrency + " workers, " + readPercent + "% reads");
+            LoadReport report = drive(URI.create("http://localhost:" + server.getPort()), records, concurrency,
+                                      readPercent, warmup, Duration.ofSeconds(seconds));
+            System.out.print(report);
+        } catch (IOException e) {
+            System.out.println("Error running load test: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package softwareengineerassignment4;
+
+import java.util.Map;
+
+/**
+ * Outcome of a LoadGenerator run: sustained request rate and latency quantiles,
+ * overall and per kind of request. Quantiles come from LatencyHistogram buckets,
+ * so each is an upper bound within 25% of the true value, capped at the maximum.
+ */
+public final class LoadReport {
+    private final long requests;
+    private final long errors;
+    private final double seconds;
+    private final long[] latencies;
+    private final long maxNanos;
+    private final Map<String, long[]> latenciesByKind;
+
+    LoadReport(long requests, long errors, double seconds, LatencyHistogram overall,
+               Map<String, long[]> latenciesByKind) {
+        this.requests = requests;
+        this.errors = errors;
+        this.seconds = seconds;
+        this.latencies = overall.snapshot();
+        this.maxNanos = overall.maxNanos();
+        this.latenciesByKind = latenciesByKind;
+    }
+
+    // Requests answered in the measured period, errors included
+    public long getRequests() {
+        return requests;
+    }
+
+    // Requests that got a 5xx or no response at all
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getRequestsPerSecond() {
+        return seconds > 0 ? requests / seconds : 0;
+    }
+
+    public long getP50Micros() {
+        return Math.min(LatencyHistogram.quantile(latencies, 0.50), maxNanos) / 1000;
+    }
+
+    public long getP99Micros() {
+        return Math.min(LatencyHistogram.quantile(latencies, 0.99), maxNanos) / 1000;
+    }
+
+    public long getP999Micros() {
+        return Math.min(LatencyHistogram.quantile(latencies, 0.999), maxNanos) / 1000;
+    }
+
+    public long getMaxMicros() {
+        return maxNanos / 1000;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%d requests in %.1f s: %.0f req/s, %d errors%n",
+                                 requests, seconds, getRequestsPerSecond(), errors));
+        out.append(String.format("%-12s %10s %10s %10s %10s%n", "latency us", "p50", "p99", "p999", "max"));
+        out.append(String.format("%-12s %10d %10d %10d %10d%n", "all",
+                                 getP50Micros(), getP99Micros(), getP999Micros(), getMaxMicros()));
+        for (Map.Entry<String, long[]> kind : latenciesByKind.entrySet()) {
+            long[] snapshot = kind.getValue();
+            out.append(String.format("%-12s %10d %10d %10d %10s%n", kind.getKey(),
+                                     LatencyHistogram.quantile(snapshot, 0.50) / 1000,
+                                     LatencyHistogram.quantile(snapshot, 0.99) / 1000,
+                                     LatencyHistogram.quantile(snapshot, 0.999) / 1000, ""));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package softwareengineerassignment4;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Rewrites a persons data file into one canonical entry per person:
+ * the latest person line followed by its demerit lines.
+ * - Superseded versions and Moved lines are dropped
+ * - Unreadable lines are dropped (nothing reads them either)
+ * - Demerit lines for the same date are merged into one
+ * - Offences that have expired (see DemeritWindow.isExpired) are dropped
+ * The copy is written in the store's StorageFormat; in the binary format a
+ * person's offences go inline in their person record.
+ * The compacted copy is built from the file alone, so lookups keep being
+ * served from the store's index; only the final swap holds the store.
+ */
+final class LogCompactor implements LogVisitor {
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "person-log-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int today; // Offences expired by this day are dropped
+    private final Map<String, PersonRecord> latest = new LinkedHashMap<>();
+    private final Map<String, DemeritWindow> offences = new LinkedHashMap<>();
+    private int expiredOffences;
+
+    // Integer.MIN_VALUE keeps every offence, for a plain change of format
+    LogCompactor(int today) {
+        this.today = today;
+    }
+
+    /**
+     * Compacts the store's file on the shared background compaction thread.
+     * @return future completed with the result, or exceptionally on I/O failure
+     */
+    static CompletableFuture<CompactionResult> compactInBackground(PersonStore store) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return compact(store);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Compacts the store's file on the calling thread.
+     * @return bytes before and after, offences dropped and time taken
+     */
+    static CompactionResult compact(PersonStore store) throws IOException {
+        long started = System.nanoTime();
+        PersonStore.LogPosition covered = store.position();
+        Path file = store.file();
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+
+        LogCompactor compactor = new LogCompactor(DateCodec.today());
+        if (covered.length > 0) {
+            store.format().scan(file, 0, covered.length, compactor);
+        }
+        compactor.write(compacted, store.format());
+        long bytesAfter = Files.size(compacted);
+
+        try {
+            store.replaceWithCompacted(compacted, covered);
+        } finally {
+            Files.deleteIfExists(compacted);
+        }
+
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        return new CompactionResult(covered.length, bytesAfter, compactor.expiredOffences, elapsedMillis);
+    }
+
+    @Override
+    public void person(PersonRecord record) {
+        latest.put(record.getPersonID(), record);
+    }
+
+    @Override
+    public void demerit(String personID, int offenseDay, int points) {
+        if (DemeritWindow.isExpired(offenseDay, today)) {
+            expiredOffences++;
+        } else {
+            addOffence(personID, offenseDay, points);
+        }
+    }
+
+    @Override
+    public void moved(String fromPersonID, String toPersonID) {
+        // The person and their offences carry on under the new ID
+        latest.remove(fromPersonID);
+        DemeritWindow history = offences.remove(fromPersonID);
+        if (history != null) {
+            offences.computeIfAbsent(toPersonID, id -> new DemeritWindow()).addAll(history);
+        }
+    }
+
+    // Latest version of each person read so far, in order of first appearance
+    Map<String, PersonRecord> latest() {
+        return latest;
+    }
+
+    // Offences read so far per ID, including IDs with no person
+    Map<String, DemeritWindow> offences() {
+        return offences;
+    }
+
+    private void addOffence(String personID, int offense, int points) {
+        offences.computeIfAbsent(personID, id -> new DemeritWindow()).add(offense, points);
+    }
+
+    // Writes each person's latest line and merged offences, then offences of unknown IDs
+    void write(Path compacted, StorageFormat format) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(compacted), 1 << 16)) {
+            for (PersonRecord record : latest.values()) {
+                format.writePerson(record, offences.remove(record.getPersonID()), out);
+            }
+            for (Map.Entry<String, DemeritWindow> orphan : offences.entrySet()) {
+                DemeritWindow history = orphan.getValue();
+                for (int i = 0; i < history.size(); i++) {
+                    format.writeDemerit(orphan.getKey(), history.dayAt(i), history.pointsAt(i), out);
+                }
+            }
+        }
+    }
+}
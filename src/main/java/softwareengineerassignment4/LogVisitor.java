@@ -0,0 +1,25 @@
+package softwareengineerassignment4;
+
+/**
+ * Receives the entries of a persons data file in log order.
+ */
+interface LogVisitor {
+    // A person line: the latest one for an ID is the current version
+    void person(PersonRecord record);
+
+    // A demerit line: points for an offence on the given epoch-day
+    void demerit(String personID, int offenseDay, int points);
+
+    // An ID change: the old ID stops resolving and its history moves to the new one
+    void moved(String fromPersonID, String toPersonID);
+
+    // File offset of the entry whose calls follow; only visitors that index the file need it
+    default void entryAt(long offset) {
+    }
+
+    // Asked before a person entry's fields are decoded, with its birthdate as an epoch-day
+    // (DateCodec.INVALID if not a valid date); false skips the person. Lets a scan filter cheaply
+    default boolean wantsPerson(String personID, int birthDay) {
+        return true;
+    }
+}
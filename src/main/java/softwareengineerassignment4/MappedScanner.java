@@ -0,0 +1,215 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads newline-terminated lines (or length-prefixed binary records) from a byte
+ * range of a data file through FileChannel.map, handing each one out as a
+ * ByteLine over the mapped bytes.
+ * Nothing is copied or allocated per line unless the consumer asks for a String.
+ * Byte offsets are what the store and compactor track, so lines are split on
+ * raw bytes; a trailing '\r' is left out of the line.
+ * The file is mapped a window at a time, so files over 2 GB work too.
+ */
+final class MappedScanner {
+    private static final long WINDOW = 1L << 28; // Bytes mapped at a time
+
+    private MappedScanner() {
+    }
+
+    /**
+     * Parses every complete line in [from, to) and passes its entry to the visitor.
+     * @return offset just after the last complete line
+     */
+    static long scan(Path file, long from, long to, LogVisitor visitor) throws IOException {
+        return scanLines(file, from, to, line -> CsvFormat.parse(line, visitor));
+    }
+
+    /**
+     * Passes every complete line in [from, to) to the consumer.
+     * The line is only valid during the call; a trailing line with no newline yet is left unread.
+     * @return offset just after the last complete line
+     */
+    static long scanLines(Path file, long from, long to, Consumer<ByteLine> consumer) throws IOException {
+        return scanLines(file, from, to, consumer, WINDOW);
+    }
+
+    // Window size is a parameter so tests can make lines straddle windows
+    static long scanLines(Path file, long from, long to, Consumer<ByteLine> consumer, long window) throws IOException {
+        return scanFrames(file, from, to, consumer, window, MappedScanner::nextLine);
+    }
+
+    /**
+     * Passes every complete binary record in [from, to) to the consumer, as a
+     * ByteLine spanning the whole record: a type byte, the body length as a
+     * varint (see BinaryFormat), then the body. A trailing record not fully
+     * written yet is left unread.
+     * @return offset just after the last complete record
+     */
+    static long scanRecords(Path file, long from, long to, Consumer<ByteLine> consumer) throws IOException {
+        return scanRecords(file, from, to, consumer, WINDOW);
+    }
+
+    static long scanRecords(Path file, long from, long to, Consumer<ByteLine> consumer, long window) throws IOException {
+        return scanFrames(file, from, to, consumer, window, MappedScanner::nextRecord);
+    }
+
+    /**
+     * Reads the single line starting at a file offset through an open channel.
+     * @return false if there is no complete line at that offset
+     */
+    static boolean readLine(FileChannel channel, long offset, Consumer<ByteLine> consumer) throws IOException {
+        return readOne(channel, offset, consumer, MappedScanner::nextLine);
+    }
+
+    /**
+     * Reads the single binary record starting at a file offset through an open channel.
+     * @return false if there is no complete record at that offset
+     */
+    static boolean readRecord(FileChannel channel, long offset, Consumer<ByteLine> consumer) throws IOException {
+        return readOne(channel, offset, consumer, MappedScanner::nextRecord);
+    }
+
+    /**
+     * Finds where the first line after a given offset starts, reading only
+     * from that offset on, e.g. to split a file into ranges of whole lines.
+     * @return offset just after the first newline at or after at, or -1 if there is none before to
+     */
+    static long lineStartAfter(Path file, long at, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (long position = at; position < to; position += buffer.limit()) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), to - position));
+                while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                    // Fill the buffer, or stop at the end of the file
+                }
+                buffer.flip();
+                int newline = ByteLine.indexOf(buffer, (byte) '\n', 0, buffer.limit());
+                if (newline >= 0) {
+                    return position + newline + 1;
+                }
+                if (buffer.limit() == 0) {
+                    break; // Reached the end of the file
+                }
+            }
+        }
+        return -1;
+    }
+
+    // One positional read is usually enough: entries are short, so start small and double
+    private static boolean readOne(FileChannel channel, long offset, Consumer<ByteLine> consumer,
+                                   Framing framing) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+        ByteLine line = new ByteLine();
+        while (true) {
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+                // Fill the buffer, or stop at the end of the file
+            }
+            int limit = buffer.position();
+            StorageMetrics.global().bytesRead(limit);
+            if (framing.next(buffer, 0, limit, line) >= 0) {
+                line.fileOffset(offset);
+                consumer.accept(line);
+                return true;
+            }
+            if (limit < buffer.capacity()) {
+                return false; // Reached the end of the file
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+
+    // Finds the entry starting at a buffer position
+    private interface Framing {
+        /**
+         * Points the line at the entry starting at start, if it ends before limit.
+         * @return position of the next entry, or -1 if the entry is incomplete
+         */
+        int next(ByteBuffer buffer, int start, int limit, ByteLine line) throws IOException;
+    }
+
+    private static int nextLine(ByteBuffer buffer, int start, int limit, ByteLine line) {
+        int newline = ByteLine.indexOf(buffer, (byte) '\n', start, limit);
+        if (newline < 0) {
+            return -1;
+        }
+        int lineEnd = newline > start && buffer.get(newline - 1) == '\r' ? newline - 1 : newline;
+        line.reset(buffer, start, lineEnd);
+        return newline + 1;
+    }
+
+    private static int nextRecord(ByteBuffer buffer, int start, int limit, ByteLine line) throws IOException {
+        // Body length: 7 bits per byte, low bits first, high bit set on all but the last byte
+        long bodyLength = 0;
+        int position = start + 1;
+        for (int shift = 0; ; shift += 7) {
+            if (position >= limit) {
+                return -1;
+            }
+            if (shift > 28) {
+                throw new IOException("Corrupt record length at buffer position " + start);
+            }
+            byte b = buffer.get(position++);
+            bodyLength |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        if (bodyLength > Integer.MAX_VALUE - (position - start)) {
+            throw new IOException("Corrupt record length " + bodyLength);
+        }
+        if (limit - position < bodyLength) {
+            return -1;
+        }
+        int end = position + (int) bodyLength;
+        line.reset(buffer, start, end);
+        return end;
+    }
+
+    private static long scanFrames(Path file, long from, long to, Consumer<ByteLine> consumer, long window,
+                                   Framing framing) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = Math.min(to, channel.size());
+            ByteLine line = new ByteLine();
+            long consumed = from;
+
+            while (consumed < end) {
+                int size = (int) Math.min(window, end - consumed);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, consumed, size);
+                mapped.order(ByteOrder.LITTLE_ENDIAN); // ByteLine.indexOf reads words low byte first
+                int start = 0;
+                int next;
+                while ((next = framing.next(mapped, start, size, line)) >= 0) {
+                    line.fileOffset(consumed + start);
+                    consumer.accept(line);
+                    start = next;
+                }
+
+                if (start > 0) {
+                    consumed += start; // The next window starts at the first unfinished entry
+                } else if (size < window) {
+                    break; // Only an unfinished entry is left
+                } else if (window >= Integer.MAX_VALUE) {
+                    throw new IOException("Entry longer than " + Integer.MAX_VALUE + " bytes at offset " + consumed);
+                } else {
+                    window = Math.min(window * 2, Integer.MAX_VALUE); // One entry fills the window: widen it
+                }
+            }
+            StorageMetrics.global().bytesRead(consumed - from);
+            return consumed;
+        } catch (InternalError e) {
+            // Touching a mapped page past the end of a file truncated under us
+            throw new IOException("Data file was truncated while being read", e);
+        }
+    }
+}
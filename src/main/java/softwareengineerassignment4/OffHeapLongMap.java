@@ -0,0 +1,234 @@
+package softwareengineerassignment4;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Hash map from long keys to long values, stored off the Java heap.
+ * Each slot is 16 bytes (key, value) in one direct buffer, found by linear
+ * probing, so there are no entry objects, no boxing and nothing for the
+ * garbage collector to trace; get and put allocate nothing unless the table grows.
+ * Rules:
+ * - Keys must not be negative (a negative key marks an empty slot)
+ * - The table doubles when three quarters full, up to 2^26 slots (1 GB)
+ * - At that size it refuses new keys once 15/16 full, so every probe still
+ *   ends at an empty slot
+ * - Removal shifts later entries back, so there are no tombstones
+ * Not thread safe: PersonStore only touches it under its lock.
+ */
+final class OffHeapLongMap {
+    static final long MISSING = -1L;         // Returned by get for a key that is not present
+    private static final long EMPTY = -1L;   // Key of an unused slot
+    private static final int SLOT_BYTES = 16;
+    private static final int MAX_CAPACITY = 1 << 26; // Slot offsets must stay within an int
+    private static final int COPY_CHUNK = 1 << 16;   // Bytes moved at a time by writeTo and readFrom
+
+    private final int maxCapacity;
+    private ByteBuffer slots;
+    private int mask;
+    private int size;
+
+    /**
+     * @param expected Entries to size the table for before it has to grow
+     */
+    OffHeapLongMap(int expected) {
+        this(expected, MAX_CAPACITY);
+    }
+
+    /**
+     * @param expected Entries to size the table for before it has to grow
+     * @param maxCapacity Most slots the table may grow to: a power of two from 16 to 2^26
+     */
+    OffHeapLongMap(int expected, int maxCapacity) {
+        if (maxCapacity < 16 || maxCapacity > MAX_CAPACITY || Integer.bitCount(maxCapacity) != 1) {
+            throw new IllegalArgumentException("Invalid maximum capacity " + maxCapacity);
+        }
+        this.maxCapacity = maxCapacity;
+        int capacity = 16;
+        while (capacity < maxCapacity && capacity * 3L / 4 < expected) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @return the value for the key, or MISSING
+     */
+    long get(long key) {
+        for (int i = home(key); ; i = (i + 1) & mask) {
+            long found = keyAt(i);
+            if (found == key) {
+                return valueAt(i);
+            }
+            if (found == EMPTY) {
+                return MISSING;
+            }
+        }
+    }
+
+    /**
+     * Sets the value for a key, replacing any previous value.
+     * @throws IllegalArgumentException if the key is negative
+     * @throws IllegalStateException if the key is new and the table is as full as it may get
+     */
+    void put(long key, long value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key " + key);
+        }
+        int i = home(key);
+        for (long found; (found = keyAt(i)) != EMPTY; i = (i + 1) & mask) {
+            if (found == key) {
+                slots.putLong(i * SLOT_BYTES + 8, value);
+                return;
+            }
+        }
+        if (capacity() == maxCapacity && size >= capacity() - capacity() / 16) {
+            throw new IllegalStateException("Off-heap map is full at " + size + " entries");
+        }
+        slots.putLong(i * SLOT_BYTES, key);
+        slots.putLong(i * SLOT_BYTES + 8, value);
+        size++;
+        // At the largest size, keep filling past three quarters rather than fail
+        if (size > capacity() * 3L / 4 && capacity() < maxCapacity) {
+            resize(capacity() * 2);
+        }
+    }
+
+    /**
+     * Removes a key, moving back any entries that probed past it.
+     * @return true if the key was present
+     */
+    boolean remove(long key) {
+        int i = home(key);
+        for (long found; (found = keyAt(i)) != key; i = (i + 1) & mask) {
+            if (found == EMPTY) {
+                return false;
+            }
+        }
+        // Close the gap: an entry further along may move into slot i if its home slot
+        // is not in the cyclic range (i, j], i.e. its probe run passes through i
+        for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            long moving = keyAt(j);
+            if (moving == EMPTY) {
+                break;
+            }
+            int home = home(moving);
+            boolean reachable = i <= j ? (home <= i || home > j) : (home <= i && home > j);
+            if (reachable) {
+                slots.putLong(i * SLOT_BYTES, moving);
+                slots.putLong(i * SLOT_BYTES + 8, valueAt(j));
+                i = j;
+            }
+        }
+        slots.putLong(i * SLOT_BYTES, EMPTY);
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Independent copy, made with one bulk copy of the slots
+    OffHeapLongMap copy() {
+        OffHeapLongMap copy = new OffHeapLongMap(0, maxCapacity);
+        copy.slots = ByteBuffer.allocateDirect(slots.capacity()).order(slots.order());
+        copy.slots.put(slots.duplicate().clear()); // Slots are read by index; the position means nothing
+        copy.mask = mask;
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Writes the table as it is laid out in memory, slots and all, so readFrom
+     * restores it with bulk copies and no rehashing.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeBoolean(slots.order() == ByteOrder.LITTLE_ENDIAN);
+        out.writeInt(capacity());
+        out.writeInt(size);
+        ByteBuffer view = slots.duplicate();
+        view.clear();
+        byte[] chunk = new byte[COPY_CHUNK];
+        while (view.hasRemaining()) {
+            int length = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    /**
+     * Replaces the contents with a table written by writeTo, read from the buffer's position.
+     * A table written on a machine of the other byte order keeps that order.
+     * @throws IOException if the buffer does not hold a valid table
+     */
+    void readFrom(ByteBuffer in) throws IOException {
+        ByteOrder order = in.get() != 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        int capacity = in.getInt();
+        int count = in.getInt();
+        if (capacity < 16 || capacity > maxCapacity || Integer.bitCount(capacity) != 1 || count < 0
+                || count > capacity - capacity / 16
+                || in.remaining() < capacity * SLOT_BYTES) {
+            throw new IOException("Invalid table of " + count + " entries in " + capacity + " slots");
+        }
+        ByteBuffer table = in.slice().limit(capacity * SLOT_BYTES);
+        slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES).order(order).put(table).clear();
+        in.position(in.position() + capacity * SLOT_BYTES);
+        mask = capacity - 1;
+        size = count;
+    }
+
+    // Off-heap bytes held by the table
+    long memoryBytes() {
+        return (long) capacity() * SLOT_BYTES;
+    }
+
+    void clear() {
+        for (int i = 0; i < capacity(); i++) {
+            slots.putLong(i * SLOT_BYTES, EMPTY);
+        }
+        size = 0;
+    }
+
+    private int capacity() {
+        return mask + 1;
+    }
+
+    private long keyAt(int slot) {
+        return slots.getLong(slot * SLOT_BYTES);
+    }
+
+    private long valueAt(int slot) {
+        return slots.getLong(slot * SLOT_BYTES + 8);
+    }
+
+    // Packed IDs differ in a few bit fields, so mix every bit into the slot index (murmur3 finalizer);
+    // a single multiply left long probe runs at one million IDs
+    private int home(long key) {
+        long h = key;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (int) (h ^ (h >>> 33)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES).order(ByteOrder.nativeOrder());
+        mask = capacity - 1;
+        size = 0;
+        clear();
+    }
+
+    private void resize(int capacity) {
+        ByteBuffer old = slots;
+        int oldCapacity = capacity();
+        allocate(capacity);
+        for (int i = 0; i < oldCapacity; i++) {
+            long key = old.getLong(i * SLOT_BYTES);
+            if (key != EMPTY) {
+                put(key, old.getLong(i * SLOT_BYTES + 8));
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package softwareengineerassignment4;
+
+/**
+ * Person storage operations that StorageMetrics times and counts.
+ */
+public enum Operation {
+    ADD_PERSON("addPerson"),
+    FETCH_PERSON("fetchPersonById"),
+    UPDATE_PERSONAL_DETAILS("updatePersonalDetails"),
+    ADD_DEMERIT_POINTS("addDemeritPoints");
+
+    private final String metricName;
+
+    Operation(String metricName) {
+        this.metricName = metricName;
+    }
+
+    // Name used in metric labels and MBean names: the Person method's name
+    public String metricName() {
+        return metricName;
+    }
+}
@@ -0,0 +1,95 @@
+package softwareengineerassignment4;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and outcome counters of one Operation, updated without locks.
+ */
+final class OperationMetrics implements OperationMetricsMXBean {
+    private final Operation operation;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder[] failures = new LongAdder[FailureReason.values().length];
+
+    OperationMetrics(Operation operation) {
+        this.operation = operation;
+        for (int i = 0; i < failures.length; i++) {
+            failures[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param failure Why it failed, or null if it succeeded
+     */
+    void record(long nanos, FailureReason failure) {
+        latency.record(nanos);
+        if (failure == null) {
+            successes.increment();
+        } else {
+            failures[failure.ordinal()].increment();
+        }
+    }
+
+    Operation operation() {
+        return operation;
+    }
+
+    LatencyHistogram latency() {
+        return latency;
+    }
+
+    long failures(FailureReason reason) {
+        return failures[reason.ordinal()].sum();
+    }
+
+    @Override
+    public long getCount() {
+        long count = successes.sum();
+        for (LongAdder failure : failures) {
+            count += failure.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    @Override
+    public Map<String, Long> getFailures() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (FailureReason reason : FailureReason.values()) {
+            counts.put(reason.metricName(), failures(reason));
+        }
+        return counts;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long count = getCount();
+        return count == 0 ? 0 : latency.totalNanos() / 1000.0 / count;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return LatencyHistogram.quantile(latency.snapshot(), 0.5) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return LatencyHistogram.quantile(latency.snapshot(), 0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return LatencyHistogram.quantile(latency.snapshot(), 0.999) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.maxNanos() / 1000.0;
+    }
+}
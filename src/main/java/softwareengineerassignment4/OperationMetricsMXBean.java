@@ -0,0 +1,27 @@
+package softwareengineerassignment4;
+
+import java.util.Map;
+
+/**
+ * JMX view of one Operation's metrics, registered as
+ * "softwareengineerassignment4:type=Operation,name=<method name>".
+ * Latencies are in microseconds, to within the histogram's bucket width (25%).
+ */
+public interface OperationMetricsMXBean {
+    long getCount();
+
+    long getSuccesses();
+
+    // Failure count per FailureReason.metricName()
+    Map<String, Long> getFailures();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
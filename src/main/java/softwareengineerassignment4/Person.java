@@ -1,20 +1,16 @@
 package softwareengineerassignment4;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Collections;
-import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 public class Person {
     private String personID;
@@ -22,10 +18,16 @@ public class Person {
     private String lastName;
     private String address;
     private String birthdate;
-    private HashMap<Date, Integer> demeritPoints = new HashMap<>();
+    private DemeritWindow demeritPoints = new DemeritWindow();
     private boolean isSuspended;
 
-    private static String FILE_NAME = "persons.txt";
+    private static volatile String FILE_NAME = "persons.txt";
+    private static volatile UpdateMode UPDATE_MODE = UpdateMode.APPEND;
+    private static volatile DurabilityPolicy DURABILITY = DurabilityPolicy.FLUSH_PER_BATCH;
+    private static volatile StorageFormat STORAGE_FORMAT = StorageFormat.CSV;
+    private static volatile int SHARD_COUNT = 1;
+    private static final StorageMetrics METRICS = StorageMetrics.global();
+    private static final Logger LOG = Logger.getLogger(Person.class.getName());
 
     // Constructor to initialize a Person object with given details
     public Person(String personID, String firstName, String lastName, String address, String birthdate) {
@@ -38,72 +40,118 @@ public class Person {
 
     /**
      * Adds the current person to the file after validation.
+     * Waits until the person is written as durably as set by setDurability.
      * @return true if successfully added, false otherwise.
      */
     public boolean addPerson() {
-        // Validate all required fields before writing
-        if (!validatePersonID(personID) || !validateAddress(address) || !validateDate(birthdate)) {
-            return false;
-        }
+        return addPersonAsync().join();
+    }
 
-        if (fetchPersonById(personID) != null) {
-            return false;
-        }
+    /**
+     * Validates the current person and queues it to be added to the file.
+     * Concurrent adds are written together in one batch by the store's writer thread.
+     * @return future completed with true once the person is written as durably as
+     *         set by setDurability, or false if invalid, the ID is taken or the write failed
+     */
+    public CompletableFuture<Boolean> addPersonAsync() {
+        return applyAdd().thenApply(failure -> failure == null);
+    }
 
-        // Append the person's data as a new line in the file
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(FILE_NAME, true))) {
-            writer.write(personID + "," + firstName + "," + lastName + "," + address + "," + birthdate);
-            writer.newLine();
-            return true;
-        } catch (IOException e) {
-            return false;
+    // As addPersonAsync, completing with why the person was not added, or null once written
+    CompletableFuture<FailureReason> applyAdd() {
+        long started = System.nanoTime();
+        // Validate all required fields before writing
+        if (!validateFields(personID, firstName, lastName, address, birthdate)
+                || !validatePersonID(personID) || !validateAddress(address) || !validateDate(birthdate)) {
+            METRICS.record(Operation.ADD_PERSON, started, FailureReason.VALIDATION);
+            return CompletableFuture.completedFuture(FailureReason.VALIDATION);
         }
+
+        // Store rejects the record if the ID is already taken
+        return store(personID).addAsync(new PersonRecord(personID, firstName, lastName, address, birthdate), DURABILITY)
+            .handle((added, e) -> {
+                FailureReason failure = e != null ? FailureReason.IO : added ? null : FailureReason.DUPLICATE;
+                METRICS.record(Operation.ADD_PERSON, started, failure);
+                return failure;
+            });
     }
 
     /**
-     * Reads the file and returns a Person object matching the given personID.
+     * Looks up a person by ID through the in-memory index of the data file.
+     * The file is only read in full the first time it is used.
+     * The returned person carries their recorded demerit history and suspension status.
      * @param personID The ID to search for.
      * @return Person object if found, otherwise null.
      */
     public static Person fetchPersonById(String personID) {
-        File inputFile = new File(FILE_NAME);
-        if (!inputFile.exists()) {
+        long started = System.nanoTime();
+        try {
+            Person person = store(personID).read(personID, Person::hydrate);
+            METRICS.record(Operation.FETCH_PERSON, started, person == null ? FailureReason.NOT_FOUND : null);
+            return person;
+        } catch (IOException e) {
+            METRICS.record(Operation.FETCH_PERSON, started, FailureReason.IO);
+            LOG.log(Level.WARNING, "Error reading data file", e);
             return null;
         }
+    }
 
-        // Read file line by line and parse fields
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
-            String currentLine;
-            while ((currentLine = reader.readLine()) != null) {
-                String[] data = currentLine.split(",", -1);
-                if (data.length < 5) {
-                    continue; // Skip malformed lines
-                }
-
-                if (data[0].equals(personID)) {
-                    // Found matching person, return new Person object
-                    String firstName = data[1];
-                    String lastName = data[2];
-                    String address = data[3];
-                    String birthdate = data[4];
-
-                    return new Person(personID, firstName, lastName, address, birthdate);
-                }
-            }
+    /**
+     * Finds people whose field starts with the given prefix, ignoring case,
+     * e.g. search(SearchField.SUBURB, "Melb") or search(SearchField.LAST_NAME, "Smith").
+     * Results come in order of the field's value and each person is read from
+     * the file only as the stream reaches them, so limit() or findFirst() stop early.
+     * @param field The field to match
+     * @param prefix The start of the value to match; "" matches everyone with a value
+     * @return stream of matching persons, empty if the data file could not be read;
+     *         an UncheckedIOException is thrown from the stream if a later read fails
+     */
+    public static Stream<Person> search(SearchField field, String prefix) {
+        try {
+            return shards().search(field, prefix, Person::hydrate);
         } catch (IOException e) {
-            System.out.println("Error reading data file: " + e.getMessage());
+            LOG.log(Level.WARNING, "Error reading data file", e);
+            return Stream.empty();
         }
+    }
+
+    /**
+     * Lazily reads everyone in the data file, in file order.
+     * Use parallel() on the stream to read the file on several threads.
+     * @return stream of persons, empty if the data file could not be read
+     */
+    public static Stream<Person> scan() {
+        return scan(ScanFilter.all());
+    }
 
-        return null; // Person not found
+    /**
+     * Lazily reads the people matching a filter, in file order,
+     * e.g. scan(ScanFilter.all().bornBetween("01-01-2000", "31-12-2005").suspended(true)).
+     * The filter is checked as the file is read, so people it leaves out are never fully parsed.
+     * Returns the people current when called; an UncheckedIOException is thrown from
+     * the stream if a later read fails, and a ConcurrentModificationException if the
+     * file is rewritten or compacted meanwhile.
+     * @param filter Conditions a person must meet
+     * @return stream of matching persons, empty if the data file could not be read
+     */
+    public static Stream<Person> scan(ScanFilter filter) {
+        try {
+            return shards().scan(filter, Person::hydrate);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error reading data file", e);
+            return Stream.empty();
+        }
     }
 
     /**
      * Updates personal details of a person identified by currentPersonID.
      * Enforces validation and business rules:
-     * - Validates new ID, address, birthdate format
+     * - Validates new ID, address, birthdate format, and the fields as validateFields does
      * - Restricts changing name/address if birthdate is changed
      * - Under 18 cannot change address
      * - If original ID starts with even digit, ID cannot be changed
+     * - New ID must not belong to another person
+     * The change is written as set by setUpdateMode (appended version by default).
      * @return true if update is successful, false otherwise
      */
     public static boolean updatePersonalDetails(
@@ -114,89 +162,146 @@ public class Person {
         String newAddress,
         String newBirthdate
     ) {
+        return applyUpdate(currentPersonID, newPersonID, newFirstName, newLastName, newAddress, newBirthdate) == null;
+    }
+
+    // As updatePersonalDetails, returning why the update was refused, or null if it was written
+    static FailureReason applyUpdate(
+        String currentPersonID,
+        String newPersonID,
+        String newFirstName,
+        String newLastName,
+        String newAddress,
+        String newBirthdate
+    ) {
+        long started = System.nanoTime();
         // Validate new input values using static methods
-        if (!validatePersonID(newPersonID)) {
-            return false;
-        }
-        if (!validateAddress(newAddress)) {
-            return false;
+        if (!validateFields(newPersonID, newFirstName, newLastName, newAddress, newBirthdate)
+                || !validatePersonID(newPersonID) || !validateAddress(newAddress) || !validateDate(newBirthdate)) {
+            METRICS.record(Operation.UPDATE_PERSONAL_DETAILS, started, FailureReason.VALIDATION);
+            return FailureReason.VALIDATION;
         }
-        if (!validateDate(newBirthdate)) {
-            return false;
+
+        // Hold both IDs so no other writer changes either person between the checks and the write
+        ShardedStore shards = shards();
+        FailureReason failure;
+        shards.lockIds(currentPersonID, newPersonID);
+        try {
+            failure = checkAndUpdate(shards, currentPersonID, newPersonID, newFirstName, newLastName, newAddress, newBirthdate);
+        } catch (IOException e) {
+            failure = FailureReason.IO;
+        } finally {
+            shards.unlockIds(currentPersonID, newPersonID);
         }
+        METRICS.record(Operation.UPDATE_PERSONAL_DETAILS, started, failure);
+        return failure;
+    }
 
+    // Applies the update business rules against the stored person, then writes the new version
+    // Returns why the update was refused, or null if it was written
+    private static FailureReason checkAndUpdate(
+        ShardedStore shards,
+        String currentPersonID,
+        String newPersonID,
+        String newFirstName,
+        String newLastName,
+        String newAddress,
+        String newBirthdate
+    ) throws IOException {
         // Fetch existing person to check business logic constraints
-        Person existingPerson = fetchPersonById(currentPersonID);
-        if (existingPerson == null) {
-            return false;
+        PersonRecord existing = shards.shardFor(currentPersonID).get(currentPersonID);
+        if (existing == null) {
+            return FailureReason.NOT_FOUND;
         }
+        PersonRecord updated = new PersonRecord(newPersonID, newFirstName, newLastName, newAddress, newBirthdate);
+        FailureReason broken = checkUpdateRules(existing, updated);
+        if (broken != null) {
+            return broken;
+        }
+
+        // Write the new version; fails if the new ID belongs to someone else
+        return shards.update(currentPersonID, updated, UPDATE_MODE) ? null : FailureReason.DUPLICATE;
+    }
 
-        boolean birthdateChanging = !existingPerson.birthdate.equals(newBirthdate);
-        int currentAge = existingPerson.getAge(existingPerson.birthdate);
+    // Returns RULE if the update breaks a business rule for the stored person, otherwise null
+    private static FailureReason checkUpdateRules(PersonRecord existing, PersonRecord updated) {
+        boolean birthdateChanging = !existing.getBirthdate().equals(updated.getBirthdate());
+        int currentAge = getAge(existing.getBirthdate());
 
         // If birthdate changes, name and address must remain unchanged
         if (birthdateChanging && (
-            !existingPerson.firstName.equals(newFirstName) ||
-            !existingPerson.lastName.equals(newLastName) ||
-            !existingPerson.address.equals(newAddress)
+            !existing.getFirstName().equals(updated.getFirstName()) ||
+            !existing.getLastName().equals(updated.getLastName()) ||
+            !existing.getAddress().equals(updated.getAddress())
         )) {
-            return false;
+            return FailureReason.RULE;
         }
 
         // Under 18 cannot change address
-        if (currentAge < 18 && !existingPerson.address.equals(newAddress)) {
-            return false;
+        if (currentAge < 18 && !existing.getAddress().equals(updated.getAddress())) {
+            return FailureReason.RULE;
         }
 
         // If original ID starts with even digit, ID cannot be changed
-        if (!newPersonID.equals(existingPerson.personID) &&
-            Character.getNumericValue(existingPerson.personID.charAt(0)) % 2 == 0) {
-            return false;
+        if (!updated.getPersonID().equals(existing.getPersonID()) &&
+            Character.getNumericValue(existing.getPersonID().charAt(0)) % 2 == 0) {
+            return FailureReason.RULE;
         }
+        return null;
+    }
 
-        // Update file: create a temporary file with updated data
-        try {
-            File inputFile = new File(FILE_NAME);
-            File tempFile = new File("temp_persons.txt");
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile));
-
-            String currentLine;
-            while ((currentLine = reader.readLine()) != null) {
-                String[] data = currentLine.split(",", -1);
-
-                if (data[0].equals(currentPersonID)) {
-                    // Preserve all fields after index 4 (e.g. demerit points) intact
-                    StringBuilder extraFields = new StringBuilder();
-                    for (int i = 5; i < data.length; i++) {
-                        extraFields.append(",").append(data[i]);
-                    }
-
-                    // Write updated person info
-                    writer.write(newPersonID + "," + newFirstName + "," + newLastName + "," +
-                                newAddress + "," + newBirthdate + extraFields.toString());
-                } else {
-                    // Write unchanged line for other persons
-                    writer.write(currentLine);
-                }
-                writer.newLine();
+    /**
+     * Applies many personal detail updates with one rewrite of the data file,
+     * instead of one rewrite per update.
+     * Each update is checked like updatePersonalDetails, against the person as stored
+     * before the batch. A person may be changed by only one update per batch: a
+     * later update naming either ID of an accepted one is refused as DUPLICATE.
+     * The accepted updates are written together, whatever setUpdateMode says,
+     * and the data file is swapped for the rewritten one in a single step, so
+     * readers see all of them or none.
+     * With several shards (see setShardCount) that holds per shard file; an update
+     * moving a person to another shard is applied on its own after the rest.
+     * @param updates Changes to apply, in order
+     * @return whether each update was applied, and why not; if a file could not
+     *         be rewritten, none of its updates are applied and each reports IO
+     */
+    public static BatchUpdateReport updatePersonalDetails(List<PersonUpdate> updates) {
+        long started = System.nanoTime();
+        FailureReason[] results = new FailureReason[updates.size()];
+        List<Integer> checked = new ArrayList<>();
+        List<String> currentIDs = new ArrayList<>();
+        List<PersonRecord> records = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            PersonUpdate update = updates.get(i);
+            if (!validateFields(update.getNewPersonID(), update.getNewFirstName(), update.getNewLastName(),
+                                update.getNewAddress(), update.getNewBirthdate())
+                    || !validatePersonID(update.getNewPersonID()) || !validateAddress(update.getNewAddress())
+                    || !validateDate(update.getNewBirthdate())) {
+                results[i] = FailureReason.VALIDATION;
+                continue;
             }
+            checked.add(i);
+            currentIDs.add(update.getCurrentPersonID());
+            records.add(new PersonRecord(update.getNewPersonID(), update.getNewFirstName(), update.getNewLastName(),
+                                         update.getNewAddress(), update.getNewBirthdate()));
+        }
 
-            writer.close();
-            reader.close();
-
-            // Replace original file with updated temp file
-            if (!inputFile.delete()) {
-                return false;
-            }
-            if (!tempFile.renameTo(inputFile)) {
-                return false;
+        // Hold every ID so no single update slips in between the checks and the rewrite
+        ShardedStore shards = shards();
+        shards.lockAll();
+        try {
+            FailureReason[] stored = shards.updateAll(currentIDs, records, Person::checkUpdateRules);
+            for (int i = 0; i < stored.length; i++) {
+                results[checked.get(i)] = stored[i];
             }
+        } finally {
+            shards.unlockAll();
+        }
 
-            return true;
-        } catch (IOException e) {
-            return false;
+        for (FailureReason result : results) {
+            METRICS.record(Operation.UPDATE_PERSONAL_DETAILS, started, result);
         }
+        return new BatchUpdateReport(results, (System.nanoTime() - started) / 1_000_000);
     }
 
     /**
@@ -204,38 +309,51 @@ public class Person {
      * Validates date and points range.
      * Accumulates points for offenses within the last 2 years.
      * Updates suspension status based on age and total points.
-     * Appends demerit info to the file.
+     * Appends demerit info to the file, waiting until it is written as durably as set by setDurability.
      * @param offenseDate Date string of offense in dd-MM-yyyy format.
      * @param points Number of points (1 to 6).
      * @return "Success" or "Failed"
      */
     public String addDemeritPoints(String offenseDate, int points) {
+        return addDemeritPointsAsync(offenseDate, points).join();
+    }
+
+    /**
+     * Same as addDemeritPoints, but returns once the offence is queued for the file.
+     * Suspension status is updated straight away.
+     * @param offenseDate Date string of offense in dd-MM-yyyy format.
+     * @param points Number of points (1 to 6).
+     * @return future completed with "Success" once written, or "Failed"
+     */
+    public CompletableFuture<String> addDemeritPointsAsync(String offenseDate, int points) {
+        long started = System.nanoTime();
         // Validate offense date format and points range
-        if (!validateDate(offenseDate) || points < 1 || points > 6) return "Failed";
+        int offense = DateCodec.parse(offenseDate);
+        if (offense == DateCodec.INVALID || points < 1 || points > 6) {
+            METRICS.record(Operation.ADD_DEMERIT_POINTS, started, FailureReason.VALIDATION);
+            return CompletableFuture.completedFuture("Failed");
+        }
 
+        PersonStore store = store(personID);
+        store.idLocks().lock(personID);
         try {
-            SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-            sdf.setLenient(false);  // Strict parsing
-            Date offense = sdf.parse(offenseDate);
-
             // Store points, accumulating if offense already exists
-            int prev = demeritPoints.getOrDefault(offense, 0);
-            demeritPoints.put(offense, prev + points);
+            demeritPoints.add(offense, points);
 
             // Recalculate suspension status based only on the past 2 years
             int totalPoints = calculatePointsWithinTwoYears();
-
-            int age = getAge(birthdate);
-            isSuspended = (age < 21 && totalPoints > 6) || (age >= 21 && totalPoints > 12);
-
-            // Log the offense to the file
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(FILE_NAME, true))) {
-                writer.write(personID + ",Demerit:" + points + ",Date:" + offenseDate);
-                writer.newLine();
-            }
-            return "Success";
-        } catch (ParseException | IOException e) {
-            return "Failed";
+            isSuspended = totalPoints > getSuspensionThreshold();
+
+            // Queue the offense for the file under the lock. An ID change or rewrite takes the same
+            // lock and then waits for this line to be written first, so it cannot land after the
+            // ID's Moved line and be left behind under the old ID (see PersonStore.awaitWritten)
+            return store.addDemeritAsync(personID, offense, points, DURABILITY)
+                .handle((written, e) -> {
+                    METRICS.record(Operation.ADD_DEMERIT_POINTS, started, e == null ? null : FailureReason.IO);
+                    return e == null ? "Success" : "Failed";
+                });
+        } finally {
+            store.idLocks().unlock(personID);
         }
     }
 
@@ -244,6 +362,79 @@ public class Person {
         return isSuspended;
     }
 
+    /**
+     * Points this person held on a given date, from the offences on record dated up to it:
+     * the total of those whose 2-year window was still open that day.
+     * @param date Date string in "dd-MM-yyyy" format
+     * @return the points, or -1 if the date is invalid
+     */
+    public int getDemeritPointsOn(String date) {
+        int day = DateCodec.parse(date);
+        return day == DateCodec.INVALID ? -1 : demeritPoints.pointsOn(day);
+    }
+
+    /**
+     * Checks whether this person was suspended on a given date: more points that day
+     * (see getDemeritPointsOn) than the threshold for their age that day.
+     * @param date Date string in "dd-MM-yyyy" format
+     * @return true if suspended then, false if not or the date is invalid
+     */
+    public boolean isSuspendedOn(String date) {
+        int day = DateCodec.parse(date);
+        return day != DateCodec.INVALID && demeritPoints.pointsOn(day) > suspensionThreshold(birthdate, day);
+    }
+
+    /**
+     * Returns the demerit points recorded for this person.
+     * @return offence date (dd-MM-yyyy) to points, oldest first
+     */
+    public Map<String, Integer> getDemeritPoints() {
+        Map<String, Integer> history = new LinkedHashMap<>();
+        for (int i = 0; i < demeritPoints.size(); i++) {
+            history.put(DateCodec.format(demeritPoints.dayAt(i)), demeritPoints.pointsAt(i));
+        }
+        return history;
+    }
+
+    // This person's details as stored, e.g. to send them elsewhere
+    PersonRecord toRecord() {
+        return new PersonRecord(personID, firstName, lastName, address, birthdate);
+    }
+
+    // Builds a Person from its stored record and offence history (null if not found)
+    private static Person hydrate(PersonRecord record, DemeritWindow history) {
+        if (record == null) {
+            return null; // Person not found
+        }
+        Person person = new Person(record.getPersonID(), record.getFirstName(), record.getLastName(),
+                                   record.getAddress(), record.getBirthdate());
+        if (history != null) {
+            person.demeritPoints = history.copy();
+            person.isSuspended = person.calculatePointsWithinTwoYears() > person.getSuspensionThreshold();
+        }
+        return person;
+    }
+
+    /**
+     * Validates what the format checks below leave open, for every field of a person.
+     * Rules:
+     * - First and last name must be given and not empty
+     * - No field may contain ',', '\r' or '\n': the data file keeps one entry per line,
+     *   fields split on commas, so these would break the entry or add another
+     * Fields that are null are left to their own check.
+     * @return true if valid, false otherwise
+     */
+    public static boolean validateFields(String personID, String firstName, String lastName, String address,
+                                         String birthdate) {
+        if (firstName == null || firstName.isEmpty() || lastName == null || lastName.isEmpty()) return false;
+        for (String field : new String[] {personID, firstName, lastName, address, birthdate}) {
+            if (field != null && (field.indexOf(',') >= 0 || field.indexOf('\r') >= 0 || field.indexOf('\n') >= 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Validates personID string.
      * Rules:
@@ -305,15 +496,7 @@ public class Person {
      * @return true if valid date format, false otherwise
      */
     public static boolean validateDate(String date) {
-        if (date == null) return false;
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-            sdf.setLenient(false); // <-- strict checking
-            sdf.parse(date);
-            return true;
-        } catch (ParseException e) {
-            return false;
-        }
+        return DateCodec.isValid(date);
     }
 
     /**
@@ -321,65 +504,219 @@ public class Person {
      * @param birthDateStr Date string in "dd-MM-yyyy" format
      * @return Age in years, or 0 if parsing error
      */
-    private int getAge(String birthDateStr) {
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-            Date birthDate = sdf.parse(birthDateStr);
-            Calendar birth = Calendar.getInstance();
-            birth.setTime(birthDate);
-            Calendar today = Calendar.getInstance();
-
-            int age = today.get(Calendar.YEAR) - birth.get(Calendar.YEAR);
-
-            // Adjust if birthdate has not occurred yet this year
-            if (today.get(Calendar.DAY_OF_YEAR) < birth.get(Calendar.DAY_OF_YEAR)) age--;
-            return age;
-        } catch (ParseException e) {
-            return 0;
-        }
+    private static int getAge(String birthDateStr) {
+        int birth = DateCodec.parse(birthDateStr);
+        if (birth == DateCodec.INVALID) return 0;
+        return DateCodec.yearsBetween(birth, DateCodec.today());
     }
 
     private int getSuspensionThreshold() {
-        int age = getAge(birthdate);
+        return suspensionThreshold(birthdate, DateCodec.today());
+    }
+
+    /**
+     * Points a person may hold before being suspended.
+     * Rules:
+     * - Under 21: 6
+     * - Otherwise: 12
+     * @param birthdate Date string in "dd-MM-yyyy" format (unparseable counts as age 0)
+     * @param day The day to take the age on, as an epoch-day
+     * @return the threshold; suspended means strictly more points than this
+     */
+    static int suspensionThreshold(String birthdate, int day) {
+        return suspensionThreshold(DateCodec.parse(birthdate), day);
+    }
+
+    // Same, for a birthdate already parsed to an epoch-day (DateCodec.INVALID counts as age 0)
+    static int suspensionThreshold(int birthDay, int day) {
+        int age = birthDay == DateCodec.INVALID ? 0 : DateCodec.yearsBetween(birthDay, day);
         return (age < 21) ? 6 : 12;
     }
 
+    // First day the threshold is 12: the 21st birthday, or Integer.MAX_VALUE for an unparseable birthdate
+    static int adultFrom(int birthDay) {
+        if (birthDay == DateCodec.INVALID) {
+            return Integer.MAX_VALUE;
+        }
+        int adult = DateCodec.plusYears(birthDay, 21);
+        return DateCodec.yearsBetween(birthDay, adult) < 21 ? adult + 1 : adult; // Born 29 Feb: 1 Mar in a common year
+    }
+
     /**
-     * Calculates total demerit points accumulated within the last 2 years
-     * @return sum of points in the last 2 years
+     * Calculates total demerit points accumulated within the last 2 years.
+     * Only windows starting at an offence that has not expired are counted.
+     * @return sum of points in the worst open 2-year window
      */
     private int calculatePointsWithinTwoYears() {
-        List<Date> offenseDates = new ArrayList<>(demeritPoints.keySet());
-        Collections.sort(offenseDates);
-
-        int maxPoints = 0;
-        for (Date startDate : offenseDates) {
-            Calendar cal = Calendar.getInstance();
-            cal.setTime(startDate);
-            cal.add(Calendar.YEAR, 2);
-            Date endDate = cal.getTime();
-
-            int total = 0;
-            for (Map.Entry<Date, Integer> entry : demeritPoints.entrySet()) {
-                Date d = entry.getKey();
-                if (!d.before(startDate) && !d.after(endDate)) {
-                    total += entry.getValue();
-                }
-            }
+        return demeritPoints.maxWindowPoints(DateCodec.today());
+    }
 
-            if (total > maxPoints) {
-                maxPoints = total;
-            }
+    /**
+     * Starts compacting the data file on a background thread.
+     * Lookups keep being served from the index while the compacted copy is written.
+     * @return future completed with bytes reclaimed and time taken
+     */
+    public static CompletableFuture<CompactionResult> compactInBackground() {
+        return shards().compactInBackground();
+    }
+
+    /**
+     * Saves a snapshot of the index next to the data file ("<file>.snapshot"), so the
+     * next process to open the file reads only what was written after it.
+     * Snapshots are also written in the background as the file grows (see setCheckpointInterval).
+     * @return true if a snapshot was written, false if nothing changed since the last one or writing failed
+     */
+    public static boolean checkpoint() {
+        try {
+            return shards().checkpoint();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error writing index snapshot", e);
+            return false;
+        }
+    }
+
+    /**
+     * Works out who is suspended today across the whole data file.
+     * The file is read once and people are evaluated in parallel.
+     * @return suspended IDs and point totals, or null if the file could not be read
+     */
+    public static SuspensionReport evaluateSuspensions() {
+        try {
+            return shards().evaluateSuspensions(DateCodec.today(), ForkJoinPool.commonPool());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error reading data file", e);
+            return null;
+        }
+    }
 
-            // Early exit if already enough to suspend
-            if (maxPoints > getSuspensionThreshold()) break;
+    /**
+     * Finds everyone who was suspended at any time between two dates, and when,
+     * as the offences on record now have it. Only people with offences are read,
+     * in parallel, and each is evaluated just on the days their points or threshold changed.
+     * @param from First date, "dd-MM-yyyy"
+     * @param to Last date, inclusive
+     * @return the periods per person, or null if a date is invalid, from is after to, or the file could not be read
+     */
+    public static SuspensionPeriods suspensionsBetween(String from, String to) {
+        int fromDay = DateCodec.parse(from);
+        int toDay = DateCodec.parse(to);
+        if (fromDay == DateCodec.INVALID || toDay == DateCodec.INVALID || fromDay > toDay) {
+            return null;
         }
+        try {
+            return shards().suspensionPeriods(fromDay, toDay, ForkJoinPool.commonPool());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error reading data file", e);
+            return null;
+        }
+    }
 
-        return maxPoints;
+    /**
+     * Has the listener told whenever someone in the current data file (every shard
+     * of it) becomes suspended or is reinstated, by a write or by time passing.
+     * Only people whose status can change are ever re-evaluated: those just written,
+     * and suspended people on the day an offence expires or they turn 21
+     * (see SuspensionMonitor). Returns once current statuses are known; who is
+     * suspended already is not reported, see evaluateSuspensions for that.
+     * If the data file cannot be read to find them out, that is logged and retried
+     * in the background, and changes are reported once a retry has succeeded.
+     * @param listener Called on a background thread for each change
+     */
+    public static void addSuspensionListener(SuspensionListener listener) {
+        ShardedStore shards = shards();
+        for (int i = 0; i < shards.count(); i++) {
+            shards.shard(i).suspensionMonitor().addListener(listener);
+        }
+    }
+
+    /**
+     * Stops telling the listener of changes in the current data file.
+     * Once the last listener is gone, nothing is tracked any more.
+     * @param listener A listener added with addSuspensionListener
+     */
+    public static void removeSuspensionListener(SuspensionListener listener) {
+        ShardedStore shards = shards();
+        for (int i = 0; i < shards.count(); i++) {
+            shards.shard(i).suspensionMonitor().removeListener(listener);
+        }
+    }
+
+    /**
+     * Metrics of every storage operation so far, also published over JMX.
+     * @return the JVM-wide metrics; prometheusText() dumps them
+     */
+    public static StorageMetrics metrics() {
+        return METRICS;
+    }
+
+    /**
+     * Adds every valid row of a CSV feed in one go, instead of one addPerson per row.
+     * Rows are personID,firstName,lastName,address,birthdate, as in the data file.
+     * Rows are validated in parallel by the addPerson rules, then the valid ones are
+     * appended in one streamed write and fsynced once; a row whose ID is already
+     * in the data file, or earlier in the feed, is rejected as a duplicate.
+     * @param feedFile Path of the feed
+     * @return rows imported and why each other row was rejected, or null if a file could not be read or written
+     */
+    public static ImportReport importFeed(String feedFile) {
+        try {
+            return BulkImporter.importFeed(shards(), Paths.get(feedFile), ForkJoinPool.commonPool());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error importing feed", e);
+            return null;
+        }
     }
 
     // Allows setting a custom file name for storage (useful for testing)
     public static void setFileName(String fileName) {
         FILE_NAME = fileName;
     }
+
+    // Chooses between appending new versions (default) and rewriting the whole file on update
+    public static void setUpdateMode(UpdateMode mode) {
+        UPDATE_MODE = mode;
+    }
+
+    // Chooses how durable added persons and demerits must be before the add returns
+    public static void setDurability(DurabilityPolicy durability) {
+        DURABILITY = durability;
+    }
+
+    // Chooses how the data file is laid out (CSV by default); a file keeps the format it was first opened with
+    public static void setStorageFormat(StorageFormat format) {
+        STORAGE_FORMAT = format;
+    }
+
+    // Person records cached per data file for fetchPersonById (10,000 by default, 0 for none); see metrics() for hits
+    public static void setCacheSize(int records) {
+        PersonStore.setCacheSize(records);
+    }
+
+    // Bytes of new entries after which the index is snapshotted again in the background (64 MB by default, 0 for never)
+    public static void setCheckpointInterval(long bytes) {
+        PersonStore.setCheckpointInterval(bytes);
+    }
+
+    /**
+     * Splits the data across shardCount files by a hash of personID (1, one plain file, by default).
+     * Each person is read and written in one file; searches, scans and fleet-wide
+     * work read every file in parallel. Use Resharder to move existing data to a new count.
+     * @throws IllegalArgumentException if shardCount is below 1
+     */
+    public static void setShardCount(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1, not " + shardCount);
+        }
+        SHARD_COUNT = shardCount;
+    }
+
+    // Indexes over the current data files, shared by all lookups and writes
+    private static ShardedStore shards() {
+        return ShardedStore.forFile(FILE_NAME, SHARD_COUNT, STORAGE_FORMAT);
+    }
+
+    // Index over the data file holding the given person
+    private static PersonStore store(String personID) {
+        return shards().shardFor(personID);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+package softwareengineerassignment4;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking front to the Person operations, for request handlers that must
+ * not tie up a thread per call. Every method returns at once with a future;
+ * the blocking work runs on the facade's executor, and adds and demerits then
+ * wait on the store's GroupCommitWriter without holding a thread.
+ * Rules:
+ * - Operations naming the same person ID run one after another in call order,
+ *   so an add followed by a demerit for that person is never reordered, and a
+ *   fetch sees every write called before it. An ID change is ordered on both IDs
+ * - Operations on different people run concurrently
+ * - Results are those of the blocking Person methods; failures complete the
+ *   future normally with false, null or "Failed", as those methods return
+ * The default executor runs each operation on a virtual thread when the JVM
+ * has them (Java 21 on), and otherwise on a pool of up to 256 daemon threads.
+ */
+public final class PersonAsync {
+    private static final int PLATFORM_THREADS = 256;
+    private static final Executor DEFAULT_EXECUTOR = defaultExecutor();
+
+    private final Executor executor;
+    private final Map<String, CompletableFuture<Void>> tails = new HashMap<>(); // Last operation queued per ID; guarded by itself
+
+    // Runs operations on the default executor
+    public PersonAsync() {
+        this(DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * @param executor Runs the blocking part of each operation
+     */
+    public PersonAsync(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * As new Person(...).addPerson().
+     * @return future completed with true once the person is written, false otherwise
+     */
+    public CompletableFuture<Boolean> addPerson(String personID, String firstName, String lastName,
+                                                String address, String birthdate) {
+        Person person = new Person(personID, firstName, lastName, address, birthdate);
+        return inOrder(person::addPersonAsync, personID);
+    }
+
+    /**
+     * As Person.fetchPersonById.
+     * @return future completed with the person, or null if not found
+     */
+    public CompletableFuture<Person> fetchPersonById(String personID) {
+        return inOrder(() -> CompletableFuture.completedFuture(Person.fetchPersonById(personID)), personID);
+    }
+
+    /**
+     * As Person.updatePersonalDetails, ordered after earlier operations on both IDs.
+     * @return future completed with true if the update was made
+     */
+    public CompletableFuture<Boolean> updatePersonalDetails(String currentPersonID, String newPersonID,
+                                                            String newFirstName, String newLastName,
+                                                            String newAddress, String newBirthdate) {
+        return inOrder(() -> CompletableFuture.completedFuture(Person.updatePersonalDetails(
+            currentPersonID, newPersonID, newFirstName, newLastName, newAddress, newBirthdate)),
+            currentPersonID, newPersonID);
+    }
+
+    /**
+     * As fetching the person and calling addDemeritPoints on them.
+     * @return future completed with "Success" once written, or "Failed" if the person
+     *         does not exist or the offence is invalid
+     */
+    public CompletableFuture<String> addDemeritPoints(String personID, String offenseDate, int points) {
+        return inOrder(() -> {
+            Person person = Person.fetchPersonById(personID);
+            return person == null ? CompletableFuture.completedFuture("Failed")
+                                  : person.addDemeritPointsAsync(offenseDate, points);
+        }, personID);
+    }
+
+    /**
+     * Runs an operation on the executor once every operation queued before it on
+     * any of the IDs has finished, and holds back later ones until it has.
+     * Queuing is one step under one lock, so each operation only ever waits on
+     * earlier ones and two operations on the same pair of IDs cannot wait on each other.
+     */
+    private <T> CompletableFuture<T> inOrder(Supplier<CompletableFuture<T>> operation, String... personIDs) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = CompletableFuture.completedFuture(null);
+        synchronized (tails) {
+            for (int i = 0; i < personIDs.length; i++) {
+                if (i > 0 && personIDs[i].equals(personIDs[0])) {
+                    continue; // Same ID twice, e.g. an update that keeps the ID
+                }
+                CompletableFuture<Void> before = tails.put(personIDs[i], done);
+                if (before != null) {
+                    previous = previous.thenCombine(before, (a, b) -> null);
+                }
+            }
+        }
+
+        // The caller's future completes after the ID is released
+        return previous.thenComposeAsync(ready -> operation.get(), executor).whenComplete((value, e) -> {
+            synchronized (tails) {
+                for (String personID : personIDs) {
+                    tails.remove(personID, done);
+                }
+            }
+            done.complete(null);
+        });
+    }
+
+    // IDs with an operation still queued or running
+    int pending() {
+        synchronized (tails) {
+            return tails.size();
+        }
+    }
+
+    // The default executor, shared with PersonServer's request handling
+    static Executor sharedExecutor() {
+        return DEFAULT_EXECUTOR;
+    }
+
+    // Virtual threads through reflection, so the code still builds and runs on Java 17
+    private static Executor defaultExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = r -> {
+                Thread thread = new Thread(r, "person-async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(PLATFORM_THREADS, PLATFORM_THREADS, 30, TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<>(), factory);
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+}
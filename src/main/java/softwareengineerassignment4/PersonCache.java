@@ -0,0 +1,193 @@
+package softwareengineerassignment4;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of person records by ID, in front of a PersonStore's file reads.
+ * Lookups of the same few people then cost a hash lookup instead of a read and
+ * a parse of their entry. Offence histories are not cached: the store already
+ * holds them in memory.
+ * Eviction is LRU with TinyLFU admission: every lookup is counted in a small
+ * frequency sketch, and once the cache is full a record only gets in if its ID
+ * has been looked up more often than the least recently used one it would
+ * replace. One-off lookups then pass through without pushing hot people out,
+ * or leaving garbage for the collector to copy.
+ * Rules:
+ * - The store updates or drops an ID's entry whenever the ID index changes for
+ *   it, and clears the cache whenever the index starts over, all under its write
+ *   lock; entries are only added under its read lock, so a cached record is
+ *   always the one the index points at
+ * - The capacity is split over 16 segments, each its own LRU and sketch under
+ *   its own monitor, so concurrent lookups of different people rarely wait on each other
+ * - Sketch counters stop at 15 and are all halved after ten lookups per record
+ *   the segment holds, so people who stop being looked up lose their place
+ * - Capacity 0 turns caching off
+ * Hits, misses and evictions are counted in StorageMetrics.
+ */
+final class PersonCache {
+    private static final int SEGMENTS = 16;
+    private static final int[] SEEDS = {0x9E3779B9, 0x7F4A7C15, 0x165667B1, 0x27D4EB2F}; // One per sketch row
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private volatile int segmentCapacity;
+
+    PersonCache(int capacity) {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+        setCapacity(capacity);
+    }
+
+    // Changes the number of records held; the cache starts over empty
+    void setCapacity(int capacity) {
+        int perSegment = capacity <= 0 ? 0 : Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.resetSketch(perSegment);
+            }
+        }
+        segmentCapacity = perSegment;
+    }
+
+    // The cached record, or null, counting a hit or a miss
+    PersonRecord get(String personID) {
+        if (segmentCapacity == 0) {
+            return null;
+        }
+        Segment segment = segmentFor(personID);
+        PersonRecord record;
+        synchronized (segment) {
+            segment.recordLookup(personID);
+            record = segment.get(personID);
+        }
+        if (record == null) {
+            StorageMetrics.global().cacheMiss();
+        } else {
+            StorageMetrics.global().cacheHit();
+        }
+        return record;
+    }
+
+    // Caches a record just read, if there is room or it is looked up more than the record it would evict
+    void put(PersonRecord record) {
+        if (segmentCapacity == 0) {
+            return;
+        }
+        String personID = record.getPersonID();
+        Segment segment = segmentFor(personID);
+        synchronized (segment) {
+            if (segment.size() >= segmentCapacity && !segment.containsKey(personID)) {
+                String eldest = segment.keySet().iterator().next();
+                if (segment.frequency(personID) <= segment.frequency(eldest)) {
+                    return;
+                }
+            }
+            segment.put(personID, record);
+        }
+    }
+
+    // Replaces the ID's record if it is cached; new versions of uncached people are not let in
+    void refresh(PersonRecord record) {
+        if (segmentCapacity == 0) {
+            return;
+        }
+        Segment segment = segmentFor(record.getPersonID());
+        synchronized (segment) {
+            segment.replace(record.getPersonID(), record);
+        }
+    }
+
+    void remove(String personID) {
+        Segment segment = segmentFor(personID);
+        synchronized (segment) {
+            segment.remove(personID);
+        }
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String personID) {
+        int h = personID.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    // Access-ordered, so the eldest entry is the least recently used
+    private final class Segment extends LinkedHashMap<String, PersonRecord> {
+        private static final long serialVersionUID = 1L;
+
+        private byte[] counts = new byte[0]; // Count-min sketch of lookups, one row per seed, sharing the array
+        private int lookups;                 // Since the counts were last halved
+
+        Segment() {
+            super(16, 0.75f, true);
+        }
+
+        void resetSketch(int capacity) {
+            counts = new byte[capacity == 0 ? 0 : Integer.highestOneBit(capacity * 16 - 1) << 1];
+            lookups = 0;
+        }
+
+        void recordLookup(String personID) {
+            if (counts.length == 0) {
+                return; // Caching was just turned off
+            }
+            int h = personID.hashCode();
+            for (int seed : SEEDS) {
+                int slot = slot(h, seed);
+                if (counts[slot] < 15) {
+                    counts[slot]++;
+                }
+            }
+            if (++lookups >= counts.length * 10 / 16) {
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] >>= 1;
+                }
+                lookups /= 2;
+            }
+        }
+
+        // Lookups of the ID lately, possibly overestimated by other IDs sharing all its slots
+        int frequency(String personID) {
+            int h = personID.hashCode();
+            int frequency = 15;
+            for (int seed : SEEDS) {
+                frequency = Math.min(frequency, counts[slot(h, seed)]);
+            }
+            return frequency;
+        }
+
+        // Murmur3's finaliser over the hash and the row's seed, so the rows are independent
+        private int slot(int h, int seed) {
+            int x = (h ^ seed) * 0x85EBCA6B;
+            x = (x ^ (x >>> 13)) * 0xC2B2AE35;
+            return (x ^ (x >>> 16)) & (counts.length - 1);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PersonRecord> eldest) {
+            if (size() > segmentCapacity) {
+                StorageMetrics.global().cacheEviction();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package softwareengineerassignment4;
+
+/**
+ * Packs a personID into a single long, losslessly.
+ * Layout, high to low bits (58 bits used, so a packed ID is never negative):
+ * - 3 bits each: first two chars, digits '2'-'9'
+ * - 7 bits each: middle six chars, printable ASCII (' ' to '~')
+ * - 5 bits each: last two chars, 'A'-'Z'
+ * Every ID that passes Person.validatePersonID with ASCII middle characters packs.
+ * Anything else (e.g. non-ASCII letters, or IDs written by hand into the file)
+ * returns NOT_PACKED and has to be kept as text.
+ */
+final class PersonIdCodec {
+    // Returned by pack for an ID that does not fit the layout
+    static final long NOT_PACKED = -1L;
+
+    private PersonIdCodec() {
+    }
+
+    /**
+     * Packs an ID.
+     * @param id The ID to pack
+     * @return the packed ID, or NOT_PACKED
+     */
+    static long pack(CharSequence id) {
+        if (id == null || id.length() != 10) {
+            return NOT_PACKED;
+        }
+        long packed = 0;
+        for (int i = 0; i < 2; i++) {
+            int digit = id.charAt(i) - '2';
+            if (digit < 0 || digit > 7) {
+                return NOT_PACKED;
+            }
+            packed = packed << 3 | digit;
+        }
+        for (int i = 2; i < 8; i++) {
+            int c = id.charAt(i) - ' ';
+            if (c < 0 || c > '~' - ' ') {
+                return NOT_PACKED;
+            }
+            packed = packed << 7 | c;
+        }
+        for (int i = 8; i < 10; i++) {
+            int letter = id.charAt(i) - 'A';
+            if (letter < 0 || letter > 25) {
+                return NOT_PACKED;
+            }
+            packed = packed << 5 | letter;
+        }
+        return packed;
+    }
+
+    /**
+     * Turns a packed ID back into its text.
+     * @param packed A value returned by pack (not NOT_PACKED)
+     * @return the ID
+     */
+    static String unpack(long packed) {
+        char[] id = new char[10];
+        for (int i = 9; i >= 8; i--) {
+            id[i] = (char) ('A' + (packed & 0x1F));
+            packed >>>= 5;
+        }
+        for (int i = 7; i >= 2; i--) {
+            id[i] = (char) (' ' + (packed & 0x7F));
+            packed >>>= 7;
+        }
+        for (int i = 1; i >= 0; i--) {
+            id[i] = (char) ('2' + (packed & 0x7));
+            packed >>>= 3;
+        }
+        return new String(id);
+    }
+}
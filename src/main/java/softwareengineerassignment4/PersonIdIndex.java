@@ -0,0 +1,112 @@
+package softwareengineerassignment4;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps each personID to the file offset of its current person entry.
+ * IDs are packed into longs (PersonIdCodec) and kept in an OffHeapLongMap,
+ * about 16 to 32 bytes per person depending on how full the table is, and
+ * looking one up allocates nothing. The few IDs that cannot be packed
+ * (e.g. typed into the file by hand) go in an ordinary HashMap.
+ * Not thread safe: PersonStore only touches it under its lock.
+ */
+final class PersonIdIndex {
+    static final long MISSING = OffHeapLongMap.MISSING;
+
+    private final OffHeapLongMap packed;
+    private final Map<String, Long> unpacked = new HashMap<>();
+
+    PersonIdIndex() {
+        this(new OffHeapLongMap(1024));
+    }
+
+    private PersonIdIndex(OffHeapLongMap packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * @return offset of the ID's current person entry, or MISSING
+     */
+    long get(String personID) {
+        long key = PersonIdCodec.pack(personID);
+        if (key != PersonIdCodec.NOT_PACKED) {
+            return packed.get(key);
+        }
+        Long offset = unpacked.get(personID);
+        return offset == null ? MISSING : offset;
+    }
+
+    boolean contains(String personID) {
+        return get(personID) != MISSING;
+    }
+
+    void put(String personID, long offset) {
+        long key = PersonIdCodec.pack(personID);
+        if (key != PersonIdCodec.NOT_PACKED) {
+            packed.put(key, offset);
+        } else {
+            unpacked.put(personID, offset);
+        }
+    }
+
+    void remove(String personID) {
+        long key = PersonIdCodec.pack(personID);
+        if (key != PersonIdCodec.NOT_PACKED) {
+            packed.remove(key);
+        } else {
+            unpacked.remove(personID);
+        }
+    }
+
+    int size() {
+        return packed.size() + unpacked.size();
+    }
+
+    /**
+     * Independent copy, e.g. to know which entries were current at some moment.
+     * Several threads may call get on a copy that nobody changes.
+     */
+    PersonIdIndex copy() {
+        PersonIdIndex copy = new PersonIdIndex(packed.copy());
+        copy.unpacked.putAll(unpacked);
+        return copy;
+    }
+
+    /**
+     * Writes every ID and offset, for IndexSnapshot.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        packed.writeTo(out);
+        out.writeInt(unpacked.size());
+        for (Map.Entry<String, Long> entry : unpacked.entrySet()) {
+            IndexSnapshot.writeString(entry.getKey(), out);
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    /**
+     * Replaces the contents with an index written by writeTo, read from the buffer's position.
+     */
+    void readFrom(ByteBuffer in) throws IOException {
+        packed.readFrom(in);
+        unpacked.clear();
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            unpacked.put(IndexSnapshot.readString(in), in.getLong());
+        }
+    }
+
+    // Off-heap bytes held for packed IDs
+    long memoryBytes() {
+        return packed.memoryBytes();
+    }
+
+    void clear() {
+        packed.clear();
+        unpacked.clear();
+    }
+}
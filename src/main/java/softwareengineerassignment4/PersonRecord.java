@@ -0,0 +1,80 @@
+package softwareengineerassignment4;
+
+/**
+ * Immutable copy of one person line from the data file.
+ * Line layout: personID,firstName,lastName,address,birthdate
+ *
+ * A record loaded from a binary file keeps its other fields as the encoded
+ * bytes and decodes them on first use, so loading a file makes one array per
+ * person instead of four Strings; most loaded people are never looked at.
+ */
+final class PersonRecord {
+    private final String personID;
+    private final String firstName;
+    private final String lastName;
+    private final String address;
+    private final String birthdate;
+    private final byte[] encoded;  // BinaryFormat fields not decoded yet, or null
+    private PersonRecord decoded;  // Cached decoding; a racy write is harmless, its fields are final
+
+    PersonRecord(String personID, String firstName, String lastName, String address, String birthdate) {
+        this.personID = personID;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.address = address;
+        this.birthdate = birthdate;
+        this.encoded = null;
+    }
+
+    // A record whose fields after the ID are still in BinaryFormat encoding
+    PersonRecord(String personID, byte[] encoded) {
+        this.personID = personID;
+        this.firstName = null;
+        this.lastName = null;
+        this.address = null;
+        this.birthdate = null;
+        this.encoded = encoded;
+    }
+
+    // Returns the line written to the data file for this record (without line terminator)
+    String toLine() {
+        return personID + "," + getFirstName() + "," + getLastName() + "," + getAddress() + "," + getBirthdate();
+    }
+
+    String getPersonID() {
+        return personID;
+    }
+
+    String getFirstName() {
+        return fields().firstName;
+    }
+
+    String getLastName() {
+        return fields().lastName;
+    }
+
+    String getAddress() {
+        return fields().address;
+    }
+
+    String getBirthdate() {
+        return fields().birthdate;
+    }
+
+    // The encoded fields, for writing the record back out without decoding it; null if not encoded
+    byte[] encoded() {
+        return encoded;
+    }
+
+    private PersonRecord fields() {
+        if (encoded == null) {
+            return this;
+        }
+        PersonRecord fields = decoded;
+        if (fields == null) {
+            fields = BinaryFormat.decodeFields(personID, encoded);
+            decoded = fields;
+        }
+        return fields;
+    }
+}
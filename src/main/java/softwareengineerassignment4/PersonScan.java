@@ -0,0 +1,166 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the current people in a byte range of a data file, for PersonStore.scan.
+ * The range is read a chunk at a time, so a stream that stops early (findFirst,
+ * limit) reads little of the file. trySplit halves the byte range at an entry
+ * boundary, so a parallel stream reads the file from several places at once.
+ *
+ * A person entry is returned only if it was their current version when the scan
+ * started (per a copy of the store's ID index), so every person appears once.
+ * The ScanFilter is applied through LogVisitor.wantsPerson, before the entry's
+ * fields are decoded: ID, then current version, then birthdate, then suspension.
+ * Offence histories are read from the store as each person is returned.
+ */
+final class PersonScan<T> implements Spliterator<T> {
+    private static final long CHUNK = 1 << 20; // Bytes parsed at a time, and the smallest range split off
+
+    private final PersonStore store;
+    private final PersonIdIndex current;  // Offset of each ID's current entry as the scan started
+    private final long generation;        // The file incarnation those offsets belong to
+    private final ScanFilter filter;
+    private final BiFunction<PersonRecord, DemeritWindow, T> reader;
+    private final int today;
+    private long position;                // Start of the next chunk
+    private long end;
+    private final List<T> pending = new ArrayList<>();
+    private int next;                     // Index of the next pending result
+
+    PersonScan(PersonStore store, PersonIdIndex current, long generation, long from, long to,
+               ScanFilter filter, BiFunction<PersonRecord, DemeritWindow, T> reader, int today) {
+        this.store = store;
+        this.current = current;
+        this.generation = generation;
+        this.position = from;
+        this.end = to;
+        this.filter = filter;
+        this.reader = reader;
+        this.today = today;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        while (next == pending.size()) {
+            if (position >= end) {
+                return false;
+            }
+            readChunk();
+        }
+        action.accept(pending.get(next++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        while (true) {
+            while (next < pending.size()) {
+                action.accept(pending.get(next++));
+            }
+            if (position >= end) {
+                return;
+            }
+            readChunk();
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (end - position < 2 * CHUNK) {
+            return null;
+        }
+        long split;
+        try {
+            split = store.format().splitPoint(store.file(), position, end);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (split < 0) {
+            return null;
+        }
+        // This spliterator keeps the first half, so the encounter order stays file order
+        PersonScan<T> prefix = new PersonScan<>(store, current, generation, position, split, filter, reader, today);
+        prefix.pending.addAll(pending.subList(next, pending.size()));
+        pending.clear();
+        next = 0;
+        position = split;
+        return prefix;
+    }
+
+    // Remaining bytes: proportional to the people left, which is all a split decision needs
+    @Override
+    public long estimateSize() {
+        return end - position;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    // Parses the next chunk of whole entries into pending
+    private void readChunk() {
+        pending.clear();
+        next = 0;
+        Visitor visitor = new Visitor();
+        try {
+            long consumed = position;
+            for (long chunk = CHUNK; consumed == position && position < end; chunk *= 2) {
+                // An entry longer than the chunk gets a bigger one
+                consumed = store.format().scan(store.file(), position, Math.min(end, position + chunk), visitor);
+                if (consumed == position && position + chunk >= end) {
+                    consumed = end; // Only an unreadable tail is left
+                }
+            }
+            position = consumed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Offsets in the index copy only hold for the file the scan started on
+        if (store.generation() != generation) {
+            throw new ConcurrentModificationException("Data file was replaced during the scan");
+        }
+    }
+
+    private final class Visitor implements LogVisitor {
+        private long entryOffset;
+
+        @Override
+        public void entryAt(long offset) {
+            entryOffset = offset;
+        }
+
+        @Override
+        public boolean wantsPerson(String personID, int birthDay) {
+            return filter.acceptsId(personID)
+                && current.get(personID) == entryOffset
+                && filter.acceptsBirthDay(birthDay)
+                && (!filter.checksSuspension()
+                    || store.withHistory(personID, history -> filter.acceptsHistory(birthDay, history, today)));
+        }
+
+        @Override
+        public void person(PersonRecord record) {
+            T result = store.withHistory(record.getPersonID(), history -> reader.apply(record, history));
+            if (result != null) {
+                pending.add(result);
+            }
+        }
+
+        @Override
+        public void demerit(String personID, int offenseDay, int points) {
+        }
+
+        @Override
+        public void moved(String fromPersonID, String toPersonID) {
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package softwareengineerassignment4;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HTTP service over the Person operations, on the JDK's built-in server.
+ * Requests are handled on PersonAsync's shared executor: a virtual thread
+ * each on Java 21 and later, a pool of platform threads before that.
+ * Endpoints (IDs percent-encoded in paths; bodies and queries form-encoded):
+ * - POST /persons                      personID, firstName, lastName, address, birthdate
+ *                                      201, 400 invalid, 409 ID taken, 500 not written,
+ *                                      422 a name missing or a ',', CR or LF in any field
+ * - GET  /persons/{id}                 200 with the person as JSON, 404
+ * - PUT  /persons/{id}                 newPersonID (default: same), firstName, lastName, address, birthdate
+ *                                      200, 400 invalid, 404, 409 newPersonID taken, 422 refused by the update
+ *                                      rules, a name missing or a ',', CR or LF in any field
+ * - POST /persons/{id}/demerits        offenseDate, points; 201, 400 invalid, 404
+ * - GET  /persons/{id}/suspension      optional date (dd-MM-yyyy, default today); 200 with points and status, 404
+ * - GET  /metrics                      StorageMetrics in Prometheus text format
+ * Anything unexpected is a 500 with the message; the server keeps running.
+ * Launch with -Dsun.net.httpserver.nodelay=true, as main does unless told
+ * otherwise: without TCP_NODELAY each small response waits out the client's
+ * delayed ACK, about 40 ms per request.
+ */
+public final class PersonServer {
+    private final HttpServer server;
+
+    private PersonServer(HttpServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Starts serving the current data file (see Person.setFileName).
+     * @param port Port to listen on, 0 for any free one
+     * @return the running server
+     */
+    public static PersonServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/persons", PersonServer::handlePersons);
+        server.createContext("/metrics", PersonServer::handleMetrics);
+        server.setExecutor(PersonAsync.sharedExecutor());
+        server.start();
+        return new PersonServer(server);
+    }
+
+    // Port the server listens on
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Turns on TCP_NODELAY for every JDK HttpServer in the process, unless set on the command line.
+     * For launchers only: the JDK reads it once, when the first server is created.
+     */
+    static void preferNoDelay() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    // Stops accepting requests and waits up to a second for those in progress
+    public void stop() {
+        server.stop(1);
+    }
+
+    private static void handlePersons(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().substring("/persons".length()).split("/", -1);
+            String method = exchange.getRequestMethod();
+            // path is {""} for /persons, {"", id} for /persons/{id}, {"", id, action} below that
+            if (path.length == 1 && path[0].isEmpty()) {
+                allow(method, "POST");
+                addPerson(exchange);
+            } else if (path.length == 2 && method.equals("GET")) {
+                fetchPerson(exchange, path[1]);
+            } else if (path.length == 2) {
+                allow(method, "PUT");
+                updatePerson(exchange, path[1]);
+            } else if (path.length == 3 && path[2].equals("demerits")) {
+                allow(method, "POST");
+                addDemerit(exchange, path[1]);
+            } else if (path.length == 3 && path[2].equals("suspension")) {
+                allow(method, "GET");
+                suspension(exchange, path[1]);
+            } else {
+                send(exchange, 404, "{\"error\":\"no such resource\"}");
+            }
+        } catch (MethodNotAllowed e) {
+            send(exchange, 405, "{\"error\":\"method not allowed\"}");
+        } catch (RuntimeException e) {
+            send(exchange, 500, "{\"error\":" + quote(String.valueOf(e.getMessage())) + "}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = Person.metrics().prometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void addPerson(HttpExchange exchange) throws IOException {
+        Map<String, String> form = form(exchange);
+        String personID = form.get("personID");
+        String birthdate = form.get("birthdate");
+        if (!Person.validateFields(personID, form.get("firstName"), form.get("lastName"), form.get("address"), birthdate)) {
+            send(exchange, 422, "{\"error\":\"missing name or forbidden character\"}");
+            return;
+        }
+        if (!Person.validatePersonID(personID) || !Person.validateAddress(form.get("address"))
+                || !Person.validateDate(birthdate)) {
+            send(exchange, 400, "{\"error\":\"invalid person\"}");
+            return;
+        }
+        Person person = new Person(personID, form.get("firstName"), form.get("lastName"), form.get("address"), birthdate);
+        FailureReason failure = person.applyAdd().join();
+        if (failure == null) {
+            send(exchange, 201, personJson(person));
+        } else if (failure == FailureReason.DUPLICATE) {
+            send(exchange, 409, "{\"error\":\"ID taken\"}");
+        } else if (failure == FailureReason.VALIDATION) {
+            send(exchange, 400, "{\"error\":\"invalid person\"}");
+        } else {
+            send(exchange, 500, "{\"error\":\"person not written\"}");
+        }
+    }
+
+    private static void fetchPerson(HttpExchange exchange, String personID) throws IOException {
+        Person person = Person.fetchPersonById(personID);
+        if (person == null) {
+            send(exchange, 404, "{\"error\":\"no such person\"}");
+        } else {
+            send(exchange, 200, personJson(person));
+        }
+    }
+
+    private static void updatePerson(HttpExchange exchange, String personID) throws IOException {
+        Map<String, String> form = form(exchange);
+        String newPersonID = form.getOrDefault("newPersonID", personID);
+        if (!Person.validateFields(newPersonID, form.get("firstName"), form.get("lastName"), form.get("address"),
+                                   form.get("birthdate"))) {
+            send(exchange, 422, "{\"error\":\"missing name or forbidden character\"}");
+            return;
+        }
+        if (!Person.validatePersonID(newPersonID) || !Person.validateAddress(form.get("address"))
+                || !Person.validateDate(form.get("birthdate"))) {
+            send(exchange, 400, "{\"error\":\"invalid details\"}");
+            return;
+        }
+        PersonRecord written = new PersonRecord(newPersonID, form.get("firstName"), form.get("lastName"),
+                                                form.get("address"), form.get("birthdate"));
+        FailureReason failure = Person.applyUpdate(personID, newPersonID, written.getFirstName(), written.getLastName(),
+                                                   written.getAddress(), written.getBirthdate());
+        if (failure == null) {
+            Person updated = Person.fetchPersonById(newPersonID);
+            // Changed again or gone since: answer with what this request wrote
+            send(exchange, 200, updated != null ? personJson(updated) : recordJson(written).append('}').toString());
+        } else if (failure == FailureReason.NOT_FOUND) {
+            send(exchange, 404, "{\"error\":\"no such person\"}");
+        } else if (failure == FailureReason.DUPLICATE) {
+            send(exchange, 409, "{\"error\":\"new ID taken\"}");
+        } else if (failure == FailureReason.RULE) {
+            send(exchange, 422, "{\"error\":\"update refused\"}");
+        } else if (failure == FailureReason.VALIDATION) {
+            send(exchange, 400, "{\"error\":\"invalid details\"}");
+        } else {
+            send(exchange, 500, "{\"error\":\"update not written\"}");
+        }
+    }
+
+    private static void addDemerit(HttpExchange exchange, String personID) throws IOException {
+        Map<String, String> form = form(exchange);
+        String offenseDate = form.get("offenseDate");
+        int points;
+        try {
+            points = Integer.parseInt(form.getOrDefault("points", ""));
+        } catch (NumberFormatException e) {
+            points = 0;
+        }
+        if (!Person.validateDate(offenseDate) || points < 1 || points > 6) {
+            send(exchange, 400, "{\"error\":\"invalid offence\"}");
+            return;
+        }
+        Person person = Person.fetchPersonById(personID);
+        if (person == null) {
+            send(exchange, 404, "{\"error\":\"no such person\"}");
+        } else if (person.addDemeritPoints(offenseDate, points).equals("Success")) {
+            send(exchange, 201, "{\"personID\":" + quote(personID) + ",\"suspended\":" + person.isSuspended() + "}");
+        } else {
+            send(exchange, 500, "{\"error\":\"offence not written\"}");
+        }
+    }
+
+    private static void suspension(HttpExchange exchange, String personID) throws IOException {
+        String date = query(exchange).getOrDefault("date", DateCodec.format(DateCodec.today()));
+        if (!Person.validateDate(date)) {
+            send(exchange, 400, "{\"error\":\"invalid date\"}");
+            return;
+        }
+        Person person = Person.fetchPersonById(personID);
+        if (person == null) {
+            send(exchange, 404, "{\"error\":\"no such person\"}");
+            return;
+        }
+        send(exchange, 200, "{\"personID\":" + quote(personID) + ",\"date\":" + quote(date)
+            + ",\"points\":" + person.getDemeritPointsOn(date) + ",\"suspended\":" + person.isSuspendedOn(date) + "}");
+    }
+
+    private static String personJson(Person person) {
+        StringBuilder json = recordJson(person.toRecord());
+        json.append(",\"suspended\":").append(person.isSuspended())
+            .append(",\"demeritPoints\":{");
+        String separator = "";
+        for (Map.Entry<String, Integer> offence : person.getDemeritPoints().entrySet()) {
+            json.append(separator).append(quote(offence.getKey())).append(':').append(offence.getValue());
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    // The record's fields as an unclosed JSON object
+    private static StringBuilder recordJson(PersonRecord record) {
+        return new StringBuilder(192)
+            .append("{\"personID\":").append(quote(record.getPersonID()))
+            .append(",\"firstName\":").append(quote(record.getFirstName()))
+            .append(",\"lastName\":").append(quote(record.getLastName()))
+            .append(",\"address\":").append(quote(record.getAddress()))
+            .append(",\"birthdate\":").append(quote(record.getBirthdate()));
+    }
+
+    // JSON string literal
+    static String quote(String text) {
+        if (text == null) {
+            return "null";
+        }
+        StringBuilder out = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    private static Map<String, String> form(HttpExchange exchange) throws IOException {
+        return decode(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getRawQuery();
+        return decode(query == null ? "" : query);
+    }
+
+    // name=value&name=value, percent-encoded; the last of a repeated name wins
+    static Map<String, String> decode(String encoded) {
+        Map<String, String> fields = new HashMap<>();
+        for (String pair : encoded.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            try {
+                fields.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                // Malformed escape: leave the field out, so validation rejects the request
+            }
+        }
+        return fields;
+    }
+
+    private static void allow(String method, String allowed) {
+        if (!method.equals(allowed)) {
+            throw new MethodNotAllowed();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static final class MethodNotAllowed extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        MethodNotAllowed() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Runs the service until the process is stopped.
+     * Usage: PersonServer [port] [dataFile]; defaults 8080 and persons.txt.
+     */
+    public static void main(String[] args) {
+        int port;
+        try {
+            port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        } catch (NumberFormatException e) {
+            System.out.println("Usage: PersonServer [port] [dataFile]");
+            return;
+        }
+        if (args.length > 1) {
+            Person.setFileName(args[1]);
+        }
+        preferNoDelay();
+        try {
+            PersonServer server = start(port);
+            System.out.println("Listening on http://localhost:" + server.getPort() + "/persons");
+        } catch (IOException e) {
+            System.out.println("Error starting server: " + e.getMessage());
+        }
+    }
+}
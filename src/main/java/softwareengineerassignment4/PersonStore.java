@@ -0,0 +1,1249 @@
+package softwareengineerassignment4;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Index over a persons data file, keyed by personID.
+ * The index holds the file offset of each person's current entry (see
+ * PersonIdIndex), not the person itself: a lookup finds the offset without
+ * allocating and then reads that one entry from the file. The ID index costs
+ * about 16 to 32 bytes per person, off the heap; people with offences also
+ * keep a DemeritWindow on the heap, and the secondary indexes hold each
+ * person's searchable field values once a search has built them.
+ * The file is read once; after that the index is kept in sync by the
+ * add/update paths, and anything appended to the file from outside is
+ * replayed from the last indexed offset on the next call.
+ * If the file is deleted, truncated or replaced, the index is rebuilt.
+ *
+ * The file is treated as a log: the latest person line for an ID is the
+ * current version, and a "oldID,Moved:newID" line retires an ID.
+ * Demerit lines are indexed too, as a DemeritWindow per ID, so a loaded
+ * person comes with their offence history without another scan.
+ * Secondary indexes on the SearchFields are built on the first search and
+ * kept up to date from then on.
+ *
+ * Thread safety: lookups share a read lock and only take the write lock
+ * when the file has changed underneath them. Every write takes the write
+ * lock plus an exclusive FileLock on a sidecar "<file>.lock", so writers in
+ * other processes using the same file are serialised too. The sidecar is
+ * left in place on close: deleting it while another process holds it open
+ * would let the next writer lock a new file and run alongside. Callers that
+ * check business rules before writing hold the person's stripe from
+ * idLocks() across the check and the write. Demerits are queued under the
+ * stripe too, and a writer about to move or rewrite an ID first waits, with the
+ * stripe held, for the ID's queued demerits to be written (awaitWritten).
+ *
+ * New persons and demerits go through a GroupCommitWriter: one background
+ * thread appends whatever has queued up as a single batch through a data
+ * channel that stays open, flushing or fsyncing per the callers' DurabilityPolicy.
+ *
+ * Entries are read and written in the file's StorageFormat, fixed when the
+ * store is first opened; "line" below means one entry in either format.
+ *
+ * Lookups by ID go through a PersonCache of recently read records, kept in
+ * step with the index, so the hottest people are not read from the file at all.
+ *
+ * Checkpoints: once the index has taken in checkpointInterval bytes of the file
+ * since the last IndexSnapshot, a new one is written on a background thread.
+ * A store opening a file with a snapshot that still matches it loads the
+ * snapshot and reads only the entries written after it.
+ *
+ * While anyone listens for suspension changes, the store's SuspensionMonitor
+ * is handed every ID whose offences, birthdate or ID an indexed entry changes,
+ * and is told to re-evaluate everyone when the index starts over.
+ */
+final class PersonStore {
+    private static final Logger LOG = Logger.getLogger(PersonStore.class.getName());
+    private static final Map<Path, PersonStore> STORES = new ConcurrentHashMap<>();
+    private static final int FINGERPRINT_BYTES = 32;
+    private static final int BULK_CHUNK = 1 << 20; // Bytes a bulk add buffers per write
+    private static final ExecutorService CHECKPOINTER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "person-index-checkpointer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static volatile long checkpointInterval = 64L << 20; // Bytes indexed between snapshots; 0 for never
+    private static volatile int cacheSize = 10_000; // Person records each store keeps in its PersonCache
+
+    private final Path file;
+    private final Path lockFile;
+    private final Path snapshotFile;
+    private final StorageFormat format;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final StripedLocks idLocks = new StripedLocks(64);
+    private FileChannel lockChannel; // Opened on first write, kept for the life of the store
+    private FileChannel dataChannel; // Appends to the data file; reopened when the file is replaced
+    private FileChannel readChannel; // Reads entries found through the index; opened along with dataChannel
+    private long channelGeneration;  // Generation the data channel was opened for
+    private final GroupCommitWriter committer = new GroupCommitWriter(this);
+    private final Map<String, CompletableFuture<Void>> unwritten = new ConcurrentHashMap<>(); // Last queued demerit per ID, until written
+    private final PersonIdIndex ids = new PersonIdIndex(); // Offset of each ID's current person entry
+    private final PersonCache cache = new PersonCache(cacheSize); // Current records of recently read IDs
+    private final Map<String, DemeritWindow> offences = new HashMap<>(); // Offence history per ID
+    private final Map<SearchField, SecondaryIndex> secondary = new EnumMap<>(SearchField.class);
+    private boolean secondaryBuilt; // Set by the first search; until then nothing is spent on them
+    private final Indexer indexer = new Indexer();
+    private long indexedLength; // Bytes of the file already applied to the index
+    private long fileLength;    // File size seen by the last refresh, plus our own appends
+    private Object fileKey;     // Identity of the indexed file, used to spot a replaced file
+    private long generation;    // Bumped whenever the index starts over on a different file
+    private byte[] fingerprint = new byte[0]; // Last bytes of the file before indexedLength
+    private long personEntries;  // Entries indexed from the current file, for StorageMetrics
+    private long demeritEntries;
+    private long movedEntries;
+    private final Object checkpointLock = new Object(); // One snapshot written at a time
+    private long checkpointedLength;            // Bytes of the file the last snapshot written or loaded covers
+    private volatile boolean checkpointQueued;  // A background checkpoint is waiting to run
+    private final SuspensionMonitor suspensions = new SuspensionMonitor(this);
+    private volatile boolean watched; // Someone listens for suspension changes
+    private boolean rebuilding = true; // The index started over; the monitor hears once it has caught up
+
+    private PersonStore(Path file, StorageFormat format) {
+        this.file = file;
+        this.format = format;
+        this.lockFile = lockPathFor(file);
+        this.snapshotFile = IndexSnapshot.pathFor(file);
+        for (SearchField field : SearchField.values()) {
+            secondary.put(field, new SecondaryIndex(field));
+        }
+    }
+
+    // The sidecar file writers lock, next to the data file
+    static Path lockPathFor(Path dataFile) {
+        return dataFile.resolveSibling(dataFile.getFileName() + ".lock");
+    }
+
+    /**
+     * Returns the store for the given data file, creating it on first use.
+     * There is one store per file, so every caller sees the same index.
+     * @param fileName Path of the data file, in CSV format
+     * @return the store for that file
+     */
+    static PersonStore forFile(String fileName) {
+        return forFile(fileName, StorageFormat.CSV);
+    }
+
+    /**
+     * Returns the store for the given data file, creating it on first use.
+     * @param fileName Path of the data file
+     * @param format How the file is laid out
+     * @return the store for that file
+     * @throws IllegalArgumentException if the file is already open in another format
+     */
+    static PersonStore forFile(String fileName, StorageFormat format) {
+        Path path = Paths.get(fileName).toAbsolutePath().normalize();
+        PersonStore store = STORES.computeIfAbsent(path, p -> new PersonStore(p, format));
+        if (store.format != format) {
+            throw new IllegalArgumentException(path + " is already open as " + store.format + ", not " + format);
+        }
+        return store;
+    }
+
+    // Every store opened so far, for StorageMetrics
+    static Collection<PersonStore> openStores() {
+        return STORES.values();
+    }
+
+    /**
+     * Looks up a person by ID in O(1).
+     * @param personID The ID to search for
+     * @return the record, or null if not found
+     */
+    PersonRecord get(String personID) throws IOException {
+        return read(personID, (record, history) -> record);
+    }
+
+    /**
+     * Looks up a person and their offence history together.
+     * The reader runs while the store is locked, so it sees both as of the same moment;
+     * it must copy the history if it keeps it.
+     * @param personID The ID to search for
+     * @param reader Receives the record (null if not found) and history (null if none)
+     * @return whatever the reader returns
+     */
+    <T> T read(String personID, BiFunction<PersonRecord, DemeritWindow, T> reader) throws IOException {
+        return read(personID, true, reader);
+    }
+
+    // As read(), going through the cache or not; lookups that sweep many people leave it alone
+    <T> T read(String personID, boolean cached, BiFunction<PersonRecord, DemeritWindow, T> reader)
+            throws IOException {
+        lock.readLock().lock();
+        try {
+            if (isCurrent()) {
+                return reader.apply(cached ? cachedLookup(personID) : lookup(personID), offences.get(personID));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // The file changed underneath us: catch up first
+        lock.writeLock().lock();
+        try {
+            refresh();
+            return reader.apply(cached ? cachedLookup(personID) : lookup(personID), offences.get(personID));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lazily finds people whose value of a field starts with a prefix, ignoring case.
+     * The first search reads the whole file to build the secondary indexes; later
+     * ones seek straight to the matches, so their cost depends on the number of
+     * matches, not the size of the file. Each match is read, and checked against
+     * the person's current version, as the stream is consumed.
+     * @param reader Receives each current match and their history, as in read()
+     * @return stream of the reader's results, in order of the field's value
+     * @throws UncheckedIOException from the stream if reading a match fails
+     */
+    <T> Stream<T> search(SearchField field, String prefix, BiFunction<PersonRecord, DemeritWindow, T> reader)
+            throws IOException {
+        boolean ready;
+        lock.readLock().lock();
+        try {
+            ready = secondaryBuilt && isCurrent();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!ready) {
+            lock.writeLock().lock();
+            try {
+                refresh();
+                if (!secondaryBuilt) {
+                    buildSecondary();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        return secondary.get(field).entriesWithPrefix(SearchField.normalize(prefix))
+            .map(entry -> readMatch(field, entry, reader))
+            .filter(Objects::nonNull);
+    }
+
+    /**
+     * Lazily reads the people who are current now, in file order, skipping
+     * those the filter leaves out before their fields are decoded (see PersonScan).
+     * The ID index is copied so later writes do not change who is returned;
+     * offence histories are read as each person is reached.
+     * The stream is sequential; parallel() reads byte ranges of the file on several threads.
+     * @param reader Receives each person and their history, as in read(); null results are dropped
+     * @throws UncheckedIOException from the stream if reading the file fails
+     * @throws java.util.ConcurrentModificationException from the stream if the file is
+     *         rewritten or compacted while it is being read
+     */
+    <T> Stream<T> scan(ScanFilter filter, BiFunction<PersonRecord, DemeritWindow, T> reader) throws IOException {
+        lock.writeLock().lock();
+        try {
+            refresh();
+            PersonScan<T> scan = new PersonScan<>(this, ids.copy(), generation, 0, indexedLength,
+                                                  filter, reader, DateCodec.today());
+            return StreamSupport.stream(scan, false);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs the reader on a person's offence history (null if none) under the read lock,
+     * without catching up with the file first.
+     */
+    <T> T withHistory(String personID, Function<DemeritWindow, T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.apply(offences.get(personID));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Incarnation of the data file the index is on; changes when the file is replaced
+    long generation() {
+        lock.readLock().lock();
+        try {
+            return generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Reads one index entry's person, or null if the entry is stale
+    private <T> T readMatch(SearchField field, String entry, BiFunction<PersonRecord, DemeritWindow, T> reader) {
+        String key = SecondaryIndex.keyOf(entry);
+        try {
+            return read(SecondaryIndex.personIdOf(entry), false, (record, history) ->
+                record != null && key.equals(field.key(record)) ? reader.apply(record, history) : null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Indexes the current version of every person; caller holds the write lock after a refresh
+    private void buildSecondary() throws IOException {
+        secondaryBuilt = true; // From here on every indexed person version is added as well
+        if (indexedLength == 0) {
+            return;
+        }
+        format.scan(file, 0, indexedLength, new LogVisitor() {
+            private long entryOffset;
+
+            @Override
+            public void entryAt(long offset) {
+                entryOffset = offset;
+            }
+
+            @Override
+            public void person(PersonRecord record) {
+                if (ids.get(record.getPersonID()) == entryOffset) {
+                    for (SecondaryIndex index : secondary.values()) {
+                        index.add(record);
+                    }
+                }
+            }
+
+            @Override
+            public void demerit(String personID, int offenseDay, int points) {
+            }
+
+            @Override
+            public void moved(String fromPersonID, String toPersonID) {
+            }
+        });
+    }
+
+    /**
+     * Appends a new person line to the file and indexes it, waiting until it is written.
+     * @param record The person to add
+     * @return true if added, false if the ID is already taken
+     */
+    boolean add(PersonRecord record) throws IOException {
+        return await(addAsync(record, DurabilityPolicy.FLUSH_PER_BATCH));
+    }
+
+    /**
+     * Queues a new person line for the group-commit writer.
+     * The ID is checked when the batch is written, so of two adds of the same ID
+     * only the first one queued succeeds.
+     * @return future completed with true if added, false if the ID is already taken
+     */
+    CompletableFuture<Boolean> addAsync(PersonRecord record, DurabilityPolicy durability) {
+        return committer.submit(GroupCommitWriter.Append.person(record, durability));
+    }
+
+    /**
+     * Appends a demerit line for the given person and adds it to their history,
+     * waiting until it is written.
+     * @param offenseDay Offence date as an epoch-day
+     */
+    void addDemerit(String personID, int offenseDay, int points) throws IOException {
+        await(addDemeritAsync(personID, offenseDay, points, DurabilityPolicy.FLUSH_PER_BATCH));
+    }
+
+    /**
+     * Queues a demerit line for the group-commit writer.
+     * @param offenseDay Offence date as an epoch-day
+     * @return future completed with true once the line is as durable as asked
+     */
+    CompletableFuture<Boolean> addDemeritAsync(String personID, int offenseDay, int points, DurabilityPolicy durability) {
+        GroupCommitWriter.Append append = GroupCommitWriter.Append.demerit(personID, offenseDay, points, durability);
+        // Registered before it is queued, so the writer cannot finish it first and leave it behind
+        unwritten.put(personID, append.written);
+        append.written.whenComplete((written, e) -> unwritten.remove(personID, append.written));
+        return committer.submit(append);
+    }
+
+    /**
+     * Waits until the demerit lines queued for an ID are in the file, or have failed.
+     * Callers hold the ID's stripe, so nothing more is queued for it meanwhile, and
+     * call this before moving or rewriting the ID: a line written after the ID's
+     * Moved line would stay behind under the retired ID.
+     * Lines are written in queue order, so waiting for the last one queued is enough.
+     */
+    void awaitWritten(String personID) throws IOException {
+        CompletableFuture<Void> last = unwritten.get(personID);
+        if (last == null) {
+            return;
+        }
+        try {
+            last.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for demerits of " + personID);
+        } catch (ExecutionException e) {
+            // Not written, so nothing of it can be left behind
+        }
+    }
+
+    /**
+     * Writes a batch from the group-commit writer as one append, in queue order,
+     * and indexes it. Sets each entry's result: false for a person whose ID is taken.
+     * Every entry is encoded before anything is written, and indexed only once the
+     * append has succeeded, so a failure at any point leaves no trace in the index.
+     * @param fsync Whether to force the file to disk before returning
+     */
+    void commit(List<GroupCommitWriter.Append> batch, boolean fsync) throws IOException {
+        write(() -> {
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            long[] offsets = new long[batch.size()];
+            Set<String> added = new HashSet<>(); // IDs this batch adds, so a second add of one is refused
+            for (int i = 0; i < batch.size(); i++) {
+                GroupCommitWriter.Append append = batch.get(i);
+                if (append.record == null) {
+                    format.writeDemerit(append.personID, append.offenseDay, append.points, lines);
+                    append.applied = true;
+                } else if (!ids.contains(append.personID) && added.add(append.personID)) {
+                    offsets[i] = fileLength + lines.size();
+                    format.writePerson(append.record, null, lines);
+                    append.applied = true;
+                }
+            }
+
+            try {
+                append(lines.toByteArray());
+                if (fsync) {
+                    dataChannel().force(false);
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    GroupCommitWriter.Append append = batch.get(i);
+                    if (append.record == null) {
+                        indexer.demerit(append.personID, append.offenseDay, append.points);
+                    } else if (append.applied) {
+                        indexPerson(append.record, offsets[i]);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // The index may not match the file now: rebuild it from what actually got written
+                reset();
+                throw e;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Appends many new persons under one hold of the lock, as a bulk import does.
+     * Entries are streamed to the file about 1 MB at a time and indexed as they go,
+     * so the ID index is the duplicate check against existing people and against
+     * earlier records of the same source. The file is fsynced once at the end.
+     * Lookups wait until the whole source is written.
+     * @param source Pushes the records, in order, into the sink it is given
+     * @return number of persons added
+     */
+    long addAll(BulkSource source) throws IOException {
+        return write(() -> {
+            ByteArrayOutputStream pending = new ByteArrayOutputStream(BULK_CHUNK + 4096);
+            long[] added = {0};
+            try {
+                source.writeTo(record -> {
+                    if (ids.contains(record.getPersonID())) {
+                        return false;
+                    }
+                    indexPerson(record, fileLength + pending.size());
+                    format.writePerson(record, null, pending);
+                    added[0]++;
+                    if (pending.size() >= BULK_CHUNK) {
+                        append(pending.toByteArray());
+                        pending.reset();
+                    }
+                    return true;
+                });
+                append(pending.toByteArray());
+                dataChannel().force(false);
+            } catch (IOException | RuntimeException e) {
+                // The index may be ahead of the file now: rebuild it from what actually got written
+                reset();
+                throw e;
+            }
+            return added[0];
+        });
+    }
+
+    // Supplies the records of a bulk add
+    interface BulkSource {
+        void writeTo(BulkSink sink) throws IOException;
+    }
+
+    interface BulkSink {
+        // Returns false, and writes nothing, if the ID is already taken
+        boolean add(PersonRecord record) throws IOException;
+    }
+
+    /**
+     * Forces everything appended so far to disk.
+     */
+    void sync() throws IOException {
+        lock.writeLock().lock();
+        try {
+            refresh();
+            if (Files.exists(file)) {
+                dataChannel().force(false);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes out anything queued for the group-commit writer, stops its thread,
+     * closes the file channels and drops the index.
+     * The store stays registered, so anyone holding it can carry on: the next
+     * call reopens the file and restores the index from its snapshot.
+     */
+    void close() throws IOException {
+        committer.close();
+        lock.writeLock().lock();
+        try {
+            if (dataChannel != null) {
+                dataChannel.close();
+                readChannel.close();
+                dataChannel = null;
+                readChannel = null;
+            }
+            if (lockChannel != null) {
+                lockChannel.close();
+                lockChannel = null;
+            }
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Waits for a queued write, unwrapping the I/O failure if it had one
+    private static boolean await(CompletableFuture<Boolean> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a new version of the person identified by currentPersonID.
+     * In APPEND mode the new version is appended to the log; in REWRITE mode
+     * the file is rewritten and demerit lines move to the new ID if it changes.
+     * Demerits already queued for the person are written first (see awaitWritten).
+     * @return true if updated, false if the person does not exist or the new ID is already taken
+     */
+    boolean update(String currentPersonID, PersonRecord updated, UpdateMode mode) throws IOException {
+        awaitWritten(currentPersonID);
+        return write(() -> {
+            if (!ids.contains(currentPersonID)) {
+                return false;
+            }
+            String newPersonID = updated.getPersonID();
+            if (!newPersonID.equals(currentPersonID) && ids.contains(newPersonID)) {
+                return false;
+            }
+
+            if (mode == UpdateMode.REWRITE) {
+                rewrite(Map.of(currentPersonID, updated));
+                return true;
+            }
+
+            // Both lines go out in one write so a reader never sees half an ID change
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            if (!newPersonID.equals(currentPersonID)) {
+                format.writeMoved(currentPersonID, newPersonID, lines);
+            }
+            long offset = fileLength + lines.size();
+            format.writePerson(updated, null, lines);
+            append(lines.toByteArray());
+            if (!newPersonID.equals(currentPersonID)) {
+                indexer.moved(currentPersonID, newPersonID);
+            }
+            indexPerson(updated, offset);
+            return true;
+        });
+    }
+
+    /**
+     * Appends a person who moved here from another shard, with the offences they bring along.
+     * @param history Offences to write with them, or null
+     * @return true if added, false if the ID is already taken
+     */
+    boolean addMoved(PersonRecord record, DemeritWindow history) throws IOException {
+        return write(() -> {
+            if (ids.contains(record.getPersonID())) {
+                return false;
+            }
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            long offset = fileLength;
+            format.writePerson(record, history, lines);
+            append(lines.toByteArray());
+            indexPerson(record, offset);
+            if (history != null) {
+                for (int i = 0; i < history.size(); i++) {
+                    indexer.demerit(record.getPersonID(), history.dayAt(i), history.pointsAt(i));
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Appends a Moved line for a person who moved to another shard as newPersonID,
+     * so they are no longer found here under their old ID.
+     */
+    void retire(String currentPersonID, String newPersonID) throws IOException {
+        write(() -> {
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            format.writeMoved(currentPersonID, newPersonID, lines);
+            append(lines.toByteArray());
+            indexer.moved(currentPersonID, newPersonID);
+            return null;
+        });
+    }
+
+    /**
+     * Checks and applies many updates with one rewrite of the file.
+     * Updates are checked in order, each against the person as currently stored.
+     * An update is refused if:
+     * - its current ID is not in the file (NOT_FOUND)
+     * - its new ID belongs to someone else, or either ID is already part of an
+     *   earlier accepted update in the batch (DUPLICATE)
+     * - the rule check returns a reason for the stored and updated versions
+     * The accepted updates are then written in a single pass through a temp file
+     * that is renamed over the data file, so either all of them are applied or
+     * none are. Other writers and readers wait for the whole batch, which itself
+     * first waits for the demerits queued for its current IDs (see awaitWritten).
+     * @param currentIDs ID of the person each update changes
+     * @param updates New version for each ID, in the same order
+     * @param rules Returns why an update is refused, or null to accept it
+     * @return reason each update was refused, or null where it was applied
+     * @throws IOException if the rewrite failed; the file is then left as it was
+     */
+    FailureReason[] updateAll(List<String> currentIDs, List<PersonRecord> updates,
+                              BiFunction<PersonRecord, PersonRecord, FailureReason> rules) throws IOException {
+        for (String currentPersonID : currentIDs) {
+            awaitWritten(currentPersonID);
+        }
+        return write(() -> {
+            FailureReason[] results = new FailureReason[updates.size()];
+            Map<String, PersonRecord> accepted = new HashMap<>();
+            Set<String> claimed = new HashSet<>(); // Current and new IDs of accepted updates
+            for (int i = 0; i < results.length; i++) {
+                String currentPersonID = currentIDs.get(i);
+                PersonRecord updated = updates.get(i);
+                String newPersonID = updated.getPersonID();
+                PersonRecord existing = claimed.contains(currentPersonID) ? null : lookup(currentPersonID);
+                if (claimed.contains(currentPersonID) || claimed.contains(newPersonID)) {
+                    results[i] = FailureReason.DUPLICATE;
+                } else if (existing == null) {
+                    results[i] = FailureReason.NOT_FOUND;
+                } else if (!newPersonID.equals(currentPersonID) && ids.contains(newPersonID)) {
+                    results[i] = FailureReason.DUPLICATE;
+                } else {
+                    results[i] = rules.apply(existing, updated);
+                }
+                if (results[i] == null) {
+                    accepted.put(currentPersonID, updated);
+                    claimed.add(currentPersonID);
+                    claimed.add(newPersonID);
+                }
+            }
+            if (!accepted.isEmpty()) {
+                rewrite(accepted);
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Catches up with the file, then writes an IndexSnapshot of the index.
+     * Lookups go on while it is written; writers wait.
+     * @return false if the last snapshot already covers everything indexed
+     */
+    boolean checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            lock.writeLock().lock();
+            try {
+                refresh();
+                lock.readLock().lock(); // Downgrade: keep writers out, let lookups in
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                if (indexedLength == checkpointedLength) {
+                    return false;
+                }
+                byte[] head = readBytes(0, (int) Math.min(FINGERPRINT_BYTES, indexedLength));
+                new IndexSnapshot(indexedLength, head, fingerprint, personEntries, demeritEntries, movedEntries)
+                    .write(snapshotFile, format, ids, offences);
+                checkpointedLength = indexedLength;
+                return true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Sets how many bytes of the file the index takes in before a new snapshot is
+     * written in the background, for every store. 0 turns automatic checkpoints off.
+     */
+    static void setCheckpointInterval(long bytes) {
+        checkpointInterval = bytes;
+    }
+
+    /**
+     * Sets how many person records each store caches for lookups by ID, and
+     * empties the caches of stores already open. 0 turns caching off.
+     */
+    static void setCacheSize(int records) {
+        cacheSize = records;
+        for (PersonStore store : STORES.values()) {
+            store.cache.setCapacity(records);
+        }
+    }
+
+    // Records currently cached, for StorageMetrics
+    int cachedRecords() {
+        return cache.size();
+    }
+
+    // Tells of suspension changes in this file
+    SuspensionMonitor suspensionMonitor() {
+        return suspensions;
+    }
+
+    // Turns the hand-over of written IDs to the suspension monitor on or off
+    void watchSuspensions(boolean on) {
+        watched = on;
+    }
+
+    /**
+     * IDs with an offence history, after catching up with the file.
+     * @return a copy the caller may change
+     */
+    Set<String> offenderIds() throws IOException {
+        lock.writeLock().lock();
+        try {
+            refresh();
+            return new HashSet<>(offences.keySet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Number of people in the file, after catching up with it
+    int personCount() throws IOException {
+        lock.writeLock().lock();
+        try {
+            refresh();
+            return ids.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs the reader on everyone with an offence history, in parallel, leaving the cache alone.
+     * Who that is is taken after catching up with the file; each person is read as they are when reached.
+     * @param reader Receives each person and their history, as in read(); null results are dropped
+     * @return the reader's results, in no particular order
+     */
+    <T> List<T> readOffenders(BiFunction<PersonRecord, DemeritWindow, T> reader) throws IOException {
+        try {
+            return offenderIds().parallelStream().map(personID -> {
+                try {
+                    return read(personID, false, reader);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).filter(Objects::nonNull).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // The ID's suspension status may have changed; caller holds the write lock
+    private void suspensionMayChange(String personID) {
+        if (watched && !rebuilding) {
+            suspensions.touched(personID);
+        }
+    }
+
+    // Has the monitor re-evaluate everyone once an index that started over has caught up; caller holds the write lock
+    private void rebuilt() {
+        if (rebuilding) {
+            rebuilding = false;
+            if (watched) {
+                suspensions.indexRebuilt();
+            }
+        }
+    }
+
+    // Queues a background checkpoint once enough of the file is not covered by one; caller holds the write lock
+    private void maybeCheckpoint() {
+        long interval = checkpointInterval;
+        if (interval <= 0 || checkpointQueued || indexedLength - checkpointedLength < interval) {
+            return;
+        }
+        checkpointQueued = true;
+        CHECKPOINTER.execute(() -> {
+            checkpointQueued = false;
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Error writing index snapshot", e);
+            }
+        });
+    }
+
+    // Loads the snapshot if it still belongs to the file; the caller then replays what follows it
+    private void restore() {
+        try {
+            IndexSnapshot snapshot = IndexSnapshot.read(snapshotFile, format, this::coversFile, ids, offences);
+            if (snapshot != null) {
+                indexedLength = snapshot.length;
+                fingerprint = snapshot.tail;
+                personEntries = snapshot.personEntries;
+                demeritEntries = snapshot.demeritEntries;
+                movedEntries = snapshot.movedEntries;
+                checkpointedLength = snapshot.length;
+                secondaryBuilt = false; // Rebuilt from the file by the next search
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Ignoring index snapshot", e);
+            ids.clear();
+            cache.clear();
+            clearOffences();
+        }
+    }
+
+    // True if the file still starts with, and has at the covered length, the bytes the snapshot was taken over
+    private boolean coversFile(IndexSnapshot snapshot) {
+        if (snapshot.length <= 0 || snapshot.length > fileLength
+                || snapshot.head.length != Math.min(FINGERPRINT_BYTES, snapshot.length)) {
+            return false;
+        }
+        try {
+            return Arrays.equals(snapshot.tail, readFingerprint(snapshot.length))
+                && Arrays.equals(snapshot.head, readBytes(0, snapshot.head.length));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Per-ID locks for callers that read, check rules, then write the same person
+    StripedLocks idLocks() {
+        return idLocks;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    StorageFormat format() {
+        return format;
+    }
+
+    /**
+     * Returns how much of the current file the index covers.
+     * A compactor may read the file up to this point without holding the store.
+     */
+    LogPosition position() throws IOException {
+        return write(() -> new LogPosition(generation, indexedLength));
+    }
+
+    /**
+     * Swaps a compacted copy in place of the data file.
+     * Whatever was appended after the covered position is copied onto the
+     * compacted copy first, so no write made during compaction is lost.
+     * @param compacted Canonical copy of the file up to the covered position
+     * @param covered Position the compacted copy was built from
+     * @throws IOException if the file was replaced or truncated in the meantime
+     */
+    void replaceWithCompacted(Path compacted, LogPosition covered) throws IOException {
+        write(() -> {
+            swapInCompacted(compacted, covered);
+            return null;
+        });
+    }
+
+    private void swapInCompacted(Path compacted, LogPosition covered) throws IOException {
+        if (generation != covered.generation || indexedLength < covered.length) {
+            throw new IOException("Data file changed during compaction");
+        }
+
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(compacted, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long position = covered.length;
+            while (position < fileLength) {
+                position += source.transferTo(position, fileLength - position, target);
+            }
+            target.force(true);
+        }
+
+        // Every entry has moved, and expired offences are gone: index the new file afresh
+        replaceFile(compacted);
+        reindex();
+    }
+
+    /**
+     * Size of the file and entries indexed from it, as last seen by the store.
+     * Does not catch up with the file first, so it never blocks on a writer's file lock.
+     */
+    Stats stats() {
+        lock.readLock().lock();
+        try {
+            return new Stats(fileLength, personEntries, demeritEntries, movedEntries);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static final class Stats {
+        final long fileBytes;
+        final long personEntries; // Person versions, not distinct people
+        final long demeritEntries;
+        final long movedEntries;
+
+        Stats(long fileBytes, long personEntries, long demeritEntries, long movedEntries) {
+            this.fileBytes = fileBytes;
+            this.personEntries = personEntries;
+            this.demeritEntries = demeritEntries;
+            this.movedEntries = movedEntries;
+        }
+    }
+
+    /**
+     * A point in the data file: which incarnation of the file, and how many bytes of it.
+     */
+    static final class LogPosition {
+        final long generation;
+        final long length;
+
+        LogPosition(long generation, long length) {
+            this.generation = generation;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Runs a write with the store write-locked, the lock file held and the index refreshed.
+     * Holding the lock file means no other process appends between our refresh and our write.
+     */
+    private <T> T write(IOAction<T> action) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (lockChannel == null) {
+                lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            FileLock held = lockChannel.lock();
+            try {
+                refresh();
+                return action.run();
+            } finally {
+                held.release();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private interface IOAction<T> {
+        T run() throws IOException;
+    }
+
+    // True if the index already reflects the file on disk; caller holds at least the read lock
+    private boolean isCurrent() throws IOException {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return fileKey != null && fileKey.equals(attrs.fileKey()) && attrs.size() == fileLength;
+        } catch (NoSuchFileException e) {
+            return fileKey == null && indexedLength == 0;
+        }
+    }
+
+    // Brings the index up to date with the file on disk; caller holds the write lock
+    private void refresh() throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            reset();
+            rebuilt();
+            return;
+        }
+
+        // A shorter or different file means it was truncated or replaced, so start over.
+        // A file deleted and recreated can get the same key back, so when the file has
+        // grown, the bytes just before the indexed offset must still be the ones we indexed.
+        Object key = attrs.fileKey();
+        long size = attrs.size();
+        if (size < indexedLength || (fileKey != null && !fileKey.equals(key))
+                || (size > indexedLength && !Arrays.equals(fingerprint, readFingerprint(indexedLength)))) {
+            reset();
+        }
+        fileKey = key;
+        fileLength = size;
+
+        if (indexedLength == 0 && fileLength > 0) {
+            restore();
+        }
+        if (fileLength > indexedLength) {
+            indexedLength = load(indexedLength);
+            fingerprint = readFingerprint(indexedLength);
+        }
+        dataChannel(); // Opens readChannel for lookups too
+        rebuilt();
+        maybeCheckpoint();
+    }
+
+    // Last few bytes of the file before the given offset
+    private byte[] readFingerprint(long end) throws IOException {
+        int length = (int) Math.min(FINGERPRINT_BYTES, end);
+        return readBytes(end - length, length);
+    }
+
+    // Bytes [from, from + length) of the file, or none if the file is shorter
+    private byte[] readBytes(long from, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, from + buffer.position()) == -1) {
+                    return new byte[0];
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    private void reset() {
+        ids.clear();
+        cache.clear();
+        clearSecondary();
+        clearOffences();
+        fingerprint = new byte[0];
+        indexedLength = 0;
+        fileLength = 0;
+        fileKey = null;
+        checkpointedLength = 0;
+        generation++;
+        rebuilding = true;
+    }
+
+    // Reads the file from the given offset and indexes every complete line
+    private long load(long from) throws IOException {
+        return format.scan(file, from, Long.MAX_VALUE, indexer);
+    }
+
+    // Indexes a file that replaced the old one from the start: every entry may have moved
+    private void reindex() throws IOException {
+        rebuilding = true;
+        ids.clear();
+        cache.clear();
+        clearSecondary();
+        clearOffences();
+        indexedLength = load(0);
+        fingerprint = readFingerprint(indexedLength);
+        dataChannel();
+        rebuilt();
+        maybeCheckpoint();
+    }
+
+    // Offences and entry counts start over along with the ID index
+    private void clearOffences() {
+        offences.clear();
+        personEntries = 0;
+        demeritEntries = 0;
+        movedEntries = 0;
+    }
+
+    // Records where a person version is; caller holds the write lock
+    private void indexPerson(PersonRecord record, long offset) {
+        personEntries++;
+        ids.put(record.getPersonID(), offset); // Latest version wins
+        cache.refresh(record);
+        if (offences.containsKey(record.getPersonID())) {
+            suspensionMayChange(record.getPersonID()); // A new birthdate can change the threshold
+        }
+        if (secondaryBuilt) {
+            for (SecondaryIndex index : secondary.values()) {
+                index.add(record);
+            }
+        }
+    }
+
+    private void clearSecondary() {
+        for (SecondaryIndex index : secondary.values()) {
+            index.clear();
+        }
+    }
+
+    // Reads the ID's current person entry from the file; caller holds a lock after a refresh
+    private PersonRecord lookup(String personID) throws IOException {
+        long offset = ids.get(personID);
+        return offset == PersonIdIndex.MISSING ? null : format.readPerson(readChannel, offset);
+    }
+
+    // As lookup, served from and filling the cache; caller holds a lock after a refresh
+    private PersonRecord cachedLookup(String personID) throws IOException {
+        PersonRecord record = cache.get(personID);
+        if (record == null) {
+            record = lookup(personID);
+            if (record != null) {
+                cache.put(record);
+            }
+        }
+        return record;
+    }
+
+    // Applies log entries to the index, in file order
+    private final class Indexer implements LogVisitor {
+        private long entryOffset;
+
+        @Override
+        public void entryAt(long offset) {
+            entryOffset = offset;
+        }
+
+        @Override
+        public void person(PersonRecord record) {
+            indexPerson(record, entryOffset);
+        }
+
+        @Override
+        public void demerit(String personID, int offenseDay, int points) {
+            demeritEntries++;
+            offences.computeIfAbsent(personID, id -> new DemeritWindow()).add(offenseDay, points);
+            suspensionMayChange(personID);
+        }
+
+        @Override
+        public void moved(String fromPersonID, String toPersonID) {
+            movedEntries++;
+            ids.remove(fromPersonID);
+            cache.remove(fromPersonID);
+            DemeritWindow history = offences.remove(fromPersonID);
+            if (history != null) {
+                offences.computeIfAbsent(toPersonID, id -> new DemeritWindow()).addAll(history);
+                suspensionMayChange(fromPersonID);
+                suspensionMayChange(toPersonID);
+            }
+        }
+    }
+
+    // Writes whole lines through the data channel and moves the indexed offset past them
+    private void append(byte[] bytes) throws IOException {
+        if (bytes.length == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        FileChannel channel = dataChannel();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        StorageMetrics.global().bytesWritten(bytes.length);
+        // If the file ended in an unterminated line, leave it to the next refresh to re-read
+        if (fileLength == indexedLength) {
+            indexedLength += bytes.length;
+            byte[] joined = Arrays.copyOf(fingerprint, fingerprint.length + bytes.length);
+            System.arraycopy(bytes, 0, joined, fingerprint.length, bytes.length);
+            fingerprint = Arrays.copyOfRange(joined, Math.max(0, joined.length - FINGERPRINT_BYTES), joined.length);
+        }
+        fileLength += bytes.length;
+        maybeCheckpoint();
+    }
+
+    // Channel appending to the current data file; caller holds the write lock after a refresh
+    private FileChannel dataChannel() throws IOException {
+        if (dataChannel == null || channelGeneration != generation) {
+            if (dataChannel != null) {
+                dataChannel.close(); // Still open on a deleted or replaced file
+                readChannel.close();
+            }
+            dataChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            readChannel = FileChannel.open(file, StandardOpenOption.READ);
+            channelGeneration = generation;
+        }
+        return dataChannel;
+    }
+
+    // Copies the file through a temp file, replacing the lines of each person in updates (see RewritePlan)
+    private void rewrite(Map<String, PersonRecord> updates) throws IOException {
+        Path tempFile = file.resolveSibling("temp_" + file.getFileName());
+        RewritePlan plan = RewritePlan.forFile(format, file, fileLength, updates);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16)) {
+            long copied = format.rewrite(file, fileLength, plan, out);
+            for (Map.Entry<String, PersonRecord> update : plan.appended().entrySet()) {
+                format.writeMoved(update.getKey(), update.getValue().getPersonID(), out);
+                format.writePerson(update.getValue(), null, out);
+            }
+
+            // A last line still being written elsewhere is carried over as it is
+            ByteBuffer tail = ByteBuffer.allocate((int) (fileLength - copied));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (tail.hasRemaining() && channel.read(tail, copied + tail.position()) != -1) {
+                    // Keep reading until the tail is complete
+                }
+            }
+            out.write(tail.array(), 0, tail.position());
+        }
+
+        replaceFile(tempFile);
+        reindex();
+    }
+
+    // Renames a new copy over the data file so it never goes missing, and adopts it
+    private void replaceFile(Path replacement) throws IOException {
+        try {
+            Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        fileLength = attrs.size();
+        fileKey = attrs.fileKey();
+        generation++;
+        Files.deleteIfExists(snapshotFile); // Every entry may have moved
+        checkpointedLength = 0;
+        StorageMetrics.global().bytesWritten(fileLength); // The whole replacement was written by us
+    }
+}
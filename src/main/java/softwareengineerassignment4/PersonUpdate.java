@@ -0,0 +1,48 @@
+package softwareengineerassignment4;
+
+/**
+ * One change for Person.updatePersonalDetails(List): the arguments of a
+ * single updatePersonalDetails call.
+ */
+public final class PersonUpdate {
+    private final String currentPersonID;
+    private final String newPersonID;
+    private final String newFirstName;
+    private final String newLastName;
+    private final String newAddress;
+    private final String newBirthdate;
+
+    public PersonUpdate(String currentPersonID, String newPersonID, String newFirstName,
+                        String newLastName, String newAddress, String newBirthdate) {
+        this.currentPersonID = currentPersonID;
+        this.newPersonID = newPersonID;
+        this.newFirstName = newFirstName;
+        this.newLastName = newLastName;
+        this.newAddress = newAddress;
+        this.newBirthdate = newBirthdate;
+    }
+
+    public String getCurrentPersonID() {
+        return currentPersonID;
+    }
+
+    public String getNewPersonID() {
+        return newPersonID;
+    }
+
+    public String getNewFirstName() {
+        return newFirstName;
+    }
+
+    public String getNewLastName() {
+        return newLastName;
+    }
+
+    public String getNewAddress() {
+        return newAddress;
+    }
+
+    public String getNewBirthdate() {
+        return newBirthdate;
+    }
+}
@@ -0,0 +1,162 @@
+package softwareengineerassignment4;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves a persons data set from one shard count to another (see Person.setShardCount),
+ * e.g. persons.txt to persons.shard0-of-4.txt ... persons.shard3-of-4.txt.
+ * Each person is written to the shard their ID hashes to, the way compaction
+ * writes them: their latest version with their offences.
+ * Rules:
+ * - Each source shard is folded on its own, so a person who moved between
+ *   shards is taken from the shard they moved to, with the offences they took along
+ * - Offences of an ID with no person are kept, unless the ID has a person in
+ *   another source shard: those were left behind by a move
+ * - No offence is dropped, expired or not
+ * - The target files must not exist yet; the source files are left in place
+ * The source files should not be written to while they are resharded.
+ */
+public final class Resharder {
+    private Resharder() {
+    }
+
+    /**
+     * Writes the data set held in fromCount shards of a data file into toCount shards.
+     * Each target is written to a temp file first and then moved into place.
+     * @param fileName Data file name the shard file names are derived from
+     * @param format Format of the source files, also used for the targets
+     * @throws FileAlreadyExistsException if a target file exists; nothing is written then
+     */
+    public static void reshard(String fileName, StorageFormat format, int fromCount, int toCount) throws IOException {
+        if (fromCount < 1 || toCount < 1 || fromCount == toCount) {
+            throw new IllegalArgumentException("Cannot reshard from " + fromCount + " to " + toCount + " shards");
+        }
+        List<Path> targets = new ArrayList<>();
+        for (int i = 0; i < toCount; i++) {
+            Path target = Paths.get(ShardedStore.shardFileName(fileName, i, toCount));
+            if (Files.exists(target)) {
+                throw new FileAlreadyExistsException(target.toString());
+            }
+            targets.add(target);
+        }
+
+        List<LogCompactor> sources = new ArrayList<>();
+        for (int i = 0; i < fromCount; i++) {
+            Path source = Paths.get(ShardedStore.shardFileName(fileName, i, fromCount));
+            LogCompactor canonical = new LogCompactor(Integer.MIN_VALUE);
+            if (Files.exists(source)) {
+                format.scan(source, 0, Long.MAX_VALUE, canonical);
+            }
+            sources.add(canonical);
+        }
+
+        List<Path> tempFiles = new ArrayList<>();
+        for (Path target : targets) {
+            tempFiles.add(target.resolveSibling("temp_" + target.getFileName()));
+        }
+        try {
+            write(sources, format, tempFiles);
+            for (int i = 0; i < toCount; i++) {
+                Files.move(tempFiles.get(i), targets.get(i));
+            }
+        } finally {
+            for (Path tempFile : tempFiles) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    // Writes every source's people with their offences, then orphan offences, each to its new shard
+    private static void write(List<LogCompactor> sources, StorageFormat format, List<Path> tempFiles) throws IOException {
+        OutputStream[] outs = new OutputStream[tempFiles.size()];
+        try {
+            for (int i = 0; i < outs.length; i++) {
+                outs[i] = new BufferedOutputStream(Files.newOutputStream(tempFiles.get(i)), 1 << 16);
+            }
+            for (LogCompactor source : sources) {
+                for (PersonRecord record : source.latest().values()) {
+                    String personID = record.getPersonID();
+                    format.writePerson(record, source.offences().get(personID), outs[ShardedStore.shardOf(personID, outs.length)]);
+                }
+            }
+            for (LogCompactor source : sources) {
+                for (Map.Entry<String, DemeritWindow> entry : source.offences().entrySet()) {
+                    String personID = entry.getKey();
+                    if (hasPerson(sources, personID)) {
+                        continue;
+                    }
+                    DemeritWindow history = entry.getValue();
+                    OutputStream out = outs[ShardedStore.shardOf(personID, outs.length)];
+                    for (int i = 0; i < history.size(); i++) {
+                        format.writeDemerit(personID, history.dayAt(i), history.pointsAt(i), out);
+                    }
+                }
+            }
+        } finally {
+            IOException failure = null;
+            for (OutputStream out : outs) {
+                try {
+                    if (out != null) {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private static boolean hasPerson(List<LogCompactor> sources, String personID) {
+        for (LogCompactor source : sources) {
+            if (source.latest().containsKey(personID)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Usage: Resharder fileName format fromCount toCount
+     * e.g. Resharder persons.txt CSV 1 4
+     */
+    public static void main(String[] args) {
+        if (args.length != 4) {
+            System.out.println("Usage: Resharder <fileName> <CSV|BINARY> <fromCount> <toCount>");
+            return;
+        }
+        StorageFormat format;
+        int fromCount;
+        int toCount;
+        try {
+            format = StorageFormat.valueOf(args[1]);
+            fromCount = Integer.parseInt(args[2]);
+            toCount = Integer.parseInt(args[3]);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Expected CSV or BINARY and two shard counts");
+            return;
+        }
+        try {
+            reshard(args[0], format, fromCount, toCount);
+            System.out.println("Resharded " + args[0] + " from " + fromCount + " to " + toCount
+                + " shards; the old shard files can be deleted");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (FileAlreadyExistsException e) {
+            System.out.println("Target file already exists: " + e.getFile());
+        } catch (IOException e) {
+            System.out.println("Error resharding data file: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The updates one rewrite of a data file applies, and which entries belong to each updated person.
+ * An ID retired by a Moved entry can be taken again later, so the file may hold
+ * entries from several lives of one ID; only those after its last Moved entry are
+ * the person being updated.
+ * Rules:
+ * - Person and demerit entries of an updated ID after its last retirement are
+ *   rewritten to the new version and ID; earlier ones are copied as they are
+ * - Moved entries after that retirement that point at the ID are pointed at the
+ *   new ID, so offences brought in from earlier IDs stay with the person
+ * - If the new ID was itself retired after the person's current life began, entries
+ *   renamed in place would come before that retirement and be retired with it.
+ *   Such an update is appended after the copied entries instead, as a Moved entry
+ *   and the new version, the same as UpdateMode.APPEND writes it
+ */
+final class RewritePlan {
+    private final Map<String, PersonRecord> inPlace = new HashMap<>();
+    private final Map<String, PersonRecord> appended = new LinkedHashMap<>();
+    private final Map<String, Long> retiredAt = new HashMap<>(); // Offset of each involved ID's last Moved entry
+
+    /**
+     * Finds where the IDs in updates were last retired in [0, to) of the file, and plans the rewrite.
+     * @param updates New version of each person, keyed by their current ID
+     */
+    static RewritePlan forFile(StorageFormat format, Path file, long to, Map<String, PersonRecord> updates)
+            throws IOException {
+        RewritePlan plan = new RewritePlan();
+        for (Map.Entry<String, PersonRecord> update : updates.entrySet()) {
+            plan.retiredAt.put(update.getKey(), -1L);
+            plan.retiredAt.put(update.getValue().getPersonID(), -1L);
+        }
+        format.scan(file, 0, to, new LogVisitor() {
+            private long entryOffset;
+
+            @Override
+            public void entryAt(long offset) {
+                entryOffset = offset;
+            }
+
+            @Override
+            public boolean wantsPerson(String personID, int birthDay) {
+                return false;
+            }
+
+            @Override
+            public void person(PersonRecord record) {
+            }
+
+            @Override
+            public void demerit(String personID, int offenseDay, int points) {
+            }
+
+            @Override
+            public void moved(String fromPersonID, String toPersonID) {
+                plan.retiredAt.computeIfPresent(fromPersonID, (id, previous) -> entryOffset);
+            }
+        });
+
+        for (Map.Entry<String, PersonRecord> update : updates.entrySet()) {
+            long current = plan.retiredAt.get(update.getKey());
+            long target = plan.retiredAt.get(update.getValue().getPersonID());
+            if (!update.getKey().equals(update.getValue().getPersonID()) && target > current) {
+                plan.appended.put(update.getKey(), update.getValue());
+            } else {
+                plan.inPlace.put(update.getKey(), update.getValue());
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * @return the new version of the person an entry at the given offset belongs to,
+     *         or null if the ID is not rewritten in place or the entry is from an earlier life
+     */
+    PersonRecord updateFor(String personID, long entryOffset) {
+        PersonRecord updated = inPlace.get(personID);
+        return updated != null && entryOffset > retiredAt.get(personID) ? updated : null;
+    }
+
+    // Updates to write after the copied entries, keyed by current ID
+    Map<String, PersonRecord> appended() {
+        return Collections.unmodifiableMap(appended);
+    }
+}
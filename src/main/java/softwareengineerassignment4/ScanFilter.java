@@ -0,0 +1,87 @@
+package softwareengineerassignment4;
+
+/**
+ * Which people Person.scan returns, e.g.
+ * ScanFilter.all().idPrefix("56").bornBetween("01-01-1990", "31-12-1999").suspended(true).
+ * The conditions are checked while the data file is read, before a person's
+ * names and address are decoded, so people left out cost almost nothing.
+ * Each method returns a new filter with one more condition; filters are immutable.
+ */
+public final class ScanFilter {
+    private static final ScanFilter ALL = new ScanFilter("", Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+
+    private final String idPrefix;
+    private final int bornFrom;       // Epoch-days, inclusive
+    private final int bornTo;
+    private final Boolean suspended;  // null: either
+
+    private ScanFilter(String idPrefix, int bornFrom, int bornTo, Boolean suspended) {
+        this.idPrefix = idPrefix;
+        this.bornFrom = bornFrom;
+        this.bornTo = bornTo;
+        this.suspended = suspended;
+    }
+
+    // Everyone
+    public static ScanFilter all() {
+        return ALL;
+    }
+
+    // Only people whose ID starts with the prefix
+    public ScanFilter idPrefix(String prefix) {
+        return new ScanFilter(prefix, bornFrom, bornTo, suspended);
+    }
+
+    /**
+     * Only people born on or between the two dates.
+     * People whose birthdate is not a valid date are left out.
+     * @param from Earliest birthdate, dd-MM-yyyy
+     * @param to Latest birthdate, dd-MM-yyyy
+     * @throws IllegalArgumentException if either date is not a valid dd-MM-yyyy date
+     */
+    public ScanFilter bornBetween(String from, String to) {
+        return new ScanFilter(idPrefix, parseDate(from), parseDate(to), suspended);
+    }
+
+    // Only people who are (or are not) suspended today
+    public ScanFilter suspended(boolean suspended) {
+        return new ScanFilter(idPrefix, bornFrom, bornTo, suspended);
+    }
+
+    boolean acceptsId(String personID) {
+        return personID.startsWith(idPrefix);
+    }
+
+    boolean acceptsBirthDay(int birthDay) {
+        if (bornFrom == Integer.MIN_VALUE && bornTo == Integer.MAX_VALUE) {
+            return true;
+        }
+        return birthDay != DateCodec.INVALID && birthDay >= bornFrom && birthDay <= bornTo;
+    }
+
+    // True if the suspended flag matters, so the person's history has to be looked at
+    boolean checksSuspension() {
+        return suspended != null;
+    }
+
+    /**
+     * Checks the suspended flag, by the same rules as Person.
+     * @param history The person's offences (null if none)
+     * @param day The day to evaluate at, as an epoch-day
+     */
+    boolean acceptsHistory(int birthDay, DemeritWindow history, int day) {
+        if (suspended == null) {
+            return true;
+        }
+        int points = history == null ? 0 : history.maxWindowPoints(day);
+        return (points > Person.suspensionThreshold(birthDay, day)) == suspended;
+    }
+
+    private static int parseDate(String date) {
+        int day = DateCodec.parse(date);
+        if (day == DateCodec.INVALID) {
+            throw new IllegalArgumentException("Not a dd-MM-yyyy date: " + date);
+        }
+        return day;
+    }
+}
@@ -0,0 +1,60 @@
+package softwareengineerassignment4;
+
+import java.util.Locale;
+
+/**
+ * Person fields that can be searched by prefix with Person.search.
+ * Matching ignores case. Street and suburb are the second and third parts
+ * of an address "number|street|suburb|state|country".
+ */
+public enum SearchField {
+    LAST_NAME {
+        @Override
+        String rawValue(PersonRecord record) {
+            return record.getLastName();
+        }
+    },
+    STREET {
+        @Override
+        String rawValue(PersonRecord record) {
+            return addressPart(record.getAddress(), 1);
+        }
+    },
+    SUBURB {
+        @Override
+        String rawValue(PersonRecord record) {
+            return addressPart(record.getAddress(), 2);
+        }
+    };
+
+    abstract String rawValue(PersonRecord record);
+
+    /**
+     * The value the record is indexed under, or null if it has none (e.g. a short address).
+     */
+    String key(PersonRecord record) {
+        String value = rawValue(record);
+        return value == null ? null : normalize(value);
+    }
+
+    // Case-insensitive form of a value or prefix
+    static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    // The index-th '|'-separated part, without splitting the whole address
+    private static String addressPart(String address, int index) {
+        if (address == null) {
+            return null;
+        }
+        int start = 0;
+        for (int i = 0; i < index; i++) {
+            start = address.indexOf('|', start) + 1;
+            if (start == 0) {
+                return null;
+            }
+        }
+        int end = address.indexOf('|', start);
+        return address.substring(start, end < 0 ? address.length() : end);
+    }
+}
@@ -0,0 +1,63 @@
+package softwareengineerassignment4;
+
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Sorted index from one SearchField's value to personIDs.
+ * Entries are "value\0personID" strings in a skip list, so a prefix query is
+ * one O(log n) seek followed by a walk over the matching entries only; its
+ * cost depends on the number of matches, not the number of people.
+ *
+ * Entries are only ever added as person versions are indexed. When a person's
+ * value changes, or their ID moves, the old entry stays behind; callers check
+ * each match against the person's current version (see PersonStore.search).
+ * Stale entries go when the file is compacted or rewritten and the index is rebuilt.
+ * Iteration is weakly consistent, so a query can be consumed while writes go on.
+ */
+final class SecondaryIndex {
+    static final char SEPARATOR = '\0';
+
+    private final SearchField field;
+    private final NavigableSet<String> entries = new ConcurrentSkipListSet<>();
+
+    SecondaryIndex(SearchField field) {
+        this.field = field;
+    }
+
+    void add(PersonRecord record) {
+        String key = field.key(record);
+        if (key != null) {
+            entries.add(key + SEPARATOR + record.getPersonID());
+        }
+    }
+
+    /**
+     * Lazily lists the entries whose value starts with the prefix, in value order.
+     * @param prefix Already normalized with SearchField.normalize
+     */
+    Stream<String> entriesWithPrefix(String prefix) {
+        return entries.subSet(prefix, true, prefix + Character.MAX_VALUE, false).stream();
+    }
+
+    static String keyOf(String entry) {
+        return entry.substring(0, entry.lastIndexOf(SEPARATOR));
+    }
+
+    static String personIdOf(String entry) {
+        return entry.substring(entry.lastIndexOf(SEPARATOR) + 1);
+    }
+
+    SearchField field() {
+        return field;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void clear() {
+        entries.clear();
+    }
+}
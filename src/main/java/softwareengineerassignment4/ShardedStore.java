@@ -0,0 +1,497 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Persons partitioned across several data files by a hash of personID, one
+ * PersonStore per file, so writers and readers of different people mostly
+ * touch different files, locks and indexes.
+ * Rules:
+ * - A person always lives in shard shardOf(personID, count), so lookups,
+ *   adds, demerits and same-shard updates go straight to one store
+ * - Scans, searches and fleet-wide work fan out to every shard in parallel
+ * - With one shard the data file is the plain file name, exactly as before
+ *   sharding; with N it is shardFileName(fileName, i, N) for each i
+ * - An ID change that moves a person to another shard writes their new
+ *   version and offences to the new shard first, then a Moved line in the old
+ *   one (see update); in between, the person can be found under both IDs.
+ *   If the old shard cannot be written, the new shard's copy is retired again;
+ *   only if that fails too is the person left in both shards, and update
+ *   says so in the IOException it throws
+ * Resharder moves a data set from one shard count to another.
+ */
+final class ShardedStore {
+    private static final Logger LOG = Logger.getLogger(ShardedStore.class.getName());
+    private static final Map<String, ShardedStore> OPEN = new ConcurrentHashMap<>();
+
+    private final PersonStore[] shards;
+
+    private ShardedStore(PersonStore[] shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Returns the shards of a data set, opening them on first use.
+     * @param fileName Data file name the shard file names are derived from
+     * @param shardCount Number of shards, at least 1
+     * @throws IllegalArgumentException if a shard file is already open in another format
+     */
+    static ShardedStore forFile(String fileName, int shardCount, StorageFormat format) {
+        String key = Paths.get(fileName).toAbsolutePath().normalize() + "#" + shardCount;
+        ShardedStore sharded = OPEN.computeIfAbsent(key, k -> {
+            PersonStore[] shards = new PersonStore[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                shards[i] = PersonStore.forFile(shardFileName(fileName, i, shardCount), format);
+            }
+            return new ShardedStore(shards);
+        });
+        if (sharded.shards[0].format() != format) {
+            throw new IllegalArgumentException(fileName + " is already open as " + sharded.shards[0].format() + ", not " + format);
+        }
+        return sharded;
+    }
+
+    /**
+     * File holding one shard, e.g. persons.shard2-of-4.txt for shard 2 of 4 of persons.txt.
+     * The only shard of one is the file itself.
+     */
+    static String shardFileName(String fileName, int shard, int shardCount) {
+        if (shardCount == 1) {
+            return fileName;
+        }
+        String suffix = ".shard" + shard + "-of-" + shardCount;
+        int slash = Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\'));
+        int dot = fileName.lastIndexOf('.');
+        return dot > slash + 1 ? fileName.substring(0, dot) + suffix + fileName.substring(dot) : fileName + suffix;
+    }
+
+    /**
+     * Shard a personID belongs in. String.hashCode is fixed by the language,
+     * so every process and every run agrees; its bits are mixed first so
+     * IDs that differ only in their last characters still spread out.
+     */
+    static int shardOf(String personID, int shardCount) {
+        int h = personID.hashCode();
+        h = (h ^ (h >>> 16)) * 0x85EBCA6B;
+        h = (h ^ (h >>> 13)) * 0xC2B2AE35;
+        return Math.floorMod(h ^ (h >>> 16), shardCount);
+    }
+
+    int count() {
+        return shards.length;
+    }
+
+    PersonStore shard(int shard) {
+        return shards[shard];
+    }
+
+    PersonStore shardFor(String personID) {
+        return shards[shardOf(personID, shards.length)];
+    }
+
+    // Locks the ID stripes of both IDs, in their shards, lowest shard first
+    void lockIds(String first, String second) {
+        int a = shardOf(first, shards.length);
+        int b = shardOf(second, shards.length);
+        if (a == b) {
+            shards[a].idLocks().lock(first, second);
+        } else if (a < b) {
+            shards[a].idLocks().lock(first);
+            shards[b].idLocks().lock(second);
+        } else {
+            shards[b].idLocks().lock(second);
+            shards[a].idLocks().lock(first);
+        }
+    }
+
+    void unlockIds(String first, String second) {
+        int a = shardOf(first, shards.length);
+        int b = shardOf(second, shards.length);
+        if (a == b) {
+            shards[a].idLocks().unlock(first, second);
+        } else {
+            shards[a].idLocks().unlock(first);
+            shards[b].idLocks().unlock(second);
+        }
+    }
+
+    /**
+     * Writes a new version of a person, following them to another shard if their new ID belongs there.
+     * A move first waits for the offences queued for the person in the old shard to be
+     * written, then writes the new version with all their offences to the new shard, then
+     * retires the old ID in the old shard. The retired ID's offences stay behind in the
+     * old shard under the new ID, where nothing ever looks them up, since no person with
+     * that ID can live in that shard.
+     * If the old ID cannot be retired, the new ID is retired in the new shard instead,
+     * leaving the person as they were; the copied offences stay behind there under the
+     * old ID, the same way.
+     * Callers hold both IDs with lockIds.
+     * @param mode How a change within one shard is written; a move always appends
+     * @return true if updated, false if the person does not exist or the new ID is already taken
+     * @throws IOException if the move could not be written; its message says if the person
+     *         was left in both shards because the new shard's copy could not be retired
+     */
+    boolean update(String currentPersonID, PersonRecord updated, UpdateMode mode) throws IOException {
+        PersonStore from = shardFor(currentPersonID);
+        PersonStore to = shardFor(updated.getPersonID());
+        if (from == to) {
+            return from.update(currentPersonID, updated, mode);
+        }
+
+        // Offences still queued in the old shard must be in its history before it is copied,
+        // or they land after the Moved line and stay behind under the retired ID
+        from.awaitWritten(currentPersonID);
+        Object[] found = from.read(currentPersonID, (record, history) ->
+            new Object[] {record, history == null ? null : history.copy()});
+        if (found[0] == null || !to.addMoved(updated, (DemeritWindow) found[1])) {
+            return false;
+        }
+        try {
+            from.retire(currentPersonID, updated.getPersonID());
+        } catch (IOException | RuntimeException e) {
+            try {
+                to.retire(updated.getPersonID(), currentPersonID);
+            } catch (IOException | RuntimeException undo) {
+                e.addSuppressed(undo);
+                throw new IOException("Person " + currentPersonID + " is left in two shards, also as "
+                                      + updated.getPersonID(), e);
+            }
+            throw e;
+        }
+        return true;
+    }
+
+    // Holds every ID stripe of every shard, lowest shard first
+    void lockAll() {
+        for (PersonStore shard : shards) {
+            shard.idLocks().lockAll();
+        }
+    }
+
+    void unlockAll() {
+        for (int i = shards.length - 1; i >= 0; i--) {
+            shards[i].idLocks().unlockAll();
+        }
+    }
+
+    /**
+     * Checks and applies many updates, as PersonStore.updateAll does for one file.
+     * Updates that keep a person in their shard go through that shard's updateAll,
+     * the shards in parallel, so each shard is rewritten once and all of its updates
+     * are applied or none are. Updates that move a person to another shard, and any
+     * later update naming one of their IDs, are then checked and applied one at a
+     * time in batch order, appended; one is refused as DUPLICATE if an applied
+     * update already named either of its IDs.
+     * Callers hold every ID with lockAll.
+     * @return reason each update was refused, or null where it was applied; IO for
+     *         the updates of a shard that could not be rewritten
+     */
+    FailureReason[] updateAll(List<String> currentIDs, List<PersonRecord> updates,
+                              BiFunction<PersonRecord, PersonRecord, FailureReason> rules) {
+        FailureReason[] results = new FailureReason[updates.size()];
+        List<List<Integer>> byShard = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        List<Integer> moves = new ArrayList<>();
+        boolean[] moving = new boolean[results.length];
+        Set<String> movingIds = new HashSet<>();
+        for (int i = 0; i < results.length; i++) {
+            String currentPersonID = currentIDs.get(i);
+            String newPersonID = updates.get(i).getPersonID();
+            int shard = shardOf(currentPersonID, shards.length);
+            if (shard == shardOf(newPersonID, shards.length)
+                    && !movingIds.contains(currentPersonID) && !movingIds.contains(newPersonID)) {
+                byShard.get(shard).add(i);
+            } else {
+                moves.add(i);
+                moving[i] = true;
+                movingIds.add(currentPersonID);
+                movingIds.add(newPersonID);
+            }
+        }
+
+        try {
+            fanOut(ForkJoinPool.commonPool(), (shard, index) -> {
+                List<Integer> mine = byShard.get(index);
+                if (mine.isEmpty()) {
+                    return null;
+                }
+                List<String> ids = new ArrayList<>();
+                List<PersonRecord> records = new ArrayList<>();
+                for (int i : mine) {
+                    ids.add(currentIDs.get(i));
+                    records.add(updates.get(i));
+                }
+                FailureReason[] stored;
+                try {
+                    stored = shard.updateAll(ids, records, rules);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Error writing data file", e);
+                    stored = new FailureReason[mine.size()];
+                    Arrays.fill(stored, FailureReason.IO);
+                }
+                for (int j = 0; j < stored.length; j++) {
+                    results[mine.get(j)] = stored[j];
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Each shard's task handles its own failure
+        }
+        if (moves.isEmpty()) {
+            return results;
+        }
+
+        Set<String> claimed = new HashSet<>(); // IDs named by applied updates
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null && !moving[i]) {
+                claimed.add(currentIDs.get(i));
+                claimed.add(updates.get(i).getPersonID());
+            }
+        }
+        for (int i : moves) {
+            String currentPersonID = currentIDs.get(i);
+            PersonRecord updated = updates.get(i);
+            try {
+                PersonRecord existing = shardFor(currentPersonID).get(currentPersonID);
+                if (claimed.contains(currentPersonID) || claimed.contains(updated.getPersonID())) {
+                    results[i] = FailureReason.DUPLICATE;
+                } else if (existing == null) {
+                    results[i] = FailureReason.NOT_FOUND;
+                } else {
+                    results[i] = rules.apply(existing, updated);
+                    if (results[i] == null && !update(currentPersonID, updated, UpdateMode.APPEND)) {
+                        results[i] = FailureReason.DUPLICATE;
+                    }
+                }
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Error writing data file", e);
+                results[i] = FailureReason.IO;
+            }
+            if (results[i] == null) {
+                claimed.add(currentPersonID);
+                claimed.add(updated.getPersonID());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Searches every shard and merges the results back into one ordered stream,
+     * by field value and then personID, as a single store orders them.
+     * Each shard's matches are still read only as the merged stream reaches them.
+     */
+    <T> Stream<T> search(SearchField field, String prefix, BiFunction<PersonRecord, DemeritWindow, T> reader)
+            throws IOException {
+        if (shards.length == 1) {
+            return shards[0].search(field, prefix, reader);
+        }
+        List<Iterator<Match<T>>> sources = new ArrayList<>();
+        for (PersonStore shard : shards) {
+            sources.add(shard.search(field, prefix, (record, history) ->
+                new Match<>(field.key(record) + SecondaryIndex.SEPARATOR + record.getPersonID(),
+                            reader.apply(record, history))).iterator());
+        }
+        Iterator<Match<T>> merged = new MergedIterator<>(sources);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false)
+            .map(match -> match.value)
+            .filter(value -> value != null);
+    }
+
+    /**
+     * Scans every shard, one after another. A parallel() stream reads the shards on
+     * separate threads; each shard's part of the stream is then read sequentially.
+     */
+    <T> Stream<T> scan(ScanFilter filter, BiFunction<PersonRecord, DemeritWindow, T> reader) throws IOException {
+        if (shards.length == 1) {
+            return shards[0].scan(filter, reader);
+        }
+        List<Stream<T>> parts = new ArrayList<>();
+        for (PersonStore shard : shards) {
+            parts.add(shard.scan(filter, reader));
+        }
+        return parts.stream().flatMap(Function.identity());
+    }
+
+    /**
+     * Evaluates everyone in every shard, the shards in parallel, and combines the reports.
+     */
+    SuspensionReport evaluateSuspensions(int day, ForkJoinPool pool) throws IOException {
+        long started = System.nanoTime();
+        List<SuspensionReport> parts = fanOut(pool, (shard, index) -> SuspensionEngine.evaluate(shard, day, pool));
+        return SuspensionReport.combine(parts, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Sweeps everyone with offences in every shard for the periods they were suspended between two days.
+     * @param from First day, as an epoch-day
+     * @param to Last day, inclusive
+     */
+    SuspensionPeriods suspensionPeriods(int from, int to, ForkJoinPool pool) throws IOException {
+        long started = System.nanoTime();
+        List<List<SuspensionPeriods.Sweep>> parts = fanOut(pool, (shard, index) ->
+            shard.readOffenders((record, history) -> record == null || history == null ? null
+                : new SuspensionPeriods.Sweep(record.getPersonID(), SuspensionPeriods.sweep(
+                    history, DateCodec.parse(record.getBirthdate()), from, to))));
+        return SuspensionPeriods.combine(parts, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Compacts every shard in turn on the background compaction thread.
+     * @return future completed with the totals over all shards
+     */
+    CompletableFuture<CompactionResult> compactInBackground() {
+        long started = System.nanoTime();
+        List<CompletableFuture<CompactionResult>> parts = new ArrayList<>();
+        for (PersonStore shard : shards) {
+            parts.add(LogCompactor.compactInBackground(shard));
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            long before = 0;
+            long after = 0;
+            int expired = 0;
+            for (CompletableFuture<CompactionResult> part : parts) {
+                CompactionResult result = part.join();
+                before += result.getBytesBefore();
+                after += result.getBytesAfter();
+                expired += result.getExpiredOffences();
+            }
+            return new CompactionResult(before, after, expired, (System.nanoTime() - started) / 1_000_000);
+        });
+    }
+
+    /**
+     * Checkpoints every shard.
+     * @return true if any shard wrote a snapshot
+     */
+    boolean checkpoint() throws IOException {
+        boolean written = false;
+        for (boolean shardWritten : fanOut(ForkJoinPool.commonPool(), (shard, index) -> shard.checkpoint())) {
+            written |= shardWritten;
+        }
+        return written;
+    }
+
+    interface ShardTask<T> {
+        T run(PersonStore shard, int index) throws IOException;
+    }
+
+    /**
+     * Runs a task on every shard, in parallel on the pool when there is more than one.
+     * @return each shard's result, in shard order
+     * @throws IOException the first shard failure, after every task has finished
+     */
+    <T> List<T> fanOut(ForkJoinPool pool, ShardTask<T> task) throws IOException {
+        if (shards.length == 1) {
+            return Collections.singletonList(task.run(shards[0], 0));
+        }
+        List<ForkJoinTask<T>> running = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            int index = i;
+            running.add(pool.submit(() -> task.run(shards[index], index)));
+        }
+        List<T> results = new ArrayList<>();
+        Throwable failure = null;
+        for (ForkJoinTask<T> shardTask : running) {
+            try {
+                results.add(shardTask.get());
+            } catch (ExecutionException e) {
+                failure = failure == null ? e.getCause() : failure;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for shards");
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+        return results;
+    }
+
+    // A search result with the key its shard ordered it by
+    private static final class Match<T> {
+        final String sortKey;
+        final T value;
+
+        Match(String sortKey, T value) {
+            this.sortKey = sortKey;
+            this.value = value;
+        }
+    }
+
+    // Merges iterators that are each in sortKey order, taking the least head each time
+    private static final class MergedIterator<T> implements Iterator<Match<T>> {
+        private final PriorityQueue<Head<T>> heads =
+            new PriorityQueue<>(Comparator.comparing((Head<T> head) -> head.match.sortKey));
+
+        MergedIterator(List<Iterator<Match<T>>> sources) {
+            for (Iterator<Match<T>> source : sources) {
+                advance(source);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Match<T> next() {
+            Head<T> head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            advance(head.source);
+            return head.match;
+        }
+
+        private void advance(Iterator<Match<T>> source) {
+            if (source.hasNext()) {
+                heads.add(new Head<>(source.next(), source));
+            }
+        }
+    }
+
+    private static final class Head<T> {
+        final Match<T> match;
+        final Iterator<Match<T>> source;
+
+        Head(Match<T> match, Iterator<Match<T>> source) {
+            this.match = match;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Converts a persons data file between storage formats, e.g. persons.txt to a binary file and back.
+ * The output holds the same people and offences as the input, written the way
+ * compaction writes them: each person's latest version with their offences.
+ * Rules:
+ * - Superseded versions and Moved lines are folded in, not copied
+ * - No offence is dropped, expired or not
+ * - Fields after the birthdate on a CSV person line are not carried over
+ * - An unfinished last entry in the input is not converted
+ * The source file should not be written to while it is converted.
+ */
+public final class StorageConverter {
+    private StorageConverter() {
+    }
+
+    /**
+     * Converts a data file into a new file in another format.
+     * The target is written to a temp file first and then moved into place.
+     * @param source Path of the file to read
+     * @param sourceFormat Format of the file to read
+     * @param target Path of the file to write; replaced if it exists
+     * @param targetFormat Format to write
+     */
+    public static void convert(String source, StorageFormat sourceFormat,
+                               String target, StorageFormat targetFormat) throws IOException {
+        Path targetPath = Paths.get(target);
+        Path tempFile = targetPath.resolveSibling("temp_" + targetPath.getFileName());
+        LogCompactor canonical = new LogCompactor(Integer.MIN_VALUE);
+        try {
+            sourceFormat.scan(Paths.get(source), 0, Long.MAX_VALUE, canonical);
+            canonical.write(tempFile, targetFormat);
+            Files.move(tempFile, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Usage: StorageConverter source sourceFormat target targetFormat
+     * e.g. StorageConverter persons.txt CSV persons.bin BINARY
+     */
+    public static void main(String[] args) {
+        if (args.length != 4) {
+            System.out.println("Usage: StorageConverter <source> <CSV|BINARY> <target> <CSV|BINARY>");
+            return;
+        }
+        try {
+            convert(args[0], StorageFormat.valueOf(args[1]), args[2], StorageFormat.valueOf(args[3]));
+            System.out.println("Converted " + args[0] + " to " + args[2]);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Unknown format: expected CSV or BINARY");
+        } catch (IOException e) {
+            System.out.println("Error converting data file: " + e.getMessage());
+        }
+    }
+}
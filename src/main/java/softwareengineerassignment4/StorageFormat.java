@@ -0,0 +1,163 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * How entries are laid out in a persons data file.
+ * Both formats hold the same log (person versions, demerits, ID moves) and
+ * behave the same to the store; they differ only in bytes on disk.
+ * StorageConverter translates a file from one to the other.
+ */
+public enum StorageFormat {
+    /**
+     * One text line per entry (see CsvFormat). Readable and editable by hand.
+     */
+    CSV {
+        @Override
+        long scan(Path file, long from, long to, LogVisitor visitor) throws IOException {
+            return MappedScanner.scan(file, from, to, visitor);
+        }
+
+        @Override
+        boolean readEntry(FileChannel channel, long offset, LogVisitor visitor) throws IOException {
+            return MappedScanner.readLine(channel, offset, line -> CsvFormat.parse(line, visitor));
+        }
+
+        @Override
+        long splitPoint(Path file, long from, long to) throws IOException {
+            long start = MappedScanner.lineStartAfter(file, from + (to - from) / 2, to);
+            return start < to ? start : -1;
+        }
+
+        @Override
+        void writePerson(PersonRecord record, DemeritWindow offences, OutputStream out) throws IOException {
+            CsvFormat.writePerson(record, offences, out);
+        }
+
+        @Override
+        void writeDemerit(String personID, int offenseDay, int points, OutputStream out) throws IOException {
+            CsvFormat.writeDemerit(personID, offenseDay, points, out);
+        }
+
+        @Override
+        void writeMoved(String fromPersonID, String toPersonID, OutputStream out) throws IOException {
+            CsvFormat.writeMoved(fromPersonID, toPersonID, out);
+        }
+
+        @Override
+        long rewrite(Path file, long to, RewritePlan plan, OutputStream out) throws IOException {
+            return CsvFormat.rewrite(file, to, plan, out);
+        }
+    },
+
+    /**
+     * Length-prefixed binary records with packed IDs, epoch-day dates and
+     * offences inline in the person record (see BinaryFormat). Several times faster to load.
+     */
+    BINARY {
+        @Override
+        long scan(Path file, long from, long to, LogVisitor visitor) throws IOException {
+            return BinaryFormat.scan(file, from, to, visitor);
+        }
+
+        @Override
+        boolean readEntry(FileChannel channel, long offset, LogVisitor visitor) throws IOException {
+            return BinaryFormat.readEntry(channel, offset, visitor);
+        }
+
+        @Override
+        long splitPoint(Path file, long from, long to) throws IOException {
+            // Records have no sync marker to find from the middle, so hop over their headers to it
+            long start = MappedScanner.scanRecords(file, from, from + (to - from) / 2, record -> { });
+            return start > from ? start : -1;
+        }
+
+        @Override
+        void writePerson(PersonRecord record, DemeritWindow offences, OutputStream out) throws IOException {
+            BinaryFormat.writePerson(record, offences, out);
+        }
+
+        @Override
+        void writeDemerit(String personID, int offenseDay, int points, OutputStream out) throws IOException {
+            BinaryFormat.writeDemerit(personID, offenseDay, points, out);
+        }
+
+        @Override
+        void writeMoved(String fromPersonID, String toPersonID, OutputStream out) throws IOException {
+            BinaryFormat.writeMoved(fromPersonID, toPersonID, out);
+        }
+
+        @Override
+        long rewrite(Path file, long to, RewritePlan plan, OutputStream out) throws IOException {
+            return BinaryFormat.rewrite(file, to, plan, out);
+        }
+    };
+
+    /**
+     * Passes every complete entry in bytes [from, to) of the file to the visitor, in order.
+     * @return offset just after the last complete entry
+     */
+    abstract long scan(Path file, long from, long to, LogVisitor visitor) throws IOException;
+
+    /**
+     * Passes the one entry starting at a file offset to the visitor.
+     * @return false if there is no complete entry at that offset
+     */
+    abstract boolean readEntry(FileChannel channel, long offset, LogVisitor visitor) throws IOException;
+
+    /**
+     * Reads the person entry starting at a file offset, e.g. one found through the ID index.
+     * @return the record, or null if there is no person entry there
+     */
+    PersonRecord readPerson(FileChannel channel, long offset) throws IOException {
+        PersonReader reader = new PersonReader();
+        readEntry(channel, offset, reader);
+        return reader.record;
+    }
+
+    /**
+     * Finds an entry boundary roughly halfway through [from, to), where entries start
+     * at from and at to, so the two halves can be read separately (e.g. in parallel).
+     * @return offset of an entry start strictly between from and to, or -1 if there is none
+     */
+    abstract long splitPoint(Path file, long from, long to) throws IOException;
+
+    // Keeps the person of an entry and ignores everything else
+    private static final class PersonReader implements LogVisitor {
+        private PersonRecord record;
+
+        @Override
+        public void person(PersonRecord record) {
+            this.record = record;
+        }
+
+        @Override
+        public void demerit(String personID, int offenseDay, int points) {
+        }
+
+        @Override
+        public void moved(String fromPersonID, String toPersonID) {
+        }
+    }
+
+    /**
+     * Writes a person version, followed by the given offences (may be null).
+     */
+    abstract void writePerson(PersonRecord record, DemeritWindow offences, OutputStream out) throws IOException;
+
+    abstract void writeDemerit(String personID, int offenseDay, int points, OutputStream out) throws IOException;
+
+    abstract void writeMoved(String fromPersonID, String toPersonID, OutputStream out) throws IOException;
+
+    /**
+     * Copies complete entries in [0, to) to out in one pass, replacing the person
+     * versions of each ID the plan rewrites in place and moving their demerits, and
+     * the Moved entries that lead to them, to the updated ID.
+     * Updates the plan appends are left to the caller.
+     * @return offset just after the last complete entry copied
+     */
+    abstract long rewrite(Path file, long to, RewritePlan plan, OutputStream out) throws IOException;
+}
@@ -0,0 +1,255 @@
+package softwareengineerassignment4;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics for every Person storage operation and data file, for the whole JVM:
+ * - Per Operation: latency histogram, successes, failures per FailureReason
+ * - Bytes read from and written to data files
+ * - Size of each open data file and the person, demerit and moved entries indexed from it
+ * - Hits, misses and evictions of the person record caches (see PersonCache)
+ * Recording uses only atomics and LongAdders, never a lock, so the hot paths
+ * stay cheap under contention.
+ *
+ * The metrics are published as MXBeans on the platform MBean server when this
+ * class loads (see OperationMetricsMXBean, StorageMetricsMXBean), and as
+ * Prometheus text exposition format from prometheusText().
+ */
+public final class StorageMetrics implements StorageMetricsMXBean {
+    private static final Logger LOG = Logger.getLogger(StorageMetrics.class.getName());
+    static final String DOMAIN = "softwareengineerassignment4";
+    private static final StorageMetrics GLOBAL = new StorageMetrics();
+
+    static {
+        GLOBAL.register(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    private final Map<Operation, OperationMetrics> operations = new EnumMap<>(Operation.class);
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder cacheEvictions = new LongAdder();
+
+    private StorageMetrics() {
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new OperationMetrics(operation));
+        }
+    }
+
+    // The JVM-wide metrics
+    public static StorageMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Records one finished operation.
+     * @param startedNanos System.nanoTime() when it started
+     * @param failure Why it failed, or null if it succeeded
+     */
+    void record(Operation operation, long startedNanos, FailureReason failure) {
+        operations.get(operation).record(System.nanoTime() - startedNanos, failure);
+    }
+
+    OperationMetrics operation(Operation operation) {
+        return operations.get(operation);
+    }
+
+    void bytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    void cacheHit() {
+        cacheHits.increment();
+    }
+
+    void cacheMiss() {
+        cacheMisses.increment();
+    }
+
+    void cacheEviction() {
+        cacheEvictions.increment();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return cacheEvictions.sum();
+    }
+
+    @Override
+    public long getCachedPersons() {
+        long cached = 0;
+        for (PersonStore store : PersonStore.openStores()) {
+            cached += store.cachedRecords();
+        }
+        return cached;
+    }
+
+    @Override
+    public Map<String, Long> getFileBytes() {
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        for (PersonStore store : PersonStore.openStores()) {
+            sizes.put(store.file().toString(), store.stats().fileBytes);
+        }
+        return sizes;
+    }
+
+    @Override
+    public Map<String, Long> getFileEntries() {
+        Map<String, Long> entries = new LinkedHashMap<>();
+        for (PersonStore store : PersonStore.openStores()) {
+            PersonStore.Stats stats = store.stats();
+            entries.put(store.file() + " person", stats.personEntries);
+            entries.put(store.file() + " demerit", stats.demeritEntries);
+            entries.put(store.file() + " moved", stats.movedEntries);
+        }
+        return entries;
+    }
+
+    @Override
+    public String getPrometheusText() {
+        return prometheusText();
+    }
+
+    /**
+     * All metrics in Prometheus text exposition format (version 0.0.4).
+     * Latency buckets are every power of two nanoseconds from about 1 us to 69 s, in seconds.
+     */
+    public String prometheusText() {
+        StringBuilder out = new StringBuilder(8192);
+        out.append("# HELP person_operation_duration_seconds Latency of Person storage operations.\n")
+           .append("# TYPE person_operation_duration_seconds histogram\n");
+        for (OperationMetrics metrics : operations.values()) {
+            String name = metrics.operation().metricName();
+            long[] counts = metrics.latency().snapshot();
+            long cumulative = 0;
+            int bucket = 0;
+            for (int power = 10; power <= 36; power++) {
+                long bound = 1L << power;
+                while (bucket < counts.length && LatencyHistogram.upperBound(bucket) <= bound) {
+                    cumulative += counts[bucket++];
+                }
+                out.append("person_operation_duration_seconds_bucket{operation=\"").append(name)
+                   .append("\",le=\"").append(seconds(bound)).append("\"} ").append(cumulative).append('\n');
+            }
+            while (bucket < counts.length) {
+                cumulative += counts[bucket++];
+            }
+            out.append("person_operation_duration_seconds_bucket{operation=\"").append(name)
+               .append("\",le=\"+Inf\"} ").append(cumulative).append('\n');
+            out.append("person_operation_duration_seconds_sum{operation=\"").append(name).append("\"} ")
+               .append(seconds(metrics.latency().totalNanos())).append('\n');
+            out.append("person_operation_duration_seconds_count{operation=\"").append(name).append("\"} ")
+               .append(cumulative).append('\n');
+        }
+
+        out.append("# HELP person_operation_successes_total Person storage operations that succeeded.\n")
+           .append("# TYPE person_operation_successes_total counter\n");
+        for (OperationMetrics metrics : operations.values()) {
+            out.append("person_operation_successes_total{operation=\"").append(metrics.operation().metricName())
+               .append("\"} ").append(metrics.getSuccesses()).append('\n');
+        }
+
+        out.append("# HELP person_operation_failures_total Person storage operations that failed, by reason.\n")
+           .append("# TYPE person_operation_failures_total counter\n");
+        for (OperationMetrics metrics : operations.values()) {
+            for (FailureReason reason : FailureReason.values()) {
+                out.append("person_operation_failures_total{operation=\"").append(metrics.operation().metricName())
+                   .append("\",reason=\"").append(reason.metricName()).append("\"} ")
+                   .append(metrics.failures(reason)).append('\n');
+            }
+        }
+
+        counter(out, "person_storage_read_bytes_total", "Bytes read from data files.", getBytesRead());
+        counter(out, "person_storage_written_bytes_total", "Bytes written to data files.", getBytesWritten());
+        counter(out, "person_cache_hits_total", "Lookups by ID served from a person cache.", getCacheHits());
+        counter(out, "person_cache_misses_total", "Lookups by ID that had to read the data file.", getCacheMisses());
+        counter(out, "person_cache_evictions_total", "Persons evicted from a full person cache.", getCacheEvictions());
+        out.append("# HELP person_cache_persons Persons held in the person caches.\n")
+           .append("# TYPE person_cache_persons gauge\n")
+           .append("person_cache_persons ").append(getCachedPersons()).append('\n');
+
+        out.append("# HELP person_data_file_bytes Size of each open data file.\n")
+           .append("# TYPE person_data_file_bytes gauge\n");
+        StringBuilder entries = new StringBuilder();
+        for (PersonStore store : PersonStore.openStores()) {
+            PersonStore.Stats stats = store.stats();
+            String file = escape(store.file().toString());
+            out.append("person_data_file_bytes{file=\"").append(file).append("\"} ").append(stats.fileBytes).append('\n');
+            entry(entries, file, "person", stats.personEntries);
+            entry(entries, file, "demerit", stats.demeritEntries);
+            entry(entries, file, "moved", stats.movedEntries);
+        }
+        out.append("# HELP person_data_file_entries Entries indexed from each open data file, by type.\n")
+           .append("# TYPE person_data_file_entries gauge\n")
+           .append(entries);
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+           .append("# TYPE ").append(name).append(" counter\n")
+           .append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void entry(StringBuilder out, String file, String type, long count) {
+        out.append("person_data_file_entries{file=\"").append(file).append("\",type=\"").append(type)
+           .append("\"} ").append(count).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9g", nanos / 1e9);
+    }
+
+    // Label values escape backslash, quote and newline
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // Publishes the MXBeans; a clash (e.g. classes loaded twice) leaves the metrics unpublished
+    private void register(MBeanServer server) {
+        try {
+            server.registerMBean(this, new ObjectName(DOMAIN + ":type=Storage"));
+            for (OperationMetrics metrics : operations.values()) {
+                server.registerMBean(metrics, new ObjectName(DOMAIN + ":type=Operation,name="
+                                                             + metrics.operation().metricName()));
+            }
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "Error registering metrics MBeans", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package softwareengineerassignment4;
+
+import java.util.Map;
+
+/**
+ * JMX view of data file I/O, registered as "softwareengineerassignment4:type=Storage".
+ */
+public interface StorageMetricsMXBean {
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    // Lookups by ID served from, and missing, the person caches
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getCacheEvictions();
+
+    // Persons currently held in the caches of every open data file
+    long getCachedPersons();
+
+    // Size in bytes of each open data file, by path
+    Map<String, Long> getFileBytes();
+
+    // Entries indexed from each open data file, by "path person|demerit|moved"
+    Map<String, Long> getFileEntries();
+
+    // The Prometheus text dump, as StorageMetrics.prometheusText()
+    String getPrometheusText();
+}
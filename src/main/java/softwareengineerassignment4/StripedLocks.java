@@ -0,0 +1,71 @@
+package softwareengineerassignment4;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks that personIDs hash onto.
+ * Writers on different people usually take different stripes and run in
+ * parallel; writers on the same person always take the same stripe and
+ * queue up. Pairs of stripes are taken in index order so two writers
+ * holding two IDs each can never deadlock. lockAll takes every stripe in
+ * the same order, for writers that change many people at once.
+ */
+final class StripedLocks {
+    private final ReentrantLock[] stripes;
+
+    /**
+     * @param count Number of stripes, rounded up to a power of two
+     */
+    StripedLocks(int count) {
+        int size = Integer.highestOneBit(Math.max(1, count - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    void lock(String personID) {
+        stripes[index(personID)].lock();
+    }
+
+    void unlock(String personID) {
+        stripes[index(personID)].unlock();
+    }
+
+    // Locks the stripes of both IDs, lowest index first
+    void lock(String first, String second) {
+        int a = Math.min(index(first), index(second));
+        int b = Math.max(index(first), index(second));
+        stripes[a].lock();
+        if (b != a) {
+            stripes[b].lock();
+        }
+    }
+
+    void unlock(String first, String second) {
+        int a = Math.min(index(first), index(second));
+        int b = Math.max(index(first), index(second));
+        if (b != a) {
+            stripes[b].unlock();
+        }
+        stripes[a].unlock();
+    }
+
+    // Locks every stripe, lowest index first
+    void lockAll() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    private int index(String personID) {
+        int h = personID.hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+}
@@ -0,0 +1,95 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Works out the suspension status of everyone in a data file in one pass.
+ * Works from the store's index rather than re-reading the file: only people
+ * with offences can be suspended, and their IDs and histories are already in
+ * memory. Those IDs are split across fork-join tasks, and each task reads its
+ * people's records (for the birthdate) and evaluates them with the same rules as Person:
+ * - Points are the worst open 2-year window (DemeritWindow.maxWindowPoints)
+ * - Suspended means more points than Person.suspensionThreshold for their age
+ * Offences recorded against IDs with no person line are ignored.
+ */
+final class SuspensionEngine {
+    private static final int LEAF_SIZE = 4096; // People per fork-join task
+
+    private SuspensionEngine() {
+    }
+
+    /**
+     * Evaluates everyone in the store's file as of the given day.
+     * Each person is read under the store's read lock as their task reaches
+     * them, so writers are only held up for one lookup at a time.
+     * @param day The day to evaluate at, as an epoch-day
+     * @param pool Pool to read and evaluate people on
+     * @return suspended IDs and point totals
+     */
+    static SuspensionReport evaluate(PersonStore store, int day, ForkJoinPool pool) throws IOException {
+        long started = System.nanoTime();
+        String[] offenders = store.offenderIds().toArray(new String[0]);
+        int persons = store.personCount();
+
+        int[] points = new int[offenders.length];
+        boolean[] suspended = new boolean[offenders.length];
+        try {
+            pool.invoke(new Evaluate(store, offenders, day, points, suspended, 0, offenders.length));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        return new SuspensionReport(offenders, points, suspended, persons, elapsedMillis);
+    }
+
+    // Reads and evaluates offenders [from, to), splitting in half until a range is small enough
+    private static final class Evaluate extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient PersonStore store;
+        private final String[] offenders;
+        private final int day;
+        private final int[] points;
+        private final boolean[] suspended;
+        private final int from;
+        private final int to;
+
+        Evaluate(PersonStore store, String[] offenders, int day, int[] points, boolean[] suspended, int from, int to) {
+            this.store = store;
+            this.offenders = offenders;
+            this.day = day;
+            this.points = points;
+            this.suspended = suspended;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Evaluate(store, offenders, day, points, suspended, from, mid),
+                          new Evaluate(store, offenders, day, points, suspended, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                int index = i;
+                try {
+                    store.read(offenders[i], false, (record, history) -> {
+                        if (record != null && history != null) {
+                            points[index] = history.maxWindowPoints(day);
+                            suspended[index] = points[index] > Person.suspensionThreshold(record.getBirthdate(), day);
+                        }
+                        return null;
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package softwareengineerassignment4;
+
+/**
+ * A person's suspension status changed: they are now suspended, or reinstated.
+ * Points and threshold are as of the date of the change, the same way
+ * Person computes them: the worst open 2-year window against 6 under 21,
+ * 12 otherwise.
+ */
+public final class SuspensionEvent {
+    private final String personID;
+    private final boolean suspended;
+    private final int points;
+    private final int threshold;
+    private final int day;
+
+    SuspensionEvent(String personID, boolean suspended, int points, int threshold, int day) {
+        this.personID = personID;
+        this.suspended = suspended;
+        this.points = points;
+        this.threshold = threshold;
+        this.day = day;
+    }
+
+    public String getPersonID() {
+        return personID;
+    }
+
+    // True if the person became suspended, false if they were reinstated
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    // Points in the worst open 2-year window on the date of the change
+    public int getPoints() {
+        return points;
+    }
+
+    // 6 or 12, by the person's age on the date of the change
+    public int getThreshold() {
+        return threshold;
+    }
+
+    // Date of the change, as dd-MM-yyyy: the day of the write, or the day an offence expired or the person turned 21
+    public String getDate() {
+        return DateCodec.format(day);
+    }
+
+    int getDay() {
+        return day;
+    }
+
+    @Override
+    public String toString() {
+        return personID + (suspended ? " suspended" : " reinstated") + " on " + getDate()
+            + " with " + points + " points (threshold " + threshold + ")";
+    }
+}
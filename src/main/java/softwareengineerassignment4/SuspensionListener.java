@@ -0,0 +1,15 @@
+package softwareengineerassignment4;
+
+/**
+ * Receives a SuspensionEvent whenever a person becomes suspended or is reinstated.
+ * Register with Person.addSuspensionListener.
+ * Rules:
+ * - Called on the shared "person-suspension-monitor" thread, one event at a time
+ *   and, for any one person, in the order their status changed
+ * - Should return quickly: every other event waits behind it
+ * - An exception thrown here is logged and does not stop later events
+ */
+@FunctionalInterface
+public interface SuspensionListener {
+    void suspensionChanged(SuspensionEvent event);
+}
@@ -0,0 +1,304 @@
+package softwareengineerassignment4;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tells a store's SuspensionListeners when someone becomes suspended or is
+ * reinstated, without re-evaluating everyone every day.
+ * A person's status only changes two ways:
+ * - A write: an offence, a changed birthdate or an ID change. The store hands
+ *   each such ID to touched() as it indexes the entry, whether this process
+ *   wrote it or another one appended it to the file
+ * - Time: an offence leaving the 2-year window, or the person turning 21.
+ *   Both can only lower points or raise the threshold, so only people who are
+ *   suspended can be reinstated this way, and nobody is suspended by time alone.
+ *   Each suspended person is queued under the day of their next such boundary,
+ *   and a tick at midnight re-evaluates only the people whose day has come
+ * Rules:
+ * - The statuses and the boundary queue belong to the single monitor thread;
+ *   writers only queue IDs, so a write never waits for an evaluation or a listener
+ * - Boundaries are evaluated in date order, each on its own day, so a tick that
+ *   covers several days dates every change on the day it happened
+ * - When the store's index starts over (compaction, a batch rewrite, a replaced
+ *   file), everyone with offences is evaluated again and compared with what was known
+ * - If the store cannot be read for such an evaluation, it is retried after 1 s,
+ *   then after twice as long each time up to a minute, until it succeeds
+ * - An ID retired by an ID change drops out without an event; the new ID gets
+ *   its own event if it is suspended
+ * - The evaluation run when the first listener is added only records who is
+ *   suspended; events are for changes after that
+ */
+final class SuspensionMonitor {
+    private static final Logger LOG = Logger.getLogger(SuspensionMonitor.class.getName());
+    private static final long FIRST_RETRY_MILLIS = 1000; // Doubled after each failed retry
+    private static final long MAX_RETRY_MILLIS = 60_000;
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "person-suspension-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final PersonStore store;
+    private final List<SuspensionListener> listeners = new CopyOnWriteArrayList<>();
+    private final Set<String> touched = ConcurrentHashMap.newKeySet(); // Written since the last drain
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+    private ScheduledFuture<?> nextTick; // Set while there are listeners; guarded by this
+
+    // Only used on the monitor thread
+    private final Set<String> suspended = new HashSet<>();
+    private final TreeMap<Integer, Set<String>> due = new TreeMap<>(); // Boundary day -> suspended IDs to evaluate then
+    private final Map<String, Integer> dueDays = new HashMap<>();      // The same, by ID
+    private int day = Integer.MIN_VALUE; // Latest day evaluated
+    private boolean announcing;          // Off until the first evaluation has recorded who is suspended
+    private ScheduledFuture<?> retry;    // Re-evaluation of everyone queued after one failed
+    private long retryMillis = FIRST_RETRY_MILLIS;
+
+    SuspensionMonitor(PersonStore store) {
+        this.store = store;
+    }
+
+    // Starts watching the store with the first listener; returns once who is suspended now is known,
+    // or once finding out has failed and been rescheduled (see reevaluateAll)
+    void addListener(SuspensionListener listener) {
+        synchronized (this) {
+            listeners.add(listener);
+            if (nextTick == null) {
+                store.watchSuspensions(true);
+                EXECUTOR.execute(this::reevaluateAll);
+                nextTick = EXECUTOR.schedule(this::tick, millisToMidnight(), TimeUnit.MILLISECONDS);
+            }
+        }
+        awaitIdle(); // Not under this: the tick takes it on the monitor thread
+    }
+
+    // Stops watching, and forgets every status, once the last listener is gone
+    synchronized void removeListener(SuspensionListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty() && nextTick != null) {
+            nextTick.cancel(false);
+            nextTick = null;
+            store.watchSuspensions(false);
+            EXECUTOR.execute(this::forget);
+        }
+    }
+
+    // The ID was written and its status may have changed; called by the store under its write lock
+    void touched(String personID) {
+        touched.add(personID);
+        if (drainQueued.compareAndSet(false, true)) {
+            EXECUTOR.execute(this::drain);
+        }
+    }
+
+    // The store's index started over, so any status may have changed; called under its write lock
+    void indexRebuilt() {
+        EXECUTOR.execute(this::reevaluateAll);
+    }
+
+    /**
+     * Evaluates everyone whose boundary falls on or before the given day,
+     * as the midnight tick does for today. For tests and replays.
+     */
+    void advanceTo(int day) {
+        onMonitorThread(() -> {
+            advance(day);
+            return null;
+        });
+    }
+
+    // Waits until every write and rebuild queued so far has been evaluated
+    void awaitIdle() {
+        onMonitorThread(() -> null);
+    }
+
+    // True once an evaluation of everyone has succeeded, so changes are announced
+    boolean isAnnouncing() {
+        return onMonitorThread(() -> announcing);
+    }
+
+    // Number of suspended people queued for a boundary
+    int scheduled() {
+        return onMonitorThread(dueDays::size);
+    }
+
+    private <T> T onMonitorThread(Callable<T> task) {
+        try {
+            return EXECUTOR.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the suspension monitor", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void tick() {
+        advance(DateCodec.today());
+        synchronized (this) {
+            if (nextTick != null) {
+                nextTick = EXECUTOR.schedule(this::tick, millisToMidnight(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static long millisToMidnight() {
+        ZonedDateTime now = ZonedDateTime.now();
+        return Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay(now.getZone())).toMillis();
+    }
+
+    private int today() {
+        day = Math.max(day, DateCodec.today());
+        return day;
+    }
+
+    private void drain() {
+        drainQueued.set(false); // IDs touched from here on queue another drain
+        int today = today();
+        for (Iterator<String> it = touched.iterator(); it.hasNext(); ) {
+            String personID = it.next();
+            it.remove();
+            evaluate(personID, today);
+        }
+    }
+
+    private void reevaluateAll() {
+        if (listeners.isEmpty()) {
+            return; // Stopped since this was queued
+        }
+        Set<String> personIDs;
+        try {
+            personIDs = store.offenderIds();
+        } catch (IOException e) {
+            // Nothing rebuilds the index again unless the file changes, so try again later,
+            // waiting longer each time; until one succeeds, no events are announced
+            LOG.log(Level.WARNING, "Error checking suspensions, retrying in " + retryMillis + " ms", e);
+            if (retry == null || retry.isDone()) {
+                retry = EXECUTOR.schedule(this::reevaluateAll, retryMillis, TimeUnit.MILLISECONDS);
+                retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+            }
+            return;
+        }
+        cancelRetry();
+        personIDs.addAll(suspended); // Including those whose offences are gone
+        int today = today();
+        for (String personID : personIDs) {
+            evaluate(personID, today);
+        }
+        announcing = true;
+    }
+
+    private void cancelRetry() {
+        if (retry != null) {
+            retry.cancel(false);
+            retry = null;
+        }
+        retryMillis = FIRST_RETRY_MILLIS;
+    }
+
+    // Evaluates the due people in boundary order, each on their boundary day
+    private void advance(int target) {
+        while (!due.isEmpty() && due.firstKey() <= target) {
+            Map.Entry<Integer, Set<String>> entry = due.pollFirstEntry();
+            for (String personID : entry.getValue()) {
+                dueDays.remove(personID);
+                evaluate(personID, entry.getKey());
+            }
+        }
+        day = Math.max(day, target);
+    }
+
+    private void forget() {
+        touched.clear();
+        suspended.clear();
+        due.clear();
+        dueDays.clear();
+        day = Integer.MIN_VALUE;
+        announcing = false;
+        cancelRetry();
+    }
+
+    // Works out the person's status on the day, queues their next boundary and reports a change
+    private void evaluate(String personID, int on) {
+        Status status;
+        try {
+            status = store.read(personID, (record, history) -> record == null ? null : new Status(record, history, on));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error checking suspension of " + personID, e);
+            return;
+        }
+
+        boolean wasSuspended = suspended.contains(personID);
+        unschedule(personID);
+        if (status != null && status.suspended) {
+            suspended.add(personID);
+            due.computeIfAbsent(status.boundary, d -> new HashSet<>()).add(personID);
+            dueDays.put(personID, status.boundary);
+        } else {
+            suspended.remove(personID);
+        }
+
+        if (status != null && status.suspended != wasSuspended && announcing) {
+            SuspensionEvent event = new SuspensionEvent(personID, status.suspended, status.points, status.threshold, on);
+            for (SuspensionListener listener : listeners) {
+                try {
+                    listener.suspensionChanged(event);
+                } catch (RuntimeException e) {
+                    LOG.log(Level.WARNING, "Error in suspension listener", e);
+                }
+            }
+        }
+    }
+
+    private void unschedule(String personID) {
+        Integer dueDay = dueDays.remove(personID);
+        if (dueDay != null) {
+            Set<String> onDay = due.get(dueDay);
+            onDay.remove(personID);
+            if (onDay.isEmpty()) {
+                due.remove(dueDay);
+            }
+        }
+    }
+
+    // A person's standing on one day, and when it can next change by time alone if they are suspended
+    private static final class Status {
+        final int points;
+        final int threshold;
+        final boolean suspended;
+        final int boundary;
+
+        Status(PersonRecord record, DemeritWindow history, int day) {
+            int birthDay = DateCodec.parse(record.getBirthdate());
+            points = history == null ? 0 : history.maxWindowPoints(day);
+            threshold = Person.suspensionThreshold(birthDay, day);
+            suspended = points > threshold;
+
+            // The oldest live offence expiring, or turning 21 for the higher threshold
+            int next = suspended ? history.nextExpiry(day) : Integer.MAX_VALUE;
+            if (suspended && threshold < 12) {
+                next = Math.min(next, Person.adultFrom(birthDay));
+            }
+            boundary = next;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package softwareengineerassignment4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Who was suspended when over a range of dates, as the offences on record
+ * now and each person's current birthdate have it.
+ * Each person is swept from change to change of their points or threshold
+ * (an offence, an offence expiring, turning 21), not day by day, so a sweep
+ * costs O(k log n) per person for k changes in the range.
+ */
+public final class SuspensionPeriods {
+    private final Map<String, List<Period>> periods;
+    private final int personsEvaluated;
+    private final long elapsedMillis;
+
+    private SuspensionPeriods(Map<String, List<Period>> periods, int personsEvaluated, long elapsedMillis) {
+        this.periods = Collections.unmodifiableMap(periods);
+        this.personsEvaluated = personsEvaluated;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    // One report over the per-person sweeps of one or more files, such as the shards of a ShardedStore
+    static SuspensionPeriods combine(List<List<Sweep>> parts, long elapsedMillis) {
+        Map<String, List<Period>> periods = new HashMap<>();
+        int persons = 0;
+        for (List<Sweep> part : parts) {
+            for (Sweep sweep : part) {
+                if (!sweep.periods.isEmpty()) {
+                    periods.put(sweep.personID, Collections.unmodifiableList(sweep.periods));
+                }
+            }
+            persons += part.size();
+        }
+        return new SuspensionPeriods(periods, persons, elapsedMillis);
+    }
+
+    /**
+     * Sweeps one person's status over a range of days.
+     * @param history Their offences
+     * @param birthDay Their birthdate as an epoch-day, or DateCodec.INVALID (counts as age 0)
+     * @param from First day of the range, as an epoch-day
+     * @param to Last day of the range, inclusive
+     * @return the periods they were suspended, clipped to the range, oldest first
+     */
+    static List<Period> sweep(DemeritWindow history, int birthDay, int from, int to) {
+        List<Period> found = new ArrayList<>();
+        int adultFrom = Person.adultFrom(birthDay);
+        int start = 0;
+        int peak = -1; // -1: not in a period
+        int day = from;
+        while (true) {
+            int points = history.pointsOn(day);
+            if (points > Person.suspensionThreshold(birthDay, day)) {
+                if (peak < 0) {
+                    start = day;
+                }
+                peak = Math.max(peak, points);
+            } else if (peak >= 0) {
+                found.add(new Period(start, day - 1, peak));
+                peak = -1;
+            }
+
+            int next = history.nextChange(day);
+            if (day < adultFrom) {
+                next = Math.min(next, adultFrom);
+            }
+            if (next > to) {
+                break;
+            }
+            day = next;
+        }
+        if (peak >= 0) {
+            found.add(new Period(start, to, peak));
+        }
+        return found;
+    }
+
+    // IDs of everyone suspended at some point in the range, to their periods, oldest first
+    public Map<String, List<Period>> getPeriods() {
+        return periods;
+    }
+
+    /**
+     * IDs of everyone suspended on one day of the range.
+     * @param date Date string in "dd-MM-yyyy" format
+     * @return the IDs, empty if the date is invalid or outside the range
+     */
+    public Set<String> getSuspendedOn(String date) {
+        int day = DateCodec.parse(date);
+        Set<String> suspended = new HashSet<>();
+        if (day == DateCodec.INVALID) {
+            return suspended;
+        }
+        for (Map.Entry<String, List<Period>> entry : periods.entrySet()) {
+            for (Period period : entry.getValue()) {
+                if (period.fromDay <= day && day <= period.toDay) {
+                    suspended.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return suspended;
+    }
+
+    // People with any offence on record, the only ones who can have been suspended
+    public int getPersonsEvaluated() {
+        return personsEvaluated;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return periods.size() + " of " + personsEvaluated + " persons with offences suspended in range, in "
+            + elapsedMillis + " ms";
+    }
+
+    /**
+     * A run of days on which a person was suspended.
+     */
+    public static final class Period {
+        private final int fromDay;
+        private final int toDay;
+        private final int peakPoints;
+
+        Period(int fromDay, int toDay, int peakPoints) {
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.peakPoints = peakPoints;
+        }
+
+        // First day suspended, as dd-MM-yyyy
+        public String getFrom() {
+            return DateCodec.format(fromDay);
+        }
+
+        // Last day suspended, inclusive; the end of the range if still suspended then
+        public String getTo() {
+            return DateCodec.format(toDay);
+        }
+
+        // Most points held during the period
+        public int getPeakPoints() {
+            return peakPoints;
+        }
+
+        @Override
+        public String toString() {
+            return getFrom() + " to " + getTo() + " (" + peakPoints + " points)";
+        }
+    }
+
+    // One person's sweep, before the shards' sweeps are combined
+    static final class Sweep {
+        final String personID;
+        final List<Period> periods;
+
+        Sweep(String personID, List<Period> periods) {
+            this.personID = personID;
+            this.periods = periods;
+        }
+    }
+}
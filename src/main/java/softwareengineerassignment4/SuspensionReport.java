@@ -0,0 +1,86 @@
+package softwareengineerassignment4;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Outcome of evaluating everyone in a data file for suspension.
+ * Point totals are the worst open 2-year window, as Person computes them;
+ * people with no live points are left out of the totals.
+ */
+public final class SuspensionReport {
+    private final Set<String> suspended;
+    private final Map<String, Integer> pointTotals;
+    private final int personsEvaluated;
+    private final long elapsedMillis;
+
+    /**
+     * @param personIDs People who were evaluated in detail; points[i] and suspended[i] are for personIDs[i]
+     * @param personsEvaluated Everyone in the file, including those with no offences
+     */
+    SuspensionReport(String[] personIDs, int[] points, boolean[] suspended, int personsEvaluated, long elapsedMillis) {
+        Set<String> suspendedIds = new HashSet<>();
+        Map<String, Integer> totals = new HashMap<>();
+        for (int i = 0; i < personIDs.length; i++) {
+            if (points[i] > 0) {
+                totals.put(personIDs[i], points[i]);
+            }
+            if (suspended[i]) {
+                suspendedIds.add(personIDs[i]);
+            }
+        }
+        this.suspended = Collections.unmodifiableSet(suspendedIds);
+        this.pointTotals = Collections.unmodifiableMap(totals);
+        this.personsEvaluated = personsEvaluated;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    private SuspensionReport(Set<String> suspended, Map<String, Integer> pointTotals, int personsEvaluated,
+                             long elapsedMillis) {
+        this.suspended = Collections.unmodifiableSet(suspended);
+        this.pointTotals = Collections.unmodifiableMap(pointTotals);
+        this.personsEvaluated = personsEvaluated;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    // One report over data split across several files, such as the shards of a ShardedStore
+    static SuspensionReport combine(List<SuspensionReport> parts, long elapsedMillis) {
+        Set<String> suspended = new HashSet<>();
+        Map<String, Integer> totals = new HashMap<>();
+        int persons = 0;
+        for (SuspensionReport part : parts) {
+            suspended.addAll(part.suspended);
+            totals.putAll(part.pointTotals);
+            persons += part.personsEvaluated;
+        }
+        return new SuspensionReport(suspended, totals, persons, elapsedMillis);
+    }
+
+    // IDs of everyone suspended
+    public Set<String> getSuspended() {
+        return suspended;
+    }
+
+    // Points per ID, for everyone holding any
+    public Map<String, Integer> getPointTotals() {
+        return pointTotals;
+    }
+
+    public int getPersonsEvaluated() {
+        return personsEvaluated;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Evaluated " + personsEvaluated + " persons: " + suspended.size() + " suspended, "
+            + pointTotals.size() + " holding points, in " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,19 @@
+package softwareengineerassignment4;
+
+/**
+ * How updatePersonalDetails writes a changed person to the data file.
+ */
+public enum UpdateMode {
+    /**
+     * Appends a new version of the person line; readers take the latest one.
+     * An ID change also appends "oldID,Moved:newID" so the old ID stops resolving.
+     * Costs O(record) regardless of file size.
+     */
+    APPEND,
+
+    /**
+     * Copies the whole file through a temp file with the person line replaced,
+     * then atomically moves it over the original. Costs O(file size).
+     */
+    REWRITE
+}
@@ -0,0 +1,200 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class BatchUpdateTest {
+    private static final String TEST_FILE = "test_batch_persons.txt";
+    private static final Path TEST_PATH = Paths.get(TEST_FILE);
+    private static final Path TEMP_PATH = Paths.get("temp_" + TEST_FILE);
+    private static final Path BINARY_PATH = Paths.get("test_batch_persons.bin");
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+    private static final String OTHER_ADDRESS = "9|High St|Melbourne|Victoria|Australia";
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUp();
+        Person.setFileName(TEST_FILE);
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Person.setFileName("persons.txt");
+        Person.setStorageFormat(StorageFormat.CSV);
+        Files.deleteIfExists(TEST_PATH);
+        Files.deleteIfExists(TEMP_PATH);
+        Files.deleteIfExists(BINARY_PATH);
+        Files.deleteIfExists(PersonStore.lockPathFor(TEST_PATH));
+        Files.deleteIfExists(PersonStore.lockPathFor(BINARY_PATH));
+    }
+
+    // Distinct valid person IDs with an odd first digit, so the ID may change
+    private static String id(int n) {
+        char[] id = new char[10];
+        id[0] = (char) ('3' + n % 4 * 2);
+        id[1] = (char) ('2' + n / 4 % 8);
+        id[2] = '@';
+        id[3] = '#';
+        int rest = n / 32;
+        for (int i = 4; i < 8; i++) {
+            id[i] = (char) ('a' + rest % 26);
+            rest /= 26;
+        }
+        id[8] = 'X';
+        id[9] = 'Y';
+        return new String(id);
+    }
+
+    private static PersonUpdate rename(String id, String firstName) {
+        return new PersonUpdate(id, id, firstName, "Doe", VALID_ADDRESS, "15-05-1990");
+    }
+
+    private static void add(String id, String firstName, String birthdate) {
+        assertTrue(new Person(id, firstName, "Doe", VALID_ADDRESS, birthdate).addPerson());
+    }
+
+    @Test
+    public void updatePersonalDetails_mixedBatch_appliesAcceptedAndReportsEachRefusal() throws IOException {
+        add("35@a!b#cXY", "John", "15-05-1990");
+        add("37@a!b#cXY", "Kid", "15-05-2015");
+        add("66@a!b#cXY", "Even", "15-05-1990");
+        add("57@a!b#cXY", "Jane", "15-05-1990");
+        assertEquals("Success", Person.fetchPersonById("35@a!b#cXY")
+            .addDemeritPoints(DateCodec.format(DateCodec.today() - 10), 3));
+
+        BatchUpdateReport report = Person.updatePersonalDetails(List.of(
+            new PersonUpdate("35@a!b#cXY", "45@a!b#cXY", "Johnny", "Doe", VALID_ADDRESS, "15-05-1990"),
+            new PersonUpdate("57@a!b#cXY", "57@a!b#cXY", "Jane", "Doe", "bad address", "15-05-1990"),
+            rename("59@a!b#cXY", "Nobody"),
+            new PersonUpdate("37@a!b#cXY", "37@a!b#cXY", "Kid", "Doe", OTHER_ADDRESS, "15-05-2015"),
+            new PersonUpdate("66@a!b#cXY", "67@a!b#cXY", "Even", "Doe", VALID_ADDRESS, "15-05-1990"),
+            new PersonUpdate("57@a!b#cXY", "66@a!b#cXY", "Jane", "Doe", VALID_ADDRESS, "15-05-1990"),
+            rename("45@a!b#cXY", "Again"),
+            rename("57@a!b#cXY", "Janet")));
+
+        assertEquals(8, report.size());
+        assertEquals(2, report.getApplied());
+        assertTrue(report.isApplied(0));
+        assertEquals(FailureReason.VALIDATION, report.getReason(1));
+        assertEquals(FailureReason.NOT_FOUND, report.getReason(2));
+        assertEquals(FailureReason.RULE, report.getReason(3));
+        assertEquals(FailureReason.RULE, report.getReason(4));
+        assertEquals(FailureReason.DUPLICATE, report.getReason(5));
+        assertEquals(FailureReason.DUPLICATE, report.getReason(6));
+        assertTrue(report.isApplied(7));
+
+        PersonStore store = PersonStore.forFile(TEST_FILE);
+        assertNull(store.get("35@a!b#cXY"));
+        assertEquals("Johnny", store.get("45@a!b#cXY").getFirstName());
+        assertEquals("Janet", store.get("57@a!b#cXY").getFirstName());
+        assertEquals(VALID_ADDRESS, store.get("37@a!b#cXY").getAddress());
+        assertEquals(1, store.read("45@a!b#cXY", (record, history) -> history).size());
+    }
+
+    @Test
+    public void updatePersonalDetails_personRenamedBefore_keepsOffencesFromEarlierId() throws IOException {
+        add("35@a!b#cXY", "John", "15-05-1990");
+        add("57@a!b#cXY", "Jane", "15-05-1990");
+        String recent = DateCodec.format(DateCodec.today() - 10);
+        assertEquals("Success", Person.fetchPersonById("35@a!b#cXY").addDemeritPoints(recent, 5));
+        assertTrue(Person.updatePersonalDetails("35@a!b#cXY", "37@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990"));
+
+        BatchUpdateReport report = Person.updatePersonalDetails(List.of(
+            new PersonUpdate("37@a!b#cXY", "39@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990"),
+            rename("57@a!b#cXY", "Janet")));
+
+        assertEquals(2, report.getApplied());
+        assertNull(Person.fetchPersonById("37@a!b#cXY"));
+        assertEquals(Map.of(recent, 5), Person.fetchPersonById("39@a!b#cXY").getDemeritPoints());
+        assertEquals("Janet", PersonStore.forFile(TEST_FILE).get("57@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void updatePersonalDetails_manyUpdates_rewritesFileOnce() throws IOException {
+        int people = 10_000;
+        try (BufferedWriter writer = Files.newBufferedWriter(TEST_PATH, StandardCharsets.UTF_8)) {
+            for (int n = 0; n < people; n++) {
+                writer.write(id(n) + ",First" + n + ",Doe," + VALID_ADDRESS + ",15-05-1990\n");
+            }
+        }
+        PersonStore store = PersonStore.forFile(TEST_FILE);
+        assertNotNull(store.get(id(0)));
+        long generation = store.generation();
+        List<PersonUpdate> updates = new ArrayList<>();
+        for (int n = 0; n < people; n += 2) {
+            updates.add(rename(id(n), "Changed" + n));
+        }
+
+        BatchUpdateReport report = Person.updatePersonalDetails(updates);
+
+        assertEquals(people / 2, report.getApplied());
+        assertEquals(generation + 1, store.generation());
+        assertEquals("Changed9998", store.get(id(9998)).getFirstName());
+        assertEquals("First9999", store.get(id(9999)).getFirstName());
+        assertEquals(people, Files.readAllLines(TEST_PATH).size());
+    }
+
+    @Test
+    public void updatePersonalDetails_nothingAccepted_leavesFileAlone() throws IOException {
+        add("35@a!b#cXY", "John", "15-05-1990");
+        byte[] before = Files.readAllBytes(TEST_PATH);
+        long generation = PersonStore.forFile(TEST_FILE).generation();
+
+        BatchUpdateReport report = Person.updatePersonalDetails(List.of(
+            rename("57@a!b#cXY", "Nobody"),
+            new PersonUpdate("35@a!b#cXY", "35@a!b#cXY", "John", "Doe", VALID_ADDRESS, "31-02-1990")));
+
+        assertEquals(0, report.getApplied());
+        assertArrayEquals(before, Files.readAllBytes(TEST_PATH));
+        assertEquals(generation, PersonStore.forFile(TEST_FILE).generation());
+    }
+
+    @Test
+    public void updatePersonalDetails_rewriteFails_appliesNone() throws IOException {
+        add("35@a!b#cXY", "John", "15-05-1990");
+        add("57@a!b#cXY", "Jane", "15-05-1990");
+        byte[] before = Files.readAllBytes(TEST_PATH);
+        Files.createDirectory(TEMP_PATH); // The temp file cannot be created
+
+        BatchUpdateReport report = Person.updatePersonalDetails(List.of(
+            rename("35@a!b#cXY", "Johnny"),
+            rename("57@a!b#cXY", "Janet"),
+            new PersonUpdate("35@a!b#cXY", "bad", "John", "Doe", VALID_ADDRESS, "15-05-1990")));
+
+        assertEquals(0, report.getApplied());
+        assertEquals(FailureReason.IO, report.getReason(0));
+        assertEquals(FailureReason.IO, report.getReason(1));
+        assertEquals(FailureReason.VALIDATION, report.getReason(2));
+        assertArrayEquals(before, Files.readAllBytes(TEST_PATH));
+        assertEquals("John", PersonStore.forFile(TEST_FILE).get("35@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void updatePersonalDetails_binaryStore_movesInlineOffences() throws IOException {
+        Person.setFileName(BINARY_PATH.toString());
+        Person.setStorageFormat(StorageFormat.BINARY);
+        add("35@a!b#cXY", "John", "15-05-1990");
+        add("57@a!b#cXY", "Jane", "15-05-1990");
+        assertEquals("Success", Person.fetchPersonById("35@a!b#cXY")
+            .addDemeritPoints(DateCodec.format(DateCodec.today() - 10), 3));
+
+        BatchUpdateReport report = Person.updatePersonalDetails(List.of(
+            new PersonUpdate("35@a!b#cXY", "45@a!b#cXY", "Johnny", "Doe", VALID_ADDRESS, "15-05-1990"),
+            rename("57@a!b#cXY", "Janet")));
+
+        assertEquals(2, report.getApplied());
+        PersonStore store = PersonStore.forFile(BINARY_PATH.toString(), StorageFormat.BINARY);
+        assertEquals("Johnny", store.get("45@a!b#cXY").getFirstName());
+        assertEquals("Janet", store.get("57@a!b#cXY").getFirstName());
+        assertEquals(1, store.read("45@a!b#cXY", (record, history) -> history).size());
+    }
+}
@@ -0,0 +1,192 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class BinaryFormatTest {
+    private static final String TEST_FILE = "test_persons.bin";
+    private static final Path TEST_PATH = Paths.get(TEST_FILE);
+    private static final Path CSV_PATH = Paths.get("test_convert_persons.txt");
+    private static final Path BACK_PATH = Paths.get("test_convert_back_persons.txt");
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+
+    private PersonStore store;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUp();
+        store = PersonStore.forFile(TEST_FILE, StorageFormat.BINARY);
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Person.setStorageFormat(StorageFormat.CSV);
+        Person.setUpdateMode(UpdateMode.APPEND);
+        Files.deleteIfExists(TEST_PATH);
+        Files.deleteIfExists(CSV_PATH);
+        Files.deleteIfExists(BACK_PATH);
+        Files.deleteIfExists(PersonStore.lockPathFor(TEST_PATH));
+    }
+
+    private PersonRecord record(String id, String firstName) {
+        return new PersonRecord(id, firstName, "Doe", VALID_ADDRESS, "15-05-1990");
+    }
+
+    // Every entry as text, so files in different formats can be compared
+    private static List<String> entries(Path file, StorageFormat format) throws IOException {
+        List<String> entries = new ArrayList<>();
+        format.scan(file, 0, Long.MAX_VALUE, new LogVisitor() {
+            @Override
+            public void person(PersonRecord record) {
+                entries.add("person " + record.toLine());
+            }
+
+            @Override
+            public void demerit(String personID, int offenseDay, int points) {
+                entries.add("demerit " + personID + " " + DateCodec.format(offenseDay) + " " + points);
+            }
+
+            @Override
+            public void moved(String fromPersonID, String toPersonID) {
+                entries.add("moved " + fromPersonID + " " + toPersonID);
+            }
+        });
+        return entries;
+    }
+
+    @Test
+    public void pack_validAndInvalidIds_roundTripsOrRefuses() {
+        for (String id : new String[] {"56@a!b#cXY", "99~~~~~~ZZ", "22      AA", "35a,b c!dQR"}) {
+            long packed = PersonIdCodec.pack(id);
+            if (id.length() == 10) {
+                assertTrue(packed >= 0);
+                assertEquals(id, PersonIdCodec.unpack(packed));
+            } else {
+                assertEquals(PersonIdCodec.NOT_PACKED, packed);
+            }
+        }
+        assertEquals(PersonIdCodec.NOT_PACKED, PersonIdCodec.pack("16@a!b#cXY"));
+        assertEquals(PersonIdCodec.NOT_PACKED, PersonIdCodec.pack("56@a!b#cXy"));
+        assertEquals(PersonIdCodec.NOT_PACKED, PersonIdCodec.pack("56@\u00e9!b#cXY"));
+        assertEquals(PersonIdCodec.NOT_PACKED, PersonIdCodec.pack(null));
+    }
+
+    @Test
+    public void personOperations_binaryStorage_behaveAsWithCsv() {
+        Person.setFileName(TEST_FILE);
+        Person.setStorageFormat(StorageFormat.BINARY);
+        Person person = new Person("35@a!b#cXY", "Carol", "White", VALID_ADDRESS, "15-06-1990");
+        String first = DateCodec.format(DateCodec.today() - 90);
+        String second = DateCodec.format(DateCodec.today() - 60);
+        String third = DateCodec.format(DateCodec.today() - 30);
+
+        assertTrue(person.addPerson());
+        assertFalse(person.addPerson());
+        assertEquals("Success", person.addDemeritPoints(first, 6));
+        assertEquals("Success", person.addDemeritPoints(second, 6));
+        assertEquals("Success", person.addDemeritPoints(third, 1));
+        assertTrue(Person.updatePersonalDetails("35@a!b#cXY", "45@a!b#cXY", "Caz", "White", VALID_ADDRESS, "15-06-1990"));
+
+        assertNull(Person.fetchPersonById("35@a!b#cXY"));
+        Person fetched = Person.fetchPersonById("45@a!b#cXY");
+        assertNotNull(fetched);
+        assertEquals(Map.of(first, 6, second, 6, third, 1), fetched.getDemeritPoints());
+        assertTrue(fetched.isSuspended());
+    }
+
+    @Test
+    public void update_rewriteMode_replacesRecordAndMovesDemerits() throws IOException {
+        store.add(record("35@a!b#cXY", "John"));
+        store.add(record("47@a!b#cXY", "Jane"));
+        store.addDemerit("35@a!b#cXY", DateCodec.parse("01-01-2024"), 3);
+        store.addDemerit("47@a!b#cXY", DateCodec.parse("01-01-2024"), 2);
+
+        assertTrue(store.update("35@a!b#cXY", record("45@a!b#cXY", "Johnny"), UpdateMode.REWRITE));
+
+        assertEquals(List.of(
+            "person 45@a!b#cXY,Johnny,Doe," + VALID_ADDRESS + ",15-05-1990",
+            "person 47@a!b#cXY,Jane,Doe," + VALID_ADDRESS + ",15-05-1990",
+            "demerit 45@a!b#cXY 01-01-2024 3",
+            "demerit 47@a!b#cXY 01-01-2024 2"), entries(TEST_PATH, StorageFormat.BINARY));
+        assertNull(store.get("35@a!b#cXY"));
+        assertEquals("Johnny", store.get("45@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void update_rewriteAfterAppendedIdChange_keepsDemeritsFromEarlierId() throws IOException {
+        store.add(record("35@a!b#cXY", "John"));
+        store.addDemerit("35@a!b#cXY", DateCodec.parse("01-01-2024"), 5);
+        assertTrue(store.update("35@a!b#cXY", record("37@a!b#cXY", "John"), UpdateMode.APPEND));
+
+        assertTrue(store.update("37@a!b#cXY", record("39@a!b#cXY", "John"), UpdateMode.REWRITE));
+
+        assertEquals(List.of(
+            "person 35@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990",
+            "demerit 35@a!b#cXY 01-01-2024 5",
+            "moved 35@a!b#cXY 39@a!b#cXY",
+            "person 39@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990"), entries(TEST_PATH, StorageFormat.BINARY));
+        assertNull(store.get("37@a!b#cXY"));
+        assertEquals(5, (int) store.read("39@a!b#cXY", (record, offences) -> offences.pointsAt(0)));
+    }
+
+    @Test
+    public void scan_partialTrailingRecord_isLeftUnreadUntilComplete() throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        BinaryFormat.writePerson(record("35@a!b#cXY", "John"), null, record);
+        byte[] bytes = record.toByteArray();
+        Files.write(TEST_PATH, bytes);
+        Files.write(TEST_PATH, Arrays.copyOf(bytes, bytes.length - 3), StandardOpenOption.APPEND);
+
+        assertEquals(1, entries(TEST_PATH, StorageFormat.BINARY).size());
+        assertNotNull(store.get("35@a!b#cXY"));
+
+        // The writer finishes the record: the store picks it up from where it stopped
+        Files.write(TEST_PATH, Arrays.copyOfRange(bytes, bytes.length - 3, bytes.length), StandardOpenOption.APPEND);
+        assertEquals(2, entries(TEST_PATH, StorageFormat.BINARY).size());
+        assertEquals("John", store.get("35@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void convert_csvToBinaryAndBack_keepsLatestPeopleAndAllOffences() throws IOException {
+        Files.write(CSV_PATH, String.join("\n",
+            "35@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990",
+            CsvFormat.demeritLine("35@a!b#cXY", 3, DateCodec.parse("01-01-2010")),
+            CsvFormat.demeritLine("35@a!b#cXY", 2, DateCodec.parse("01-01-2024")),
+            "35@a!b#cXY,Moved:45@a!b#cXY",
+            "45@a!b#cXY,Johnny,Doe," + VALID_ADDRESS + ",15-05-1990",
+            "57\u00e9a!b#cXY,Zo\u00eb,Doe," + VALID_ADDRESS + ",not a date",
+            CsvFormat.demeritLine("99@a!b#cXY", 4, DateCodec.parse("02-01-2024")),
+            "").getBytes(StandardCharsets.UTF_8));
+
+        StorageConverter.convert(CSV_PATH.toString(), StorageFormat.CSV, TEST_FILE, StorageFormat.BINARY);
+        StorageConverter.convert(TEST_FILE, StorageFormat.BINARY, BACK_PATH.toString(), StorageFormat.CSV);
+
+        List<String> expected = List.of(
+            "person 45@a!b#cXY,Johnny,Doe," + VALID_ADDRESS + ",15-05-1990",
+            "demerit 45@a!b#cXY 01-01-2010 3",
+            "demerit 45@a!b#cXY 01-01-2024 2",
+            "person 57\u00e9a!b#cXY,Zo\u00eb,Doe," + VALID_ADDRESS + ",not a date",
+            "demerit 99@a!b#cXY 02-01-2024 4");
+        assertEquals(expected, entries(TEST_PATH, StorageFormat.BINARY));
+        assertEquals(expected, entries(BACK_PATH, StorageFormat.CSV));
+        assertEquals(2, (int) store.read("45@a!b#cXY", (found, history) -> history.size()));
+        assertTrue(Files.size(TEST_PATH) < Files.size(BACK_PATH));
+    }
+
+    @Test
+    public void forFile_openInAnotherFormat_throws() {
+        assertThrows(IllegalArgumentException.class, () -> PersonStore.forFile(TEST_FILE, StorageFormat.CSV));
+        assertSame(store, PersonStore.forFile(TEST_FILE, StorageFormat.BINARY));
+    }
+}
@@ -0,0 +1,146 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class BulkImporterTest {
+    private static final String TEST_FILE = "test_import_persons.txt";
+    private static final Path BINARY_PATH = Paths.get("test_import_persons.bin");
+    private static final Path FEED_PATH = Paths.get("test_import_feed.csv");
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUp();
+        Person.setFileName(TEST_FILE);
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Person.setFileName("persons.txt");
+        Person.setStorageFormat(StorageFormat.CSV);
+        Files.deleteIfExists(Paths.get(TEST_FILE));
+        Files.deleteIfExists(BINARY_PATH);
+        Files.deleteIfExists(FEED_PATH);
+        Files.deleteIfExists(PersonStore.lockPathFor(Paths.get(TEST_FILE)));
+        Files.deleteIfExists(PersonStore.lockPathFor(BINARY_PATH));
+    }
+
+    // Distinct valid person IDs
+    private static String id(int n) {
+        char[] id = new char[10];
+        id[0] = (char) ('2' + n % 8);
+        id[1] = (char) ('2' + n / 8 % 8);
+        id[2] = '@';
+        id[3] = '#';
+        int rest = n / 64;
+        for (int i = 4; i < 8; i++) {
+            id[i] = (char) ('a' + rest % 26);
+            rest /= 26;
+        }
+        id[8] = 'X';
+        id[9] = 'Y';
+        return new String(id);
+    }
+
+    @Test
+    public void importFeed_mixedRows_importsValidAndReportsTheRest() throws IOException {
+        assertTrue(new Person("35@a!b#cXY", "Existing", "Doe", VALID_ADDRESS, "15-05-1990").addPerson());
+        Files.write(FEED_PATH, ("56@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990\n"
+            + "11@a!b#cXY,Bad,Id," + VALID_ADDRESS + ",15-05-1990\n"
+            + "\n"
+            + "57@a!b#cXY,Bad,Address,123|Main St|Sydney|NSW|Australia,15-05-1990\n"
+            + "58@a!b#cXY,Too,Few\n"
+            + "56@a!b#cXY,John,Again," + VALID_ADDRESS + ",15-05-1990\n"
+            + "35@a!b#cXY,Existing,Again," + VALID_ADDRESS + ",15-05-1990\n"
+            + "59@a!b#cXY,Jane,Doe," + VALID_ADDRESS + ",31-02-1990\n"
+            + "66@a!b#cXY,Last,Row," + VALID_ADDRESS + ",16-05-1990").getBytes(StandardCharsets.UTF_8));
+
+        ImportReport report = Person.importFeed(FEED_PATH.toString());
+
+        assertEquals(2, report.getImported());
+        List<ImportReport.Rejection> rejections = report.getRejections();
+        assertEquals(6, rejections.size());
+        assertEquals("row 2 (11@a!b#cXY): invalid personID", rejections.get(0).toString());
+        assertEquals("row 4 (57@a!b#cXY): invalid address", rejections.get(1).toString());
+        assertEquals("row 5 (58@a!b#cXY): expected 5 fields, found 3", rejections.get(2).toString());
+        assertEquals("row 6 (56@a!b#cXY): duplicate of row 1", rejections.get(3).toString());
+        assertEquals(FailureReason.DUPLICATE, rejections.get(3).getReason());
+        assertEquals("row 7 (35@a!b#cXY): ID already in the data file", rejections.get(4).toString());
+        assertEquals("row 8 (59@a!b#cXY): invalid birthdate", rejections.get(5).toString());
+        assertEquals(FailureReason.VALIDATION, rejections.get(5).getReason());
+
+        assertNotNull(Person.fetchPersonById("56@a!b#cXY"));
+        assertNotNull(Person.fetchPersonById("66@a!b#cXY"));
+        assertEquals("Existing", PersonStore.forFile(TEST_FILE).get("35@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void importFeed_missingNameOrStrayCharacter_rejectsRow() throws IOException {
+        Files.write(FEED_PATH, ("52@a!b#cXY,,Doe," + VALID_ADDRESS + ",15-05-1990\n"
+            + "53@a!b#cXY,John,," + VALID_ADDRESS + ",15-05-1990\n"
+            + "54@a!b#cXY,Jo\rhn,Doe," + VALID_ADDRESS + ",15-05-1990\n"
+            + "55@a!b#cXY,John,Doe,123|Main\rSt|Melbourne|Victoria|Australia,15-05-1990\n"
+            + "56@a!b#cXY,Jo,hn,Doe," + VALID_ADDRESS + ",15-05-1990\n"
+            + "57@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990\n").getBytes(StandardCharsets.UTF_8));
+
+        ImportReport report = Person.importFeed(FEED_PATH.toString());
+
+        assertEquals(1, report.getImported());
+        List<ImportReport.Rejection> rejections = report.getRejections();
+        assertEquals(5, rejections.size());
+        assertEquals("row 1 (52@a!b#cXY): missing name or forbidden character", rejections.get(0).toString());
+        assertEquals("row 2 (53@a!b#cXY): missing name or forbidden character", rejections.get(1).toString());
+        assertEquals("row 3 (54@a!b#cXY): missing name or forbidden character", rejections.get(2).toString());
+        assertEquals("row 4 (55@a!b#cXY): missing name or forbidden character", rejections.get(3).toString());
+        assertEquals("row 5 (56@a!b#cXY): expected 5 fields, found 6", rejections.get(4).toString());
+        for (ImportReport.Rejection rejection : rejections) {
+            assertEquals(FailureReason.VALIDATION, rejection.getReason());
+        }
+        assertNull(Person.fetchPersonById("52@a!b#cXY"));
+        assertNull(Person.fetchPersonById("54@a!b#cXY"));
+        assertEquals(1, Files.readAllLines(Paths.get(TEST_FILE)).size());
+    }
+
+    @Test
+    public void importFeed_manyRows_allIndexedAndOnDisk() throws IOException {
+        int rows = 150_000; // More than one validation batch and one write chunk
+        try (BufferedWriter writer = Files.newBufferedWriter(FEED_PATH, StandardCharsets.UTF_8)) {
+            for (int n = 0; n < rows; n++) {
+                writer.write(id(n) + ",First" + n + ",Last," + VALID_ADDRESS + ",15-05-1990\n");
+            }
+        }
+
+        ImportReport report = Person.importFeed(FEED_PATH.toString());
+
+        assertEquals(rows, report.getImported());
+        assertTrue(report.getRejections().isEmpty());
+        assertEquals("First77777", PersonStore.forFile(TEST_FILE).get(id(77_777)).getFirstName());
+        assertEquals(rows, Files.readAllLines(Paths.get(TEST_FILE)).size());
+    }
+
+    @Test
+    public void importFeed_binaryStore_writesBinaryRecords() throws IOException {
+        Person.setFileName(BINARY_PATH.toString());
+        Person.setStorageFormat(StorageFormat.BINARY);
+        Files.write(FEED_PATH, List.of("56@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990"));
+
+        assertEquals(1, Person.importFeed(FEED_PATH.toString()).getImported());
+
+        assertEquals('P', Files.readAllBytes(BINARY_PATH)[0]);
+        assertEquals("John", PersonStore.forFile(BINARY_PATH.toString(), StorageFormat.BINARY)
+            .get("56@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void importFeed_missingFeed_returnsNull() {
+        assertNull(Person.importFeed("no_such_feed.csv"));
+    }
+}
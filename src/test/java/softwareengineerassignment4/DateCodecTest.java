@@ -0,0 +1,60 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.format.DateTimeFormatter;
+
+public class DateCodecTest {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    @Test
+    public void parse_everyDayFrom1900To2100_matchesLocalDate() {
+        for (LocalDate date = LocalDate.of(1900, 1, 1); date.getYear() < 2100; date = date.plusDays(1)) {
+            String text = date.format(FORMAT);
+            assertEquals(date.toEpochDay(), DateCodec.parse(text), text);
+            assertEquals(text, DateCodec.format((int) date.toEpochDay()));
+        }
+    }
+
+    @Test
+    public void parse_impossibleDates_returnInvalid() {
+        assertEquals(DateCodec.INVALID, DateCodec.parse("31-02-1990"));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("29-02-2023"));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("00-01-2024"));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("01-13-2024"));
+        assertTrue(DateCodec.isValid("29-02-2024"));
+    }
+
+    @Test
+    public void parse_wrongShape_returnsInvalid() {
+        assertFalse(DateCodec.isValid(null));
+        assertFalse(DateCodec.isValid("1990/05/15"));
+        assertFalse(DateCodec.isValid("1-05-1990"));
+        assertFalse(DateCodec.isValid("15-05-1990x"));
+        assertFalse(DateCodec.isValid("15-0a-1990"));
+    }
+
+    @Test
+    public void parse_withOffset_readsDateInPlace() {
+        assertEquals(LocalDate.of(2024, 1, 1).toEpochDay(), DateCodec.parse("Date:01-01-2024", 5));
+    }
+
+    @Test
+    public void plusYears_leapDay_clampsToTwentyEighth() {
+        int leapDay = (int) LocalDate.of(2024, 2, 29).toEpochDay();
+        assertEquals(LocalDate.of(2026, 2, 28).toEpochDay(), DateCodec.plusYears(leapDay, 2));
+        assertEquals(LocalDate.of(2028, 2, 29).toEpochDay(), DateCodec.plusYears(leapDay, 4));
+        assertEquals(LocalDate.of(2022, 2, 28).toEpochDay(), DateCodec.plusYears(leapDay, -2));
+    }
+
+    @Test
+    public void yearsBetween_matchesPeriod() {
+        LocalDate birth = LocalDate.of(2004, 2, 29);
+        for (LocalDate day = LocalDate.of(2021, 1, 1); day.getYear() < 2027; day = day.plusDays(1)) {
+            assertEquals(Period.between(birth, day).getYears(),
+                         DateCodec.yearsBetween((int) birth.toEpochDay(), (int) day.toEpochDay()), day.toString());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class DemeritWindowTest {
+    private static final int TODAY = (int) LocalDate.of(2026, 6, 15).toEpochDay();
+
+    private static int day(int year, int month, int dayOfMonth) {
+        return (int) LocalDate.of(year, month, dayOfMonth).toEpochDay();
+    }
+
+    // Straightforward O(n^2) version of the rule, to check the sweep against
+    private static int bruteForce(List<int[]> offences, int today) {
+        int best = 0;
+        for (int[] start : offences) {
+            if (DemeritWindow.isExpired(start[0], today)) continue;
+            int end = DemeritWindow.plusTwoYears(start[0]);
+            int total = 0;
+            for (int[] o : offences) {
+                if (o[0] >= start[0] && o[0] <= end) total += o[1];
+            }
+            best = Math.max(best, total);
+        }
+        return best;
+    }
+
+    @Test
+    public void maxWindowPoints_noOffences_returnsZero() {
+        assertEquals(0, new DemeritWindow().maxWindowPoints(TODAY));
+    }
+
+    @Test
+    public void maxWindowPoints_sameDay_pointsMerge() {
+        DemeritWindow window = new DemeritWindow();
+        window.add(day(2026, 1, 1), 4);
+        window.add(day(2026, 1, 1), 3);
+        assertEquals(1, window.size());
+        assertEquals(7, window.maxWindowPoints(TODAY));
+    }
+
+    @Test
+    public void maxWindowPoints_expiredOffence_notCounted() {
+        DemeritWindow window = new DemeritWindow();
+        window.add(day(2024, 6, 14), 5); // Window closed yesterday
+        window.add(day(2024, 6, 15), 4); // Window closes today
+        assertEquals(4, window.maxWindowPoints(TODAY));
+    }
+
+    @Test
+    public void maxWindowPoints_offencesFurtherApartThanTwoYears_notSummed() {
+        DemeritWindow window = new DemeritWindow();
+        window.add(day(2025, 1, 1), 5);
+        window.add(day(2027, 1, 2), 4);
+        window.add(day(2026, 1, 1), 3);
+        assertEquals(8, window.maxWindowPoints(TODAY));
+    }
+
+    @Test
+    public void isExpired_leapDay_windowEndsOnTwentyEighth() {
+        assertFalse(DemeritWindow.isExpired(day(2024, 2, 29), day(2026, 2, 28)));
+        assertTrue(DemeritWindow.isExpired(day(2024, 2, 29), day(2026, 3, 1)));
+    }
+
+    @Test
+    public void maxWindowPoints_randomHistories_matchBruteForce() {
+        Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            DemeritWindow window = new DemeritWindow();
+            List<int[]> offences = new ArrayList<>();
+            int count = random.nextInt(30);
+            for (int i = 0; i < count; i++) {
+                int offenceDay = TODAY - 1500 + random.nextInt(2200);
+                int points = 1 + random.nextInt(6);
+                window.add(offenceDay, points);
+                offences.add(new int[] {offenceDay, points});
+                assertEquals(bruteForce(offences, TODAY), window.maxWindowPoints(TODAY));
+            }
+        }
+    }
+
+    @Test
+    public void pointsOn_randomHistories_matchBruteForceOfOffencesUpToThatDay() {
+        Random random = new Random(7);
+        for (int run = 0; run < 200; run++) {
+            DemeritWindow window = new DemeritWindow();
+            List<int[]> offences = new ArrayList<>();
+            int count = random.nextInt(30);
+            for (int i = 0; i < count; i++) {
+                int offenceDay = TODAY - 1500 + random.nextInt(1500);
+                int points = 1 + random.nextInt(6);
+                window.add(offenceDay, points);
+                offences.add(new int[] {offenceDay, points});
+            }
+            int asOf = TODAY - 1600 + random.nextInt(1700);
+            List<int[]> upToDay = new ArrayList<>();
+            for (int[] o : offences) {
+                if (o[0] <= asOf) upToDay.add(o);
+            }
+            assertEquals(bruteForce(upToDay, asOf), window.pointsOn(asOf));
+        }
+    }
+
+    @Test
+    public void nextChange_walksOffenceAndExpiryDays() {
+        DemeritWindow window = new DemeritWindow();
+        window.add(day(2024, 1, 10), 3);
+        window.add(day(2025, 3, 1), 2);
+
+        assertEquals(day(2024, 1, 10), window.nextChange(day(2023, 12, 31)));
+        assertEquals(day(2025, 3, 1), window.nextChange(day(2024, 1, 10)));
+        assertEquals(day(2026, 1, 11), window.nextChange(day(2025, 3, 1)));
+        assertEquals(5, window.pointsOn(day(2026, 1, 10)));
+        assertEquals(2, window.pointsOn(day(2026, 1, 11)));
+        assertEquals(day(2027, 3, 2), window.nextChange(day(2026, 1, 11)));
+        assertEquals(Integer.MAX_VALUE, window.nextChange(day(2027, 3, 2)));
+    }
+}
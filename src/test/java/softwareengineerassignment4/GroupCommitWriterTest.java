@@ -0,0 +1,163 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class GroupCommitWriterTest {
+    private static final String TEST_FILE = "test_group_commit_persons.txt";
+    private static final Path TEST_PATH = Paths.get(TEST_FILE);
+    private static final Path BINARY_PATH = Paths.get("test_group_commit_persons.bin");
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+
+    private PersonStore store;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Files.deleteIfExists(TEST_PATH);
+        store = PersonStore.forFile(TEST_FILE);
+        Person.setFileName(TEST_FILE);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Person.setDurability(DurabilityPolicy.FLUSH_PER_BATCH);
+        Files.deleteIfExists(TEST_PATH);
+        Files.deleteIfExists(BINARY_PATH);
+        Files.deleteIfExists(PersonStore.lockPathFor(TEST_PATH));
+        Files.deleteIfExists(PersonStore.lockPathFor(BINARY_PATH));
+    }
+
+    private PersonRecord record(String id, String firstName) {
+        return new PersonRecord(id, firstName, "Doe", VALID_ADDRESS, "15-05-1990");
+    }
+
+    // Distinct valid ID for each n below 8 * 8 * 26
+    private static String id(int n) {
+        return "" + (char) ('2' + n % 8) + (char) ('2' + n / 8 % 8) + "@#abc" + (char) ('a' + n / 64) + "XY";
+    }
+
+    @Test
+    public void addAsync_manyQueued_allWrittenInQueueOrder() throws Exception {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int n = 0; n < 1000; n++) {
+            futures.add(store.addAsync(record(id(n), "John"), DurabilityPolicy.FLUSH_PER_BATCH));
+        }
+
+        for (CompletableFuture<Boolean> future : futures) {
+            assertTrue(future.get(10, TimeUnit.SECONDS));
+        }
+        List<String> lines = Files.readAllLines(TEST_PATH);
+        assertEquals(1000, lines.size());
+        for (int n = 0; n < 1000; n++) {
+            assertTrue(lines.get(n).startsWith(id(n) + ","), lines.get(n));
+        }
+    }
+
+    @Test
+    public void addAsync_sameIdQueuedTwice_onlyFirstSucceeds() throws Exception {
+        CompletableFuture<Boolean> first = store.addAsync(record("35@a!b#cXY", "John"), DurabilityPolicy.FSYNC_PER_BATCH);
+        CompletableFuture<Boolean> second = store.addAsync(record("35@a!b#cXY", "Jane"), DurabilityPolicy.FSYNC_PER_BATCH);
+
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertFalse(second.get(10, TimeUnit.SECONDS));
+        assertEquals("John", store.get("35@a!b#cXY").getFirstName());
+        assertEquals(1, Files.readAllLines(TEST_PATH).size());
+    }
+
+    @Test
+    public void addDemeritAsync_fsyncInterval_completesAfterSync() throws Exception {
+        store.add(record("35@a!b#cXY", "John"));
+        CompletableFuture<Boolean> demerit = store.addDemeritAsync("35@a!b#cXY", DateCodec.parse("01-01-2024"), 3,
+                                                                   DurabilityPolicy.fsyncEvery(50));
+
+        assertTrue(demerit.get(10, TimeUnit.SECONDS));
+        assertEquals(3, store.read("35@a!b#cXY", (record, history) -> history).pointsAt(0));
+        assertEquals(2, Files.readAllLines(TEST_PATH).size());
+    }
+
+    @Test
+    public void addPersonAsync_invalidPerson_completesFalseWithoutWriting() throws Exception {
+        Person person = new Person("11@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990");
+
+        assertFalse(person.addPersonAsync().get(10, TimeUnit.SECONDS));
+        assertFalse(Files.exists(TEST_PATH));
+    }
+
+    @Test
+    public void addDemeritPointsAsync_fsyncPerBatch_writtenAndIndexed() throws Exception {
+        Person.setDurability(DurabilityPolicy.FSYNC_PER_BATCH);
+        Person person = new Person("35@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990");
+        assertTrue(person.addPerson());
+
+        assertEquals("Success", person.addDemeritPointsAsync("01-01-2024", 2).get(10, TimeUnit.SECONDS));
+        assertEquals(2, Person.fetchPersonById("35@a!b#cXY").getDemeritPoints().get("01-01-2024"));
+    }
+
+    @Test
+    public void close_writesQueuedLines_andStoreReopensOnNextUse() throws Exception {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int n = 0; n < 100; n++) {
+            futures.add(store.addAsync(record(id(n), "John"), DurabilityPolicy.fsyncEvery(60_000)));
+        }
+
+        store.close();
+
+        for (CompletableFuture<Boolean> future : futures) {
+            assertTrue(future.getNow(false));
+        }
+        assertEquals(100, Files.readAllLines(TEST_PATH).size());
+        assertTrue(store.addAsync(record(id(100), "Jane"), DurabilityPolicy.FLUSH_PER_BATCH).get(10, TimeUnit.SECONDS));
+        assertEquals("John", store.get(id(0)).getFirstName());
+    }
+
+    @Test
+    public void writerInterrupted_pendingLinesFail_andNextLineStartsNewWriter() throws Exception {
+        CompletableFuture<Boolean> waiting = store.addAsync(record(id(0), "John"), DurabilityPolicy.fsyncEvery(60_000));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!Files.exists(TEST_PATH) || Files.readAllLines(TEST_PATH).isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "line never written");
+            Thread.sleep(5);
+        }
+
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("person-group-commit-" + TEST_FILE)) {
+                thread.interrupt();
+            }
+        }
+
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> waiting.get(10, TimeUnit.SECONDS));
+        assertTrue(failed.getCause() instanceof InterruptedIOException);
+        assertTrue(store.addAsync(record(id(1), "Jane"), DurabilityPolicy.FLUSH_PER_BATCH).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void commit_entryFailsToEncode_leavesNothingIndexed() throws Exception {
+        Files.deleteIfExists(BINARY_PATH);
+        PersonStore binary = PersonStore.forFile(BINARY_PATH.toString(), StorageFormat.BINARY);
+        CompletableFuture<Boolean> good = binary.addAsync(record(id(1), "John"), DurabilityPolicy.FLUSH_PER_BATCH);
+        CompletableFuture<Boolean> bad = binary.addAsync(record(id(2), null), DurabilityPolicy.FLUSH_PER_BATCH);
+
+        assertThrows(ExecutionException.class, () -> bad.get(10, TimeUnit.SECONDS));
+        boolean goodWritten = !good.handle((added, failure) -> failure != null).get(10, TimeUnit.SECONDS);
+
+        assertNull(binary.get(id(2)));
+        assertEquals(goodWritten, binary.get(id(1)) != null);
+        assertTrue(binary.add(record(id(2), "Jane")));
+        assertEquals("Jane", binary.get(id(2)).getFirstName());
+    }
+
+    @Test
+    public void fsyncEvery_nonPositiveInterval_throws() {
+        assertThrows(IllegalArgumentException.class, () -> DurabilityPolicy.fsyncEvery(0));
+    }
+}
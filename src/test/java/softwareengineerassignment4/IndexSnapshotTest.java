@@ -0,0 +1,243 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class IndexSnapshotTest {
+    private static final String TEST_FILE = "test_snapshot_persons.txt";
+    private static final Path TEST_PATH = Paths.get(TEST_FILE);
+    private static final Path BINARY_PATH = Paths.get("test_snapshot_persons.bin");
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+    private static final int MANY = 20_000;
+
+    // Each test reopens its data file under a new name, as a new process would find it
+    private static int copies;
+    private Path copy;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUp();
+        copy = Paths.get("test_snapshot_copy" + copies++ + ".txt");
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Person.setFileName("persons.txt");
+        Person.setStorageFormat(StorageFormat.CSV);
+        PersonStore.setCheckpointInterval(64L << 20);
+        for (Path path : new Path[] {TEST_PATH, BINARY_PATH, copy}) {
+            if (path != null) {
+                Files.deleteIfExists(path);
+                Files.deleteIfExists(IndexSnapshot.pathFor(path));
+                Files.deleteIfExists(PersonStore.lockPathFor(path));
+            }
+        }
+    }
+
+    // Distinct valid person IDs
+    private static String id(int n) {
+        char[] id = new char[10];
+        id[0] = (char) ('2' + n % 8);
+        id[1] = (char) ('2' + n / 8 % 8);
+        id[2] = '@';
+        id[3] = '#';
+        int rest = n / 64;
+        for (int i = 4; i < 8; i++) {
+            id[i] = (char) ('a' + rest % 26);
+            rest /= 26;
+        }
+        id[8] = 'X';
+        id[9] = 'Y';
+        return new String(id);
+    }
+
+    private static Path pathFor(StorageFormat format) {
+        return format == StorageFormat.CSV ? TEST_PATH : BINARY_PATH;
+    }
+
+    private PersonStore writeMany(StorageFormat format) throws IOException {
+        PersonStore store = PersonStore.forFile(pathFor(format).toString(), format);
+        long added = store.addAll(sink -> {
+            for (int n = 0; n < MANY; n++) {
+                sink.add(new PersonRecord(id(n), "First" + n, "Last", VALID_ADDRESS, "15-05-1990"));
+            }
+        });
+        assertEquals(MANY, added);
+        for (int n = 0; n < MANY; n += 100) {
+            store.addDemerit(id(n), DateCodec.today() - n % 700, 1 + n % 6);
+        }
+        return store;
+    }
+
+    // Opens a copy of the data file and its snapshot
+    private PersonStore reopen(StorageFormat format) throws IOException {
+        Files.copy(pathFor(format), copy);
+        if (Files.exists(IndexSnapshot.pathFor(pathFor(format)))) {
+            Files.copy(IndexSnapshot.pathFor(pathFor(format)), IndexSnapshot.pathFor(copy));
+        }
+        return PersonStore.forFile(copy.toString(), format);
+    }
+
+    private static void appendLines(Path path, String... lines) throws IOException {
+        Files.write(path, List.of(lines), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    private static int points(PersonStore store, String personID) throws IOException {
+        return store.read(personID, (record, history) -> history == null ? 0 : history.maxWindowPoints(DateCodec.today()));
+    }
+
+    @Test
+    public void checkpoint_reopened_restoresIndexWithoutReadingTheFile() throws IOException {
+        PersonStore store = writeMany(StorageFormat.CSV);
+        assertTrue(store.checkpoint());
+        assertFalse(store.checkpoint());
+        long fileBytes = Files.size(TEST_PATH);
+
+        long read = StorageMetrics.global().getBytesRead();
+        PersonStore reopened = reopen(StorageFormat.CSV);
+        reopened.position(); // Opens the index
+        long snapshotBytes = Files.size(IndexSnapshot.pathFor(copy));
+
+        assertEquals(snapshotBytes, StorageMetrics.global().getBytesRead() - read);
+        assertEquals("First12345", reopened.get(id(12_345)).getFirstName());
+        assertTrue(snapshotBytes < fileBytes, snapshotBytes + " vs " + fileBytes);
+        PersonStore.Stats expected = store.stats();
+        PersonStore.Stats restored = reopened.stats();
+        assertEquals(expected.personEntries, restored.personEntries);
+        assertEquals(expected.demeritEntries, restored.demeritEntries);
+        for (int n = 0; n < MANY; n += 100) {
+            assertEquals(points(store, id(n)), points(reopened, id(n)), id(n));
+        }
+    }
+
+    @Test
+    public void checkpoint_reopened_scansAndLooksUpEveryone() throws IOException {
+        PersonStore store = writeMany(StorageFormat.CSV);
+        assertTrue(store.checkpoint());
+        reopen(StorageFormat.CSV).position(); // Restores the index from the snapshot
+        Person.setFileName(copy.toString());
+
+        // A scan works on a copy of the restored ID index
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            assertEquals(MANY, Person.scan().count());
+            assertEquals(MANY / 100, Person.scan().filter(person -> !person.getDemeritPoints().isEmpty()).count());
+        });
+        assertEquals("First12345", Person.fetchPersonById(id(12_345)).toRecord().getFirstName());
+        assertEquals(1, Person.fetchPersonById(id(300)).getDemeritPoints().size());
+        assertNull(Person.fetchPersonById("99@z!z#zXY"));
+    }
+
+    @Test
+    public void checkpoint_thenMoreWrites_replaysOnlyTheTail() throws IOException {
+        PersonStore store = writeMany(StorageFormat.CSV);
+        assertTrue(store.checkpoint());
+        long covered = Files.size(TEST_PATH);
+        String recent = DateCodec.format(DateCodec.today() - 5);
+        appendLines(TEST_PATH,
+            "35@z!z#zXY,Tail,Person," + VALID_ADDRESS + ",15-05-1990",
+            id(1) + ",Demerit:4,Date:" + recent,
+            id(100) + ",Moved:37@z!z#zXY",
+            "37@z!z#zXY,Moved,Person," + VALID_ADDRESS + ",15-05-1990",
+            id(2) + ",Changed,Last," + VALID_ADDRESS + ",15-05-1990");
+        long tail = Files.size(TEST_PATH) - covered;
+
+        long read = StorageMetrics.global().getBytesRead();
+        PersonStore reopened = reopen(StorageFormat.CSV);
+        reopened.position(); // Opens the index
+
+        assertEquals(Files.size(IndexSnapshot.pathFor(copy)) + tail, StorageMetrics.global().getBytesRead() - read);
+        assertEquals("Tail", reopened.get("35@z!z#zXY").getFirstName());
+        assertEquals(4, points(reopened, id(1)));
+        assertNull(reopened.get(id(100)));
+        assertEquals(points(store, "37@z!z#zXY"), points(reopened, "37@z!z#zXY"));
+        assertEquals(5, points(reopened, "37@z!z#zXY"));
+        assertEquals("Changed", reopened.get(id(2)).getFirstName());
+        assertEquals(List.of(id(2)), reopened.search(SearchField.LAST_NAME, "", (record, history) -> record)
+            .filter(record -> record.getFirstName().equals("Changed"))
+            .map(PersonRecord::getPersonID)
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void reopen_fileReplacedSinceSnapshot_ignoresSnapshot() throws IOException {
+        PersonStore store = writeMany(StorageFormat.CSV);
+        assertTrue(store.checkpoint());
+        Path snapshot = IndexSnapshot.pathFor(TEST_PATH);
+        byte[] saved = Files.readAllBytes(snapshot);
+        Files.delete(TEST_PATH);
+        try (BufferedWriter writer = Files.newBufferedWriter(TEST_PATH, StandardCharsets.UTF_8)) {
+            for (int n = MANY; n > 0; n--) {
+                writer.write(id(n) + ",Other" + n + ",Last," + VALID_ADDRESS + ",15-05-1990\n");
+            }
+        }
+        Files.write(snapshot, saved);
+
+        PersonStore reopened = reopen(StorageFormat.CSV);
+
+        assertEquals("Other12345", reopened.get(id(12_345)).getFirstName());
+        assertNull(reopened.get(id(0)));
+    }
+
+    @Test
+    public void reopen_corruptSnapshot_readsWholeFile() throws IOException {
+        PersonStore store = writeMany(StorageFormat.CSV);
+        assertTrue(store.checkpoint());
+        Path snapshot = IndexSnapshot.pathFor(TEST_PATH);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x40;
+        Files.write(snapshot, bytes);
+
+        long read = StorageMetrics.global().getBytesRead();
+        PersonStore reopened = reopen(StorageFormat.CSV);
+
+        assertEquals("First12345", reopened.get(id(12_345)).getFirstName());
+        assertEquals(store.stats().personEntries, reopened.stats().personEntries);
+        assertTrue(StorageMetrics.global().getBytesRead() - read >= Files.size(TEST_PATH));
+    }
+
+    @Test
+    public void checkpointInterval_reached_writesSnapshotInBackground() throws Exception {
+        PersonStore.setCheckpointInterval(64 * 1024);
+        writeMany(StorageFormat.CSV);
+
+        Path snapshot = IndexSnapshot.pathFor(TEST_PATH);
+        for (int wait = 0; wait < 100 && !Files.exists(snapshot); wait++) {
+            Thread.sleep(50);
+        }
+        assertTrue(Files.exists(snapshot));
+    }
+
+    @Test
+    public void update_rewrite_deletesStaleSnapshot() throws IOException {
+        PersonStore store = writeMany(StorageFormat.CSV);
+        assertTrue(store.checkpoint());
+
+        assertTrue(store.update(id(5), new PersonRecord(id(5), "Changed", "Last", VALID_ADDRESS, "15-05-1990"),
+                                UpdateMode.REWRITE));
+
+        assertFalse(Files.exists(IndexSnapshot.pathFor(TEST_PATH)));
+    }
+
+    @Test
+    public void checkpoint_binaryFormat_restoresInlineOffences() throws IOException {
+        PersonStore store = writeMany(StorageFormat.BINARY);
+        assertTrue(store.checkpoint());
+
+        PersonStore reopened = reopen(StorageFormat.BINARY);
+
+        assertEquals('P', Files.readAllBytes(copy)[0]);
+        assertEquals("First777", reopened.get(id(777)).getFirstName());
+        assertEquals(points(store, id(700)), points(reopened, id(700)));
+        assertEquals(store.stats().demeritEntries, reopened.stats().demeritEntries);
+    }
+}
@@ -0,0 +1,108 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+public class LogCompactorTest {
+    private static final String TEST_FILE = "test_compact_persons.txt";
+    private static final Path TEST_PATH = Paths.get(TEST_FILE);
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+
+    private PersonStore store;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Files.deleteIfExists(TEST_PATH);
+        store = PersonStore.forFile(TEST_FILE);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(TEST_PATH);
+        Files.deleteIfExists(PersonStore.lockPathFor(TEST_PATH));
+    }
+
+    private PersonRecord record(String id, String firstName) {
+        return new PersonRecord(id, firstName, "Doe", VALID_ADDRESS, "15-05-1990");
+    }
+
+    private String getDateOffset(int years) {
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.YEAR, years);
+        return new SimpleDateFormat("dd-MM-yyyy").format(cal.getTime());
+    }
+
+    @Test
+    public void compact_versionsAndDemerits_leavesOneCanonicalEntryPerPerson() throws IOException {
+        String recent = getDateOffset(-1);
+        store.add(record("35@a!b#cXY", "John"));
+        store.addDemerit("35@a!b#cXY", DateCodec.parse(recent), 3);
+        store.addDemerit("35@a!b#cXY", DateCodec.parse(recent), 2);
+        store.addDemerit("35@a!b#cXY", DateCodec.parse("01-01-2010"), 4);
+        store.update("35@a!b#cXY", record("35@a!b#cXY", "Johnny"), UpdateMode.APPEND);
+        store.update("35@a!b#cXY", record("45@a!b#cXY", "Johnny"), UpdateMode.APPEND);
+
+        CompactionResult result = LogCompactor.compact(store);
+
+        assertEquals(List.of(
+            "45@a!b#cXY,Johnny,Doe," + VALID_ADDRESS + ",15-05-1990",
+            "45@a!b#cXY,Demerit:5,Date:" + recent), Files.readAllLines(TEST_PATH));
+        assertEquals(1, result.getExpiredOffences());
+        assertEquals(Files.size(TEST_PATH), result.getBytesAfter());
+        assertTrue(result.getBytesReclaimed() > 0);
+        assertNull(store.get("35@a!b#cXY"));
+        assertEquals("Johnny", store.get("45@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void compactInBackground_completesWithResult() throws InterruptedException, ExecutionException, IOException {
+        store.add(record("35@a!b#cXY", "John"));
+        store.update("35@a!b#cXY", record("35@a!b#cXY", "Johnny"), UpdateMode.APPEND);
+
+        CompactionResult result = LogCompactor.compactInBackground(store).get();
+
+        assertEquals(1, Files.readAllLines(TEST_PATH).size());
+        assertEquals(result.getBytesBefore() - result.getBytesAfter(), result.getBytesReclaimed());
+    }
+
+    @Test
+    public void replaceWithCompacted_appendDuringCompaction_isKept() throws IOException {
+        store.add(record("35@a!b#cXY", "John"));
+        PersonStore.LogPosition covered = store.position();
+        Path compacted = Paths.get(TEST_FILE + ".compact");
+        Files.write(compacted, List.of("35@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990"));
+
+        // Written after the compactor took its position
+        store.add(record("45@a!b#cXY", "Jane"));
+        store.replaceWithCompacted(compacted, covered);
+
+        assertEquals(2, Files.readAllLines(TEST_PATH).size());
+        assertEquals("Jane", store.get("45@a!b#cXY").getFirstName());
+        assertTrue(store.add(record("55@a!b#cXY", "Mike")));
+        assertEquals(3, Files.readAllLines(TEST_PATH).size());
+    }
+
+    @Test
+    public void replaceWithCompacted_fileReplaced_throws() throws IOException {
+        store.add(record("35@a!b#cXY", "John"));
+        PersonStore.LogPosition covered = store.position();
+        Path compacted = Paths.get(TEST_FILE + ".compact");
+        Files.write(compacted, List.of("35@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990"));
+
+        try {
+            Files.delete(TEST_PATH);
+            store.add(record("45@a!b#cXY", "Jane"));
+            assertThrows(IOException.class, () -> store.replaceWithCompacted(compacted, covered));
+        } finally {
+            Files.deleteIfExists(compacted);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MappedScannerTest {
+    private static final Path TEST_PATH = Paths.get("test_scanner_persons.txt");
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+
+    @BeforeEach
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Files.deleteIfExists(TEST_PATH);
+    }
+
+    // Records every entry as text so scans can be compared
+    private static final class Recorder implements LogVisitor {
+        final List<String> entries = new ArrayList<>();
+        final List<String> ids = new ArrayList<>();
+
+        @Override
+        public void person(PersonRecord record) {
+            entries.add("person " + record.toLine());
+            ids.add(record.getPersonID());
+        }
+
+        @Override
+        public void demerit(String personID, int offenseDay, int points) {
+            entries.add("demerit " + personID + " " + DateCodec.format(offenseDay) + " " + points);
+            ids.add(personID);
+        }
+
+        @Override
+        public void moved(String fromPersonID, String toPersonID) {
+            entries.add("moved " + fromPersonID + " " + toPersonID);
+            ids.add(fromPersonID);
+        }
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(TEST_PATH, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void scan_mixedLines_parsesEachLayoutAndSkipsJunk() throws IOException {
+        write("35@a!b#cXY,Zo\u00eb,Doe," + VALID_ADDRESS + ",15-05-1990,extra\n"
+            + "35@a!b#cXY,Demerit:3,Date:01-01-2024\r\n"
+            + "35@a!b#cXY,Demerit:x,Date:01-01-2024\n"
+            + "35@a!b#cXY,Demerit:3,Date:31-02-2024\n"
+            + "not a record\n"
+            + "35@a!b#cXY,Moved:37@a!b#cXY\n"
+            + "37@a!b#cXY,Jo");
+        Recorder recorder = new Recorder();
+
+        long end = MappedScanner.scan(TEST_PATH, 0, Long.MAX_VALUE, recorder);
+
+        assertEquals(List.of(
+            "person 35@a!b#cXY,Zo\u00eb,Doe," + VALID_ADDRESS + ",15-05-1990",
+            "demerit 35@a!b#cXY 01-01-2024 3",
+            "moved 35@a!b#cXY 37@a!b#cXY"), recorder.entries);
+        assertEquals(Files.size(TEST_PATH) - "37@a!b#cXY,Jo".length(), end);
+    }
+
+    @Test
+    public void scan_consecutiveLinesForSameId_shareOneIdString() throws IOException {
+        write("35@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990\n"
+            + "35@a!b#cXY,Demerit:3,Date:01-01-2024\n"
+            + "35@a!b#cXY,Demerit:2,Date:02-01-2024\n"
+            + "45@a!b#cXY,Demerit:1,Date:02-01-2024\n");
+        Recorder recorder = new Recorder();
+
+        MappedScanner.scan(TEST_PATH, 0, Long.MAX_VALUE, recorder);
+
+        assertSame(recorder.ids.get(0), recorder.ids.get(1));
+        assertSame(recorder.ids.get(0), recorder.ids.get(2));
+        assertEquals("45@a!b#cXY", recorder.ids.get(3));
+    }
+
+    @Test
+    public void scanLines_tinyWindow_sameResultAsOneWindow() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            content.append(i % 8 + 2).append("5@a!b#cXY,Name").append(i).append(",Doe,").append(VALID_ADDRESS)
+                   .append(",15-05-1990\n");
+            content.append(i % 8 + 2).append("5@a!b#cXY,Demerit:").append(i % 6 + 1).append(",Date:01-01-2024\n");
+        }
+        write(content.toString());
+        Recorder whole = new Recorder();
+        Recorder windowed = new Recorder();
+
+        MappedScanner.scan(TEST_PATH, 0, Long.MAX_VALUE, whole);
+        // 16 bytes is shorter than any line, so every line straddles a window and widens it
+        long end = MappedScanner.scanLines(TEST_PATH, 0, Long.MAX_VALUE, line -> CsvFormat.parse(line, windowed), 16);
+
+        assertEquals(400, whole.entries.size());
+        assertEquals(whole.entries, windowed.entries);
+        assertEquals(Files.size(TEST_PATH), end);
+    }
+
+    @Test
+    public void scan_fromOffsetAndToLimit_readsOnlyCompleteLinesInRange() throws IOException {
+        String first = "35@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990\n";
+        String second = "45@a!b#cXY,Jane,Doe," + VALID_ADDRESS + ",15-05-1990\n";
+        write(first + second + first);
+        Recorder recorder = new Recorder();
+
+        long end = MappedScanner.scan(TEST_PATH, first.length(), first.length() + second.length() + 5, recorder);
+
+        assertEquals(List.of("person " + second.trim()), recorder.entries);
+        assertEquals(first.length() + second.length(), end);
+    }
+}
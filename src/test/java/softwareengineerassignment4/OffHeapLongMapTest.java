@@ -0,0 +1,112 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class OffHeapLongMapTest {
+    @Test
+    public void put_existingKey_replacesValue() {
+        OffHeapLongMap map = new OffHeapLongMap(4);
+
+        map.put(42, 1);
+        map.put(42, 2);
+
+        assertEquals(2, map.get(42));
+        assertEquals(1, map.size());
+        assertEquals(OffHeapLongMap.MISSING, map.get(43));
+    }
+
+    @Test
+    public void put_negativeKey_throws() {
+        OffHeapLongMap map = new OffHeapLongMap(4);
+
+        assertThrows(IllegalArgumentException.class, () -> map.put(-5, 1));
+    }
+
+    @Test
+    public void putAndRemove_randomPackedIds_matchHashMap() {
+        // Small table and many removals, so probe runs wrap and entries shift back often
+        OffHeapLongMap map = new OffHeapLongMap(4);
+        Map<Long, Long> expected = new HashMap<>();
+        List<Long> keys = new ArrayList<>();
+        Random random = new Random(7);
+        for (int n = 0; n < 5000; n++) {
+            keys.add(PersonIdCodec.pack(BenchmarkIds.id(random.nextInt(3000))));
+        }
+
+        for (int n = 0; n < 20000; n++) {
+            long key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                map.put(key, n);
+                expected.put(key, (long) n);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key : keys) {
+            assertEquals(expected.getOrDefault(key, OffHeapLongMap.MISSING), map.get(key));
+        }
+    }
+
+    @Test
+    public void clear_afterGrowth_emptiesTable() {
+        OffHeapLongMap map = new OffHeapLongMap(4);
+        for (long key = 0; key < 1000; key++) {
+            map.put(key, key * 2);
+        }
+        assertEquals(1998, map.get(999));
+        assertTrue(map.memoryBytes() >= 1000 * 16);
+
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertEquals(OffHeapLongMap.MISSING, map.get(999));
+    }
+
+    @Test
+    public void put_atMaximumCapacity_refusesNewKeysWhileEmptySlotsRemain() {
+        OffHeapLongMap map = new OffHeapLongMap(0, 64);
+        for (long key = 0; key < 60; key++) {
+            map.put(key, key);
+        }
+
+        assertThrows(IllegalStateException.class, () -> map.put(1000, 1));
+        map.put(5, 50); // Replacing needs no new slot
+        assertEquals(50, map.get(5));
+        assertEquals(60, map.size());
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertEquals(OffHeapLongMap.MISSING, map.get(1000));
+            assertFalse(map.remove(1000));
+        });
+        assertTrue(map.remove(7));
+        map.put(1000, 1);
+        assertEquals(1, map.get(1000));
+    }
+
+    // Distinct valid person IDs, laid out like the benchmark data
+    private static final class BenchmarkIds {
+        static String id(int n) {
+            char[] id = new char[10];
+            id[0] = (char) ('2' + n % 8);
+            id[1] = (char) ('2' + n / 8 % 8);
+            id[2] = '@';
+            id[3] = '#';
+            int rest = n / 64;
+            for (int i = 4; i < 8; i++) {
+                id[i] = (char) ('a' + rest % 26);
+                rest /= 26;
+            }
+            id[8] = 'X';
+            id[9] = 'Y';
+            return new String(id);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PersonAsyncTest {
+    private static final String TEST_FILE = "test_async_persons.txt";
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+    private static final String RECENT = DateCodec.format(DateCodec.today() - 10);
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUp();
+        Person.setFileName(TEST_FILE);
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Person.setFileName("persons.txt");
+        Person.setStorageFormat(StorageFormat.CSV);
+        Files.deleteIfExists(Paths.get(TEST_FILE));
+        Files.deleteIfExists(PersonStore.lockPathFor(Paths.get(TEST_FILE)));
+    }
+
+    private static String id(int n) {
+        return "5" + (char) ('2' + n % 8) + "@a!b#" + (char) ('a' + n / 8) + "XY";
+    }
+
+    @Test
+    public void addThenDemeritThenFetch_notAwaited_runInCallOrderPerPerson() {
+        PersonAsync async = new PersonAsync();
+        List<CompletableFuture<Boolean>> adds = new ArrayList<>();
+        List<CompletableFuture<String>> demerits = new ArrayList<>();
+        List<CompletableFuture<Person>> fetches = new ArrayList<>();
+        for (int n = 0; n < 80; n++) {
+            adds.add(async.addPerson(id(n), "John", "Doe", VALID_ADDRESS, "15-05-1990"));
+            demerits.add(async.addDemeritPoints(id(n), RECENT, 3));
+            fetches.add(async.fetchPersonById(id(n)));
+        }
+
+        for (int n = 0; n < 80; n++) {
+            assertTrue(adds.get(n).join(), id(n));
+            assertEquals("Success", demerits.get(n).join(), id(n));
+            assertEquals(1, fetches.get(n).join().getDemeritPoints().size(), id(n));
+        }
+        assertEquals(0, async.pending());
+    }
+
+    @Test
+    public void addDemeritPoints_samePersonBehindSlowAdd_waitsForIt() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        Executor gated = task -> {
+            // Decided on submit, so it is the add that waits whichever thread starts first
+            boolean held = first.getAndSet(false);
+            new Thread(() -> {
+                if (held) {
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                task.run();
+            }).start();
+        };
+        PersonAsync async = new PersonAsync(gated);
+
+        CompletableFuture<Boolean> add = async.addPerson(id(1), "John", "Doe", VALID_ADDRESS, "15-05-1990");
+        CompletableFuture<String> demerit = async.addDemeritPoints(id(1), RECENT, 2);
+        CompletableFuture<Person> other = async.fetchPersonById(id(2));
+
+        // A different person is not held up by the stalled add
+        assertNull(other.get(5, TimeUnit.SECONDS));
+        assertFalse(demerit.isDone());
+        gate.countDown();
+
+        assertTrue(add.get(5, TimeUnit.SECONDS));
+        assertEquals("Success", demerit.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void updatePersonalDetails_idChange_orderedOnBothIds() {
+        PersonAsync async = new PersonAsync();
+
+        CompletableFuture<Boolean> add = async.addPerson("35@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990");
+        CompletableFuture<Boolean> update = async.updatePersonalDetails("35@a!b#cXY", "45@a!b#cXY", "John", "Doe",
+                                                                       VALID_ADDRESS, "15-05-1990");
+        CompletableFuture<String> demerit = async.addDemeritPoints("45@a!b#cXY", RECENT, 4);
+        CompletableFuture<Person> old = async.fetchPersonById("35@a!b#cXY");
+
+        assertTrue(add.join());
+        assertTrue(update.join());
+        assertEquals("Success", demerit.join());
+        assertNull(old.join());
+        assertEquals(1, Person.fetchPersonById("45@a!b#cXY").getDemeritPoints().size());
+    }
+
+    @Test
+    public void addDemeritPoints_unknownPerson_failsWithoutWriting() {
+        PersonAsync async = new PersonAsync();
+
+        assertEquals("Failed", async.addDemeritPoints("56@a!b#cXY", RECENT, 2).join());
+        assertEquals("Failed", async.addDemeritPoints("56@a!b#cXY", "not a date", 2).join());
+        assertFalse(async.addPerson("bad", "John", "Doe", VALID_ADDRESS, "15-05-1990").join());
+    }
+}
@@ -0,0 +1,188 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class PersonCacheTest {
+    private static final String TEST_FILE = "test_cache_persons.txt";
+    private static final Path TEST_PATH = Paths.get(TEST_FILE);
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+    private static final StorageMetrics METRICS = StorageMetrics.global();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUp();
+        Person.setFileName(TEST_FILE);
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Person.setFileName("persons.txt");
+        Person.setStorageFormat(StorageFormat.CSV);
+        Person.setCacheSize(10_000);
+        Files.deleteIfExists(TEST_PATH);
+        Files.deleteIfExists(PersonStore.lockPathFor(TEST_PATH));
+    }
+
+    private static PersonRecord record(int n) {
+        return new PersonRecord("5" + n, "First" + n, "Last", VALID_ADDRESS, "15-05-1990");
+    }
+
+    private static PersonStore store() {
+        return PersonStore.forFile(TEST_FILE);
+    }
+
+    private static void add(String id, String firstName) {
+        assertTrue(new Person(id, firstName, "Doe", VALID_ADDRESS, "15-05-1990").addPerson());
+    }
+
+    // Looks the record up, and caches it on a miss, as the store does
+    private static void lookUp(PersonCache cache, PersonRecord record) {
+        if (cache.get(record.getPersonID()) == null) {
+            cache.put(record);
+        }
+    }
+
+    @Test
+    public void put_oneOffIds_doNotDisplaceRepeatedOnes() {
+        PersonCache cache = new PersonCache(160);
+        for (int n = 0; n < 1000; n++) {
+            lookUp(cache, record(n));
+            lookUp(cache, record(n % 50));
+        }
+        long evictions = METRICS.getCacheEvictions();
+
+        for (int n = 1000; n < 3000; n++) {
+            lookUp(cache, record(n));
+        }
+
+        // Only one-offs that outlived their own lookup count are replaced
+        assertTrue(cache.size() <= 160, "size " + cache.size());
+        assertTrue(METRICS.getCacheEvictions() - evictions < 2000 / 10);
+        for (int n = 0; n < 50; n++) {
+            assertNotNull(cache.get("5" + n), "5" + n);
+        }
+    }
+
+    @Test
+    public void put_newIdsLookedUpRepeatedly_evictLeastRecentlyUsed() {
+        PersonCache cache = new PersonCache(160);
+        for (int n = 0; n < 1000; n++) {
+            lookUp(cache, record(n));
+        }
+        long evictions = METRICS.getCacheEvictions();
+
+        for (int round = 0; round < 3; round++) {
+            for (int n = 5000; n < 5050; n++) {
+                lookUp(cache, record(n));
+            }
+        }
+
+        for (int n = 5000; n < 5050; n++) {
+            assertNotNull(cache.get("5" + n), "5" + n);
+        }
+        assertEquals(50, METRICS.getCacheEvictions() - evictions);
+        assertTrue(cache.size() <= 160, "size " + cache.size());
+    }
+
+    @Test
+    public void refresh_uncachedId_leavesItOut() {
+        PersonCache cache = new PersonCache(100);
+
+        cache.refresh(record(1));
+        cache.put(record(2));
+        cache.refresh(new PersonRecord("52", "Changed", "Last", VALID_ADDRESS, "15-05-1990"));
+
+        assertNull(cache.get("51"));
+        assertEquals("Changed", cache.get("52").getFirstName());
+    }
+
+    @Test
+    public void fetchPersonById_repeated_missesOnceThenHits() throws IOException {
+        add("56@a!b#cXY", "John");
+        store().get("35@a!b#cXY"); // Opens the index
+
+        long hits = METRICS.getCacheHits();
+        long misses = METRICS.getCacheMisses();
+        assertNotNull(Person.fetchPersonById("56@a!b#cXY"));
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(Person.fetchPersonById("56@a!b#cXY"));
+        }
+
+        assertEquals(10, METRICS.getCacheHits() - hits);
+        assertEquals(1, METRICS.getCacheMisses() - misses);
+        assertTrue(METRICS.getCachedPersons() >= 1);
+        assertTrue(METRICS.prometheusText().contains("person_cache_hits_total "));
+    }
+
+    @Test
+    public void updatePersonalDetails_cachedPerson_nextFetchSeesUpdate() throws IOException {
+        add("35@a!b#cXY", "John");
+        add("57@a!b#cXY", "Jane");
+        assertNotNull(Person.fetchPersonById("35@a!b#cXY"));
+        assertNotNull(Person.fetchPersonById("57@a!b#cXY"));
+
+        assertTrue(Person.updatePersonalDetails("57@a!b#cXY", "57@a!b#cXY", "Janet", "Doe", VALID_ADDRESS, "15-05-1990"));
+        assertTrue(Person.updatePersonalDetails("35@a!b#cXY", "45@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990"));
+
+        assertEquals("Janet", store().get("57@a!b#cXY").getFirstName());
+        assertNull(Person.fetchPersonById("35@a!b#cXY"));
+        assertNotNull(Person.fetchPersonById("45@a!b#cXY"));
+    }
+
+    @Test
+    public void updatePersonalDetails_batchRewrite_nextFetchSeesUpdate() throws IOException {
+        add("35@a!b#cXY", "John");
+        assertEquals("John", store().get("35@a!b#cXY").getFirstName());
+
+        BatchUpdateReport report = Person.updatePersonalDetails(List.of(
+            new PersonUpdate("35@a!b#cXY", "35@a!b#cXY", "Johnny", "Doe", VALID_ADDRESS, "15-05-1990")));
+
+        assertEquals(1, report.getApplied());
+        assertEquals("Johnny", store().get("35@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void fetchPersonById_fileAppendedElsewhere_seesNewVersion() throws IOException {
+        add("35@a!b#cXY", "John");
+        assertEquals("John", store().get("35@a!b#cXY").getFirstName());
+
+        Files.write(TEST_PATH, List.of("35@a!b#cXY,Other,Doe," + VALID_ADDRESS + ",15-05-1990"),
+                    StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        assertEquals("Other", store().get("35@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void addDemeritPoints_cachedPerson_nextFetchCarriesOffence() {
+        add("35@a!b#cXY", "John");
+        Person cached = Person.fetchPersonById("35@a!b#cXY");
+        assertTrue(cached.getDemeritPoints().isEmpty());
+
+        assertEquals("Success", cached.addDemeritPoints(DateCodec.format(DateCodec.today() - 3), 2));
+
+        assertEquals(1, Person.fetchPersonById("35@a!b#cXY").getDemeritPoints().size());
+    }
+
+    @Test
+    public void setCacheSize_zero_turnsCachingOff() throws IOException {
+        Person.setCacheSize(0);
+        add("35@a!b#cXY", "John");
+        long hits = METRICS.getCacheHits();
+        long misses = METRICS.getCacheMisses();
+
+        assertNotNull(Person.fetchPersonById("35@a!b#cXY"));
+        assertNotNull(Person.fetchPersonById("35@a!b#cXY"));
+
+        assertEquals(hits, METRICS.getCacheHits());
+        assertEquals(misses, METRICS.getCacheMisses());
+        assertEquals(0, store().cachedRecords());
+    }
+}
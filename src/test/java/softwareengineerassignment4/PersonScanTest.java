@@ -0,0 +1,197 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class PersonScanTest {
+    private static final String TEST_FILE = "test_scan_persons.txt";
+    private static final Path TEST_PATH = Paths.get(TEST_FILE);
+    private static final Path BINARY_PATH = Paths.get("test_scan_persons.bin");
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+    private static final int MANY = 40_000; // About 3 MB of CSV, so the scan reads several chunks and splits
+
+    private PersonStore store;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUp();
+        store = PersonStore.forFile(TEST_FILE);
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Person.setFileName("persons.txt");
+        Person.setStorageFormat(StorageFormat.CSV);
+        Files.deleteIfExists(TEST_PATH);
+        Files.deleteIfExists(BINARY_PATH);
+        Files.deleteIfExists(PersonStore.lockPathFor(TEST_PATH));
+        Files.deleteIfExists(PersonStore.lockPathFor(BINARY_PATH));
+    }
+
+    // Distinct valid person IDs
+    private static String id(int n) {
+        char[] id = new char[10];
+        id[0] = (char) ('2' + n % 8);
+        id[1] = (char) ('2' + n / 8 % 8);
+        id[2] = '@';
+        id[3] = '#';
+        int rest = n / 64;
+        for (int i = 4; i < 8; i++) {
+            id[i] = (char) ('a' + rest % 26);
+            rest /= 26;
+        }
+        id[8] = 'X';
+        id[9] = 'Y';
+        return new String(id);
+    }
+
+    private void writeMany(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int n = 0; n < MANY; n++) {
+                writer.write(id(n) + ",First" + n + ",Last," + VALID_ADDRESS + ",15-05-1990\n");
+            }
+        }
+    }
+
+    private List<String> ids(PersonStore store, ScanFilter filter) throws IOException {
+        return store.scan(filter, (record, history) -> record.getPersonID()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void scan_versionsAndMoves_returnsEachCurrentPersonOnce() throws IOException {
+        Files.write(TEST_PATH, List.of(
+            "56@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990",
+            "35@a!b#cXY,Jane,Doe," + VALID_ADDRESS + ",16-05-1990",
+            "56@a!b#cXY,Johnny,Doe," + VALID_ADDRESS + ",15-05-1990",
+            "35@a!b#cXY,Moved:45@a!b#cXY",
+            "45@a!b#cXY,Jane,Doe," + VALID_ADDRESS + ",16-05-1990"));
+
+        List<String> names = store.scan(ScanFilter.all(), (record, history) -> record.getFirstName())
+            .collect(Collectors.toList());
+
+        assertEquals(List.of("Johnny", "Jane"), names);
+    }
+
+    @Test
+    public void scan_idPrefixAndBirthRange_returnsMatchesOnly() throws IOException {
+        Files.write(TEST_PATH, List.of(
+            "56@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990",
+            "57@a!b#cXY,Jane,Doe," + VALID_ADDRESS + ",15-05-2001",
+            "66@a!b#cXY,Jack,Doe," + VALID_ADDRESS + ",15-05-1995",
+            "58@a!b#cXY,Jill,Doe," + VALID_ADDRESS + ",not a date"));
+
+        assertEquals(List.of("56@a!b#cXY", "57@a!b#cXY", "58@a!b#cXY"), ids(store, ScanFilter.all().idPrefix("5")));
+        assertEquals(List.of("56@a!b#cXY", "66@a!b#cXY"),
+                     ids(store, ScanFilter.all().bornBetween("01-01-1990", "31-12-1999")));
+        assertEquals(List.of("56@a!b#cXY"),
+                     ids(store, ScanFilter.all().idPrefix("5").bornBetween("01-01-1990", "31-12-1999")));
+    }
+
+    @Test
+    public void scan_suspendedFilter_usesCurrentHistory() throws IOException {
+        String recent = DateCodec.format(DateCodec.today() - 30);
+        store.add(new PersonRecord("56@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990"));
+        store.add(new PersonRecord("57@a!b#cXY", "Jane", "Doe", VALID_ADDRESS, "15-05-1990"));
+        store.addDemerit("56@a!b#cXY", DateCodec.parse(recent), 6);
+        store.addDemerit("56@a!b#cXY", DateCodec.parse(recent) - 1, 6);
+        store.addDemerit("56@a!b#cXY", DateCodec.parse(recent) - 2, 1);
+
+        assertEquals(List.of("56@a!b#cXY"), ids(store, ScanFilter.all().suspended(true)));
+        assertEquals(List.of("57@a!b#cXY"), ids(store, ScanFilter.all().suspended(false)));
+    }
+
+    @Test
+    public void bornBetween_invalidDate_throws() {
+        assertThrows(IllegalArgumentException.class, () -> ScanFilter.all().bornBetween("1990", "31-12-1999"));
+    }
+
+    @Test
+    public void scan_parallel_matchesSequentialInBothFormats() throws IOException {
+        writeMany(TEST_PATH);
+        StorageConverter.convert(TEST_FILE, StorageFormat.CSV, BINARY_PATH.toString(), StorageFormat.BINARY);
+        List<String> expected = new ArrayList<>();
+        for (int n = 0; n < MANY; n++) {
+            expected.add(id(n));
+        }
+
+        for (PersonStore scanned : List.of(store, PersonStore.forFile(BINARY_PATH.toString(), StorageFormat.BINARY))) {
+            List<String> parallel = scanned.scan(ScanFilter.all(), (record, history) -> record.getPersonID())
+                .parallel().collect(Collectors.toList());
+            assertEquals(expected, ids(scanned, ScanFilter.all()));
+            assertEquals(expected, parallel);
+        }
+    }
+
+    @Test
+    public void splitPoint_bothFormats_landsOnEntryStart() throws IOException {
+        writeMany(TEST_PATH);
+        StorageConverter.convert(TEST_FILE, StorageFormat.CSV, BINARY_PATH.toString(), StorageFormat.BINARY);
+
+        for (StorageFormat format : StorageFormat.values()) {
+            Path path = format == StorageFormat.CSV ? TEST_PATH : BINARY_PATH;
+            Set<Long> starts = new HashSet<>();
+            long size = format.scan(path, 0, Long.MAX_VALUE, new LogVisitor() {
+                @Override
+                public void entryAt(long offset) {
+                    starts.add(offset);
+                }
+
+                @Override
+                public void person(PersonRecord record) {
+                }
+
+                @Override
+                public void demerit(String personID, int offenseDay, int points) {
+                }
+
+                @Override
+                public void moved(String fromPersonID, String toPersonID) {
+                }
+            });
+
+            long split = format.splitPoint(path, 0, size);
+            assertTrue(starts.contains(split), format + " split at " + split);
+            assertTrue(split > size / 4 && split < size * 3 / 4, format + " split at " + split);
+            assertTrue(starts.contains(format.splitPoint(path, split, size)));
+        }
+    }
+
+    @Test
+    public void scan_fileRewrittenMidScan_throws() throws IOException {
+        writeMany(TEST_PATH);
+        Iterator<String> scan = store.scan(ScanFilter.all(), (record, history) -> record.getPersonID()).iterator();
+        scan.next();
+
+        assertTrue(store.update(id(1), new PersonRecord(id(1), "Changed", "Last", VALID_ADDRESS, "15-05-1990"),
+                                UpdateMode.REWRITE));
+
+        assertThrows(ConcurrentModificationException.class, () -> {
+            while (scan.hasNext()) {
+                scan.next();
+            }
+        });
+    }
+
+    @Test
+    public void personScan_filter_returnsPersons() {
+        Person.setFileName(TEST_FILE);
+        assertTrue(new Person("56@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990").addPerson());
+        assertTrue(new Person("66@a!b#cXY", "Jane", "Doe", VALID_ADDRESS, "15-05-1990").addPerson());
+
+        assertEquals(2, Person.scan().count());
+        assertEquals(1, Person.scan(ScanFilter.all().idPrefix("66")).count());
+    }
+}
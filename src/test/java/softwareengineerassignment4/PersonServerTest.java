@@ -0,0 +1,201 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+public class PersonServerTest {
+    private static final String TEST_FILE = "test_server_persons.txt";
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+    private static final String RECENT = DateCodec.format(DateCodec.today() - 10);
+
+    private PersonServer server;
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUp();
+        Person.setFileName(TEST_FILE);
+        server = PersonServer.start(0);
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+        Person.setFileName("persons.txt");
+        Person.setStorageFormat(StorageFormat.CSV);
+        Files.deleteIfExists(Paths.get(TEST_FILE));
+        Files.deleteIfExists(IndexSnapshot.pathFor(Paths.get(TEST_FILE)));
+        Files.deleteIfExists(PersonStore.lockPathFor(Paths.get(TEST_FILE)));
+    }
+
+    private static String encode(String text) {
+        return URLEncoder.encode(text, StandardCharsets.UTF_8);
+    }
+
+    private HttpResponse<String> send(String method, String path, String form) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path));
+        if (form != null) {
+            request.header("Content-Type", "application/x-www-form-urlencoded");
+        }
+        request.method(method, form == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(form));
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> add(String id) throws Exception {
+        return send("POST", "/persons", "personID=" + encode(id) + "&firstName=John&lastName=Doe&address="
+                    + encode(VALID_ADDRESS) + "&birthdate=15-05-1990");
+    }
+
+    @Test
+    public void addAndFetch_validPerson_roundTripsAsJson() throws Exception {
+        assertEquals(201, add("56@a!b#cXY").statusCode());
+        assertEquals(409, add("56@a!b#cXY").statusCode());
+        assertEquals(400, add("bad").statusCode());
+
+        HttpResponse<String> fetched = send("GET", "/persons/" + encode("56@a!b#cXY"), null);
+
+        assertEquals(200, fetched.statusCode());
+        assertTrue(fetched.body().contains("\"personID\":\"56@a!b#cXY\""), fetched.body());
+        assertTrue(fetched.body().contains("\"address\":\"" + VALID_ADDRESS + "\""), fetched.body());
+        assertTrue(fetched.body().contains("\"demeritPoints\":{}"), fetched.body());
+        assertEquals(404, send("GET", "/persons/" + encode("57@a!b#cXY"), null).statusCode());
+    }
+
+    @Test
+    public void add_fileNotWritable_returns500() throws Exception {
+        PersonStore store = PersonStore.forFile(TEST_FILE);
+        store.close();
+        Path lock = PersonStore.lockPathFor(store.file());
+        Files.deleteIfExists(lock);
+        Files.createDirectory(lock); // The store cannot take its file lock, so the write fails
+        try {
+            HttpResponse<String> response = add("56@a!b#cXY");
+            assertEquals(500, response.statusCode(), response.body());
+        } finally {
+            Files.delete(lock);
+        }
+        assertEquals(201, add("56@a!b#cXY").statusCode());
+    }
+
+    @Test
+    public void demeritsAndSuspension_overThreshold_reportSuspended() throws Exception {
+        add("56@a!b#cXY");
+        String demerits = "/persons/" + encode("56@a!b#cXY") + "/demerits";
+        for (int daysAgo : new int[] {30, 20, 10}) {
+            String date = DateCodec.format(DateCodec.today() - daysAgo);
+            assertEquals(201, send("POST", demerits, "offenseDate=" + date + "&points=5").statusCode());
+        }
+        assertEquals(400, send("POST", demerits, "offenseDate=" + RECENT + "&points=9").statusCode());
+        assertEquals(404, send("POST", "/persons/" + encode("57@a!b#cXY") + "/demerits",
+                               "offenseDate=" + RECENT + "&points=1").statusCode());
+
+        HttpResponse<String> now = send("GET", "/persons/" + encode("56@a!b#cXY") + "/suspension", null);
+        HttpResponse<String> before = send("GET", "/persons/" + encode("56@a!b#cXY") + "/suspension?date="
+                                           + DateCodec.format(DateCodec.today() - 25), null);
+
+        assertTrue(now.body().contains("\"points\":15,\"suspended\":true"), now.body());
+        assertTrue(before.body().contains("\"points\":5,\"suspended\":false"), before.body());
+    }
+
+    @Test
+    public void update_changedName_appliesAndRefusesBrokenRules() throws Exception {
+        add("35@a!b#cXY");
+        String form = "firstName=Johnny&lastName=Doe&address=" + encode(VALID_ADDRESS) + "&birthdate=15-05-1990";
+
+        HttpResponse<String> updated = send("PUT", "/persons/" + encode("35@a!b#cXY"), form + "&newPersonID=" + encode("45@a!b#cXY"));
+        // 45 starts with an even digit, so its ID may not change
+        HttpResponse<String> refused = send("PUT", "/persons/" + encode("45@a!b#cXY"), form + "&newPersonID=" + encode("55@a!b#cXY"));
+
+        assertEquals(200, updated.statusCode());
+        assertTrue(updated.body().contains("\"firstName\":\"Johnny\""), updated.body());
+        assertEquals(422, refused.statusCode());
+        assertEquals(405, send("DELETE", "/persons/" + encode("45@a!b#cXY"), null).statusCode());
+        assertEquals(404, send("GET", "/persons/" + encode("45@a!b#cXY") + "/other", null).statusCode());
+    }
+
+    @Test
+    public void add_missingNameOrLineBreakingCharacter_returns422() throws Exception {
+        String rest = "&address=" + encode(VALID_ADDRESS) + "&birthdate=15-05-1990";
+
+        HttpResponse<String> noFirstName = send("POST", "/persons", "personID=" + encode("56@a!b#cXY") + "&lastName=Doe" + rest);
+        HttpResponse<String> comma = send("POST", "/persons", "personID=" + encode("56@a!b#cXY")
+                                          + "&firstName=John&lastName=" + encode("Doe,Jr") + rest);
+        HttpResponse<String> newline = send("POST", "/persons", "personID=" + encode("56@a!b#cXY")
+                                            + "&firstName=John&lastName=" + encode("Doe\n57@a!b#cXY,Moved:58@a!b#cXY") + rest);
+
+        assertEquals(422, noFirstName.statusCode());
+        assertEquals(422, comma.statusCode());
+        assertEquals(422, newline.statusCode());
+        assertFalse(Files.exists(Paths.get(TEST_FILE)) && Files.size(Paths.get(TEST_FILE)) > 0);
+        assertEquals(404, send("GET", "/persons/" + encode("56@a!b#cXY"), null).statusCode());
+    }
+
+    @Test
+    public void update_missingNameOrLineBreakingCharacter_returns422() throws Exception {
+        add("35@a!b#cXY");
+        add("37@a!b#cXY");
+        String person = "/persons/" + encode("35@a!b#cXY");
+        String rest = "&address=" + encode(VALID_ADDRESS) + "&birthdate=15-05-1990";
+
+        HttpResponse<String> emptyLastName = send("PUT", person, "firstName=John&lastName=" + rest);
+        HttpResponse<String> lineBreak = send("PUT", person, "firstName=John&lastName="
+                                              + encode("Doe\r\n37@a!b#cXY,Moved:39@a!b#cXY") + rest);
+
+        assertEquals(422, emptyLastName.statusCode());
+        assertEquals(422, lineBreak.statusCode());
+        assertEquals(2, Files.readAllLines(Paths.get(TEST_FILE)).size());
+        assertTrue(send("GET", person, null).body().contains("\"lastName\":\"Doe\""));
+        assertEquals(200, send("GET", "/persons/" + encode("37@a!b#cXY"), null).statusCode());
+    }
+
+    @Test
+    public void update_unknownOrTakenId_returns404And409() throws Exception {
+        add("35@a!b#cXY");
+        add("37@a!b#cXY");
+        String form = "firstName=John&lastName=Doe&address=" + encode(VALID_ADDRESS) + "&birthdate=15-05-1990";
+
+        HttpResponse<String> unknown = send("PUT", "/persons/" + encode("39@a!b#cXY"), form);
+        HttpResponse<String> taken = send("PUT", "/persons/" + encode("35@a!b#cXY"), form + "&newPersonID=" + encode("37@a!b#cXY"));
+
+        assertEquals(404, unknown.statusCode());
+        assertEquals(409, taken.statusCode());
+        assertEquals(200, send("GET", "/persons/" + encode("35@a!b#cXY"), null).statusCode());
+    }
+
+    @Test
+    public void metrics_afterRequests_servePrometheusText() throws Exception {
+        add("56@a!b#cXY");
+
+        HttpResponse<String> metrics = send("GET", "/metrics", null);
+
+        assertEquals(200, metrics.statusCode());
+        assertTrue(metrics.body().contains("person_cache_hits_total"));
+    }
+
+    @Test
+    public void drive_seededServer_answersEveryKindWithoutErrors() throws Exception {
+        LoadGenerator.seed(TEST_FILE, 200);
+
+        LoadReport report = LoadGenerator.drive(URI.create("http://localhost:" + server.getPort()), 200, 4, 50,
+                                                Duration.ofMillis(200), Duration.ofSeconds(1));
+
+        assertTrue(report.getRequests() > 0);
+        assertEquals(0, report.getErrors(), report.toString());
+        assertTrue(report.getP50Micros() <= report.getP999Micros());
+        assertTrue(report.toString().contains("demerit"));
+    }
+}
@@ -0,0 +1,139 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PersonStoreConcurrencyTest {
+    private static final String TEST_FILE = "test_concurrent_persons.txt";
+    private static final Path TEST_PATH = Paths.get(TEST_FILE);
+    private static final Path COPY_PATH = Paths.get("test_concurrent_copy.txt");
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+    private static final String SHARED_ID = "22@#aaaaZZ";
+    private static final int WRITERS = 32;
+    private static final int PEOPLE_PER_WRITER = 25;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Person.setFileName(TEST_FILE);
+        Files.deleteIfExists(TEST_PATH);
+        Files.deleteIfExists(COPY_PATH);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Person.setUpdateMode(UpdateMode.APPEND);
+        Files.deleteIfExists(TEST_PATH);
+        Files.deleteIfExists(COPY_PATH);
+        Files.deleteIfExists(PersonStore.lockPathFor(TEST_PATH));
+        Files.deleteIfExists(PersonStore.lockPathFor(COPY_PATH));
+    }
+
+    // Distinct valid ID for each n: two digits 2-9, "@#" plus four letters, "XY"
+    private static String id(int n) {
+        StringBuilder id = new StringBuilder();
+        id.append((char) ('2' + n % 8)).append((char) ('2' + n / 8 % 8)).append("@#");
+        int rest = n / 64;
+        for (int i = 0; i < 4; i++) {
+            id.append((char) ('a' + rest % 26));
+            rest /= 26;
+        }
+        return id.append("XY").toString();
+    }
+
+    // Runs the task on WRITERS threads at once and rethrows anything they threw
+    private static void runConcurrently(WriterTask task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            futures.add(pool.submit(() -> {
+                start.await();
+                task.run(writer);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+    }
+
+    private interface WriterTask {
+        void run(int writer) throws Exception;
+    }
+
+    // A store built from scratch over a copy of the file, as a restarted process would see it
+    private static PersonStore reload() throws IOException {
+        Files.copy(TEST_PATH, COPY_PATH, StandardCopyOption.REPLACE_EXISTING);
+        return PersonStore.forFile(COPY_PATH.toString());
+    }
+
+    @Test
+    public void concurrentWriters_appendMode_noLostWrites() throws Exception {
+        new Person(SHARED_ID, "Shared", "Doe", VALID_ADDRESS, "15-05-1990").addPerson();
+        String today = DateCodec.format(DateCodec.today());
+
+        runConcurrently(writer -> {
+            Person shared = Person.fetchPersonById(SHARED_ID);
+            for (int i = 0; i < PEOPLE_PER_WRITER; i++) {
+                String id = id(writer * PEOPLE_PER_WRITER + i + 1);
+                Person p = new Person(id, "First", "Doe", VALID_ADDRESS, "15-05-1990");
+                assertTrue(p.addPerson());
+                assertEquals("Success", p.addDemeritPoints(today, 1));
+                assertTrue(Person.updatePersonalDetails(id, id, "Updated", "Doe", VALID_ADDRESS, "15-05-1990"));
+
+                // Everyone also piles onto the same person
+                assertEquals("Success", shared.addDemeritPoints(today, 1));
+                assertTrue(Person.updatePersonalDetails(SHARED_ID, SHARED_ID, "Writer" + writer, "Doe",
+                                                        VALID_ADDRESS, "15-05-1990"));
+            }
+        });
+
+        int total = WRITERS * PEOPLE_PER_WRITER;
+        assertEquals(1 + total * 5, Files.readAllLines(TEST_PATH).size());
+
+        PersonStore reloaded = reload();
+        for (int n = 1; n <= total; n++) {
+            String id = id(n);
+            assertEquals("Updated", reloaded.get(id).getFirstName(), id);
+            assertEquals(1, reloaded.read(id, (record, history) -> history).pointsAt(0), id);
+        }
+        assertEquals(total, reloaded.read(SHARED_ID, (record, history) -> history).pointsAt(0));
+        assertEquals(total, Person.fetchPersonById(SHARED_ID).getDemeritPoints().get(today));
+    }
+
+    @Test
+    public void concurrentWriters_rewriteMode_noLostWrites() throws Exception {
+        Person.setUpdateMode(UpdateMode.REWRITE);
+        new Person(SHARED_ID, "Shared", "Doe", VALID_ADDRESS, "15-05-1990").addPerson();
+
+        runConcurrently(writer -> {
+            for (int i = 0; i < 5; i++) {
+                String id = id(writer * 5 + i + 1);
+                assertTrue(new Person(id, "First", "Doe", VALID_ADDRESS, "15-05-1990").addPerson());
+                assertTrue(Person.updatePersonalDetails(SHARED_ID, SHARED_ID, "Writer" + writer, "Doe",
+                                                        VALID_ADDRESS, "15-05-1990"));
+            }
+        });
+
+        assertEquals(1 + WRITERS * 5, Files.readAllLines(TEST_PATH).size());
+        PersonStore reloaded = reload();
+        for (int n = 1; n <= WRITERS * 5; n++) {
+            assertNotNull(reloaded.get(id(n)), id(n));
+        }
+        assertTrue(reloaded.get(SHARED_ID).getFirstName().startsWith("Writer"));
+    }
+}
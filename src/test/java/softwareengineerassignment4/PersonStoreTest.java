@@ -0,0 +1,222 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class PersonStoreTest {
+    private static final String TEST_FILE = "test_store_persons.txt";
+    private static final Path TEST_PATH = Paths.get(TEST_FILE);
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+
+    private PersonStore store;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Files.deleteIfExists(TEST_PATH);
+        store = PersonStore.forFile(TEST_FILE);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(TEST_PATH);
+        Files.deleteIfExists(PersonStore.lockPathFor(TEST_PATH));
+    }
+
+    private PersonRecord record(String id, String firstName) {
+        return new PersonRecord(id, firstName, "Doe", VALID_ADDRESS, "15-05-1990");
+    }
+
+    private void appendExternally(String line) throws IOException {
+        Files.write(TEST_PATH, (line + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    public void forFile_samePath_returnsSameStore() {
+        assertSame(store, PersonStore.forFile("./" + TEST_FILE));
+    }
+
+    @Test
+    public void get_existingFile_indexesPersonLinesOnly() throws IOException {
+        Files.write(TEST_PATH, List.of(
+            "56@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990",
+            "56@a!b#cXY,Demerit:3,Date:01-01-2024",
+            "57@a!b#cXY,Jane,Doe," + VALID_ADDRESS + ",16-05-1990"));
+
+        assertEquals("John", store.get("56@a!b#cXY").getFirstName());
+        assertEquals("Jane", store.get("57@a!b#cXY").getFirstName());
+        assertNull(store.get("58@a!b#cXY"));
+    }
+
+    @Test
+    public void get_idThatCannotBePacked_isStillIndexed() throws IOException {
+        appendExternally("56@\u00e9!b#cXY,Zo\u00eb,Doe," + VALID_ADDRESS + ",15-05-1990");
+        appendExternally("56@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990");
+        appendExternally("56@\u00e9!b#cXY,Zoe,Doe," + VALID_ADDRESS + ",15-05-1990");
+
+        assertEquals("Zoe", store.get("56@\u00e9!b#cXY").getFirstName());
+        assertEquals("John", store.get("56@a!b#cXY").getFirstName());
+        assertTrue(store.update("56@\u00e9!b#cXY", record("58@a!b#cXY", "Zoe"), UpdateMode.APPEND));
+        assertNull(store.get("56@\u00e9!b#cXY"));
+        assertEquals("Zoe", store.get("58@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void read_existingFile_indexesDemeritHistory() throws IOException {
+        Files.write(TEST_PATH, List.of(
+            "56@a!b#cXY,John,Doe," + VALID_ADDRESS + ",15-05-1990",
+            "56@a!b#cXY,Demerit:3,Date:01-01-2024",
+            "56@a!b#cXY,Demerit:2,Date:01-01-2023",
+            "56@a!b#cXY,Demerit:2,Date:01-01-2024"));
+
+        DemeritWindow history = store.read("56@a!b#cXY", (record, offences) -> offences);
+        assertEquals(2, history.size());
+        assertEquals(DateCodec.parse("01-01-2023"), history.dayAt(0));
+        assertEquals(5, history.pointsAt(1));
+    }
+
+    @Test
+    public void read_fileRecreatedLarger_isReindexedFromStart() throws IOException {
+        store.add(record("56@a!b#cXY", "John"));
+        Files.delete(TEST_PATH);
+        Files.write(TEST_PATH, List.of(
+            "57@a!b#cXY,Jane,Doe," + VALID_ADDRESS + ",16-05-1990",
+            "58@a!b#cXY,Mike,Doe," + VALID_ADDRESS + ",16-05-1990"));
+
+        assertNull(store.get("56@a!b#cXY"));
+        assertEquals("Jane", store.get("57@a!b#cXY").getFirstName());
+        assertEquals("Mike", store.get("58@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void add_duplicateID_returnsFalse() throws IOException {
+        assertTrue(store.add(record("56@a!b#cXY", "John")));
+        assertFalse(store.add(record("56@a!b#cXY", "Jane")));
+        assertEquals(1, Files.readAllLines(TEST_PATH).size());
+    }
+
+    @Test
+    public void get_externalAppend_isReplayed() throws IOException {
+        store.add(record("56@a!b#cXY", "John"));
+        appendExternally("57@a!b#cXY,Jane,Doe," + VALID_ADDRESS + ",16-05-1990");
+
+        assertEquals("Jane", store.get("57@a!b#cXY").getFirstName());
+        assertEquals("John", store.get("56@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void get_fileDeleted_indexIsCleared() throws IOException {
+        store.add(record("56@a!b#cXY", "John"));
+        Files.delete(TEST_PATH);
+
+        assertNull(store.get("56@a!b#cXY"));
+        assertTrue(store.add(record("56@a!b#cXY", "John")));
+    }
+
+    @Test
+    public void update_appendMode_latestVersionWins() throws IOException {
+        store.add(record("56@a!b#cXY", "John"));
+        assertTrue(store.update("56@a!b#cXY", record("56@a!b#cXY", "Johnny"), UpdateMode.APPEND));
+
+        assertEquals(2, Files.readAllLines(TEST_PATH).size());
+        assertEquals("Johnny", store.get("56@a!b#cXY").getFirstName());
+    }
+
+    @Test
+    public void update_appendModeIdChange_oldIdRetiredAfterReload() throws IOException {
+        Path copy = Paths.get("test_store_copy.txt");
+        try {
+            store.add(record("35@a!b#cXY", "John"));
+            store.addDemerit("35@a!b#cXY", DateCodec.parse("01-01-2024"), 3);
+            store.update("35@a!b#cXY", record("45@a!b#cXY", "John"), UpdateMode.APPEND);
+            Files.copy(TEST_PATH, copy, StandardCopyOption.REPLACE_EXISTING);
+
+            // A store over a copy of the log has to rebuild the same state from scratch
+            PersonStore reloaded = PersonStore.forFile(copy.toString());
+            assertNull(reloaded.get("35@a!b#cXY"));
+            assertEquals("John", reloaded.get("45@a!b#cXY").getFirstName());
+            assertEquals(1, reloaded.read("45@a!b#cXY", (record, offences) -> offences).size());
+            assertTrue(reloaded.add(record("35@a!b#cXY", "Jane")));
+        } finally {
+            Files.deleteIfExists(copy);
+            Files.deleteIfExists(PersonStore.lockPathFor(copy));
+        }
+    }
+
+    @Test
+    public void update_rewriteModeIdChange_movesRecordAndDemerits() throws IOException {
+        store.add(record("35@a!b#cXY", "John"));
+        store.addDemerit("35@a!b#cXY", DateCodec.parse("01-01-2024"), 3);
+
+        assertTrue(store.update("35@a!b#cXY", record("45@a!b#cXY", "John"), UpdateMode.REWRITE));
+
+        assertNull(store.get("35@a!b#cXY"));
+        assertEquals("John", store.get("45@a!b#cXY").getFirstName());
+        assertEquals("45@a!b#cXY,Demerit:3,Date:01-01-2024", Files.readAllLines(TEST_PATH).get(1));
+    }
+
+    @Test
+    public void update_rewriteAfterAppendedIdChange_keepsDemeritsFromEarlierId() throws IOException {
+        store.add(record("35@a!b#cXY", "John"));
+        store.addDemerit("35@a!b#cXY", DateCodec.parse("01-01-2024"), 5);
+        assertTrue(store.update("35@a!b#cXY", record("37@a!b#cXY", "John"), UpdateMode.APPEND));
+
+        assertTrue(store.update("37@a!b#cXY", record("39@a!b#cXY", "John"), UpdateMode.REWRITE));
+
+        assertNull(store.get("37@a!b#cXY"));
+        assertEquals(5, (int) store.read("39@a!b#cXY", (record, offences) -> offences.pointsAt(0)));
+        assertTrue(Files.readAllLines(TEST_PATH).contains("35@a!b#cXY,Moved:39@a!b#cXY"));
+        assertNull(store.read("37@a!b#cXY", (record, offences) -> offences));
+    }
+
+    @Test
+    public void update_rewriteOfReusedId_leavesEarlierLifeAlone() throws IOException {
+        store.add(record("35@a!b#cXY", "John"));
+        store.addDemerit("35@a!b#cXY", DateCodec.parse("01-01-2024"), 5);
+        assertTrue(store.update("35@a!b#cXY", record("37@a!b#cXY", "John"), UpdateMode.APPEND));
+        assertTrue(store.add(record("35@a!b#cXY", "Jane")));
+        store.addDemerit("35@a!b#cXY", DateCodec.parse("02-01-2024"), 2);
+
+        assertTrue(store.update("35@a!b#cXY", record("39@a!b#cXY", "Jane"), UpdateMode.REWRITE));
+
+        assertNull(store.get("35@a!b#cXY"));
+        assertEquals("John", store.get("37@a!b#cXY").getFirstName());
+        assertEquals(5, (int) store.read("37@a!b#cXY", (record, offences) -> offences.pointsAt(0)));
+        assertEquals("Jane", store.get("39@a!b#cXY").getFirstName());
+        assertEquals(1, (int) store.read("39@a!b#cXY", (record, offences) -> offences.size()));
+        assertEquals(2, (int) store.read("39@a!b#cXY", (record, offences) -> offences.pointsAt(0)));
+    }
+
+    @Test
+    public void update_rewriteToIdRetiredLater_appendsTheMove() throws IOException {
+        store.add(record("39@a!b#cXY", "Ann"));
+        store.add(record("35@a!b#cXY", "John"));
+        store.addDemerit("35@a!b#cXY", DateCodec.parse("01-01-2024"), 5);
+        assertTrue(store.update("39@a!b#cXY", record("41@a!b#cXY", "Ann"), UpdateMode.APPEND));
+
+        assertTrue(store.update("35@a!b#cXY", record("39@a!b#cXY", "John"), UpdateMode.REWRITE));
+
+        assertNull(store.get("35@a!b#cXY"));
+        assertEquals("John", store.get("39@a!b#cXY").getFirstName());
+        assertEquals(5, (int) store.read("39@a!b#cXY", (record, offences) -> offences.pointsAt(0)));
+        assertEquals("Ann", store.get("41@a!b#cXY").getFirstName());
+        assertNull(store.read("41@a!b#cXY", (record, offences) -> offences));
+    }
+
+    @Test
+    public void update_newIDTaken_returnsFalse() throws IOException {
+        store.add(record("35@a!b#cXY", "John"));
+        store.add(record("45@a!b#cXY", "Jane"));
+
+        assertFalse(store.update("35@a!b#cXY", record("45@a!b#cXY", "John"), UpdateMode.APPEND));
+        assertEquals("Jane", store.get("45@a!b#cXY").getFirstName());
+    }
+}
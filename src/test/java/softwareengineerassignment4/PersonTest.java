@@ -4,7 +4,13 @@ import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 //workflow testing dfkajfkladsjlkfasjklf
 public class PersonTest {
     private static final String TEST_FILE = "test_persons.txt";
@@ -14,6 +20,7 @@ public class PersonTest {
     private static final String VALID_BIRTHDATE = "15-05-1990";
     private static final String VALID_FIRST_NAME = "John";
     private static final String VALID_LAST_NAME = "Doe";
+    private static final String[] FORBIDDEN = {",", "\r", "\n"}; // Would break a data file line
 
     @BeforeEach
     public void setUp() {
@@ -24,6 +31,7 @@ public class PersonTest {
     @AfterEach
     public void tearDown() {
         new File(TEST_FILE).delete();
+        new File(TEST_FILE + ".lock").delete();
     }
 
     private Person createValidPerson() {
@@ -68,6 +76,75 @@ public class PersonTest {
         assertFalse(p.addPerson());
     }
 
+    @Test
+    public void addPerson_missingName_returnsFalse() {
+        assertFalse(new Person(VALID_ID, "", VALID_LAST_NAME, VALID_ADDRESS, VALID_BIRTHDATE).addPerson());
+        assertFalse(new Person(VALID_ID, null, VALID_LAST_NAME, VALID_ADDRESS, VALID_BIRTHDATE).addPerson());
+        assertFalse(new Person(VALID_ID, VALID_FIRST_NAME, "", VALID_ADDRESS, VALID_BIRTHDATE).addPerson());
+        assertFalse(new Person(VALID_ID, VALID_FIRST_NAME, null, VALID_ADDRESS, VALID_BIRTHDATE).addPerson());
+        assertNull(Person.fetchPersonById(VALID_ID));
+    }
+
+    @Test
+    public void addPerson_commaOrLineBreakInField_returnsFalse() {
+        for (String bad : FORBIDDEN) {
+            String address = "123|Main" + bad + "St|Melbourne|Victoria|Australia";
+            assertFalse(new Person(VALID_ID, "Jo" + bad + "hn", VALID_LAST_NAME, VALID_ADDRESS, VALID_BIRTHDATE).addPerson());
+            assertFalse(new Person(VALID_ID, VALID_FIRST_NAME, "Do" + bad + "e", VALID_ADDRESS, VALID_BIRTHDATE).addPerson());
+            assertFalse(new Person(VALID_ID, VALID_FIRST_NAME, VALID_LAST_NAME, address, VALID_BIRTHDATE).addPerson());
+        }
+        assertNull(Person.fetchPersonById(VALID_ID));
+        assertFalse(new File(TEST_FILE).exists());
+    }
+
+    // ================= validateFields Tests =================
+    @Test
+    public void validateFields_commaOrLineBreakInAnyField_returnsFalse() {
+        String[] valid = {VALID_ID, VALID_FIRST_NAME, VALID_LAST_NAME, VALID_ADDRESS, VALID_BIRTHDATE};
+        assertTrue(Person.validateFields(valid[0], valid[1], valid[2], valid[3], valid[4]));
+        for (String bad : FORBIDDEN) {
+            for (int field = 0; field < valid.length; field++) {
+                String[] fields = valid.clone();
+                fields[field] = fields[field] + bad;
+                assertFalse(Person.validateFields(fields[0], fields[1], fields[2], fields[3], fields[4]),
+                            "field " + field + " ending in " + (int) bad.charAt(0));
+            }
+        }
+    }
+
+    @Test
+    public void validateFields_missingName_returnsFalse() {
+        assertFalse(Person.validateFields(VALID_ID, "", VALID_LAST_NAME, VALID_ADDRESS, VALID_BIRTHDATE));
+        assertFalse(Person.validateFields(VALID_ID, VALID_FIRST_NAME, "", VALID_ADDRESS, VALID_BIRTHDATE));
+        assertFalse(Person.validateFields(VALID_ID, null, VALID_LAST_NAME, VALID_ADDRESS, VALID_BIRTHDATE));
+        assertFalse(Person.validateFields(VALID_ID, VALID_FIRST_NAME, null, VALID_ADDRESS, VALID_BIRTHDATE));
+        // Other fields that are missing are left to their own checks
+        assertTrue(Person.validateFields(null, VALID_FIRST_NAME, VALID_LAST_NAME, null, null));
+    }
+
+    // ================= fetchPersonById Tests =================
+    @Test
+    public void fetchPersonById_withDemerits_carriesHistoryAndSuspension() {
+        // 20-year-old person
+        String birthdate = getDateOffset(-20);
+        Person p = new Person(VALID_ID, VALID_FIRST_NAME, VALID_LAST_NAME, VALID_ADDRESS, birthdate);
+        p.addPerson();
+        p.addDemeritPoints(getDateOffset(0), 4);
+        p.addDemeritPoints(getDateOffset(0), 3);
+
+        Person fetched = Person.fetchPersonById(VALID_ID);
+        assertTrue(fetched.isSuspended());
+        assertEquals(Map.of(getDateOffset(0), 7), fetched.getDemeritPoints());
+    }
+
+    @Test
+    public void fetchPersonById_noDemerits_notSuspended() {
+        createValidPerson().addPerson();
+        Person fetched = Person.fetchPersonById(VALID_ID);
+        assertFalse(fetched.isSuspended());
+        assertTrue(fetched.getDemeritPoints().isEmpty());
+    }
+
     // ================= updatePersonalDetails Tests =================
     @Test
     public void updatePersonalDetails_birthdayAndNameChange_returnsFalse() {
@@ -115,6 +192,67 @@ public class PersonTest {
         assertTrue(Person.updatePersonalDetails(VALID_ID, VALID_ID, VALID_FIRST_NAME, "Smith", VALID_ADDRESS, VALID_BIRTHDATE));
     }
 
+    @Test
+    public void updatePersonalDetails_idChangeWhileDemeritsQueued_keepsEveryDemerit() {
+        Person p = createValidPerson();
+        p.addPerson();
+        String newId = "57@a!b#cXY";
+
+        // Queue offences without waiting, then change the ID while they are still being written
+        List<CompletableFuture<String>> pending = new ArrayList<>();
+        LocalDate first = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < 200; i++) {
+            pending.add(p.addDemeritPointsAsync(first.plusDays(i).format(DateTimeFormatter.ofPattern("dd-MM-yyyy")), 1));
+        }
+        assertTrue(Person.updatePersonalDetails(VALID_ID, newId, VALID_FIRST_NAME, VALID_LAST_NAME, VALID_ADDRESS, VALID_BIRTHDATE));
+
+        for (CompletableFuture<String> result : pending) {
+            assertEquals("Success", result.join());
+        }
+        assertEquals(200, Person.fetchPersonById(newId).getDemeritPoints().size());
+        assertNull(Person.fetchPersonById(VALID_ID));
+    }
+
+    @Test
+    public void updatePersonalDetails_missingName_returnsFalse() {
+        createValidPerson().addPerson();
+        assertFalse(Person.updatePersonalDetails(VALID_ID, VALID_ID, "", VALID_LAST_NAME, VALID_ADDRESS, VALID_BIRTHDATE));
+        assertFalse(Person.updatePersonalDetails(VALID_ID, VALID_ID, VALID_FIRST_NAME, "", VALID_ADDRESS, VALID_BIRTHDATE));
+        assertFalse(Person.updatePersonalDetails(VALID_ID, VALID_ID, null, VALID_LAST_NAME, VALID_ADDRESS, VALID_BIRTHDATE));
+        assertFalse(Person.updatePersonalDetails(VALID_ID, VALID_ID, VALID_FIRST_NAME, null, VALID_ADDRESS, VALID_BIRTHDATE));
+        assertEquals(VALID_FIRST_NAME, Person.fetchPersonById(VALID_ID).toRecord().getFirstName());
+    }
+
+    @Test
+    public void updatePersonalDetails_commaOrLineBreakInField_returnsFalse() {
+        createValidPerson().addPerson();
+        for (String bad : FORBIDDEN) {
+            String address = "123|Main" + bad + "St|Melbourne|Victoria|Australia";
+            assertFalse(Person.updatePersonalDetails(VALID_ID, VALID_ID, "Jo" + bad + "hn", VALID_LAST_NAME, VALID_ADDRESS, VALID_BIRTHDATE));
+            assertFalse(Person.updatePersonalDetails(VALID_ID, VALID_ID, VALID_FIRST_NAME, "Do" + bad + "e", VALID_ADDRESS, VALID_BIRTHDATE));
+            assertFalse(Person.updatePersonalDetails(VALID_ID, VALID_ID, VALID_FIRST_NAME, VALID_LAST_NAME, address, VALID_BIRTHDATE));
+        }
+        Person stored = Person.fetchPersonById(VALID_ID);
+        assertEquals(VALID_LAST_NAME, stored.toRecord().getLastName());
+        assertEquals(VALID_ADDRESS, stored.toRecord().getAddress());
+    }
+
+    @Test
+    public void updatePersonalDetails_batchWithMissingNameOrLineBreak_refusesThoseUpdates() {
+        createValidPerson().addPerson();
+        BatchUpdateReport report = Person.updatePersonalDetails(List.of(
+            new PersonUpdate(VALID_ID, VALID_ID, "", VALID_LAST_NAME, VALID_ADDRESS, VALID_BIRTHDATE),
+            new PersonUpdate(VALID_ID, VALID_ID, VALID_FIRST_NAME, "Do,e", VALID_ADDRESS, VALID_BIRTHDATE),
+            new PersonUpdate(VALID_ID, VALID_ID, "Jo\rhn", VALID_LAST_NAME, VALID_ADDRESS, VALID_BIRTHDATE),
+            new PersonUpdate(VALID_ID, VALID_ID, VALID_FIRST_NAME, VALID_LAST_NAME,
+                             "123|Main\nSt|Melbourne|Victoria|Australia", VALID_BIRTHDATE)));
+
+        for (int i = 0; i < report.size(); i++) {
+            assertEquals(FailureReason.VALIDATION, report.getReason(i), "update " + i);
+        }
+        assertEquals(VALID_FIRST_NAME, Person.fetchPersonById(VALID_ID).toRecord().getFirstName());
+    }
+
     // ================= addDemeritPoints Tests =================
     @Test
     public void addDemeritPoints_validInput_returnsSuccess() {
@@ -0,0 +1,122 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class SecondaryIndexTest {
+    private static final String TEST_FILE = "test_search_persons.txt";
+    private static final Path TEST_PATH = Paths.get(TEST_FILE);
+
+    private PersonStore store;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Files.deleteIfExists(TEST_PATH);
+        store = PersonStore.forFile(TEST_FILE);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(TEST_PATH);
+        Files.deleteIfExists(PersonStore.lockPathFor(TEST_PATH));
+        Person.setFileName("persons.txt");
+    }
+
+    private PersonRecord record(String id, String lastName, String street, String suburb) {
+        return new PersonRecord(id, "John", lastName, "12|" + street + "|" + suburb + "|Victoria|Australia", "15-05-1990");
+    }
+
+    private List<String> ids(SearchField field, String prefix) throws IOException {
+        return store.search(field, prefix, (record, history) -> record.getPersonID()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void search_lastNamePrefix_matchesIgnoringCaseInValueOrder() throws IOException {
+        store.add(record("56@a!b#cXY", "Smithers", "Main St", "Melbourne"));
+        store.add(record("57@a!b#cXY", "Smith", "Main St", "Melbourne"));
+        store.add(record("58@a!b#cXY", "Jones", "Main St", "Melbourne"));
+
+        assertEquals(List.of("57@a!b#cXY", "56@a!b#cXY"), ids(SearchField.LAST_NAME, "SMI"));
+        assertEquals(List.of("57@a!b#cXY", "56@a!b#cXY"), ids(SearchField.LAST_NAME, "smith"));
+        assertEquals(List.of(), ids(SearchField.LAST_NAME, "Smythe"));
+    }
+
+    @Test
+    public void search_streetAndSuburb_matchAddressParts() throws IOException {
+        store.add(record("56@a!b#cXY", "Doe", "Collins St", "Melbourne"));
+        store.add(record("57@a!b#cXY", "Doe", "Main St", "Carlton"));
+
+        assertEquals(List.of("56@a!b#cXY"), ids(SearchField.STREET, "coll"));
+        assertEquals(List.of("57@a!b#cXY"), ids(SearchField.SUBURB, "Carl"));
+        // A suburb prefix must not match the street, or the other way round
+        assertEquals(List.of(), ids(SearchField.SUBURB, "Main"));
+    }
+
+    @Test
+    public void search_afterAppendedUpdate_returnsCurrentVersionOnly() throws IOException {
+        store.add(record("56@a!b#cXY", "Smith", "Main St", "Melbourne"));
+        assertEquals(List.of("56@a!b#cXY"), ids(SearchField.LAST_NAME, "Smith"));
+
+        assertTrue(store.update("56@a!b#cXY", record("56@a!b#cXY", "Jones", "Main St", "Melbourne"), UpdateMode.APPEND));
+        store.add(record("57@a!b#cXY", "Smith", "Main St", "Melbourne"));
+
+        assertEquals(List.of("57@a!b#cXY"), ids(SearchField.LAST_NAME, "Smith"));
+        assertEquals(List.of("56@a!b#cXY"), ids(SearchField.LAST_NAME, "Jones"));
+    }
+
+    @Test
+    public void search_afterIdMoves_followsNewId() throws IOException {
+        store.add(record("35@a!b#cXY", "Smith", "Main St", "Melbourne"));
+        store.add(record("37@a!b#cXY", "Smith", "Main St", "Melbourne"));
+        assertEquals(2, ids(SearchField.LAST_NAME, "Smith").size());
+
+        assertTrue(store.update("35@a!b#cXY", record("45@a!b#cXY", "Smith", "Main St", "Melbourne"), UpdateMode.APPEND));
+        assertTrue(store.update("37@a!b#cXY", record("47@a!b#cXY", "Smith", "Main St", "Melbourne"), UpdateMode.REWRITE));
+
+        assertEquals(List.of("45@a!b#cXY", "47@a!b#cXY"), ids(SearchField.LAST_NAME, "Smith"));
+    }
+
+    @Test
+    public void search_existingFile_indexesOnlyCurrentVersions() throws IOException {
+        Files.write(TEST_PATH, List.of(
+            "56@a!b#cXY,John,Smith,12|Main St|Melbourne|Victoria|Australia,15-05-1990",
+            "56@a!b#cXY,John,Jones,12|Main St|Melbourne|Victoria|Australia,15-05-1990",
+            "57@a!b#cXY,Jane,Smith,12|Main St|Melbourne|Victoria|Australia,16-05-1990"));
+
+        assertEquals(List.of("57@a!b#cXY"), ids(SearchField.LAST_NAME, "Smith"));
+    }
+
+    @Test
+    public void search_findFirst_readsOnlyFirstMatch() throws IOException {
+        for (int n = 0; n < 20; n++) {
+            store.add(record("5" + n % 10 + "@a!b#c" + (char) ('A' + n / 10) + "Y", "Smith" + (char) ('a' + n), "Main St", "Melbourne"));
+        }
+        int[] reads = new int[1];
+
+        String first = store.search(SearchField.LAST_NAME, "smith", (record, history) -> {
+            reads[0]++;
+            return record.getLastName();
+        }).findFirst().orElse(null);
+
+        assertEquals("Smitha", first);
+        assertEquals(1, reads[0]);
+    }
+
+    @Test
+    public void personSearch_matchingSuburb_returnsPersons() {
+        Person.setFileName(TEST_FILE);
+        assertTrue(new Person("56@a!b#cXY", "John", "Doe", "12|Main St|Carlton|Victoria|Australia", "15-05-1990").addPerson());
+
+        List<Person> found = Person.search(SearchField.SUBURB, "carl").collect(Collectors.toList());
+
+        assertEquals(1, found.size());
+        assertFalse(found.get(0).isSuspended());
+        assertEquals(List.of(), Person.search(SearchField.SUBURB, "melb").collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,296 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+public class ShardedStoreTest {
+    private static final String TEST_FILE = "test_shard_persons.txt";
+    private static final Path FEED_PATH = Paths.get("test_shard_feed.csv");
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+    private static final int PEOPLE = 400;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUp();
+        Person.setFileName(TEST_FILE);
+        Person.setShardCount(4);
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Person.setFileName("persons.txt");
+        Person.setStorageFormat(StorageFormat.CSV);
+        Person.setShardCount(1);
+        for (int count : new int[] {1, 2, 4}) {
+            for (int i = 0; i < count; i++) {
+                Path shard = Paths.get(ShardedStore.shardFileName(TEST_FILE, i, count));
+                Files.deleteIfExists(shard);
+                Files.deleteIfExists(IndexSnapshot.pathFor(shard));
+                Files.deleteIfExists(PersonStore.lockPathFor(shard));
+            }
+        }
+        Files.deleteIfExists(FEED_PATH);
+    }
+
+    // Distinct valid person IDs with an odd first digit, so the ID may change
+    private static String id(int n) {
+        char[] id = new char[10];
+        id[0] = (char) ('3' + n % 4 * 2);
+        id[1] = (char) ('2' + n / 4 % 8);
+        id[2] = '@';
+        id[3] = '#';
+        int rest = n / 32;
+        for (int i = 4; i < 8; i++) {
+            id[i] = (char) ('a' + rest % 26);
+            rest /= 26;
+        }
+        id[8] = 'X';
+        id[9] = 'Y';
+        return new String(id);
+    }
+
+    private static void addPeople() {
+        for (int n = 0; n < PEOPLE; n++) {
+            assertTrue(new Person(id(n), "First" + n, "Last" + n % 7, VALID_ADDRESS, "15-05-1990").addPerson());
+        }
+    }
+
+    private static ShardedStore shards(int count) {
+        return ShardedStore.forFile(TEST_FILE, count, StorageFormat.CSV);
+    }
+
+    // The first ID after n that hashes to a different shard of count than id(n)
+    private static String inOtherShard(int n, int count) {
+        int shard = ShardedStore.shardOf(id(n), count);
+        for (int m = n + 1; ; m++) {
+            if (ShardedStore.shardOf(id(m), count) != shard) {
+                return id(m);
+            }
+        }
+    }
+
+    @Test
+    public void shardFileName_insertsShardBeforeExtension() {
+        assertEquals("persons.txt", ShardedStore.shardFileName("persons.txt", 0, 1));
+        assertEquals("persons.shard2-of-4.txt", ShardedStore.shardFileName("persons.txt", 2, 4));
+        assertEquals("data.d/persons.shard0-of-2", ShardedStore.shardFileName("data.d/persons", 0, 2));
+    }
+
+    @Test
+    public void addPerson_fourShards_writesEachPersonOnlyToTheirShard() throws IOException {
+        addPeople();
+
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            List<String> lines = Files.readAllLines(Paths.get(ShardedStore.shardFileName(TEST_FILE, i, 4)));
+            assertTrue(lines.size() > PEOPLE / 8, "shard " + i + " holds " + lines.size());
+            for (String line : lines) {
+                String personID = line.substring(0, line.indexOf(','));
+                assertEquals(i, ShardedStore.shardOf(personID, 4), personID);
+                seen.add(personID);
+            }
+        }
+        assertEquals(PEOPLE, seen.size());
+        assertFalse(Files.exists(Paths.get(TEST_FILE)));
+        assertNotNull(Person.fetchPersonById(id(123)));
+        assertFalse(new Person(id(123), "Again", "Last", VALID_ADDRESS, "15-05-1990").addPerson());
+    }
+
+    @Test
+    public void updatePersonalDetails_newIdInAnotherShard_movesPersonWithOffences() throws IOException {
+        addPeople();
+        String from = id(1);
+        String to = "95@z!z#zXY";
+        assertNotEquals(ShardedStore.shardOf(from, 4), ShardedStore.shardOf(to, 4));
+        assertEquals("Success", Person.fetchPersonById(from).addDemeritPoints(DateCodec.format(DateCodec.today() - 10), 4));
+
+        assertTrue(Person.updatePersonalDetails(from, to, "Moved", "Last", VALID_ADDRESS, "15-05-1990"));
+
+        assertNull(Person.fetchPersonById(from));
+        Person moved = Person.fetchPersonById(to);
+        assertNotNull(moved);
+        assertEquals(1, moved.getDemeritPoints().size());
+
+        // Offences still queued for the old shard when a move starts go along too
+        String current = to;
+        String other = from;
+        for (int round = 0; round < 10; round++) {
+            Person person = Person.fetchPersonById(current);
+            List<CompletableFuture<String>> pending = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                pending.add(person.addDemeritPointsAsync(DateCodec.format(DateCodec.today() - 1000 - round * 100 - i), 1));
+            }
+            assertTrue(Person.updatePersonalDetails(current, other, "Moved", "Last", VALID_ADDRESS, "15-05-1990"));
+            for (CompletableFuture<String> result : pending) {
+                assertEquals("Success", result.join());
+            }
+            String previous = current;
+            current = other;
+            other = previous;
+            assertEquals(1 + (round + 1) * 100, Person.fetchPersonById(current).getDemeritPoints().size());
+        }
+        assertFalse(Person.updatePersonalDetails(id(3), inOtherShard(3, 4), "Taken", "Last", VALID_ADDRESS, "15-05-1990"));
+        assertEquals(PEOPLE, Person.scan().count());
+    }
+
+    @Test
+    public void update_oldShardNotWritable_takesPersonBackOutOfNewShard() throws IOException {
+        String from = id(1);
+        String to = "95@z!z#zXY";
+        assertTrue(new Person(from, "John", "Last", VALID_ADDRESS, "15-05-1990").addPerson());
+        assertEquals("Success", Person.fetchPersonById(from).addDemeritPoints(DateCodec.format(DateCodec.today() - 10), 4));
+        PersonStore old = shards(4).shardFor(from);
+        old.close();
+        Path lock = PersonStore.lockPathFor(old.file());
+        Files.deleteIfExists(lock);
+        Files.createDirectory(lock); // The old shard cannot take its file lock, so the retire fails
+        try {
+            assertThrows(IOException.class, () -> shards(4).update(from,
+                new PersonRecord(to, "Moved", "Last", VALID_ADDRESS, "15-05-1990"), UpdateMode.APPEND));
+        } finally {
+            Files.delete(lock);
+        }
+
+        assertNull(Person.fetchPersonById(to));
+        assertEquals("John", old.get(from).getFirstName());
+        assertEquals(1, Person.fetchPersonById(from).getDemeritPoints().size());
+        assertEquals(1, Person.scan().count());
+        assertTrue(new Person(to, "Jane", "Last", VALID_ADDRESS, "15-05-1990").addPerson());
+        assertTrue(Person.fetchPersonById(to).getDemeritPoints().isEmpty());
+    }
+
+    @Test
+    public void updatePersonalDetails_batchAcrossShards_appliesSameShardAndMovedUpdates() throws IOException {
+        addPeople();
+        String moveTo = "95@z!z#zXY";
+        assertNotEquals(ShardedStore.shardOf(id(1), 4), ShardedStore.shardOf(moveTo, 4));
+
+        BatchUpdateReport report = Person.updatePersonalDetails(List.of(
+            new PersonUpdate(id(0), id(0), "Changed", "Last0", VALID_ADDRESS, "15-05-1990"),
+            new PersonUpdate(id(1), moveTo, "Moved", "Last1", VALID_ADDRESS, "15-05-1990"),
+            new PersonUpdate(id(2), id(2), "Changed", "Last2", VALID_ADDRESS, "15-05-1990"),
+            new PersonUpdate(id(0), id(0), "Again", "Last0", VALID_ADDRESS, "15-05-1990"),
+            new PersonUpdate(moveTo, moveTo, "Again", "Last1", VALID_ADDRESS, "15-05-1990")));
+
+        assertTrue(report.isApplied(0));
+        assertTrue(report.isApplied(1));
+        assertTrue(report.isApplied(2));
+        assertEquals(FailureReason.DUPLICATE, report.getReason(3));
+        assertEquals(FailureReason.DUPLICATE, report.getReason(4));
+        ShardedStore shards = shards(4);
+        assertEquals("Changed", shards.shardFor(id(0)).get(id(0)).getFirstName());
+        assertEquals("Moved", shards.shardFor(moveTo).get(moveTo).getFirstName());
+        assertNull(shards.shardFor(id(1)).get(id(1)));
+    }
+
+    @Test
+    public void search_fourShards_mergesInFieldOrder() throws IOException {
+        addPeople();
+
+        List<String> found = shards(4).search(SearchField.LAST_NAME, "last", (record, history) ->
+            record.getLastName() + " " + record.getPersonID()).collect(Collectors.toList());
+
+        List<String> expected = new ArrayList<>(found);
+        expected.sort(null);
+        assertEquals(PEOPLE, found.size());
+        assertEquals(expected, found);
+        assertEquals(57, shards(4).search(SearchField.LAST_NAME, "Last3", (record, history) -> record).count());
+    }
+
+    @Test
+    public void scan_parallel_readsEveryShard() throws IOException {
+        addPeople();
+
+        Set<String> ids = shards(4).scan(ScanFilter.all(), (record, history) -> record.getPersonID()).parallel()
+            .collect(Collectors.toSet());
+
+        assertEquals(PEOPLE, ids.size());
+        assertEquals(PEOPLE, Person.scan().parallel().count());
+    }
+
+    @Test
+    public void evaluateSuspensions_fourShards_combinesEveryShard() {
+        addPeople();
+        String recent = DateCodec.format(DateCodec.today() - 30);
+        for (int n = 0; n < 20; n++) {
+            Person person = Person.fetchPersonById(id(n));
+            assertEquals("Success", person.addDemeritPoints(recent, 6));
+            if (n < 10) {
+                assertEquals("Success", person.addDemeritPoints(DateCodec.format(DateCodec.today() - 60), 6));
+                assertEquals("Success", person.addDemeritPoints(DateCodec.format(DateCodec.today() - 90), 6));
+            }
+        }
+
+        SuspensionReport report = Person.evaluateSuspensions();
+
+        assertEquals(PEOPLE, report.getPersonsEvaluated());
+        assertEquals(20, report.getPointTotals().size());
+        assertEquals(10, report.getSuspended().size());
+        assertTrue(report.getSuspended().contains(id(9)));
+    }
+
+    @Test
+    public void importFeed_fourShards_splitsRowsAndFindsDuplicates() throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(FEED_PATH, StandardCharsets.UTF_8)) {
+            for (int n = 0; n < PEOPLE; n++) {
+                writer.write(id(n) + ",First" + n + ",Last," + VALID_ADDRESS + ",15-05-1990\n");
+            }
+            writer.write(id(7) + ",Again,Last," + VALID_ADDRESS + ",15-05-1990\n");
+            writer.write("bad,First,Last," + VALID_ADDRESS + ",15-05-1990\n");
+        }
+
+        ImportReport report = Person.importFeed(FEED_PATH.toString());
+
+        assertEquals(PEOPLE, report.getImported());
+        assertEquals(2, report.getRejections().size());
+        assertEquals(FailureReason.DUPLICATE, report.getRejections().get(0).getReason());
+        assertEquals("duplicate of row 8", report.getRejections().get(0).getDetail());
+        assertEquals(FailureReason.VALIDATION, report.getRejections().get(1).getReason());
+        assertEquals(PEOPLE, Person.scan().count());
+    }
+
+    @Test
+    public void reshard_oneToFourAndBack_keepsPeopleAndOffences() throws IOException {
+        Person.setShardCount(1);
+        addPeople();
+        String recent = DateCodec.format(DateCodec.today() - 10);
+        assertEquals("Success", Person.fetchPersonById(id(5)).addDemeritPoints(recent, 3));
+
+        Resharder.reshard(TEST_FILE, StorageFormat.CSV, 1, 4);
+        Person.setShardCount(4);
+        assertEquals(PEOPLE, Person.scan().count());
+        assertEquals(1, Person.fetchPersonById(id(5)).getDemeritPoints().size());
+
+        // A move between shards leaves offences behind in the old shard; resharding must not double them
+        String moveTo = "95@z!z#zXY";
+        assertTrue(Person.updatePersonalDetails(id(5), moveTo, "Moved", "Last5", VALID_ADDRESS, "15-05-1990"));
+        Resharder.reshard(TEST_FILE, StorageFormat.CSV, 4, 2);
+        Person.setShardCount(2);
+
+        assertEquals(PEOPLE, Person.scan().count());
+        assertNull(Person.fetchPersonById(id(5)));
+        assertEquals(3, (int) shards(2).shardFor(moveTo).read(moveTo, (record, history) ->
+            history.maxWindowPoints(DateCodec.today())));
+    }
+
+    @Test
+    public void reshard_targetExists_refuses() throws IOException {
+        addPeople();
+
+        assertThrows(FileAlreadyExistsException.class, () -> Resharder.reshard(TEST_FILE, StorageFormat.CSV, 2, 4));
+        assertThrows(IllegalArgumentException.class, () -> Resharder.reshard(TEST_FILE, StorageFormat.CSV, 4, 4));
+    }
+}
@@ -0,0 +1,128 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import javax.management.ObjectName;
+
+public class StorageMetricsTest {
+    private static final String TEST_FILE = "test_metrics_persons.txt";
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+
+    private final StorageMetrics metrics = Person.metrics();
+
+    @BeforeEach
+    public void setUp() {
+        Person.setFileName(TEST_FILE);
+        new File(TEST_FILE).delete();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        new File(TEST_FILE).delete();
+        new File(TEST_FILE + ".lock").delete();
+        Person.setFileName("persons.txt");
+    }
+
+    private long failures(Operation operation, FailureReason reason) {
+        return metrics.operation(operation).failures(reason);
+    }
+
+    private long successes(Operation operation) {
+        return metrics.operation(operation).getSuccesses();
+    }
+
+    @Test
+    public void bucket_anyLatency_liesWithinBucketBounds() {
+        Random random = new Random(11);
+        for (int i = 0; i < 10_000; i++) {
+            long nanos = random.nextLong() >>> (1 + random.nextInt(63));
+            int bucket = LatencyHistogram.bucket(nanos);
+            if (bucket < LatencyHistogram.BUCKETS - 1) {
+                assertTrue(nanos < LatencyHistogram.upperBound(bucket), nanos + " in bucket " + bucket);
+            }
+            assertTrue(bucket == 0 || nanos >= LatencyHistogram.upperBound(bucket - 1), nanos + " in bucket " + bucket);
+        }
+    }
+
+    @Test
+    public void quantile_recordedLatencies_returnsBucketWithin25Percent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int n = 1; n <= 1000; n++) {
+            histogram.record(n * 1000L);
+        }
+
+        long p50 = LatencyHistogram.quantile(histogram.snapshot(), 0.5);
+        long p99 = LatencyHistogram.quantile(histogram.snapshot(), 0.99);
+
+        assertTrue(p50 > 500_000 && p50 <= 500_000 * 1.25, "p50 " + p50);
+        assertTrue(p99 > 990_000 && p99 <= 990_000 * 1.25, "p99 " + p99);
+        assertEquals(1_000_000, histogram.maxNanos());
+    }
+
+    @Test
+    public void addPerson_outcomes_countedByReason() {
+        long added = successes(Operation.ADD_PERSON);
+        long invalid = failures(Operation.ADD_PERSON, FailureReason.VALIDATION);
+        long duplicate = failures(Operation.ADD_PERSON, FailureReason.DUPLICATE);
+
+        assertTrue(new Person("56@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990").addPerson());
+        assertFalse(new Person("56@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990").addPerson());
+        assertFalse(new Person("bad", "John", "Doe", VALID_ADDRESS, "15-05-1990").addPerson());
+
+        assertEquals(added + 1, successes(Operation.ADD_PERSON));
+        assertEquals(duplicate + 1, failures(Operation.ADD_PERSON, FailureReason.DUPLICATE));
+        assertEquals(invalid + 1, failures(Operation.ADD_PERSON, FailureReason.VALIDATION));
+    }
+
+    @Test
+    public void updateAndFetch_failures_countedByReason() {
+        long missing = failures(Operation.FETCH_PERSON, FailureReason.NOT_FOUND);
+        long notFound = failures(Operation.UPDATE_PERSONAL_DETAILS, FailureReason.NOT_FOUND);
+        long rule = failures(Operation.UPDATE_PERSONAL_DETAILS, FailureReason.RULE);
+        assertTrue(new Person("66@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990").addPerson());
+
+        assertNull(Person.fetchPersonById("57@a!b#cXY"));
+        assertFalse(Person.updatePersonalDetails("57@a!b#cXY", "57@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990"));
+        // Even first digit: the ID cannot change
+        assertFalse(Person.updatePersonalDetails("66@a!b#cXY", "58@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990"));
+
+        assertEquals(missing + 1, failures(Operation.FETCH_PERSON, FailureReason.NOT_FOUND));
+        assertEquals(notFound + 1, failures(Operation.UPDATE_PERSONAL_DETAILS, FailureReason.NOT_FOUND));
+        assertEquals(rule + 1, failures(Operation.UPDATE_PERSONAL_DETAILS, FailureReason.RULE));
+    }
+
+    @Test
+    public void prometheusText_afterWrites_showsOperationsAndFile() {
+        long written = metrics.getBytesWritten();
+        Person person = new Person("56@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990");
+        assertTrue(person.addPerson());
+        assertEquals("Success", person.addDemeritPoints(DateCodec.format(DateCodec.today() - 10), 3));
+
+        String text = metrics.prometheusText();
+
+        assertTrue(metrics.getBytesWritten() > written);
+        assertTrue(text.contains("# TYPE person_operation_duration_seconds histogram\n"));
+        assertTrue(text.contains("person_operation_duration_seconds_bucket{operation=\"addPerson\",le=\"+Inf\"} "));
+        assertTrue(text.contains("person_operation_failures_total{operation=\"addDemeritPoints\",reason=\"io\"} "));
+        assertTrue(text.contains("\",type=\"demerit\"} 1\n"), text);
+        for (String line : text.split("\n")) {
+            assertTrue(line.startsWith("# ") || line.matches("[a-z_]+(\\{.*\\})? [0-9.e+-]+"), line);
+        }
+    }
+
+    @Test
+    public void mbeans_registered_exposeCounts() throws Exception {
+        assertTrue(new Person("56@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990").addPerson());
+
+        Object successes = ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(new ObjectName("softwareengineerassignment4:type=Operation,name=addPerson"), "Successes");
+        Object bytesWritten = ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(new ObjectName("softwareengineerassignment4:type=Storage"), "BytesWritten");
+
+        assertTrue((Long) successes >= 1);
+        assertTrue((Long) bytesWritten > 0);
+    }
+}
@@ -0,0 +1,107 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+public class SuspensionEngineTest {
+    private static final String TEST_FILE = "test_suspension_persons.txt";
+    private static final Path TEST_PATH = Paths.get(TEST_FILE);
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+
+    private final int today = DateCodec.today();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Files.deleteIfExists(TEST_PATH);
+        Person.setFileName(TEST_FILE);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(TEST_PATH);
+        Files.deleteIfExists(PersonStore.lockPathFor(TEST_PATH));
+    }
+
+    private String personLine(String id, int yearsOld) {
+        return id + ",John,Doe," + VALID_ADDRESS + "," + DateCodec.format(DateCodec.plusYears(today, -yearsOld));
+    }
+
+    private String demeritLine(String id, int points, int daysAgo) {
+        return CsvFormat.demeritLine(id, points, today - daysAgo);
+    }
+
+    // Distinct valid ID for each n below 8 * 8 * 26 * 26
+    private static String id(int n) {
+        return "" + (char) ('2' + n % 8) + (char) ('2' + n / 8 % 8) + "@#ab"
+            + (char) ('a' + n / 64 % 26) + (char) ('a' + n / 64 / 26) + "XY";
+    }
+
+    @Test
+    public void evaluateSuspensions_thresholdDependsOnAge() throws IOException {
+        Files.write(TEST_PATH, List.of(
+            personLine("35@a!b#cXY", 19), demeritLine("35@a!b#cXY", 4, 10), demeritLine("35@a!b#cXY", 3, 20),
+            personLine("45@a!b#cXY", 30), demeritLine("45@a!b#cXY", 4, 10), demeritLine("45@a!b#cXY", 3, 20),
+            personLine("55@a!b#cXY", 30)));
+
+        SuspensionReport report = Person.evaluateSuspensions();
+
+        assertEquals(3, report.getPersonsEvaluated());
+        assertEquals(Set.of("35@a!b#cXY"), report.getSuspended());
+        assertEquals(7, report.getPointTotals().get("45@a!b#cXY"));
+        assertNull(report.getPointTotals().get("55@a!b#cXY"));
+    }
+
+    @Test
+    public void evaluateSuspensions_movedId_carriesHistoryAndOldIdIsGone() throws IOException {
+        Files.write(TEST_PATH, List.of(
+            personLine("35@a!b#cXY", 30), demeritLine("35@a!b#cXY", 6, 10), demeritLine("35@a!b#cXY", 6, 20),
+            CsvFormat.movedLine("35@a!b#cXY", "37@a!b#cXY"), personLine("37@a!b#cXY", 30),
+            demeritLine("37@a!b#cXY", 1, 5)));
+
+        SuspensionReport report = Person.evaluateSuspensions();
+
+        assertEquals(1, report.getPersonsEvaluated());
+        assertEquals(13, report.getPointTotals().get("37@a!b#cXY"));
+        assertTrue(report.getSuspended().contains("37@a!b#cXY"));
+    }
+
+    @Test
+    public void evaluate_randomFleet_matchesFetchPersonByIdAndIsSameAtAnyParallelism() throws IOException {
+        Random random = new Random(42);
+        int people = 20_000;
+        try (BufferedWriter writer = Files.newBufferedWriter(TEST_PATH, StandardCharsets.UTF_8)) {
+            for (int n = 0; n < people; n++) {
+                writer.write(personLine(id(n), 16 + random.nextInt(50)));
+                writer.write('\n');
+                int offences = random.nextInt(5);
+                for (int k = 0; k < offences; k++) {
+                    writer.write(demeritLine(id(n), 1 + random.nextInt(6), random.nextInt(1500)));
+                    writer.write('\n');
+                }
+            }
+        }
+
+        PersonStore store = PersonStore.forFile(TEST_FILE);
+        SuspensionReport sequential = SuspensionEngine.evaluate(store, today, new ForkJoinPool(1));
+        SuspensionReport parallel = SuspensionEngine.evaluate(store, today, new ForkJoinPool(4));
+
+        assertEquals(people, parallel.getPersonsEvaluated());
+        assertEquals(sequential.getSuspended(), parallel.getSuspended());
+        assertEquals(sequential.getPointTotals(), parallel.getPointTotals());
+        assertFalse(parallel.getSuspended().isEmpty());
+        for (int n = 0; n < people; n += 97) {
+            Person person = Person.fetchPersonById(id(n));
+            assertEquals(person.isSuspended(), parallel.getSuspended().contains(id(n)), id(n));
+        }
+    }
+}
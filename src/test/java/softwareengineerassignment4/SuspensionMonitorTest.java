@@ -0,0 +1,263 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SuspensionMonitorTest {
+    private static final String TEST_FILE = "test_monitor_persons.txt";
+    private static final Path TEST_PATH = Paths.get(TEST_FILE);
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+    private static final int TODAY = DateCodec.today();
+
+    private final List<SuspensionEvent> events = Collections.synchronizedList(new ArrayList<>());
+    private final SuspensionListener listener = events::add;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUp();
+        Person.setFileName(TEST_FILE);
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Person.removeSuspensionListener(listener);
+        Person.setFileName("persons.txt");
+        Person.setStorageFormat(StorageFormat.CSV);
+        Person.setShardCount(1);
+        Files.deleteIfExists(TEST_PATH);
+        Files.deleteIfExists(PersonStore.lockPathFor(TEST_PATH));
+        for (int i = 0; i < 4; i++) {
+            Path shard = Paths.get(ShardedStore.shardFileName(TEST_FILE, i, 4));
+            Files.deleteIfExists(shard);
+            Files.deleteIfExists(PersonStore.lockPathFor(shard));
+        }
+        events.clear();
+    }
+
+    private static SuspensionMonitor monitor() {
+        return PersonStore.forFile(TEST_FILE).suspensionMonitor();
+    }
+
+    private static Person add(String id, String birthdate) {
+        Person person = new Person(id, "John", "Doe", VALID_ADDRESS, birthdate);
+        assertTrue(person.addPerson());
+        return person;
+    }
+
+    private static void offence(Person person, int daysAgo, int points) {
+        assertEquals("Success", person.addDemeritPoints(DateCodec.format(TODAY - daysAgo), points));
+    }
+
+    private List<SuspensionEvent> events() {
+        synchronized (events) {
+            return new ArrayList<>(events);
+        }
+    }
+
+    @Test
+    public void addDemeritPoints_crossingThreshold_emitsSuspendedOnce() {
+        Person.addSuspensionListener(listener);
+        Person person = add("56@a!b#cXY", "15-05-1990");
+
+        offence(person, 90, 5);
+        offence(person, 60, 5);
+        offence(person, 30, 5);
+        monitor().awaitIdle();
+        offence(person, 10, 1);
+        monitor().awaitIdle();
+
+        List<SuspensionEvent> seen = events();
+        assertEquals(1, seen.size(), seen.toString());
+        SuspensionEvent event = seen.get(0);
+        assertEquals("56@a!b#cXY", event.getPersonID());
+        assertTrue(event.isSuspended());
+        assertEquals(15, event.getPoints());
+        assertEquals(12, event.getThreshold());
+        assertEquals(DateCodec.format(TODAY), event.getDate());
+    }
+
+    @Test
+    public void addSuspensionListener_firstEvaluationFails_retriesThenEmits() throws Exception {
+        Person person = add("56@a!b#cXY", "15-05-1990");
+        offence(person, 90, 5);
+        offence(person, 60, 5);
+        PersonStore.forFile(TEST_FILE).close();
+        Path aside = Paths.get(TEST_FILE + ".aside");
+        Files.move(TEST_PATH, aside);
+        Files.createDirectory(TEST_PATH); // Reading the data file fails, so the first evaluation does
+        try {
+            Person.addSuspensionListener(listener);
+            assertFalse(monitor().isAnnouncing());
+        } finally {
+            Files.delete(TEST_PATH);
+            Files.move(aside, TEST_PATH);
+        }
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!monitor().isAnnouncing()) {
+            assertTrue(System.nanoTime() < deadline, "evaluation never retried");
+            Thread.sleep(50);
+        }
+        offence(person, 30, 5);
+        monitor().awaitIdle();
+
+        List<SuspensionEvent> seen = events();
+        assertEquals(1, seen.size(), seen.toString());
+        assertTrue(seen.get(0).isSuspended());
+        assertEquals(15, seen.get(0).getPoints());
+    }
+
+    @Test
+    public void advanceTo_offenceExpires_emitsReinstatedOnExpiryDay() {
+        Person person = add("56@a!b#cXY", "15-05-1990");
+        offence(person, 90, 4);
+        offence(person, 60, 4);
+        offence(person, 30, 6);
+        Person.addSuspensionListener(listener);
+        assertEquals(1, monitor().scheduled());
+
+        monitor().advanceTo(TODAY + 800);
+
+        List<SuspensionEvent> seen = events();
+        assertEquals(1, seen.size(), seen.toString());
+        assertFalse(seen.get(0).isSuspended());
+        assertEquals(10, seen.get(0).getPoints());
+        assertEquals(DateCodec.format(DemeritWindow.plusTwoYears(TODAY - 90) + 1), seen.get(0).getDate());
+        assertEquals(0, monitor().scheduled());
+    }
+
+    @Test
+    public void advanceTo_turning21_emitsReinstatedOnBirthday() {
+        int birthDay = DateCodec.plusYears(TODAY, -21) + 10;
+        Person person = add("56@a!b#cXY", DateCodec.format(birthDay));
+        offence(person, 30, 4);
+        offence(person, 20, 4);
+        Person.addSuspensionListener(listener);
+
+        monitor().advanceTo(TODAY + 9);
+        assertTrue(events().isEmpty());
+        monitor().advanceTo(TODAY + 10);
+
+        List<SuspensionEvent> seen = events();
+        assertEquals(1, seen.size(), seen.toString());
+        assertFalse(seen.get(0).isSuspended());
+        assertEquals(8, seen.get(0).getPoints());
+        assertEquals(12, seen.get(0).getThreshold());
+        assertEquals(DateCodec.format(DateCodec.plusYears(birthDay, 21)), seen.get(0).getDate());
+    }
+
+    @Test
+    public void addSuspensionListener_existingOffenders_schedulesOnlySuspendedWithoutEvents() {
+        for (int n = 0; n < 20; n++) {
+            Person person = add("5" + (char) ('2' + n % 8) + "@a!b#" + (char) ('a' + n) + "XY", "15-05-1990");
+            offence(person, 30, 5);
+            if (n < 3) {
+                offence(person, 60, 5);
+                offence(person, 90, 5);
+            }
+        }
+
+        Person.addSuspensionListener(listener);
+
+        assertEquals(3, monitor().scheduled());
+        assertTrue(events().isEmpty());
+    }
+
+    @Test
+    public void updatePersonalDetails_suspendedPersonChangesId_emitsForNewIdOnly() {
+        Person person = add("35@a!b#cXY", "15-05-1990");
+        offence(person, 30, 5);
+        offence(person, 25, 5);
+        offence(person, 20, 5);
+        Person.addSuspensionListener(listener);
+
+        assertTrue(Person.updatePersonalDetails("35@a!b#cXY", "45@a!b#cXY", "John", "Doe", VALID_ADDRESS, "15-05-1990"));
+        monitor().awaitIdle();
+
+        List<SuspensionEvent> seen = events();
+        assertEquals(1, seen.size(), seen.toString());
+        assertEquals("45@a!b#cXY", seen.get(0).getPersonID());
+        assertTrue(seen.get(0).isSuspended());
+        assertEquals(1, monitor().scheduled());
+    }
+
+    @Test
+    public void updatePersonalDetails_batchRewriteMakesPersonUnder21_emitsSuspended() {
+        Person person = add("56@a!b#cXY", "15-05-1990");
+        offence(person, 30, 4);
+        offence(person, 20, 4);
+        Person.addSuspensionListener(listener);
+        String under21 = DateCodec.format(DateCodec.plusYears(TODAY, -19));
+
+        BatchUpdateReport report = Person.updatePersonalDetails(List.of(
+            new PersonUpdate("56@a!b#cXY", "56@a!b#cXY", "John", "Doe", VALID_ADDRESS, under21)));
+        assertEquals(1, report.getApplied());
+        monitor().awaitIdle();
+
+        List<SuspensionEvent> seen = events();
+        assertEquals(1, seen.size(), seen.toString());
+        assertTrue(seen.get(0).isSuspended());
+        assertEquals(6, seen.get(0).getThreshold());
+    }
+
+    @Test
+    public void addSuspensionListener_offenceAppendedByAnotherProcess_emitsOnNextRead() throws IOException {
+        Person person = add("56@a!b#cXY", "15-05-1990");
+        offence(person, 30, 6);
+        offence(person, 25, 6);
+        Person.addSuspensionListener(listener);
+
+        Files.write(TEST_PATH, List.of("56@a!b#cXY,Demerit:2,Date:" + DateCodec.format(TODAY - 5)),
+                    StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        assertNotNull(Person.fetchPersonById("56@a!b#cXY"));
+        monitor().awaitIdle();
+
+        List<SuspensionEvent> seen = events();
+        assertEquals(1, seen.size(), seen.toString());
+        assertEquals(14, seen.get(0).getPoints());
+    }
+
+    @Test
+    public void removeSuspensionListener_last_stopsEvents() {
+        Person person = add("56@a!b#cXY", "15-05-1990");
+        Person.addSuspensionListener(listener);
+        Person.removeSuspensionListener(listener);
+
+        offence(person, 30, 5);
+        offence(person, 25, 5);
+        offence(person, 20, 5);
+        monitor().awaitIdle();
+
+        assertTrue(events().isEmpty());
+    }
+
+    @Test
+    public void addSuspensionListener_fourShards_hearsEveryShard() {
+        Person.setShardCount(4);
+        Person.addSuspensionListener(listener);
+        List<String> ids = List.of("35@a!b#cXY", "45@a!b#cXY", "55@a!b#cXY", "65@a!b#cXY", "75@a!b#cXY");
+        for (String id : ids) {
+            Person person = add(id, "15-05-1990");
+            offence(person, 30, 5);
+            offence(person, 25, 5);
+            offence(person, 20, 5);
+        }
+        ShardedStore shards = ShardedStore.forFile(TEST_FILE, 4, StorageFormat.CSV);
+        for (int i = 0; i < 4; i++) {
+            shards.shard(i).suspensionMonitor().awaitIdle();
+        }
+
+        assertEquals(ids.size(), events().size());
+        Person.removeSuspensionListener(listener);
+        Person.setShardCount(1);
+    }
+}
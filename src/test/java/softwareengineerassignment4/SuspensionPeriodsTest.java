@@ -0,0 +1,147 @@
+package softwareengineerassignment4;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SuspensionPeriodsTest {
+    private static final String TEST_FILE = "test_periods_persons.txt";
+    private static final String VALID_ADDRESS = "123|Main St|Melbourne|Victoria|Australia";
+    private static final int TODAY = DateCodec.today();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUp();
+        Person.setFileName(TEST_FILE);
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Person.setFileName("persons.txt");
+        Person.setStorageFormat(StorageFormat.CSV);
+        Person.setShardCount(1);
+        Files.deleteIfExists(Paths.get(TEST_FILE));
+        Files.deleteIfExists(PersonStore.lockPathFor(Paths.get(TEST_FILE)));
+        for (int i = 0; i < 4; i++) {
+            Path shard = Paths.get(ShardedStore.shardFileName(TEST_FILE, i, 4));
+            Files.deleteIfExists(shard);
+            Files.deleteIfExists(PersonStore.lockPathFor(shard));
+        }
+    }
+
+    private static Person add(String id, String birthdate) {
+        Person person = new Person(id, "John", "Doe", VALID_ADDRESS, birthdate);
+        assertTrue(person.addPerson());
+        return person;
+    }
+
+    private static void offence(Person person, int daysAgo, int points) {
+        assertEquals("Success", person.addDemeritPoints(DateCodec.format(TODAY - daysAgo), points));
+    }
+
+    // Suspended 780 days ago, reinstated when the first offence expired
+    private static void addFormerlySuspended(String id) {
+        Person person = add(id, "15-05-1990");
+        offence(person, 800, 6);
+        offence(person, 790, 6);
+        offence(person, 780, 2);
+    }
+
+    @Test
+    public void isSuspendedOn_pastDates_usesPointsAndAgeOnThatDay() {
+        addFormerlySuspended("56@a!b#cXY");
+        Person person = Person.fetchPersonById("56@a!b#cXY");
+
+        assertFalse(person.isSuspended());
+        assertEquals(12, person.getDemeritPointsOn(DateCodec.format(TODAY - 781)));
+        assertFalse(person.isSuspendedOn(DateCodec.format(TODAY - 781)));
+        assertEquals(14, person.getDemeritPointsOn(DateCodec.format(TODAY - 780)));
+        assertTrue(person.isSuspendedOn(DateCodec.format(TODAY - 780)));
+        assertEquals(0, person.getDemeritPointsOn(DateCodec.format(TODAY)));
+        assertEquals(-1, person.getDemeritPointsOn("31-02-2020"));
+        assertFalse(person.isSuspendedOn("not a date"));
+    }
+
+    @Test
+    public void suspensionsBetween_fleet_findsPeriodsClippedToRange() {
+        addFormerlySuspended("56@a!b#cXY");
+        Person clean = add("57@a!b#cXY", "15-05-1990");
+        offence(clean, 30, 3);
+        int adult = DateCodec.plusYears(DateCodec.plusYears(TODAY, -21) + 10, 21);
+        Person young = add("58@a!b#cXY", DateCodec.format(DateCodec.plusYears(TODAY, -21) + 10));
+        offence(young, 40, 4);
+        offence(young, 20, 4);
+
+        SuspensionPeriods report = Person.suspensionsBetween(DateCodec.format(TODAY - 1000), DateCodec.format(TODAY + 100));
+
+        assertEquals(3, report.getPersonsEvaluated());
+        assertEquals(2, report.getPeriods().size());
+        List<SuspensionPeriods.Period> former = report.getPeriods().get("56@a!b#cXY");
+        assertEquals(1, former.size());
+        assertEquals(DateCodec.format(TODAY - 780), former.get(0).getFrom());
+        assertEquals(DateCodec.format(DemeritWindow.plusTwoYears(TODAY - 800)), former.get(0).getTo());
+        assertEquals(14, former.get(0).getPeakPoints());
+        List<SuspensionPeriods.Period> youth = report.getPeriods().get("58@a!b#cXY");
+        assertEquals(DateCodec.format(TODAY - 20), youth.get(0).getFrom());
+        assertEquals(DateCodec.format(adult - 1), youth.get(0).getTo());
+        assertTrue(report.getSuspendedOn(DateCodec.format(TODAY - 780)).contains("56@a!b#cXY"));
+        assertTrue(report.getSuspendedOn(DateCodec.format(TODAY)).contains("58@a!b#cXY"));
+        assertFalse(report.getSuspendedOn(DateCodec.format(TODAY)).contains("56@a!b#cXY"));
+    }
+
+    @Test
+    public void suspensionsBetween_fourShards_combinesEveryShard() {
+        Person.setShardCount(4);
+        List<String> ids = List.of("35@a!b#cXY", "45@a!b#cXY", "55@a!b#cXY", "65@a!b#cXY", "75@a!b#cXY");
+        for (String id : ids) {
+            addFormerlySuspended(id);
+        }
+
+        SuspensionPeriods report = Person.suspensionsBetween(DateCodec.format(TODAY - 785), DateCodec.format(TODAY - 775));
+
+        assertEquals(ids.size(), report.getPeriods().size());
+        assertEquals(DateCodec.format(TODAY - 775), report.getPeriods().get("45@a!b#cXY").get(0).getTo());
+    }
+
+    @Test
+    public void suspensionsBetween_invalidRange_returnsNull() {
+        assertNull(Person.suspensionsBetween("01-01-2026", "31-12-2025"));
+        assertNull(Person.suspensionsBetween("01-13-2025", "31-12-2025"));
+    }
+
+    @Test
+    public void sweep_randomHistories_matchDayByDayEvaluation() {
+        Random random = new Random(11);
+        int from = TODAY - 1500;
+        int to = TODAY;
+        for (int run = 0; run < 100; run++) {
+            DemeritWindow history = new DemeritWindow();
+            for (int i = random.nextInt(12); i > 0; i--) {
+                history.add(from - 400 + random.nextInt(1900), 1 + random.nextInt(6));
+            }
+            int birthDay = DateCodec.plusYears(from, -20) + random.nextInt(800);
+
+            List<SuspensionPeriods.Period> periods = SuspensionPeriods.sweep(history, birthDay, from, to);
+
+            List<String> expected = new ArrayList<>();
+            List<String> actual = new ArrayList<>();
+            for (int day = from; day <= to; day++) {
+                if (history.pointsOn(day) > Person.suspensionThreshold(birthDay, day)) {
+                    expected.add(DateCodec.format(day));
+                }
+            }
+            for (SuspensionPeriods.Period period : periods) {
+                for (int day = DateCodec.parse(period.getFrom()); day <= DateCodec.parse(period.getTo()); day++) {
+                    actual.add(DateCodec.format(day));
+                }
+            }
+            assertEquals(expected, actual);
+        }
+    }
+}